@@ -0,0 +1,11 @@
+#!/bin/bash
+# Starts a streaming replica of PRIMARY_HOST, cloning the primary on first start.
+set -e
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+	until pg_isready -h "$PRIMARY_HOST" -U "$REPLICATION_USER"; do
+		sleep 1
+	done
+	PGPASSWORD="$REPLICATION_PASSWORD" pg_basebackup -h "$PRIMARY_HOST" -U "$REPLICATION_USER" -D "$PGDATA" -X stream -R
+	chmod 700 "$PGDATA"
+fi
+exec docker-entrypoint.sh postgres
@@ -5,10 +5,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 // import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty; // Keep commented out for now
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan // Picks up application level @ConfigurationProperties (e.g. repsy.compression)
+@EnableScheduling // Background jobs such as the storage reconciler
 // @EnableConfigurationProperties(StorageProperties.class) // This is now handled by StorageAutoConfiguration
 public class RepsyApiApplication {
 
@@ -5,6 +5,7 @@ import com.repsy.storage.api.StorageProperties;
 import com.repsy.storage.api.StorageService;
 import com.repsy.storage.filesystem.FileSystemStorageService;
 import com.repsy.storage.minio.MinioStorageService;
+import com.repsy.storage.replicated.ReplicatedStorageService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +15,8 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 @EnableConfigurationProperties(StorageProperties.class) // Enable properties defined in storage-api
 public class StorageAutoConfiguration {
@@ -49,6 +52,29 @@ public class StorageAutoConfiguration {
         return new MinioStorageService(properties);
     }
 
+    @Bean
+    @ConditionalOnProperty(name = "storage.strategy", havingValue = "replicated")
+    @ConditionalOnMissingBean
+    StorageService replicatedStorageService(StorageProperties properties) {
+        StorageProperties.ReplicationProperties replication = properties.getReplication();
+        logger.info("AutoConfig: Creating ReplicatedStorageService bean (primary: {}, secondaries: {})",
+                replication.getPrimary(), replication.getSecondaries());
+        // Backends are owned by the composite (it calls init() and close() on them), so they are not beans themselves
+        StorageService primary = createBackend(replication.getPrimary(), properties);
+        List<StorageService> secondaries = replication.getSecondaries().stream()
+                .map(name -> createBackend(name, properties))
+                .toList();
+        return new ReplicatedStorageService(replication, primary, secondaries);
+    }
+
+    private static StorageService createBackend(String name, StorageProperties properties) {
+        return switch (name) {
+            case "filesystem" -> new FileSystemStorageService(properties);
+            case "minio" -> new MinioStorageService(properties);
+            default -> throw new IllegalStateException("Unknown replication backend '" + name + "' (expected filesystem or minio)");
+        };
+    }
+
     // We might not need the init caller bean anymore if @PostConstruct is used
     // in the service implementations.
     /*
@@ -0,0 +1,41 @@
+package com.repsy.repsy_api.admin;
+
+import com.repsy.repsy_api.datasource.ReadReplicaDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Database routing statistics.
+ */
+@RestController
+@RequestMapping("/admin/database")
+public class DatabaseAdminController {
+
+    private final DataSource dataSource;
+
+    @Autowired
+    public DatabaseAdminController(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Replica health and lag, and how many reads the replicas and the primary served.
+     */
+    @GetMapping("/replicas")
+    public ResponseEntity<Map<String, ?>> replicaStats() {
+        if (!(dataSource instanceof ReadReplicaDataSource replicaDataSource)) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Bad Request",
+                    "message", "Read replicas are not enabled (repsy.datasource.replicas.enabled)."
+            ), HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(replicaDataSource.stats());
+    }
+}
@@ -0,0 +1,55 @@
+package com.repsy.repsy_api.admin;
+
+import com.repsy.repsy_api.download.DownloadShaper;
+import com.repsy.repsy_api.download.DownloadShapingProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Download bandwidth shaping: statistics and runtime reconfiguration.
+ */
+@RestController
+@RequestMapping("/admin/downloads")
+public class DownloadAdminController {
+
+    private final DownloadShaper downloadShaper;
+
+    @Autowired
+    public DownloadAdminController(DownloadShaper downloadShaper) {
+        this.downloadShaper = downloadShaper;
+    }
+
+    /**
+     * Configuration in effect, per-tier totals and the active streams with their throttle time.
+     */
+    @GetMapping("/shaping")
+    public Map<String, Object> shapingStats() {
+        return downloadShaper.stats();
+    }
+
+    /**
+     * Replaces the shaping configuration until the next restart. The body has the shape of the
+     * {@code repsy.download.shaping} properties, e.g. {@code {"enabled": true, "totalBytesPerSecond": 104857600,
+     * "tiers": {"mirror": {"clients": ["203.0.113.0/24"], "clientBytesPerSecond": 10485760}}}}.
+     */
+    @PutMapping("/shaping")
+    public ResponseEntity<Map<String, Object>> reconfigureShaping(@RequestBody DownloadShapingProperties properties) {
+        try {
+            downloadShaper.reconfigure(properties);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Bad Request",
+                    "message", e.getMessage()
+            ), HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(downloadShaper.stats());
+    }
+}
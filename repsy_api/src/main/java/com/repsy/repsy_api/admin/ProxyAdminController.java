@@ -0,0 +1,33 @@
+package com.repsy.repsy_api.admin;
+
+import com.repsy.repsy_api.proxy.PullThroughProxy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Pull-through proxy statistics.
+ */
+@RestController
+@RequestMapping("/admin/proxy")
+public class ProxyAdminController {
+
+    private final PullThroughProxy proxy;
+
+    @Autowired
+    public ProxyAdminController(PullThroughProxy proxy) {
+        this.proxy = proxy;
+    }
+
+    /**
+     * Upstream requests, coalesced requests and cached versions.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(proxy.stats());
+    }
+}
@@ -0,0 +1,57 @@
+package com.repsy.repsy_api.admin;
+
+import com.repsy.repsy_api.retention.RetentionEngine;
+import com.repsy.repsy_api.retention.RetentionProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Retention runs: start one now (or preview it) and see what the last run did.
+ */
+@RestController
+@RequestMapping("/admin/retention")
+public class RetentionAdminController {
+
+    private final RetentionEngine retentionEngine;
+    private final RetentionProperties properties;
+
+    @Autowired
+    public RetentionAdminController(RetentionEngine retentionEngine, RetentionProperties properties) {
+        this.retentionEngine = retentionEngine;
+        this.properties = properties;
+    }
+
+    /**
+     * Starts a run of the configured rules in the background. With {@code dryRun=true} versions are only
+     * logged and counted.
+     */
+    @PostMapping("/run")
+    public ResponseEntity<Map<String, Object>> run(@RequestParam(value = "dryRun", required = false) Boolean dryRun) {
+        if (properties.getRules().isEmpty()) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Bad Request",
+                    "message", "No retention rules are configured (repsy.retention.rules)."
+            ), HttpStatus.BAD_REQUEST);
+        }
+        if (!retentionEngine.start(dryRun != null ? dryRun : properties.isDryRun())) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Conflict",
+                    "message", "A retention run is already in progress."
+            ), HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(retentionEngine.status(), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping
+    public Map<String, Object> status() {
+        return retentionEngine.status();
+    }
+}
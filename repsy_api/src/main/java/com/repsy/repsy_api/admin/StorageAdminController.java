@@ -0,0 +1,152 @@
+package com.repsy.repsy_api.admin;
+
+import com.repsy.repsy_api.checkpoint.ScanCheckpoint;
+import com.repsy.repsy_api.reconcile.StorageReconciler;
+import com.repsy.repsy_api.scrub.IntegrityScrubber;
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.filesystem.FileSystemStorageService;
+import com.repsy.storage.minio.MinioStorageService;
+import com.repsy.storage.replicated.ReplicatedStorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Maintenance operations on the configured storage backend.
+ */
+@RestController
+@RequestMapping("/admin/storage")
+public class StorageAdminController {
+
+    private final StorageRelayoutJob relayoutJob;
+    private final StorageReconciler reconciler;
+    private final IntegrityScrubber scrubber;
+    private final StorageService storageService;
+
+    @Autowired
+    public StorageAdminController(StorageRelayoutJob relayoutJob, StorageReconciler reconciler, IntegrityScrubber scrubber,
+                                  StorageService storageService) {
+        this.relayoutJob = relayoutJob;
+        this.reconciler = reconciler;
+        this.scrubber = scrubber;
+        this.storageService = storageService;
+    }
+
+    /**
+     * Starts moving flat-layout files into their shard directories (storage.sharding.levels > 0).
+     */
+    @PostMapping("/relayout")
+    public ResponseEntity<Map<String, Object>> startRelayout() {
+        if (!relayoutJob.isSupported()) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Bad Request",
+                    "message", "Re-layout is only supported by the filesystem storage strategy."
+            ), HttpStatus.BAD_REQUEST);
+        }
+        if (!relayoutJob.start()) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Conflict",
+                    "message", "A re-layout is already running."
+            ), HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(relayoutJob.status(), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("/relayout")
+    public Map<String, Object> relayoutStatus() {
+        return relayoutJob.status();
+    }
+
+    /**
+     * Runs one reconciliation batch now (same page budget as a scheduled run) and returns the new checkpoint.
+     */
+    @PostMapping("/reconciler/run")
+    public ScanCheckpoint runReconciler() {
+        return reconciler.runOnce();
+    }
+
+    /**
+     * Starts an integrity scrub now, resuming the current pass if one was interrupted.
+     */
+    @PostMapping("/scrubber/run")
+    public ResponseEntity<Map<String, Object>> runScrubber() {
+        if (!scrubber.start()) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Conflict",
+                    "message", "An integrity scrub is already running."
+            ), HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(scrubber.status(), HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Scrub progress (checkpoint position, counters) and the most recent damaged files.
+     */
+    @GetMapping("/scrubber")
+    public Map<String, Object> scrubberStatus() {
+        return scrubber.status();
+    }
+
+    /**
+     * Filesystem group-commit metrics: flush windows, average commits per window and directory fsync failures.
+     */
+    @GetMapping("/durability")
+    public ResponseEntity<Map<String, ?>> durabilityStats() {
+        if (!(storageService instanceof FileSystemStorageService fileSystemStorage)) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Bad Request",
+                    "message", "Durability metrics are only available for the filesystem storage strategy."
+            ), HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(fileSystemStorage.durabilityStats());
+    }
+
+    /**
+     * Minio transport metrics: pool saturation, retries and circuit breaker state.
+     */
+    @GetMapping("/transport")
+    public ResponseEntity<Map<String, ?>> transportStats() {
+        if (!(storageService instanceof MinioStorageService minioStorage)) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Bad Request",
+                    "message", "Transport metrics are only available for the minio storage strategy."
+            ), HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(minioStorage.transportStats());
+    }
+
+    /**
+     * Read coalescing counters; {@code sharedResults} is the number of backend reads saved.
+     */
+    @GetMapping("/read-coalescing")
+    public ResponseEntity<Map<String, ?>> readCoalescingStats() {
+        if (!(storageService instanceof MinioStorageService minioStorage)) {
+            // Filesystem resources are opened lazily by the response writer; there is no backend fetch to share
+            return new ResponseEntity<>(Map.of(
+                    "error", "Bad Request",
+                    "message", "Read coalescing is only used by the minio storage strategy."
+            ), HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(minioStorage.readCoalescingStats());
+    }
+
+    /**
+     * Replication lag and hedged-read counters of the replicated storage strategy.
+     */
+    @GetMapping("/replication")
+    public ResponseEntity<Map<String, ?>> replicationStats() {
+        if (!(storageService instanceof ReplicatedStorageService replicatedStorage)) {
+            return new ResponseEntity<>(Map.of(
+                    "error", "Bad Request",
+                    "message", "Replication metrics are only available for the replicated storage strategy."
+            ), HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(replicatedStorage.replicationStats());
+    }
+}
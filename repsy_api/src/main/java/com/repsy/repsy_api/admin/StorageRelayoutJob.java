@@ -0,0 +1,100 @@
+package com.repsy.repsy_api.admin;
+
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.filesystem.FileSystemStorageService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs {@link FileSystemStorageService#relayoutToShards()} in the background while the API keeps serving.
+ */
+@Component
+public class StorageRelayoutJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageRelayoutJob.class);
+
+    private final StorageService storageService;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-relayout");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile FileSystemStorageService.RelayoutResult result;
+    private volatile String lastError;
+
+    @Autowired
+    public StorageRelayoutJob(StorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    /**
+     * @return true if the configured storage supports re-layout (filesystem strategy).
+     */
+    public boolean isSupported() {
+        return storageService instanceof FileSystemStorageService;
+    }
+
+    /**
+     * Starts a re-layout run unless one is already in progress.
+     *
+     * @return false if a run is already in progress.
+     * @throws IllegalStateException if the storage strategy does not support re-layout.
+     */
+    public boolean start() {
+        if (!isSupported()) {
+            throw new IllegalStateException("Re-layout is only supported by the filesystem storage strategy.");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        FileSystemStorageService fileSystemStorage = (FileSystemStorageService) storageService;
+        startedAt = Instant.now();
+        finishedAt = null;
+        result = null;
+        lastError = null;
+        executor.execute(() -> {
+            try {
+                result = fileSystemStorage.relayoutToShards();
+            } catch (RuntimeException e) {
+                logger.error("Storage re-layout failed", e);
+                lastError = e.getMessage();
+            } finally {
+                finishedAt = Instant.now();
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        FileSystemStorageService.RelayoutResult finished = result;
+        status.put("scannedFiles", finished != null ? finished.scanned() : null);
+        status.put("movedFiles", finished != null ? finished.moved() : null);
+        status.put("deletedDuplicates", finished != null ? finished.deletedDuplicates() : null);
+        status.put("error", lastError);
+        return status;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,32 @@
+package com.repsy.repsy_api.admin;
+
+import com.repsy.repsy_api.admission.UploadAdmission;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Upload load and admission statistics.
+ */
+@RestController
+@RequestMapping("/admin/uploads")
+public class UploadAdminController {
+
+    private final UploadAdmission admission;
+
+    @Autowired
+    public UploadAdminController(UploadAdmission admission) {
+        this.admission = admission;
+    }
+
+    /**
+     * Uploads and bytes in flight, queue depth, admitted/rejected counts and queue wait times.
+     */
+    @GetMapping("/admission")
+    public Map<String, Object> admission() {
+        return admission.stats();
+    }
+}
@@ -0,0 +1,129 @@
+package com.repsy.repsy_api.admission;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("repsy.upload.admission")
+public class AdmissionProperties {
+
+    /**
+     * Whether package uploads are admitted against the limits below before their body is read.
+     * Off by default: clients are told apart by their remote address, which behind a proxy or load balancer is
+     * the same for everyone, so the per-client limits would apply to all clients together.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Upload bytes (request Content-Length) in flight across all clients. A single upload larger than this
+     * is still admitted when nothing else is in flight.
+     */
+    private long maxInFlightBytes = 1024L * 1024 * 1024;
+
+    /**
+     * Concurrent uploads across all clients.
+     */
+    private int maxConcurrentUploads = 32;
+
+    /**
+     * Upload bytes in flight per client address.
+     */
+    private long perClientMaxInFlightBytes = 256L * 1024 * 1024;
+
+    /**
+     * Concurrent uploads per client address.
+     */
+    private int perClientMaxConcurrentUploads = 4;
+
+    /**
+     * How long an upload may wait for capacity before it is rejected.
+     */
+    private Duration maxQueueWait = Duration.ofSeconds(2);
+
+    /**
+     * Uploads waiting at the same time; further uploads are rejected immediately.
+     */
+    private int maxQueueLength = 128;
+
+    /**
+     * Size charged for uploads without a Content-Length (chunked transfer encoding).
+     */
+    private long unknownLengthBytes = 64L * 1024 * 1024;
+
+    /**
+     * Retry-After sent with a rejection.
+     */
+    private Duration retryAfter = Duration.ofSeconds(5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    public int getMaxConcurrentUploads() {
+        return maxConcurrentUploads;
+    }
+
+    public void setMaxConcurrentUploads(int maxConcurrentUploads) {
+        this.maxConcurrentUploads = maxConcurrentUploads;
+    }
+
+    public long getPerClientMaxInFlightBytes() {
+        return perClientMaxInFlightBytes;
+    }
+
+    public void setPerClientMaxInFlightBytes(long perClientMaxInFlightBytes) {
+        this.perClientMaxInFlightBytes = perClientMaxInFlightBytes;
+    }
+
+    public int getPerClientMaxConcurrentUploads() {
+        return perClientMaxConcurrentUploads;
+    }
+
+    public void setPerClientMaxConcurrentUploads(int perClientMaxConcurrentUploads) {
+        this.perClientMaxConcurrentUploads = perClientMaxConcurrentUploads;
+    }
+
+    public Duration getMaxQueueWait() {
+        return maxQueueWait;
+    }
+
+    public void setMaxQueueWait(Duration maxQueueWait) {
+        this.maxQueueWait = maxQueueWait;
+    }
+
+    public int getMaxQueueLength() {
+        return maxQueueLength;
+    }
+
+    public void setMaxQueueLength(int maxQueueLength) {
+        this.maxQueueLength = maxQueueLength;
+    }
+
+    public long getUnknownLengthBytes() {
+        return unknownLengthBytes;
+    }
+
+    public void setUnknownLengthBytes(long unknownLengthBytes) {
+        this.unknownLengthBytes = unknownLengthBytes;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+}
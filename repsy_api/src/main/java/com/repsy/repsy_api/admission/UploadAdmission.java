@@ -0,0 +1,234 @@
+package com.repsy.repsy_api.admission;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits uploads against global and per-client limits on in-flight bytes and concurrency.
+ * An upload that does not fit waits up to {@code maxQueueWait} for capacity to be released; waiters are not
+ * served in order, so small uploads can pass a large one that is still waiting for room.
+ */
+@Component
+public class UploadAdmission {
+
+    /**
+     * The limit that kept an upload out.
+     */
+    public enum Limit {
+        /**
+         * The client's own uploads use its share (answered with 429).
+         */
+        CLIENT,
+        /**
+         * The server is at capacity (answered with 503).
+         */
+        SERVER
+    }
+
+    private final AdmissionProperties properties;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Map<String, Usage> clients = new HashMap<>();
+    private long inFlightBytes;
+    private int inFlightUploads;
+    private int queued;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder admittedAfterWait = new LongAdder();
+    private final LongAdder rejectedClientLimit = new LongAdder();
+    private final LongAdder rejectedServerLimit = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private volatile long maxWaitNanos;
+
+    public UploadAdmission(AdmissionProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Waits until the upload fits the limits and reserves its bytes.
+     *
+     * @param client Client identity, e.g. its address.
+     * @param bytes  Size of the upload.
+     * @return The reservation; close it when the upload has been processed.
+     * @throws UploadRejectedException if the upload did not fit within {@code maxQueueWait}, or too many are waiting.
+     */
+    public Ticket admit(String client, long bytes) throws UploadRejectedException {
+        long startedAt = System.nanoTime();
+        boolean waited = false;
+        lock.lock();
+        try {
+            Limit blocking = blockingLimit(client, bytes);
+            if (blocking != null) {
+                if (queued >= properties.getMaxQueueLength()) {
+                    throw reject(blocking);
+                }
+                waited = true;
+                queued++;
+                try {
+                    long remainingNanos = properties.getMaxQueueWait().toNanos();
+                    while ((blocking = blockingLimit(client, bytes)) != null) {
+                        if (remainingNanos <= 0) {
+                            throw reject(blocking);
+                        }
+                        remainingNanos = released.awaitNanos(remainingNanos);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw reject(Limit.SERVER);
+                } finally {
+                    queued--;
+                    recordWait(startedAt);
+                }
+            }
+            inFlightUploads++;
+            inFlightBytes += bytes;
+            clients.computeIfAbsent(client, key -> new Usage()).add(bytes);
+        } finally {
+            lock.unlock();
+        }
+        admitted.increment();
+        if (waited) {
+            admittedAfterWait.increment();
+        }
+        return new Ticket(client, bytes);
+    }
+
+    /**
+     * @return The limit the upload would exceed now, or null if it fits. An upload always fits when nothing
+     * else is in flight, so uploads larger than a byte limit are serialized instead of never admitted.
+     */
+    private Limit blockingLimit(String client, long bytes) {
+        Usage usage = clients.get(client);
+        if (usage != null && (usage.uploads >= properties.getPerClientMaxConcurrentUploads()
+                || usage.bytes + bytes > properties.getPerClientMaxInFlightBytes())) {
+            return Limit.CLIENT;
+        }
+        if (inFlightUploads >= properties.getMaxConcurrentUploads()
+                || (inFlightUploads > 0 && inFlightBytes + bytes > properties.getMaxInFlightBytes())) {
+            return Limit.SERVER;
+        }
+        return null;
+    }
+
+    private UploadRejectedException reject(Limit limit) {
+        (limit == Limit.CLIENT ? rejectedClientLimit : rejectedServerLimit).increment();
+        return new UploadRejectedException(limit, properties.getRetryAfter().toSeconds());
+    }
+
+    private void recordWait(long startedAt) {
+        long waitNanos = System.nanoTime() - startedAt;
+        totalWaitNanos.add(waitNanos);
+        if (waitNanos > maxWaitNanos) {
+            maxWaitNanos = waitNanos;
+        }
+    }
+
+    private void release(String client, long bytes) {
+        lock.lock();
+        try {
+            inFlightUploads--;
+            inFlightBytes -= bytes;
+            Usage usage = clients.get(client);
+            usage.remove(bytes);
+            if (usage.uploads == 0) {
+                clients.remove(client);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Current load ({@code inFlightUploads}, {@code inFlightBytes}, {@code queued} = queue depth,
+     * {@code activeClients}), outcome counters and queue wait times.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("inFlightUploads", inFlightUploads);
+            stats.put("inFlightBytes", inFlightBytes);
+            stats.put("queued", queued);
+            stats.put("activeClients", clients.size());
+        } finally {
+            lock.unlock();
+        }
+        long waits = admittedAfterWait.sum() + rejectedClientLimit.sum() + rejectedServerLimit.sum();
+        stats.put("admitted", admitted.sum());
+        stats.put("admittedAfterWait", admittedAfterWait.sum());
+        stats.put("rejectedClientLimit", rejectedClientLimit.sum());
+        stats.put("rejectedServerLimit", rejectedServerLimit.sum());
+        stats.put("averageWaitMillis", waits > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum() / waits) : 0);
+        stats.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        stats.put("maxInFlightBytes", properties.getMaxInFlightBytes());
+        stats.put("maxConcurrentUploads", properties.getMaxConcurrentUploads());
+        return stats;
+    }
+
+    private static final class Usage {
+        private long bytes;
+        private int uploads;
+
+        void add(long size) {
+            bytes += size;
+            uploads++;
+        }
+
+        void remove(long size) {
+            bytes -= size;
+            uploads--;
+        }
+    }
+
+    /**
+     * An admitted upload's reservation.
+     */
+    public final class Ticket implements AutoCloseable {
+        private final String client;
+        private final long bytes;
+        private boolean closed;
+
+        private Ticket(String client, long bytes) {
+            this.client = client;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(client, bytes);
+            }
+        }
+    }
+
+    public static class UploadRejectedException extends RuntimeException {
+        private final Limit limit;
+        private final long retryAfterSeconds;
+
+        public UploadRejectedException(Limit limit, long retryAfterSeconds) {
+            super(limit == Limit.CLIENT
+                    ? "Too many uploads in progress from this client, please retry later."
+                    : "The server is busy with other uploads, please retry later.");
+            this.limit = limit;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public Limit getLimit() {
+            return limit;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.repsy.repsy_api.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class UploadAdmissionConfiguration {
+
+    @Bean
+    FilterRegistrationBean<UploadAdmissionFilter> uploadAdmissionFilter(AdmissionProperties properties,
+                                                                        UploadAdmission admission,
+                                                                        ObjectMapper objectMapper) {
+        FilterRegistrationBean<UploadAdmissionFilter> registration = new FilterRegistrationBean<>(
+                new UploadAdmissionFilter(properties, admission, objectMapper));
+        registration.addUrlPatterns("/packages/*", "/uploads/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10); // Inside the request span, ahead of everything else
+        return registration;
+    }
+}
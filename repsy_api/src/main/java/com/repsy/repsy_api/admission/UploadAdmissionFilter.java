@@ -0,0 +1,77 @@
+package com.repsy.repsy_api.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Admits package uploads before the multipart body is read (the dispatcher parses it only after the filters),
+ * charging the request's Content-Length against the limits of {@link UploadAdmission}.
+ */
+class UploadAdmissionFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadAdmissionFilter.class);
+
+    private final AdmissionProperties properties;
+    private final UploadAdmission admission;
+    private final ObjectMapper objectMapper;
+
+    UploadAdmissionFilter(AdmissionProperties properties, UploadAdmission admission, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.admission = admission;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Chunks of resumable uploads are PUT
+        return !properties.isEnabled() || !("POST".equals(request.getMethod()) || "PUT".equals(request.getMethod()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long bytes = request.getContentLengthLong();
+        if (bytes < 0) {
+            bytes = properties.getUnknownLengthBytes();
+        }
+        UploadAdmission.Ticket ticket;
+        try {
+            ticket = admission.admit(request.getRemoteAddr(), bytes);
+        } catch (UploadAdmission.UploadRejectedException e) {
+            reject(request, response, e);
+            return;
+        }
+        try (ticket) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response,
+                        UploadAdmission.UploadRejectedException e) throws IOException {
+        HttpStatus status = e.getLimit() == UploadAdmission.Limit.CLIENT
+                ? HttpStatus.TOO_MANY_REQUESTS
+                : HttpStatus.SERVICE_UNAVAILABLE;
+        logger.debug("Rejected upload {} from {}: {}", request.getRequestURI(), request.getRemoteAddr(), status);
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        // The unread body is discarded by the container; closing the connection avoids draining a large upload
+        response.setHeader(HttpHeaders.CONNECTION, "close");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of(
+                "error", status.getReasonPhrase(),
+                "message", e.getMessage()
+        ));
+    }
+}
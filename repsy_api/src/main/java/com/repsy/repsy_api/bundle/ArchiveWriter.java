@@ -0,0 +1,25 @@
+package com.repsy.repsy_api.bundle;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Writes the entries of a {@link BundleFormat} archive, one at a time, into the response stream.
+ */
+interface ArchiveWriter {
+
+    /**
+     * Copies one file into the archive.
+     *
+     * @param path    Path of the entry inside the archive, with {@code /} separators.
+     * @param size    Exact length of {@code content}, or -1 if unknown (only zip accepts that).
+     * @param content The file's bytes; read to the end but not closed.
+     * @throws IOException If {@code content} is not exactly {@code size} bytes long; the archive is then unusable.
+     */
+    void add(String path, long size, InputStream content) throws IOException;
+
+    /**
+     * Writes the end of the archive and flushes. The underlying stream is not closed.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,79 @@
+package com.repsy.repsy_api.bundle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Archive formats a bundle can be streamed as.
+ */
+public enum BundleFormat {
+
+    /**
+     * POSIX ustar, with pax headers for long paths and files of 8 GiB or more. Every entry's size goes in its
+     * header, so .rep files without a recorded size cannot be bundled as tar.
+     */
+    TAR("tar", "application/x-tar", ".tar"),
+
+    /**
+     * Zip with data descriptors (and Zip64 where needed), so entries are written without knowing their size or CRC.
+     */
+    ZIP("zip", "application/zip", ".zip");
+
+    private final String token;
+    private final String mediaType;
+    private final String extension;
+
+    BundleFormat(String token, String mediaType, String extension) {
+        this.token = token;
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    /**
+     * @return The value of the {@code format} request parameter.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    boolean requiresSizes() {
+        return this == TAR;
+    }
+
+    ArchiveWriter open(OutputStream out, BundleProperties properties) {
+        switch (this) {
+            case TAR:
+                return new TarArchiveWriter(out);
+            case ZIP:
+                return new ZipArchiveWriter(out, properties.getZipLevel());
+            default:
+                throw new IllegalStateException("Unsupported bundle format: " + token);
+        }
+    }
+
+    /**
+     * Looks up a format by its token (case-insensitive).
+     */
+    public static Optional<BundleFormat> fromToken(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        String normalized = token.trim().toLowerCase(Locale.ROOT);
+        for (BundleFormat format : values()) {
+            if (format.token.equals(normalized)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+}
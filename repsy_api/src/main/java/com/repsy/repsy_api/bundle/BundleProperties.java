@@ -0,0 +1,89 @@
+package com.repsy.repsy_api.bundle;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("repsy.bundles")
+public class BundleProperties {
+
+    /**
+     * Most package versions a bundle may contain (the requested one and its dependency closure).
+     * Larger closures are rejected before anything is sent.
+     */
+    private int maxPackages = 500;
+
+    /**
+     * Bundles streamed at the same time. Further requests get 503 with Retry-After.
+     */
+    private int maxConcurrentBundles = 4;
+
+    /**
+     * Retry-After sent when a bundle is rejected.
+     */
+    private Duration retryAfter = Duration.ofSeconds(30);
+
+    /**
+     * .rep files opened ahead of the one being written, per bundle. Their first bytes are read in parallel
+     * while the current file streams, so storage latency does not stall the response.
+     */
+    private int prefetchWindow = 4;
+
+    /**
+     * Bytes read ahead from each prefetched file. A bundle buffers at most prefetch-window times this.
+     */
+    private int prefetchBytes = 1024 * 1024;
+
+    /**
+     * Deflate level (0-9) of zip bundles. .rep files rarely compress well, so favour speed.
+     */
+    private int zipLevel = 1;
+
+    public int getMaxPackages() {
+        return maxPackages;
+    }
+
+    public void setMaxPackages(int maxPackages) {
+        this.maxPackages = maxPackages;
+    }
+
+    public int getMaxConcurrentBundles() {
+        return maxConcurrentBundles;
+    }
+
+    public void setMaxConcurrentBundles(int maxConcurrentBundles) {
+        this.maxConcurrentBundles = maxConcurrentBundles;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public int getPrefetchWindow() {
+        return prefetchWindow;
+    }
+
+    public void setPrefetchWindow(int prefetchWindow) {
+        this.prefetchWindow = prefetchWindow;
+    }
+
+    public int getPrefetchBytes() {
+        return prefetchBytes;
+    }
+
+    public void setPrefetchBytes(int prefetchBytes) {
+        this.prefetchBytes = prefetchBytes;
+    }
+
+    public int getZipLevel() {
+        return zipLevel;
+    }
+
+    public void setZipLevel(int zipLevel) {
+        this.zipLevel = zipLevel;
+    }
+}
@@ -0,0 +1,477 @@
+package com.repsy.repsy_api.bundle;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.repsy.repsy_api.compression.PackageCompressionService;
+import com.repsy.repsy_api.download.DownloadShaper;
+import com.repsy.repsy_api.packages.MetaDocument;
+import com.repsy.repsy_api.packages.MetadataService;
+import com.repsy.repsy_api.packages.PackageBlob;
+import com.repsy.repsy_api.packages.PackageMetadataRepository;
+import com.repsy.repsy_api.packages.PackageService;
+import com.repsy.repsy_api.tracing.TraceAttributes;
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import com.repsy.storage.api.Tracing;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Streams a package version together with its dependency closure as one archive, for air-gapped installs and
+ * cache warmers.
+ * <p>
+ * The closure is resolved from the deployed meta.json documents, one batch lookup per dependency level, before
+ * anything is sent, so a missing dependency fails the request instead of truncating the archive. Only pinned
+ * dependencies ({@code {"package": "x", "version": "1.2.3"}} or {@code {"x": "1.2.3"}}) are followed; ranges are
+ * listed as unresolved in the archive's {@code bundle.json}.
+ * <p>
+ * The archive is written straight to the response: meta.json documents come from the package rows and .rep files
+ * are copied from storage as they are read. The next {@link BundleProperties#getPrefetchWindow()} .rep files are
+ * opened, and their first {@link BundleProperties#getPrefetchBytes()} read, in parallel while the current one
+ * streams, so the output is not held up by storage latency between files.
+ */
+@Service
+public class BundleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BundleService.class);
+
+    static final String MANIFEST_NAME = "bundle.json";
+
+    /**
+     * A dependency version that names exactly one version, as opposed to a range.
+     */
+    private static final Pattern PINNED_VERSION = Pattern.compile("^\\d+\\.\\d+\\.\\d+(?:-[0-9A-Za-z.-]+)?(?:\\+[0-9A-Za-z.-]+)?$");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MetadataService metadataService;
+    private final PackageMetadataRepository packageRepository;
+    private final PackageCompressionService compressionService;
+    private final StorageService storageService;
+    private final DownloadShaper downloadShaper;
+    private final ObjectMapper objectMapper;
+    private final BundleProperties properties;
+    private final Semaphore bundles;
+    private final ExecutorService prefetcher;
+
+    @Autowired
+    public BundleService(MetadataService metadataService, PackageMetadataRepository packageRepository,
+                         PackageCompressionService compressionService, StorageService storageService,
+                         DownloadShaper downloadShaper, ObjectMapper objectMapper, BundleProperties properties) {
+        if (properties.getPrefetchWindow() < 1 || properties.getPrefetchBytes() < 0) {
+            throw new IllegalStateException("repsy.bundles.prefetch-window must be positive and repsy.bundles.prefetch-bytes not negative");
+        }
+        this.metadataService = metadataService;
+        this.packageRepository = packageRepository;
+        this.compressionService = compressionService;
+        this.storageService = storageService;
+        this.downloadShaper = downloadShaper;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.bundles = new Semaphore(Math.max(1, properties.getMaxConcurrentBundles()));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.prefetcher = Executors.newFixedThreadPool(Math.max(1, properties.getMaxConcurrentBundles()) * properties.getPrefetchWindow(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bundle-prefetch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * A package version in a bundle.
+     *
+     * @param size Length of the .rep file, or null if it was not recorded at deploy time.
+     */
+    public record Member(String name, String version, String metaJson, String sha256, Long size) {
+
+        String repKey() {
+            return name + "/" + version + "/" + name + "-" + version + ".rep";
+        }
+    }
+
+    /**
+     * A dependency that was not followed because it does not name a single version.
+     *
+     * @param dependent  {@code name@version} of the package declaring it.
+     * @param dependency The declaration as written in its meta.json.
+     */
+    public record Unresolved(String dependent, String dependency) {
+    }
+
+    /**
+     * A resolved bundle: the requested version first, then its dependencies level by level.
+     */
+    public record Bundle(String name, String version, List<Member> members, List<Unresolved> unresolved) {
+
+        public String fileName(BundleFormat format) {
+            return name + "-" + version + "-bundle" + format.getExtension();
+        }
+    }
+
+    /**
+     * Thrown when the requested version does not exist.
+     */
+    public static class PackageNotFoundException extends RuntimeException {
+        public PackageNotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown when the closure cannot be bundled: dependencies that are not deployed, or too many versions.
+     */
+    public static class UnbundlableException extends RuntimeException {
+        public UnbundlableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown when {@link BundleProperties#getMaxConcurrentBundles()} bundles are already streaming.
+     */
+    public static class BundleBusyException extends RuntimeException {
+
+        private final long retryAfterSeconds;
+
+        public BundleBusyException(long retryAfterSeconds) {
+            super("Too many bundles are being downloaded; retry later.");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * A streaming bundle's slot; closing it lets the next bundle start.
+     */
+    public final class Slot implements AutoCloseable {
+
+        private boolean released;
+
+        private Slot() {
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                bundles.release();
+            }
+        }
+    }
+
+    /**
+     * Reserves a slot for a bundle without waiting, so the caller can reject before it commits a response.
+     *
+     * @throws BundleBusyException If all slots are taken.
+     */
+    public Slot reserve() {
+        if (!bundles.tryAcquire()) {
+            throw new BundleBusyException(Math.max(1, properties.getRetryAfter().toSeconds()));
+        }
+        return new Slot();
+    }
+
+    /**
+     * Resolves the dependency closure of a version.
+     *
+     * @throws PackageNotFoundException If the version does not exist.
+     * @throws UnbundlableException     If a pinned dependency is not deployed, or the closure is too large.
+     * @throws PackageService.InvalidFileException If {@code format} needs .rep sizes that were never recorded.
+     */
+    public Bundle resolve(String packageName, String version, BundleFormat format) {
+        return Tracing.inSpan("bundle.resolve", span -> {
+            span.setAttribute(TraceAttributes.PACKAGE_NAME, packageName);
+            span.setAttribute(TraceAttributes.PACKAGE_VERSION, version);
+            return resolveClosure(packageName, version, format);
+        });
+    }
+
+    private Bundle resolveClosure(String packageName, String version, BundleFormat format) {
+        String root = packageName + "@" + version;
+        Map<String, Member> members = new LinkedHashMap<>();
+        List<Unresolved> unresolved = new ArrayList<>();
+        Map<String, String> requiredBy = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        Set<String> level = new LinkedHashSet<>(List.of(root));
+        while (!level.isEmpty()) {
+            if (members.size() + level.size() > properties.getMaxPackages()) {
+                throw new UnbundlableException("The dependency closure of " + root + " has more than "
+                        + properties.getMaxPackages() + " package versions.");
+            }
+            Map<String, MetaDocument> documents = metadataService.findAll(level);
+            Map<String, PackageBlob> blobs = findBlobs(documents.values());
+            Set<String> next = new LinkedHashSet<>();
+            for (String coordinates : level) {
+                MetaDocument document = documents.get(coordinates);
+                if (document == null) {
+                    if (coordinates.equals(root)) {
+                        throw new PackageNotFoundException("Package " + packageName + " version " + version + " does not exist.");
+                    }
+                    missing.add(coordinates + " (required by " + requiredBy.get(coordinates) + ")");
+                    continue;
+                }
+                PackageBlob blob = blobs.get(coordinates);
+                Member member = new Member(document.name(), document.version(), document.json(),
+                        blob != null ? blob.getRepSha256() : null, blob != null ? blob.getRepSize() : null);
+                members.put(coordinates, format.requiresSizes() ? withSize(member, format) : member);
+                for (String dependency : dependencies(document, unresolved)) {
+                    if (!members.containsKey(dependency) && !level.contains(dependency) && next.add(dependency)) {
+                        requiredBy.put(dependency, coordinates);
+                    }
+                }
+            }
+            level = next;
+        }
+        if (!missing.isEmpty()) {
+            throw new UnbundlableException("Dependencies of " + root + " are not deployed: " + String.join(", ", missing));
+        }
+        return new Bundle(packageName, version, List.copyOf(members.values()), unresolved);
+    }
+
+    private Map<String, PackageBlob> findBlobs(Iterable<MetaDocument> documents) {
+        Set<String> names = new HashSet<>();
+        Set<String> versions = new HashSet<>();
+        documents.forEach(document -> {
+            names.add(document.name());
+            versions.add(document.version());
+        });
+        if (names.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, PackageBlob> blobs = new HashMap<>();
+        Tracing.inSpan("db.find_blobs", span -> {
+            span.setAttribute(TraceAttributes.DB_SYSTEM, "postgresql");
+            span.setAttribute(TraceAttributes.DB_OPERATION, "SELECT");
+            return packageRepository.findBlobsByNameInAndVersionIn(names, versions);
+        }).forEach(blob -> blobs.put(blob.getName() + "@" + blob.getVersion(), blob));
+        return blobs;
+    }
+
+    /**
+     * Fills in the size of a .rep file deployed before sizes were recorded from the stored file.
+     */
+    private Member withSize(Member member, BundleFormat format) {
+        if (member.size() != null) {
+            return member;
+        }
+        Long size = storageService.stat(member.repKey()).map(StoredObject::getSize).orElse(null);
+        if (size == null) {
+            throw new PackageService.InvalidFileException("The size of " + member.repKey() + " is not known, so it cannot be bundled as "
+                    + format.getToken() + "; request format=zip instead.");
+        }
+        return new Member(member.name(), member.version(), member.metaJson(), member.sha256(), size);
+    }
+
+    /**
+     * @return The pinned dependencies of a version as {@code name@version}; the others are added to {@code unresolved}.
+     */
+    private List<String> dependencies(MetaDocument document, List<Unresolved> unresolved) {
+        JsonNode declared;
+        try {
+            declared = objectMapper.readTree(document.json()).path("dependencies");
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not parse the meta.json of {} for its dependencies: {}", document.coordinates(), e.getMessage());
+            return List.of();
+        }
+        List<String> pinned = new ArrayList<>();
+        if (declared.isArray()) {
+            for (JsonNode dependency : declared) {
+                JsonNode name = dependency.path("package");
+                JsonNode version = dependency.path("version");
+                if (name.isTextual() && version.isTextual() && PINNED_VERSION.matcher(version.asText()).matches()) {
+                    pinned.add(name.asText() + "@" + version.asText());
+                } else {
+                    unresolved.add(new Unresolved(document.coordinates(), dependency.isTextual() ? dependency.asText() : dependency.toString()));
+                }
+            }
+        } else if (declared.isObject()) {
+            declared.fields().forEachRemaining(dependency -> {
+                JsonNode version = dependency.getValue();
+                if (version.isTextual() && PINNED_VERSION.matcher(version.asText()).matches()) {
+                    pinned.add(dependency.getKey() + "@" + version.asText());
+                } else {
+                    unresolved.add(new Unresolved(document.coordinates(), dependency.getKey() + " " + version.asText(version.toString())));
+                }
+            });
+        }
+        return pinned;
+    }
+
+    /**
+     * Writes the bundle to {@code out}, which is flushed but not closed: {@code bundle.json} first, then
+     * {@code name/version/meta.json} and {@code name/version/name-version.rep} of every member.
+     *
+     * @param clientAddress The client's IP address; .rep reads are shaped like downloads.
+     */
+    public void write(Bundle bundle, BundleFormat format, OutputStream out, String clientAddress) throws IOException {
+        long started = System.nanoTime();
+        long[] bytes = new long[1];
+        int written = 0;
+        OutputStream counted = new BufferedOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytes[0] += len;
+            }
+        }, BUFFER_SIZE);
+        ArchiveWriter archive = format.open(counted, properties);
+        List<Member> members = bundle.members();
+        Deque<Future<Prefetched>> window = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            byte[] manifest = manifest(bundle);
+            archive.add(MANIFEST_NAME, manifest.length, new ByteArrayInputStream(manifest));
+            for (Member member : members) {
+                while (submitted < members.size() && window.size() < properties.getPrefetchWindow()) {
+                    Member ahead = members.get(submitted++);
+                    window.addLast(prefetcher.submit(() -> prefetch(ahead, clientAddress)));
+                }
+                String directory = member.name() + "/" + member.version() + "/";
+                byte[] meta = member.metaJson().getBytes(StandardCharsets.UTF_8);
+                archive.add(directory + "meta.json", meta.length, new ByteArrayInputStream(meta));
+                try (Prefetched rep = await(window.removeFirst())) {
+                    archive.add(directory + member.name() + "-" + member.version() + ".rep",
+                            member.size() != null ? member.size() : -1, rep.stream());
+                }
+                written++;
+            }
+            archive.finish();
+        } catch (IOException | RuntimeException e) {
+            // The response is already committed; the client sees a truncated archive
+            logger.warn("Bundle of {}@{} ({}) failed after {} of {} package versions: {}", bundle.name(), bundle.version(),
+                    format.getToken(), written, members.size(), e.toString());
+            throw e;
+        } finally {
+            window.forEach(BundleService::discard);
+        }
+        logger.info("Bundled {}@{} with {} package versions as {} ({} bytes) in {} ms", bundle.name(), bundle.version(),
+                members.size(), format.getToken(), bytes[0], (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private byte[] manifest(Bundle bundle) throws IOException {
+        ObjectNode manifest = objectMapper.createObjectNode();
+        manifest.put("name", bundle.name());
+        manifest.put("version", bundle.version());
+        ArrayNode packages = manifest.putArray("packages");
+        for (Member member : bundle.members()) {
+            ObjectNode entry = packages.addObject();
+            entry.put("name", member.name());
+            entry.put("version", member.version());
+            entry.put("sha256", member.sha256());
+            entry.put("size", member.size());
+        }
+        ArrayNode unresolved = manifest.putArray("unresolved");
+        for (Unresolved dependency : bundle.unresolved()) {
+            unresolved.addObject()
+                    .put("dependent", dependency.dependent())
+                    .put("dependency", dependency.dependency());
+        }
+        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest);
+    }
+
+    /**
+     * A .rep file opened ahead of time, with its first bytes already read.
+     */
+    private record Prefetched(byte[] head, int headLength, InputStream rest) implements Closeable {
+
+        InputStream stream() {
+            return new SequenceInputStream(new ByteArrayInputStream(head, 0, headLength), rest);
+        }
+
+        @Override
+        public void close() throws IOException {
+            rest.close();
+        }
+    }
+
+    private Prefetched prefetch(Member member, String clientAddress) throws IOException {
+        String key = member.repKey();
+        // The plain file, or a stored variant decoded on the fly when only variants are kept; streamed, so only
+        // the head below is held in memory however large the file
+        InputStream in = downloadShaper.shape(compressionService.openIdentity(key), clientAddress, key);
+        try {
+            byte[] head = new byte[properties.getPrefetchBytes()];
+            int length = in.readNBytes(head, 0, head.length);
+            return new Prefetched(head, length, in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static Prefetched await(Future<Prefetched> prefetched) throws IOException {
+        try {
+            return prefetched.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a .rep file");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Drops a prefetch the bundle no longer needs, closing its stream if it was already opened.
+     */
+    private static void discard(Future<Prefetched> prefetched) {
+        if (prefetched.cancel(false)) {
+            return;
+        }
+        try (Prefetched ignored = prefetched.get()) {
+            // Closed by try-with-resources
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException e) {
+            // Nothing to close, or nothing left to do about it
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        prefetcher.shutdownNow();
+    }
+}
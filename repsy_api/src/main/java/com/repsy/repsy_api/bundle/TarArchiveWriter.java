@@ -0,0 +1,136 @@
+package com.repsy.repsy_api.bundle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * POSIX ustar writer. A path that does not fit the 100-byte name field (or is not ASCII) and a size beyond the
+ * 11 octal digits of the size field (8 GiB) are carried by a pax extended header in front of the entry.
+ * <pre>
+ * entry:   [pax header block, pax records padded to 512] header block, content padded to 512
+ * archive: entries, two zero blocks
+ * </pre>
+ */
+class TarArchiveWriter implements ArchiveWriter {
+
+    static final int BLOCK = 512;
+
+    private static final int NAME_LENGTH = 100;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final long mtime = System.currentTimeMillis() / 1000;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    TarArchiveWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void add(String path, long size, InputStream content) throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("tar entries need their size: " + path);
+        }
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        boolean longName = name.length > NAME_LENGTH || name.length != path.length();
+        boolean largeSize = size > MAX_OCTAL_SIZE;
+        if (longName || largeSize) {
+            StringBuilder records = new StringBuilder();
+            if (longName) {
+                records.append(paxRecord("path", path));
+            }
+            if (largeSize) {
+                records.append(paxRecord("size", Long.toString(size)));
+            }
+            byte[] pax = records.toString().getBytes(StandardCharsets.UTF_8);
+            writeHeader(asciiName("PaxHeaders/" + path), pax.length, (byte) 'x');
+            out.write(pax);
+            pad(pax.length);
+        }
+        writeHeader(longName ? asciiName(path) : name, largeSize ? 0 : size, (byte) '0');
+        long copied = 0;
+        int read;
+        while ((read = content.read(buffer, 0, (int) Math.min(buffer.length, size - copied + 1))) > 0) {
+            copied += read;
+            if (copied > size) {
+                throw new IOException(path + " is longer than its recorded size of " + size + " bytes");
+            }
+            out.write(buffer, 0, read);
+        }
+        if (copied < size) {
+            throw new IOException(path + " ended after " + copied + " of its recorded " + size + " bytes");
+        }
+        pad(size);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.write(new byte[2 * BLOCK]);
+        out.flush();
+    }
+
+    private void writeHeader(byte[] name, long size, byte type) throws IOException {
+        byte[] header = new byte[BLOCK];
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, NAME_LENGTH));
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, mtime);
+        Arrays.fill(header, 148, 156, (byte) ' '); // Counted as spaces while summing
+        header[156] = type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum); // Six digits and a NUL, the trailing space stays
+        out.write(header);
+    }
+
+    private void pad(long written) throws IOException {
+        int remainder = (int) (written % BLOCK);
+        if (remainder != 0) {
+            out.write(new byte[BLOCK - remainder]);
+        }
+    }
+
+    /**
+     * Writes {@code value} as zero-padded octal digits followed by a NUL into {@code length} bytes.
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1;
+        for (int i = 0; i < width; i++) {
+            int digit = digits.length() - width + i;
+            header[offset + i] = (byte) (digit >= 0 ? digits.charAt(digit) : '0');
+        }
+        header[offset + width] = 0;
+    }
+
+    /**
+     * The ustar name of an entry whose real path is in a pax header: a printable prefix for older readers.
+     */
+    private static byte[] asciiName(String path) {
+        String ascii = path.replaceAll("[^\\x20-\\x7e]", "_");
+        return ascii.substring(0, Math.min(ascii.length(), NAME_LENGTH)).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A pax record {@code "<length> <key>=<value>\n"}, whose length counts its own digits.
+     */
+    static String paxRecord(String key, String value) {
+        int body = key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length + 3; // ' ', '=', '\n'
+        int length = body + Integer.toString(body).length();
+        if (Integer.toString(length).length() != Integer.toString(body).length()) {
+            length++; // Adding the digits carried the length over to one more digit
+        }
+        return length + " " + key + "=" + value + "\n";
+    }
+}
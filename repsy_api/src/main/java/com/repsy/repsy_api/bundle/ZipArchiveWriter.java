@@ -0,0 +1,55 @@
+package com.repsy.repsy_api.bundle;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Zip writer over {@link ZipOutputStream}: deflated entries with data descriptors, so sizes and CRCs are
+ * written after the content and Zip64 records are added only when an entry or the archive needs them.
+ */
+class ZipArchiveWriter implements ArchiveWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipOutputStream zip;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    ZipArchiveWriter(OutputStream out, int level) {
+        this.zip = new ZipOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush(); // Finishing the zip must not close the response stream
+            }
+        });
+        this.zip.setLevel(level);
+    }
+
+    @Override
+    public void add(String path, long size, InputStream content) throws IOException {
+        zip.putNextEntry(new ZipEntry(path));
+        long copied = 0;
+        int read;
+        while ((read = content.read(buffer)) > 0) {
+            zip.write(buffer, 0, read);
+            copied += read;
+        }
+        if (size >= 0 && copied != size) {
+            throw new IOException(path + " has " + copied + " bytes instead of its recorded " + size);
+        }
+        zip.closeEntry();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        zip.close();
+    }
+}
@@ -0,0 +1,295 @@
+package com.repsy.repsy_api.changes;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Monotonic feed of deploys and deletes for downstream mirrors.
+ * <p>
+ * A change row is written without a feed position, by the transaction that deletes the version or, for a deploy,
+ * by a short transaction after the version's files are in place.
+ * After the commit, the sequencer gives pending rows increasing positions from {@code package_feed_sequence},
+ * holding an advisory lock so that only one sequencer (on any instance) runs at a time. A position therefore
+ * becomes visible only after every smaller one, and a reader that has seen position N never misses a change
+ * below it. Positions are dense within a sequencing batch but may have gaps.
+ * <p>
+ * Long-poll requests park as {@link DeferredResult}s without holding a thread. They are completed as soon as
+ * this instance sequences a change, or when the shared head poll sees one sequenced elsewhere.
+ * <p>
+ * The head poll and the sweep run on the feed's own thread rather than on the application's shared scheduler,
+ * so long scheduled jobs (storage reconciliation, upload sweeps) cannot delay waking waiting mirrors.
+ */
+@Component
+public class ChangeFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeed.class);
+
+    /**
+     * pg_advisory_xact_lock key serializing sequencers across instances.
+     */
+    private static final long SEQUENCER_LOCK = 0x72657073795F6366L;
+
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(?)";
+
+    private static final String SEQUENCE_SQL = "UPDATE package_changes SET seq = nextval('package_feed_sequence') "
+            + "WHERE id IN (SELECT id FROM package_changes WHERE seq IS NULL ORDER BY id LIMIT ?) RETURNING seq";
+
+    private final ChangeFeedProperties properties;
+    private final PackageChangeRepository changeRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService executor; // Sequencing, waiter dispatch, head poll and sweep, one at a time
+    private final AtomicBoolean sequencingRequested = new AtomicBoolean();
+    private final AtomicBoolean dispatchRequested = new AtomicBoolean();
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+    // Newest feed position known to this instance; -1 until the first poll or sequencing
+    private volatile long head = -1;
+
+    @Autowired
+    public ChangeFeed(ChangeFeedProperties properties, PackageChangeRepository changeRepository, DataSource dataSource,
+                      PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.changeRepository = changeRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepInterval = Math.max(1, properties.getSweepInterval().toMillis());
+        long pollInterval = Math.max(1, properties.getPollInterval().toMillis());
+        executor.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::pollHead, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A change as served by the feed.
+     */
+    public record Change(long seq, PackageChange.Type type, String name, String version, Instant changedAt) {
+    }
+
+    /**
+     * Changes after the requested position; {@code next} is the position to ask for next (the requested one
+     * if there were no changes).
+     */
+    public record Page(List<Change> changes, long next) {
+
+        static Page empty(long since) {
+            return new Page(List.of(), since);
+        }
+
+        Page first(int limit) {
+            if (changes.size() <= limit) {
+                return this;
+            }
+            List<Change> head = changes.subList(0, limit);
+            return new Page(List.copyOf(head), head.get(limit - 1).seq());
+        }
+    }
+
+    private record Waiter(long since, int limit, DeferredResult<Page> result) {
+    }
+
+    /**
+     * Records a change in the current transaction. It is sequenced, and waiting readers are woken, once the
+     * transaction commits; a rollback discards it with the rest of the transaction.
+     */
+    public void record(long packageId, String name, String version, PackageChange.Type type) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Package changes must be recorded inside the changing transaction");
+        }
+        changeRepository.save(new PackageChange(packageId, name, version, type));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                requestSequencing();
+            }
+        });
+    }
+
+    /**
+     * Reads up to {@code limit} changes after {@code since}.
+     */
+    public Page read(long since, int limit) {
+        List<Change> changes = changeRepository.findBySeqGreaterThanOrderBySeqAsc(since, Limit.of(limit)).stream()
+                .map(change -> new Change(change.getSeq(), change.getType(), change.getName(), change.getVersion(),
+                        change.getChangedAt()))
+                .toList();
+        if (changes.isEmpty()) {
+            return Page.empty(since);
+        }
+        long last = changes.get(changes.size() - 1).seq();
+        if (last > head) {
+            head = last;
+        }
+        return new Page(changes, last);
+    }
+
+    /**
+     * Returns the changes after {@code since}; if there are none, waits up to {@code wait} for one.
+     * A wait that times out completes with an empty page.
+     */
+    public DeferredResult<Page> await(long since, int limit, Duration wait) {
+        DeferredResult<Page> result = new DeferredResult<>(Math.max(1, wait.toMillis()), () -> Page.empty(since));
+        Page page = read(since, limit);
+        if (!page.changes().isEmpty() || wait.isZero()) {
+            result.setResult(page);
+            return result;
+        }
+        Waiter waiter = new Waiter(since, limit, result);
+        waiters.add(waiter);
+        result.onCompletion(() -> waiters.remove(waiter));
+        if (head > since) {
+            requestDispatch(); // Sequenced between the read and the registration
+        }
+        return result;
+    }
+
+    /**
+     * Gives pending changes their feed positions.
+     *
+     * @return The number of changes sequenced.
+     */
+    public long sequencePending() {
+        long sequenced = 0;
+        long newest = -1;
+        int batchSize = Math.max(1, properties.getSequenceBatchSize());
+        while (true) {
+            List<Long> positions = transactionTemplate.execute(status -> {
+                jdbcTemplate.query(LOCK_SQL, (RowCallbackHandler) rs -> {
+                }, SEQUENCER_LOCK);
+                // Statement snapshot is taken after the lock: everything the previous sequencer committed is visible
+                return jdbcTemplate.queryForList(SEQUENCE_SQL, Long.class, batchSize);
+            });
+            for (Long position : positions) {
+                newest = Math.max(newest, position);
+            }
+            sequenced += positions.size();
+            if (positions.size() < batchSize) {
+                break;
+            }
+        }
+        if (sequenced > 0) {
+            logger.debug("Sequenced {} package changes up to position {}", sequenced, newest);
+            if (newest > head) {
+                head = newest;
+            }
+            dispatch();
+        }
+        return sequenced;
+    }
+
+    /**
+     * Picks up changes that were committed but not sequenced, e.g. because their instance stopped right after
+     * the commit.
+     */
+    public void sweep() {
+        requestSequencing();
+    }
+
+    /**
+     * While requests are waiting, reads the newest position to see changes sequenced by other instances,
+     * and retries waiters whose last read missed them (e.g. on a lagging replica).
+     */
+    public void pollHead() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        try {
+            Long latest = changeRepository.findHeadSeq();
+            if (latest != null && latest > head) {
+                head = latest;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not read the change feed head: {}", e.getMessage());
+            return;
+        }
+        long current = head;
+        if (waiters.stream().anyMatch(waiter -> waiter.since() < current)) {
+            requestDispatch();
+        }
+    }
+
+    private void requestSequencing() {
+        if (sequencingRequested.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                sequencingRequested.set(false);
+                try {
+                    sequencePending();
+                } catch (RuntimeException e) {
+                    logger.warn("Sequencing package changes failed; the next sweep retries: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void requestDispatch() {
+        if (dispatchRequested.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                dispatchRequested.set(false);
+                dispatch();
+            });
+        }
+    }
+
+    /**
+     * Completes the waiters behind the head. Waiters at the same position share one query.
+     */
+    private void dispatch() {
+        long current = head;
+        Map<Long, List<Waiter>> bySince = new TreeMap<>();
+        for (Waiter waiter : waiters) {
+            if (waiter.since() < current && !waiter.result().isSetOrExpired()) {
+                bySince.computeIfAbsent(waiter.since(), since -> new ArrayList<>()).add(waiter);
+            }
+        }
+        for (Map.Entry<Long, List<Waiter>> group : bySince.entrySet()) {
+            int limit = group.getValue().stream().mapToInt(Waiter::limit).max().orElse(1);
+            Page page;
+            try {
+                page = read(group.getKey(), limit);
+            } catch (RuntimeException e) {
+                logger.warn("Could not read package changes after {}: {}", group.getKey(), e.getMessage());
+                return; // Retried on the next head poll
+            }
+            if (page.changes().isEmpty()) {
+                continue; // Not visible to this read yet; retried on the next head poll
+            }
+            for (Waiter waiter : group.getValue()) {
+                waiter.result().setResult(page.first(waiter.limit()));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,77 @@
+package com.repsy.repsy_api.changes;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("repsy.changes")
+public class ChangeFeedProperties {
+
+    /**
+     * How often the newest feed position is read while long-poll requests are waiting, to pick up changes
+     * sequenced by other instances. Changes deployed through this instance are delivered without waiting for it.
+     * Nothing is polled while no request waits.
+     */
+    private Duration pollInterval = Duration.ofMillis(500);
+
+    /**
+     * How often changes left unsequenced (e.g. by an instance that stopped right after a deploy committed)
+     * are given their feed position.
+     */
+    private Duration sweepInterval = Duration.ofSeconds(5);
+
+    /**
+     * Longest {@code wait} a request may ask for.
+     */
+    private Duration maxWait = Duration.ofSeconds(60);
+
+    /**
+     * Largest number of changes returned in one response.
+     */
+    private int maxLimit = 1000;
+
+    /**
+     * Changes sequenced per transaction.
+     */
+    private int sequenceBatchSize = 1000;
+
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public Duration getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(Duration sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public int getSequenceBatchSize() {
+        return sequenceBatchSize;
+    }
+
+    public void setSequenceBatchSize(int sequenceBatchSize) {
+        this.sequenceBatchSize = sequenceBatchSize;
+    }
+}
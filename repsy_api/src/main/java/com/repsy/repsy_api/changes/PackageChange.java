@@ -0,0 +1,84 @@
+package com.repsy.repsy_api.changes;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * One entry of the change feed: a version was deployed or deleted.
+ * {@code seq} is the feed position; it stays null until the change is sequenced after its transaction commits.
+ */
+@Entity
+@Table(name = "package_changes")
+public class PackageChange {
+
+    public enum Type {
+        DEPLOY,
+        DELETE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "package_change_seq")
+    @SequenceGenerator(name = "package_change_seq", sequenceName = "package_change_sequence", allocationSize = 1)
+    private Long id;
+
+    // Assigned by ChangeFeed after commit, never by Hibernate
+    @Column(name = "seq", insertable = false, updatable = false)
+    private Long seq;
+
+    @Column(name = "package_id", nullable = false)
+    private Long packageId;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private String version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false, length = 16)
+    private Type type;
+
+    @Column(nullable = false)
+    private Instant changedAt;
+
+    protected PackageChange() {
+        // For JPA
+    }
+
+    public PackageChange(Long packageId, String name, String version, Type type) {
+        this.packageId = packageId;
+        this.name = name;
+        this.version = version;
+        this.type = type;
+        this.changedAt = Instant.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public Long getPackageId() {
+        return packageId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+}
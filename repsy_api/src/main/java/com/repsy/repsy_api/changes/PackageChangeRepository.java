@@ -0,0 +1,29 @@
+package com.repsy.repsy_api.changes;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true) // Feed reads may be served by a replica; save() keeps its own
+public interface PackageChangeRepository extends JpaRepository<PackageChange, Long> {
+
+    /**
+     * Finds the sequenced changes after a feed position, oldest first, with the unique index on seq.
+     *
+     * @param seq The last position the caller has seen (0 for the start of the feed).
+     * @param limit Maximum number of changes returned.
+     * @return The changes, in feed order.
+     */
+    List<PackageChange> findBySeqGreaterThanOrderBySeqAsc(long seq, Limit limit);
+
+    /**
+     * @return The newest feed position, or null if nothing has been sequenced yet.
+     */
+    @Query("select max(c.seq) from PackageChange c")
+    Long findHeadSeq();
+}
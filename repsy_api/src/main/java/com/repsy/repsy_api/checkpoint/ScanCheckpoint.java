@@ -0,0 +1,104 @@
+package com.repsy.repsy_api.checkpoint;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Progress of an incremental background scan over storage (one row per scanner).
+ * Storing the continuation token lets a scan resume where it stopped, across runs and restarts.
+ */
+@Entity
+@Table(name = "scan_checkpoints")
+public class ScanCheckpoint {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    // Opaque StorageService continuation token; null means the next page starts a new pass
+    @Column(length = 2048)
+    private String continuationToken;
+
+    private Instant passStartedAt;
+
+    private Instant lastPassCompletedAt;
+
+    // Objects visited in the current pass
+    @Column(nullable = false)
+    private long scannedInPass;
+
+    // Scanner specific action count over all passes (e.g. orphans deleted, mismatches found)
+    @Column(nullable = false)
+    private long totalActions;
+
+    private Instant updatedAt;
+
+    protected ScanCheckpoint() {
+        // For JPA
+    }
+
+    public ScanCheckpoint(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a processed page and moves the checkpoint past it. Completes the pass when there is no next page.
+     */
+    public void advance(String nextToken, int scanned, long actions) {
+        Instant now = Instant.now();
+        if (passStartedAt == null) {
+            passStartedAt = now;
+        }
+        continuationToken = nextToken;
+        scannedInPass += scanned;
+        totalActions += actions;
+        updatedAt = now;
+        if (nextToken == null) {
+            lastPassCompletedAt = now;
+            passStartedAt = null;
+            scannedInPass = 0;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public Instant getPassStartedAt() {
+        return passStartedAt;
+    }
+
+    public Instant getLastPassCompletedAt() {
+        return lastPassCompletedAt;
+    }
+
+    public long getScannedInPass() {
+        return scannedInPass;
+    }
+
+    public long getTotalActions() {
+        return totalActions;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanCheckpoint{" +
+                "name='" + name + '\'' +
+                ", scannedInPass=" + scannedInPass +
+                ", totalActions=" + totalActions +
+                ", updatedAt=" + updatedAt +
+                '}';
+    }
+}
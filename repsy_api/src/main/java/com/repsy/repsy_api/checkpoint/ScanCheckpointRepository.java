@@ -0,0 +1,8 @@
+package com.repsy.repsy_api.checkpoint;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ScanCheckpointRepository extends JpaRepository<ScanCheckpoint, String> {
+}
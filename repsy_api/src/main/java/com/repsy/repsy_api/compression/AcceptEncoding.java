@@ -0,0 +1,74 @@
+package com.repsy.repsy_api.compression;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parsed {@code Accept-Encoding} request header (RFC 9110, section 12.5.3).
+ * Only the parts needed to choose between stored variants are kept: the quality value per coding token
+ * and the wildcard.
+ */
+public final class AcceptEncoding {
+
+    private static final String IDENTITY = "identity";
+    private static final String WILDCARD = "*";
+
+    private final Map<String, Double> qualities;
+
+    private AcceptEncoding(Map<String, Double> qualities) {
+        this.qualities = qualities;
+    }
+
+    /**
+     * Parses the header value. A missing or blank header means the client only wants the identity encoding.
+     */
+    public static AcceptEncoding parse(String header) {
+        Map<String, Double> qualities = new HashMap<>();
+        if (header == null || header.isBlank()) {
+            return new AcceptEncoding(qualities);
+        }
+        for (String element : header.split(",")) {
+            String[] parts = element.split(";");
+            String token = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (token.isEmpty()) {
+                continue;
+            }
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0.0; // Malformed weight, treat the coding as not acceptable
+                    }
+                }
+            }
+            qualities.put(token, quality);
+        }
+        return new AcceptEncoding(qualities);
+    }
+
+    /**
+     * @return true if the client accepts the given coding with a non-zero quality, either explicitly or via {@code *}.
+     */
+    public boolean accepts(ContentCoding coding) {
+        Double quality = qualities.get(coding.getToken());
+        if (quality == null) {
+            quality = qualities.get(WILDCARD);
+        }
+        return quality != null && quality > 0.0;
+    }
+
+    /**
+     * @return true unless the client explicitly refused the identity encoding ({@code identity;q=0} or {@code *;q=0}).
+     */
+    public boolean acceptsIdentity() {
+        Double quality = qualities.get(IDENTITY);
+        if (quality == null) {
+            quality = qualities.get(WILDCARD);
+        }
+        return quality == null || quality > 0.0;
+    }
+}
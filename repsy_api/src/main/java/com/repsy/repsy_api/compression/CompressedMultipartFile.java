@@ -0,0 +1,85 @@
+package com.repsy.repsy_api.compression;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * MultipartFile view over a compressed variant, held either in memory or in a temporary file,
+ * so it can be handed to {@link com.repsy.storage.api.StorageService#store}.
+ */
+class CompressedMultipartFile implements MultipartFile {
+
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final byte[] content;
+    private final Path contentFile;
+
+    private CompressedMultipartFile(String name, String originalFilename, String contentType, byte[] content, Path contentFile) {
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.content = content;
+        this.contentFile = contentFile;
+    }
+
+    static CompressedMultipartFile inMemory(MultipartFile source, ContentCoding coding, byte[] content) {
+        return new CompressedMultipartFile(source.getName(), variantName(source, coding), source.getContentType(), content, null);
+    }
+
+    static CompressedMultipartFile onDisk(MultipartFile source, ContentCoding coding, Path contentFile) {
+        return new CompressedMultipartFile(source.getName(), variantName(source, coding), source.getContentType(), null, contentFile);
+    }
+
+    private static String variantName(MultipartFile source, ContentCoding coding) {
+        return source.getOriginalFilename() == null ? null : coding.variantOf(source.getOriginalFilename());
+    }
+
+    @Override public String getName() { return name; }
+    @Override public String getOriginalFilename() { return originalFilename; }
+    @Override public String getContentType() { return contentType; }
+    @Override public boolean isEmpty() { return getSize() == 0; }
+
+    @Override
+    public long getSize() {
+        if (content != null) {
+            return content.length;
+        }
+        try {
+            return Files.size(contentFile);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return content != null ? content : Files.readAllBytes(contentFile);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return content != null ? new ByteArrayInputStream(content) : Files.newInputStream(contentFile);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException, IllegalStateException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException, IllegalStateException {
+        if (content != null) {
+            Files.write(dest, content);
+        } else {
+            Files.copy(contentFile, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.repsy.repsy_api.compression;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties("repsy.compression")
+public class CompressionProperties {
+
+    /**
+     * Whether compressed variants of package files are written at deploy time and negotiated on download.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Codings to pre-compress into, in server preference order (first accepted one is served).
+     */
+    private List<ContentCoding> codings = new ArrayList<>(List.of(ContentCoding.ZSTD, ContentCoding.GZIP));
+
+    /**
+     * Whether the uncompressed file is stored next to its variants.
+     * When false, the original is only stored if no variant was worth keeping,
+     * and clients that do not accept any stored coding get the file decompressed on the fly.
+     */
+    private boolean keepIdentity = true;
+
+    /**
+     * Minimum fraction of the original size a variant has to save to be stored (0.1 = at least 10% smaller).
+     */
+    private double minSavingsRatio = 0.1;
+
+    /**
+     * Files up to this size are compressed in memory, larger ones through a temporary file.
+     */
+    private long inMemoryThresholdBytes = 1024 * 1024;
+
+    /**
+     * Deflate level (1-9) used for gzip variants. Compression happens once per deploy, so favour ratio.
+     */
+    private int gzipLevel = 9;
+
+    /**
+     * Zstandard level (1-22) used for zstd variants.
+     */
+    private int zstdLevel = 9;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<ContentCoding> getCodings() {
+        return codings;
+    }
+
+    public void setCodings(List<ContentCoding> codings) {
+        this.codings = codings;
+    }
+
+    public boolean isKeepIdentity() {
+        return keepIdentity;
+    }
+
+    public void setKeepIdentity(boolean keepIdentity) {
+        this.keepIdentity = keepIdentity;
+    }
+
+    public double getMinSavingsRatio() {
+        return minSavingsRatio;
+    }
+
+    public void setMinSavingsRatio(double minSavingsRatio) {
+        this.minSavingsRatio = minSavingsRatio;
+    }
+
+    public long getInMemoryThresholdBytes() {
+        return inMemoryThresholdBytes;
+    }
+
+    public void setInMemoryThresholdBytes(long inMemoryThresholdBytes) {
+        this.inMemoryThresholdBytes = inMemoryThresholdBytes;
+    }
+
+    public int getGzipLevel() {
+        return gzipLevel;
+    }
+
+    public void setGzipLevel(int gzipLevel) {
+        this.gzipLevel = gzipLevel;
+    }
+
+    public int getZstdLevel() {
+        return zstdLevel;
+    }
+
+    public void setZstdLevel(int zstdLevel) {
+        this.zstdLevel = zstdLevel;
+    }
+
+    /**
+     * Returns the configured compression level for the given coding.
+     */
+    public int levelFor(ContentCoding coding) {
+        return coding == ContentCoding.GZIP ? gzipLevel : zstdLevel;
+    }
+}
@@ -0,0 +1,86 @@
+package com.repsy.repsy_api.compression;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP content codings that package files can be pre-compressed into.
+ * Each coding is stored as a sibling object of the original file, e.g. {@code meta.json.zst}.
+ */
+public enum ContentCoding {
+
+    ZSTD("zstd", ".zst"),
+    GZIP("gzip", ".gz");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String token;
+    private final String suffix;
+
+    ContentCoding(String token, String suffix) {
+        this.token = token;
+        this.suffix = suffix;
+    }
+
+    /**
+     * @return The token used in {@code Accept-Encoding} / {@code Content-Encoding} headers.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return The filename suffix appended to the original file for the stored variant.
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Returns the storage path of this coding's variant of the given file.
+     */
+    public String variantOf(String filename) {
+        return filename + suffix;
+    }
+
+    /**
+     * Wraps the given stream so that everything written to it is compressed with this coding.
+     *
+     * @param out   The stream receiving compressed bytes.
+     * @param level The codec specific compression level.
+     */
+    public OutputStream encode(OutputStream out, int level) throws IOException {
+        switch (this) {
+            case ZSTD:
+                return new ZstdOutputStream(out, level);
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            default:
+                throw new IllegalStateException("Unsupported content coding: " + token);
+        }
+    }
+
+    /**
+     * Wraps the given stream of bytes compressed with this coding so that reads return the original bytes.
+     */
+    public InputStream decode(InputStream in) throws IOException {
+        switch (this) {
+            case ZSTD:
+                return new ZstdInputStream(in);
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            default:
+                throw new IllegalStateException("Unsupported content coding: " + token);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.repsy.repsy_api.compression;
+
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Writes pre-compressed variants of package files at deploy time and picks the best stored
+ * representation for a download, so no compression work happens on the request path.
+ */
+@Service
+public class PackageCompressionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PackageCompressionService.class);
+
+    private final CompressionProperties properties;
+    private final StorageService storageService;
+
+    @Autowired
+    public PackageCompressionService(CompressionProperties properties, StorageService storageService) {
+        this.properties = properties;
+        this.storageService = storageService;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Stores a package file together with its configured compressed variants.
+     * Variants that do not save at least {@code minSavingsRatio} are skipped (already compressed payloads).
+     * The original is stored when {@code keepIdentity} is set, or when no variant was kept.
+     *
+     * @param file            The uploaded file.
+     * @param destinationPath The storage path of the uncompressed file.
+     * @return The storage paths actually written (the original and/or its variants).
+     * @throws StorageException if compressing or storing fails.
+     */
+    public List<Path> store(MultipartFile file, Path destinationPath) {
+        List<Path> stored = new ArrayList<>(1 + properties.getCodings().size());
+        if (properties.isEnabled()) {
+            for (ContentCoding coding : properties.getCodings()) {
+                Path variantPath = destinationPath.resolveSibling(coding.variantOf(destinationPath.getFileName().toString()));
+                if (storeVariant(file, variantPath, coding)) {
+                    stored.add(variantPath);
+                }
+            }
+        }
+        if (!properties.isEnabled() || properties.isKeepIdentity() || stored.isEmpty()) {
+            storageService.store(file, destinationPath);
+            stored.add(destinationPath);
+        }
+        return stored;
+    }
+
+    /**
+     * Writes the configured compressed variants of a file that is already stored, such as one assembled on the
+     * storage side, and deletes the original afterwards unless {@link #store} would have kept it.
+     *
+     * @param path The storage path of the uncompressed file.
+     * @return The storage paths left (the original and/or its variants).
+     * @throws StorageFileNotFoundException if the file does not exist.
+     * @throws StorageException if compressing or storing fails.
+     */
+    public List<Path> compressStored(Path path) {
+        if (!properties.isEnabled()) {
+            return List.of(path);
+        }
+        String key = toKey(path);
+        StoredObject object = storageService.stat(key)
+                .orElseThrow(() -> new StorageFileNotFoundException("Could not compress missing file: " + key));
+        MultipartFile file = new StoredMultipartFile(path.getFileName().toString(), object.getSize(),
+                () -> storageService.openStream(key));
+        List<Path> stored = new ArrayList<>(1 + properties.getCodings().size());
+        for (ContentCoding coding : properties.getCodings()) {
+            Path variantPath = path.resolveSibling(coding.variantOf(path.getFileName().toString()));
+            if (storeVariant(file, variantPath, coding)) {
+                stored.add(variantPath);
+            }
+        }
+        if (properties.isKeepIdentity() || stored.isEmpty()) {
+            stored.add(path);
+        } else {
+            storageService.delete(key);
+        }
+        return stored;
+    }
+
+    /**
+     * Lists the compressed variants stored for a file, using metadata-only storage lookups.
+     *
+     * @param path The storage path of the uncompressed file.
+     * @return The storage paths of the stored variants; empty if compression is disabled.
+     */
+    public List<Path> findStoredVariants(Path path) {
+        List<Path> found = new ArrayList<>();
+        if (properties.isEnabled()) {
+            for (ContentCoding coding : properties.getCodings()) {
+                Path variantPath = path.resolveSibling(coding.variantOf(path.getFileName().toString()));
+                if (storageService.stat(toKey(variantPath)).isPresent()) {
+                    found.add(variantPath);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Copies a stored file and its stored variants on the storage side, without recompressing.
+     *
+     * @param sourcePath      The storage path of the uncompressed source file.
+     * @param destinationPath The storage path of the uncompressed copy.
+     * @return The storage paths actually written.
+     * @throws StorageFileNotFoundException if neither the file nor any variant exists.
+     */
+    public List<Path> copy(Path sourcePath, Path destinationPath) {
+        List<Path> copied = new ArrayList<>(1 + properties.getCodings().size());
+        for (Path variantPath : findStoredVariants(sourcePath)) {
+            String suffix = variantPath.getFileName().toString().substring(sourcePath.getFileName().toString().length());
+            Path target = destinationPath.resolveSibling(destinationPath.getFileName() + suffix);
+            storageService.copy(toKey(variantPath), toKey(target));
+            copied.add(target);
+        }
+        try {
+            storageService.copy(toKey(sourcePath), toKey(destinationPath));
+            copied.add(destinationPath);
+        } catch (StorageFileNotFoundException e) {
+            if (copied.isEmpty()) {
+                throw e;
+            }
+            logger.trace("Only compressed variants stored for {}", sourcePath);
+        }
+        return copied;
+    }
+
+    private static String toKey(Path path) {
+        return path.toString().replace("\\", "/");
+    }
+
+    private boolean storeVariant(MultipartFile file, Path variantPath, ContentCoding coding) {
+        long maxVariantSize = (long) (file.getSize() * (1.0 - properties.getMinSavingsRatio()));
+        int level = properties.levelFor(coding);
+        Path tempFile = null;
+        try {
+            CompressedMultipartFile variant;
+            if (file.getSize() <= properties.getInMemoryThresholdBytes()) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.max(64, file.getSize() / 2));
+                compress(file, coding, level, buffer);
+                if (buffer.size() > maxVariantSize) {
+                    logger.debug("Skipping {} variant {}: {} -> {} bytes", coding.getToken(), variantPath, file.getSize(), buffer.size());
+                    return false;
+                }
+                variant = CompressedMultipartFile.inMemory(file, coding, buffer.toByteArray());
+            } else {
+                tempFile = Files.createTempFile("repsy-", coding.getSuffix());
+                try (OutputStream out = Files.newOutputStream(tempFile)) {
+                    compress(file, coding, level, out);
+                }
+                if (Files.size(tempFile) > maxVariantSize) {
+                    logger.debug("Skipping {} variant {}: {} -> {} bytes", coding.getToken(), variantPath, file.getSize(), Files.size(tempFile));
+                    return false;
+                }
+                variant = CompressedMultipartFile.onDisk(file, coding, tempFile);
+            }
+            storageService.store(variant, variantPath);
+            logger.debug("Stored {} variant {} ({} -> {} bytes)", coding.getToken(), variantPath, file.getSize(), variant.getSize());
+            return true;
+        } catch (IOException e) {
+            throw new StorageException("Failed to compress " + variantPath + " with " + coding.getToken(), e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    logger.warn("Could not delete temporary file {}", tempFile, e);
+                }
+            }
+        }
+    }
+
+    private static void compress(MultipartFile file, ContentCoding coding, int level, OutputStream target) throws IOException {
+        try (InputStream in = file.getInputStream();
+             OutputStream encoder = coding.encode(target, level)) {
+            in.transferTo(encoder);
+        }
+    }
+
+    /**
+     * Loads the representation of a file that best matches the client's {@code Accept-Encoding}.
+     * Stored variants are served as-is; if only variants exist and the client accepts none of them,
+     * the first stored variant is decompressed while streaming. Unencoded bytes are never served to a client
+     * that refused them ({@code identity;q=0} or {@code *;q=0}).
+     *
+     * @param filename       The storage path of the uncompressed file.
+     * @param acceptEncoding The raw {@code Accept-Encoding} header, may be null.
+     * @return The resource and the coding of its bytes ({@code null} for identity).
+     * @throws StorageFileNotFoundException if neither the file nor any variant exists.
+     * @throws NotAcceptableException if the file exists, but in no representation the client accepts.
+     */
+    public NegotiatedResource load(String filename, String acceptEncoding) {
+        AcceptEncoding accepted = AcceptEncoding.parse(acceptEncoding);
+        if (!properties.isEnabled()) {
+            if (!accepted.acceptsIdentity()) {
+                throw notAcceptable(filename);
+            }
+            return new NegotiatedResource(storageService.loadAsResource(filename), null);
+        }
+
+        for (ContentCoding coding : properties.getCodings()) {
+            if (accepted.accepts(coding)) {
+                try {
+                    return new NegotiatedResource(storageService.loadAsResource(coding.variantOf(filename)), coding);
+                } catch (StorageFileNotFoundException e) {
+                    logger.trace("No {} variant stored for {}", coding.getToken(), filename);
+                }
+            }
+        }
+        if (!accepted.acceptsIdentity()) {
+            throw notAcceptable(filename);
+        }
+
+        try {
+            return new NegotiatedResource(storageService.loadAsResource(filename), null);
+        } catch (StorageFileNotFoundException notFound) {
+            if (properties.isKeepIdentity()) {
+                throw notFound;
+            }
+            for (ContentCoding coding : properties.getCodings()) {
+                try {
+                    Resource variant = storageService.loadAsResource(coding.variantOf(filename));
+                    logger.debug("Decompressing {} variant of {} on the fly", coding.getToken(), filename);
+                    // Plain InputStreamResource on purpose: the converter then streams it without probing its length
+                    return new NegotiatedResource(new InputStreamResource(coding.decode(variant.getInputStream())), null);
+                } catch (StorageFileNotFoundException e) {
+                    logger.trace("No {} variant stored for {}", coding.getToken(), filename);
+                } catch (IOException e) {
+                    throw new StorageException("Failed to decompress " + coding.getToken() + " variant of " + filename, e);
+                }
+            }
+            throw notFound;
+        }
+    }
+
+    /**
+     * Opens the uncompressed content of a stored file for one sequential pass, as {@link #load} would serve it to a
+     * client without {@code Accept-Encoding}: the file itself, or a stored variant decoded on the fly when the
+     * original was not kept. Unlike {@link #load}, the backend does not buffer the object (see
+     * {@link StorageService#openStream}).
+     *
+     * @param filename The storage path of the uncompressed file.
+     * @return The content, which the caller must close.
+     * @throws StorageFileNotFoundException if neither the file nor any variant exists.
+     */
+    public InputStream openIdentity(String filename) {
+        try {
+            return storageService.openStream(filename);
+        } catch (StorageFileNotFoundException notFound) {
+            if (!properties.isEnabled() || properties.isKeepIdentity()) {
+                throw notFound;
+            }
+            for (ContentCoding coding : properties.getCodings()) {
+                InputStream variant;
+                try {
+                    variant = storageService.openStream(coding.variantOf(filename));
+                } catch (StorageFileNotFoundException e) {
+                    logger.trace("No {} variant stored for {}", coding.getToken(), filename);
+                    continue;
+                }
+                try {
+                    return coding.decode(variant);
+                } catch (IOException e) {
+                    try {
+                        variant.close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                    throw new StorageException("Failed to decompress " + coding.getToken() + " variant of " + filename, e);
+                }
+            }
+            throw notFound;
+        }
+    }
+
+    /**
+     * Picks the stored representation that {@link #load} would serve, using metadata-only lookups.
+     *
+     * @param filename       The storage path of the uncompressed file.
+     * @param acceptEncoding The raw {@code Accept-Encoding} header, may be null.
+     * @return The stored object and its coding ({@code null} for identity), or empty if nothing acceptable
+     * is stored as-is (missing, only variants the client cannot decode, or identity refused).
+     */
+    public Optional<StoredRepresentation> select(String filename, String acceptEncoding) {
+        AcceptEncoding accepted = AcceptEncoding.parse(acceptEncoding);
+        if (properties.isEnabled()) {
+            for (ContentCoding coding : properties.getCodings()) {
+                if (accepted.accepts(coding)) {
+                    Optional<StoredObject> variant = storageService.stat(coding.variantOf(filename));
+                    if (variant.isPresent()) {
+                        return Optional.of(new StoredRepresentation(variant.get(), coding));
+                    }
+                }
+            }
+        }
+        if (!accepted.acceptsIdentity()) {
+            return Optional.empty();
+        }
+        return storageService.stat(filename).map(object -> new StoredRepresentation(object, null));
+    }
+
+    /**
+     * Tells a missing file (404, and a chance for the pull-through proxy) apart from one stored only in
+     * representations the client refused.
+     */
+    private NotAcceptableException notAcceptable(String filename) {
+        if (storageService.stat(filename).isEmpty() && findStoredVariants(Path.of(filename)).isEmpty()) {
+            throw new StorageFileNotFoundException("Could not read file: " + filename);
+        }
+        return new NotAcceptableException("No stored representation of " + filename + " matches the Accept-Encoding header.");
+    }
+
+    /**
+     * Thrown when a file is stored, but not in any content coding the client accepts.
+     */
+    public static class NotAcceptableException extends RuntimeException {
+        public NotAcceptableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A stored file representation.
+     *
+     * @param object The stored object.
+     * @param coding The content coding of its bytes, or {@code null} if they are not encoded.
+     */
+    public record StoredRepresentation(StoredObject object, ContentCoding coding) {
+    }
+
+    /**
+     * A loaded file representation.
+     *
+     * @param resource The bytes to send.
+     * @param coding   The content coding of those bytes, or {@code null} if they are not encoded.
+     */
+    public record NegotiatedResource(Resource resource, ContentCoding coding) {
+    }
+}
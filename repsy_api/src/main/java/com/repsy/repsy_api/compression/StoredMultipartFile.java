@@ -0,0 +1,58 @@
+package com.repsy.repsy_api.compression;
+
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * MultipartFile view over a file that is already in storage, read from storage each time its content is requested,
+ * so variants of it can be written like those of an uploaded file.
+ */
+class StoredMultipartFile implements MultipartFile {
+
+    private final String originalFilename;
+    private final long size;
+    private final InputStreamSource content;
+
+    StoredMultipartFile(String originalFilename, long size, InputStreamSource content) {
+        this.originalFilename = originalFilename;
+        this.size = size;
+        this.content = content;
+    }
+
+    @Override public String getName() { return "repFile"; }
+    @Override public String getOriginalFilename() { return originalFilename; }
+    @Override public String getContentType() { return null; }
+    @Override public boolean isEmpty() { return size == 0; }
+    @Override public long getSize() { return size; }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        try (InputStream in = content.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return content.getInputStream();
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException, IllegalStateException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException, IllegalStateException {
+        try (InputStream in = content.getInputStream()) {
+            Files.copy(in, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
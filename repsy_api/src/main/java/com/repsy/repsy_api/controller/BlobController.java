@@ -0,0 +1,93 @@
+package com.repsy.repsy_api.controller;
+
+import com.repsy.repsy_api.packages.BlobDigest;
+import com.repsy.repsy_api.packages.PackageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deploy pre-flight: clients send the SHA-256 and size of their .rep files and learn which ones
+ * the server already stores, so those can be deployed by reference instead of re-uploaded.
+ */
+@RestController
+@RequestMapping("/blobs")
+public class BlobController {
+
+    /**
+     * Maximum number of digests accepted in one pre-flight request.
+     */
+    static final int MAX_PREFLIGHT_BLOBS = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobController.class);
+
+    private final PackageService packageService;
+
+    @Autowired
+    public BlobController(PackageService packageService) {
+        this.packageService = packageService;
+    }
+
+    /**
+     * Request body: {@code {"blobs": [{"sha256": "...", "size": 123}, ...]}}.
+     */
+    public record PreflightRequest(List<BlobDigest> blobs) {
+    }
+
+    /**
+     * Response body: every requested digest, split into those already stored and those to upload.
+     */
+    public record PreflightResponse(List<BlobDigest> present, List<BlobDigest> missing) {
+    }
+
+    @PostMapping("/preflight")
+    public PreflightResponse preflight(@RequestBody PreflightRequest request) {
+        List<BlobDigest> blobs = request.blobs() != null ? request.blobs() : List.of();
+        if (blobs.size() > MAX_PREFLIGHT_BLOBS) {
+            throw new PackageService.InvalidFileException("At most " + MAX_PREFLIGHT_BLOBS + " blobs can be checked per request.");
+        }
+        List<BlobDigest> present = packageService.findStoredBlobs(blobs);
+        Set<BlobDigest> presentSet = new HashSet<>(present);
+        List<BlobDigest> missing = new ArrayList<>();
+        for (BlobDigest blob : blobs) {
+            if (!presentSet.contains(blob) && !missing.contains(blob)) {
+                missing.add(blob);
+            }
+        }
+        logger.debug("Pre-flight for {} blobs: {} present, {} missing", blobs.size(), present.size(), missing.size());
+        return new PreflightResponse(present, missing);
+    }
+
+    @ExceptionHandler(PackageService.InvalidFileException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidFile(PackageService.InvalidFileException ex) {
+        logger.warn("Bad Request: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Request",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<Map<String, String>> handleUnreadable(HttpMessageNotReadableException ex) {
+        // Invalid digests surface here: Jackson wraps the exception thrown by the BlobDigest constructor
+        Throwable cause = ex.getMostSpecificCause();
+        String message = cause instanceof PackageService.InvalidFileException ? cause.getMessage() : "Malformed pre-flight request.";
+        logger.warn("Bad Request: {}", message);
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Request",
+                "message", message
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,101 @@
+package com.repsy.repsy_api.controller;
+
+import com.repsy.repsy_api.bundle.BundleFormat;
+import com.repsy.repsy_api.bundle.BundleService;
+import com.repsy.repsy_api.packages.PackageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A package version and its dependency closure as one streamed archive (see {@link BundleService}).
+ */
+@RestController
+@RequestMapping("/bundles")
+public class BundleController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BundleController.class);
+
+    private final BundleService bundleService;
+
+    @Autowired
+    public BundleController(BundleService bundleService) {
+        this.bundleService = bundleService;
+    }
+
+    /**
+     * Streams the bundle as {@code tar} (default) or {@code zip}. The closure is resolved before the response
+     * starts, so errors still get a JSON body; the archive itself has no Content-Length.
+     */
+    @GetMapping("/{packageName}/{version}")
+    public void download(@PathVariable String packageName,
+                         @PathVariable String version,
+                         @RequestParam(value = "format", defaultValue = "tar") String formatToken,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        BundleFormat format = BundleFormat.fromToken(formatToken)
+                .orElseThrow(() -> new PackageService.InvalidFileException("Unknown bundle format: " + formatToken));
+
+        try (BundleService.Slot ignored = bundleService.reserve()) {
+            BundleService.Bundle bundle = bundleService.resolve(packageName, version, format);
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(format.getMediaType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + bundle.fileName(format) + "\"");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+            logger.debug("Bundling {}/{} with {} package versions as {}", packageName, version, bundle.members().size(), format.getToken());
+            bundleService.write(bundle, format, response.getOutputStream(), request.getRemoteAddr());
+        }
+    }
+
+    @ExceptionHandler(BundleService.PackageNotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleNotFound(BundleService.PackageNotFoundException ex) {
+        logger.debug("Not Found: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Not Found",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(BundleService.UnbundlableException.class)
+    public ResponseEntity<Map<String, String>> handleUnbundlable(BundleService.UnbundlableException ex) {
+        logger.warn("Unprocessable: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Unprocessable Entity",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(BundleService.BundleBusyException.class)
+    public ResponseEntity<Map<String, String>> handleBusy(BundleService.BundleBusyException ex) {
+        logger.warn("Service Unavailable: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Service Unavailable",
+                "message", ex.getMessage()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(responseBody);
+    }
+
+    @ExceptionHandler(PackageService.InvalidFileException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequest(PackageService.InvalidFileException ex) {
+        logger.warn("Bad Request: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Request",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,67 @@
+package com.repsy.repsy_api.controller;
+
+import com.repsy.repsy_api.changes.ChangeFeed;
+import com.repsy.repsy_api.changes.ChangeFeedProperties;
+import com.repsy.repsy_api.packages.PackageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Change feed for downstream mirrors: deploys (and deletes) in feed order, with long-polling so a mirror
+ * at the head of the feed learns about a new version as soon as it is committed.
+ */
+@RestController
+@RequestMapping("/changes")
+public class ChangesController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangesController.class);
+
+    private final ChangeFeed changeFeed;
+    private final ChangeFeedProperties properties;
+
+    @Autowired
+    public ChangesController(ChangeFeed changeFeed, ChangeFeedProperties properties) {
+        this.changeFeed = changeFeed;
+        this.properties = properties;
+    }
+
+    /**
+     * Returns up to {@code limit} changes after position {@code since}. When there are none, the request is held
+     * for up to {@code wait} seconds and answered as soon as one arrives, or with an empty page.
+     * Clients continue from the returned {@code next}.
+     */
+    @GetMapping
+    public DeferredResult<ChangeFeed.Page> changes(@RequestParam(value = "since", defaultValue = "0") long since,
+                                                   @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                   @RequestParam(value = "wait", defaultValue = "0") long waitSeconds) {
+        if (since < 0) {
+            throw new PackageService.InvalidFileException("since must not be negative.");
+        }
+        if (limit < 1 || limit > properties.getMaxLimit()) {
+            throw new PackageService.InvalidFileException("limit must be between 1 and " + properties.getMaxLimit() + ".");
+        }
+        Duration wait = Duration.ofSeconds(waitSeconds);
+        if (waitSeconds < 0 || wait.compareTo(properties.getMaxWait()) > 0) {
+            throw new PackageService.InvalidFileException("wait must be between 0 and " + properties.getMaxWait().toSeconds() + " seconds.");
+        }
+        return changeFeed.await(since, limit, wait);
+    }
+
+    @ExceptionHandler(PackageService.InvalidFileException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequest(PackageService.InvalidFileException ex) {
+        logger.warn("Bad Request: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Request",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,90 @@
+package com.repsy.repsy_api.controller;
+
+import com.repsy.repsy_api.compression.AcceptEncoding;
+import com.repsy.repsy_api.compression.ContentCoding;
+import com.repsy.repsy_api.export.IndexExporter;
+import com.repsy.repsy_api.export.IndexFormat;
+import com.repsy.repsy_api.packages.PackageService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full index export for mirrors and tooling: every package version in one streamed response.
+ */
+@RestController
+@RequestMapping("/index")
+public class IndexController {
+
+    /**
+     * Codings an export can be compressed with, in server preference order.
+     */
+    private static final List<ContentCoding> EXPORT_CODINGS = List.of(ContentCoding.ZSTD, ContentCoding.GZIP);
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexController.class);
+
+    private final IndexExporter indexExporter;
+
+    @Autowired
+    public IndexController(IndexExporter indexExporter) {
+        this.indexExporter = indexExporter;
+    }
+
+    /**
+     * Streams the index in the requested format ({@code ndjson} or {@code binary}), compressed when the client
+     * accepts zstd or gzip. The body is written as the rows are read, so it has no Content-Length.
+     */
+    @GetMapping("/export")
+    public void export(@RequestParam(value = "format", defaultValue = "ndjson") String formatToken,
+                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                       HttpServletResponse response) throws IOException {
+        IndexFormat format = IndexFormat.fromToken(formatToken)
+                .orElseThrow(() -> new PackageService.InvalidFileException("Unknown index format: " + formatToken));
+        AcceptEncoding accepted = AcceptEncoding.parse(acceptEncoding);
+        ContentCoding coding = EXPORT_CODINGS.stream().filter(accepted::accepts).findFirst().orElse(null);
+
+        try (IndexExporter.Slot ignored = indexExporter.reserve()) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(format.getMediaType());
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+            if (coding != null) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, coding.getToken());
+            }
+            logger.debug("Exporting index as {} with encoding {}", format.getToken(), coding != null ? coding.getToken() : "identity");
+            indexExporter.export(format, coding, response.getOutputStream());
+        }
+    }
+
+    @ExceptionHandler(IndexExporter.ExportBusyException.class)
+    public ResponseEntity<Map<String, String>> handleBusy(IndexExporter.ExportBusyException ex) {
+        logger.warn("Service Unavailable: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Service Unavailable",
+                "message", ex.getMessage()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(responseBody);
+    }
+
+    @ExceptionHandler(PackageService.InvalidFileException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequest(PackageService.InvalidFileException ex) {
+        logger.warn("Bad Request: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Request",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,161 @@
+package com.repsy.repsy_api.controller;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.repsy.repsy_api.packages.MetaDocument;
+import com.repsy.repsy_api.packages.MetaValidation;
+import com.repsy.repsy_api.packages.MetaValidator;
+import com.repsy.repsy_api.packages.MetadataProperties;
+import com.repsy.repsy_api.packages.MetadataService;
+import com.repsy.repsy_api.packages.PackageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Batch metadata lookup for resolvers: many meta.json documents in one round trip and one database query,
+ * without touching package storage. Also validates meta.json documents before a deploy, many at once for CI.
+ */
+@RestController
+@RequestMapping("/metadata")
+public class MetadataController {
+
+    /**
+     * Maximum number of versions accepted in one batch request.
+     */
+    static final int MAX_BATCH_PACKAGES = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataController.class);
+
+    private final MetadataService metadataService;
+    private final MetaValidator metaValidator;
+    private final MetadataProperties properties;
+
+    @Autowired
+    public MetadataController(MetadataService metadataService, MetaValidator metaValidator, MetadataProperties properties) {
+        this.metadataService = metadataService;
+        this.metaValidator = metaValidator;
+        this.properties = properties;
+    }
+
+    /**
+     * Request body: {@code {"packages": ["name@version", ...]}}.
+     */
+    public record BatchRequest(List<String> packages) {
+    }
+
+    /**
+     * One document of a batch response; {@code meta} is the deployed meta.json, embedded as-is.
+     */
+    public record BatchDocument(String name, String version, String etag, @JsonRawValue String meta) {
+    }
+
+    /**
+     * Response body: the documents found, in request order, and the requested versions that do not exist.
+     */
+    public record BatchResponse(List<BatchDocument> documents, List<String> missing) {
+    }
+
+    @PostMapping("/batch")
+    public BatchResponse batch(@RequestBody BatchRequest request) {
+        List<String> packages = request.packages() != null ? request.packages() : List.of();
+        if (packages.size() > MAX_BATCH_PACKAGES) {
+            throw new PackageService.InvalidFileException("At most " + MAX_BATCH_PACKAGES + " packages can be requested at once.");
+        }
+        LinkedHashSet<String> requested = new LinkedHashSet<>(packages);
+        Map<String, MetaDocument> found = metadataService.findAll(requested);
+        List<BatchDocument> documents = new ArrayList<>(found.size());
+        List<String> missing = new ArrayList<>();
+        for (String coordinate : requested) {
+            MetaDocument document = found.get(coordinate);
+            if (document != null) {
+                documents.add(new BatchDocument(document.name(), document.version(), document.etag(), document.json()));
+            } else {
+                missing.add(coordinate);
+            }
+        }
+        logger.debug("Metadata batch for {} versions: {} found, {} missing", requested.size(), documents.size(), missing.size());
+        return new BatchResponse(documents, missing);
+    }
+
+    /**
+     * The validation of one document; {@code deployed} tells whether its version already exists (a deploy would
+     * get 409), and is null for invalid documents.
+     */
+    public record ValidationResult(String file, boolean valid, String name, String version, Boolean deployed,
+                                   List<MetaValidation.Dependency> dependencies, List<String> errors) {
+    }
+
+    /**
+     * Response body of a validation: one result per uploaded document, in upload order.
+     */
+    public record ValidationResponse(int valid, int invalid, List<ValidationResult> results) {
+    }
+
+    /**
+     * Validates meta.json documents as a deploy would, without deploying: every {@code files} part is checked
+     * against the schema and limits, and the versions of the valid ones are looked up with one query.
+     */
+    @PostMapping("/validate")
+    public ValidationResponse validate(@RequestParam("files") List<MultipartFile> files) throws IOException {
+        if (files.size() > properties.getMaxValidateDocuments()) {
+            throw new PackageService.InvalidFileException("At most " + properties.getMaxValidateDocuments()
+                    + " documents can be validated at once.");
+        }
+        List<MetaValidation> validations = new ArrayList<>(files.size());
+        Set<String> coordinates = new LinkedHashSet<>();
+        for (MultipartFile file : files) {
+            MetaValidation validation = metaValidator.validate(file);
+            validations.add(validation);
+            if (validation.isValid()) {
+                coordinates.add(validation.name() + "@" + validation.version());
+            }
+        }
+        Set<String> deployed = metadataService.findDeployed(coordinates);
+        List<ValidationResult> results = new ArrayList<>(files.size());
+        int valid = 0;
+        for (int i = 0; i < files.size(); i++) {
+            MetaValidation validation = validations.get(i);
+            Boolean exists = null;
+            if (validation.isValid()) {
+                valid++;
+                exists = deployed.contains(validation.name() + "@" + validation.version());
+            }
+            results.add(new ValidationResult(files.get(i).getOriginalFilename(), validation.isValid(), validation.name(),
+                    validation.version(), exists, validation.dependencies(), validation.errors()));
+        }
+        logger.debug("Validated {} meta.json documents: {} valid", files.size(), valid);
+        return new ValidationResponse(valid, files.size() - valid, results);
+    }
+
+    @ExceptionHandler(PackageService.InvalidFileException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequest(PackageService.InvalidFileException ex) {
+        logger.warn("Bad Request: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Request",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<Map<String, String>> handleUnreadable(HttpMessageNotReadableException ex) {
+        logger.warn("Bad Request: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Request",
+                "message", "Malformed metadata batch request."
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+}
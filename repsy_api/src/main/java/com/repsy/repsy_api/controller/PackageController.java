@@ -1,12 +1,25 @@
 package com.repsy.repsy_api.controller;
 
+import com.repsy.repsy_api.compression.PackageCompressionService;
+import com.repsy.repsy_api.download.DownloadRedirectPolicy;
+import com.repsy.repsy_api.download.DownloadShaper;
+import com.repsy.repsy_api.packages.BlobDigest;
+import com.repsy.repsy_api.packages.MetaDocument;
+import com.repsy.repsy_api.packages.MetadataService;
 import com.repsy.repsy_api.packages.PackageService;
+import com.repsy.repsy_api.proxy.PullThroughProxy;
+import com.repsy.repsy_api.tracing.TraceAttributes;
 import com.repsy.storage.api.StorageService;
 import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.StorageUnavailableException;
+import com.repsy.storage.api.Tracing;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -17,7 +30,10 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.Optional;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -28,30 +44,58 @@ public class PackageController {
 
     private final PackageService packageService;
     private final StorageService storageService;
+    private final PackageCompressionService compressionService;
+    private final DownloadRedirectPolicy redirectPolicy;
+    private final DownloadShaper downloadShaper;
+    private final MetadataService metadataService;
+    private final PullThroughProxy proxy;
     private static final Logger logger = LoggerFactory.getLogger(PackageController.class);
+    private static final String META_FILE_NAME = "meta.json";
+    private static final String STORAGE_RETRY_AFTER_SECONDS = "30"; // Matches the default breaker open time
 
     @Autowired
-    public PackageController(PackageService packageService, StorageService storageService) {
+    public PackageController(PackageService packageService, StorageService storageService, PackageCompressionService compressionService,
+                             DownloadRedirectPolicy redirectPolicy, DownloadShaper downloadShaper,
+                             MetadataService metadataService, PullThroughProxy proxy) {
         this.packageService = packageService;
         this.storageService = storageService;
+        this.compressionService = compressionService;
+        this.redirectPolicy = redirectPolicy;
+        this.downloadShaper = downloadShaper;
+        this.metadataService = metadataService;
+        this.proxy = proxy;
     }
 
     @PostMapping("/{packageName}/{version}")
     @ResponseStatus(HttpStatus.CREATED)
     public void uploadPackage(@PathVariable String packageName,
                               @PathVariable String version,
-                              @RequestParam("repFile") MultipartFile repFile,
+                              @RequestParam(value = "repFile", required = false) MultipartFile repFile,
+                              @RequestParam(value = "repSha256", required = false) String repSha256,
+                              @RequestParam(value = "repSize", required = false) Long repSize,
                               @RequestParam("metaFile") MultipartFile metaFile) {
+        // Without the bytes, a digest the pre-flight (POST /blobs/preflight) reported as stored can be referenced instead
+        if ((repFile == null || repFile.isEmpty()) && repSha256 != null) {
+            if (repSize == null) {
+                throw new PackageService.InvalidFileException("'repSize' is required together with 'repSha256'.");
+            }
+            packageService.deployPackage(packageName, version, new BlobDigest(repSha256, repSize), metaFile);
+            return;
+        }
         packageService.deployPackage(packageName, version, repFile, metaFile);
     }
 
     @GetMapping("/{packageName}/{version}/{fileName:.+}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String packageName,
+    public ResponseEntity<Resource> downloadFile(@PathVariable String packageName,
                                                  @PathVariable String version,
-                                                 @PathVariable String fileName) {
+                                                 @PathVariable String fileName,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                 HttpServletRequest request) {
+        if (META_FILE_NAME.equals(fileName)) {
+            return metaDocument(packageName, version);
+        }
         try {
             Path filePath = Paths.get(packageName, version, fileName);
-            Resource resource = storageService.loadAsResource(filePath.toString());
 
             // Determine content type based on filename extension
             String contentType;
@@ -64,33 +108,102 @@ public class PackageController {
                 logger.warn("Could not determine specific content type for {}, falling back to {}", fileName, contentType);
             }
 
-            logger.info("Serving file {} with content type {}", resource.getFilename(), contentType);
-
-            // Read resource content into byte array
-            byte[] content;
-            try (InputStream inputStream = resource.getInputStream()) {
-                content = inputStream.readAllBytes();
-            } catch (IOException e) {
-                logger.error("Failed to read resource content for {}", resource.getFilename(), e);
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            // Large files can be fetched by the client straight from the object store
+            Optional<URI> redirect = Tracing.inSpan("download.redirect_check",
+                    span -> redirectPolicy.redirectFor(filePath.toString(), fileName, contentType, acceptEncoding, request.getRemoteAddr()));
+            if (redirect.isPresent()) {
+                logger.debug("Redirecting download of {} to presigned storage URL", filePath);
+                ResponseEntity.HeadersBuilder<?> response = ResponseEntity.status(HttpStatus.FOUND)
+                        .location(redirect.get())
+                        .cacheControl(CacheControl.noStore()); // The URL expires; never cache the redirect
+                if (compressionService.isEnabled()) {
+                    response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                }
+                return response.build();
             }
 
-            // Return byte array directly in the response body
-            return ResponseEntity.ok()
+            // Picks a stored pre-compressed variant the client accepts, or the plain file
+            PackageCompressionService.NegotiatedResource negotiated = Tracing.inSpan("download.load", span -> {
+                span.setAttribute(TraceAttributes.PACKAGE_NAME, packageName);
+                span.setAttribute(TraceAttributes.PACKAGE_VERSION, version);
+                PackageCompressionService.NegotiatedResource loaded = compressionService.load(filePath.toString(), acceptEncoding);
+                span.setAttribute(TraceAttributes.CONTENT_CODING, loaded.coding() != null ? loaded.coding().getToken() : "identity");
+                return loaded;
+            });
+            // Metered against the client's tier while the response is written
+            Resource resource = downloadShaper.shape(negotiated.resource(), request.getRemoteAddr(), filePath.toString());
+
+            String contentEncoding = negotiated.coding() != null ? negotiated.coding().getToken() : "identity";
+            logger.debug("Serving file {} with content type {} and encoding {}", fileName, contentType, contentEncoding);
+
+            // Stream the resource instead of buffering it; the converter sets Content-Length when it is known
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .contentLength(content.length)
-                    .body(content);
+                    .contentType(MediaType.parseMediaType(contentType));
+            if (compressionService.isEnabled()) {
+                response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            if (negotiated.coding() != null) {
+                response.header(HttpHeaders.CONTENT_ENCODING, negotiated.coding().getToken());
+            }
+            return response.body(resource);
 
         } catch (StorageFileNotFoundException e) {
+            if (proxy.isEnabled()) {
+                Optional<Resource> upstream = proxy.fetch(packageName, version, fileName);
+                if (upstream.isPresent()) {
+                    logger.debug("Serving {} for package {}/{} through the upstream proxy", fileName, packageName, version);
+                    return ResponseEntity.ok()
+                            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                            .body(downloadShaper.shape(upstream.get(), request.getRemoteAddr(), Paths.get(packageName, version, fileName).toString()));
+                }
+            }
             logger.warn("Not found error during download of file {} for package {}/{}: {}", fileName, packageName, version, e.getMessage());
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find file: " + fileName + " for package " + packageName + " version " + version, e);
+        } catch (PackageCompressionService.NotAcceptableException e) {
+            logger.debug("Not acceptable: {} (Accept-Encoding: {})", e.getMessage(), acceptEncoding);
+            return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+        } catch (StorageUnavailableException e) {
+            logger.warn("Storage unavailable during download of file {} for package {}/{}: {}", fileName, packageName, version, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, STORAGE_RETRY_AFTER_SECONDS).build();
         } catch (Exception e) {
             logger.error("Internal server error during download of file {} for package {}/{}", fileName, packageName, version, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Serves meta.json from the package row (deploy keeps the raw document there), never from storage.
+     * The ETag lets resolvers revalidate with If-None-Match and get a 304.
+     */
+    private ResponseEntity<Resource> metaDocument(String packageName, String version) {
+        Optional<MetaDocument> found = Tracing.inSpan("download.meta", span -> {
+            span.setAttribute(TraceAttributes.PACKAGE_NAME, packageName);
+            span.setAttribute(TraceAttributes.PACKAGE_VERSION, version);
+            return metadataService.find(packageName, version);
+        });
+        if (found.isEmpty() && proxy.isEnabled()) {
+            // Not cached until the version's .rep file is fetched, so no ETag yet
+            Optional<byte[]> upstream = proxy.meta(packageName, version);
+            if (upstream.isPresent()) {
+                return ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + META_FILE_NAME + "\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .cacheControl(CacheControl.noCache())
+                        .body(new ByteArrayResource(upstream.get()));
+            }
+        }
+        MetaDocument document = found.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                "Could not find file: " + META_FILE_NAME + " for package " + packageName + " version " + version));
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + META_FILE_NAME + "\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(document.etag())
+                .cacheControl(CacheControl.noCache()) // Cacheable, revalidated with the ETag
+                .body(new ByteArrayResource(document.json().getBytes(StandardCharsets.UTF_8)));
+    }
+
     @ExceptionHandler(PackageService.PackageAlreadyExistsException.class)
     public ResponseEntity<Map<String, String>> handlePackageAlreadyExists(PackageService.PackageAlreadyExistsException ex) {
         logger.warn("Conflict: {}", ex.getMessage());
@@ -101,6 +214,38 @@ public class PackageController {
         return new ResponseEntity<>(responseBody, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(StorageUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleStorageUnavailable(StorageUnavailableException ex) {
+        logger.warn("Service Unavailable: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Service Unavailable",
+                "message", "Package storage is temporarily unavailable, please retry later."
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, STORAGE_RETRY_AFTER_SECONDS)
+                .body(responseBody);
+    }
+
+    @ExceptionHandler(PullThroughProxy.UpstreamException.class)
+    public ResponseEntity<Map<String, String>> handleUpstreamFailure(PullThroughProxy.UpstreamException ex) {
+        logger.warn("Bad Gateway: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Gateway",
+                "message", "The upstream repository could not be reached, please retry later."
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_GATEWAY);
+    }
+
+    @ExceptionHandler(PackageService.BlobNotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleBlobNotFound(PackageService.BlobNotFoundException ex) {
+        logger.warn("Unprocessable: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Unprocessable Entity",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
     @ExceptionHandler(PackageService.InvalidFileException.class)
     public ResponseEntity<Map<String, String>> handleInvalidFile(PackageService.InvalidFileException ex) {
         logger.warn("Bad Request: {}", ex.getMessage());
@@ -0,0 +1,171 @@
+package com.repsy.repsy_api.controller;
+
+import com.repsy.repsy_api.packages.PackageService;
+import com.repsy.repsy_api.uploads.ChunkedUploadService;
+import com.repsy.storage.api.StorageUnavailableException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resumable, parallel uploads of large .rep files (see {@link ChunkedUploadService}):
+ * <ol>
+ *     <li>{@code POST /uploads} opens a session and answers the chunk size and count.</li>
+ *     <li>{@code PUT /uploads/{id}/chunks/{index}} sends chunk {@code index} as the raw {@code application/octet-stream}
+ *     body, in any order and in parallel.</li>
+ *     <li>{@code GET /uploads/{id}} tells which chunks arrived, to resume after an interruption.</li>
+ *     <li>{@code POST /uploads/{id}/commit} with {@code metaFile} assembles the file and deploys the version.</li>
+ * </ol>
+ * {@code DELETE /uploads/{id}} cancels an upload; sessions without activity expire.
+ */
+@RestController
+@RequestMapping("/uploads")
+public class UploadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadController.class);
+    private static final String STORAGE_RETRY_AFTER_SECONDS = "30"; // Matches the default breaker open time
+
+    private final ChunkedUploadService uploadService;
+
+    @Autowired
+    public UploadController(ChunkedUploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    /**
+     * Request body of {@code POST /uploads}: {@code {"name": "...", "version": "...", "size": 123, "chunkSize": 8388608}};
+     * {@code chunkSize} is optional.
+     */
+    public record CreateUploadRequest(String name, String version, Long size, Long chunkSize) {
+    }
+
+    /**
+     * A session as reported to the client. {@code receivedOffset} is the length of the file prefix received
+     * without gaps; {@code sha256} is set once the upload is committed.
+     */
+    public record UploadResponse(UUID id, String name, String version, long size, long chunkSize, int chunkCount,
+                                 String state, List<Integer> receivedChunks, long receivedOffset, String sha256,
+                                 Instant expiresAt) {
+
+        static UploadResponse of(ChunkedUploadService.UploadSession session, List<Integer> receivedChunks, long receivedOffset) {
+            return new UploadResponse(session.id(), session.name(), session.version(), session.fileSize(), session.chunkSize(),
+                    session.chunkCount(), session.state().name(), receivedChunks, receivedOffset, session.sha256(), session.expiresAt());
+        }
+    }
+
+    @PostMapping
+    public ResponseEntity<UploadResponse> create(@RequestBody CreateUploadRequest request) {
+        if (request.size() == null) {
+            throw new PackageService.InvalidFileException("'size' is required.");
+        }
+        ChunkedUploadService.UploadSession session = uploadService.create(request.name(), request.version(), request.size(), request.chunkSize());
+        return ResponseEntity.created(URI.create("/uploads/" + session.id()))
+                .body(UploadResponse.of(session, List.of(), 0));
+    }
+
+    @PutMapping(value = "/{id}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void putChunk(@PathVariable UUID id, @PathVariable int index, HttpServletRequest request) throws IOException {
+        uploadService.putChunk(id, index, request.getContentLengthLong(), request.getInputStream());
+    }
+
+    @GetMapping("/{id}")
+    public UploadResponse status(@PathVariable UUID id) {
+        ChunkedUploadService.UploadStatus status = uploadService.status(id);
+        return UploadResponse.of(status.session(), status.receivedChunks(), status.receivedOffset());
+    }
+
+    /**
+     * Assembles and deploys the upload. {@code sha256} (optional) is checked against the assembled file.
+     */
+    @PostMapping("/{id}/commit")
+    @ResponseStatus(HttpStatus.CREATED)
+    public UploadResponse commit(@PathVariable UUID id,
+                                 @RequestParam(value = "sha256", required = false) String sha256,
+                                 @RequestParam("metaFile") MultipartFile metaFile) {
+        ChunkedUploadService.UploadSession session = uploadService.commit(id, sha256, metaFile);
+        return UploadResponse.of(session, List.of(), session.fileSize());
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void abort(@PathVariable UUID id) {
+        uploadService.abort(id);
+    }
+
+    @ExceptionHandler(ChunkedUploadService.UploadNotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleUploadNotFound(ChunkedUploadService.UploadNotFoundException ex) {
+        logger.debug("Not Found: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Not Found",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(ChunkedUploadService.UploadStateException.class)
+    public ResponseEntity<Map<String, String>> handleUploadState(ChunkedUploadService.UploadStateException ex) {
+        logger.warn("Conflict: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Conflict",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(PackageService.PackageAlreadyExistsException.class)
+    public ResponseEntity<Map<String, String>> handlePackageAlreadyExists(PackageService.PackageAlreadyExistsException ex) {
+        logger.warn("Conflict: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Conflict",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(StorageUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleStorageUnavailable(StorageUnavailableException ex) {
+        logger.warn("Service Unavailable: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Service Unavailable",
+                "message", "Package storage is temporarily unavailable, please retry later."
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, STORAGE_RETRY_AFTER_SECONDS)
+                .body(responseBody);
+    }
+
+    @ExceptionHandler(PackageService.InvalidFileException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidFile(PackageService.InvalidFileException ex) {
+        logger.warn("Bad Request: {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Request",
+                "message", ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(PackageService.InvalidMetadataException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidMetadata(PackageService.InvalidMetadataException ex) {
+        logger.warn("Bad Request (Metadata): {}", ex.getMessage());
+        Map<String, String> responseBody = Map.of(
+                "error", "Bad Request",
+                "message", "Invalid package metadata: " + ex.getMessage()
+        );
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+}
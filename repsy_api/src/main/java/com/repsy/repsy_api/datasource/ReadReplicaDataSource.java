@@ -0,0 +1,340 @@
+package com.repsy.repsy_api.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes read-only transactions to streaming replicas and everything else to the primary.
+ * <p>
+ * The routing decision is made when a transaction runs its first statement (connections are fetched lazily, after
+ * the transaction's read-only flag is known). A replica is eligible while its measured lag is within
+ * {@code maxLag}; if none is, or the chosen one cannot be reached, reads fall back to the primary. After a client's write commits, the primary's WAL
+ * position is read on the transaction's own connection and recorded for that client, and its reads only go to replicas
+ * that have replayed past it.
+ */
+public class ReadReplicaDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaDataSource.class);
+
+    private static final String PRIMARY = "primary";
+    private static final String WRITE_TRACKED = ReadReplicaDataSource.class.getName() + ".WRITE_TRACKED";
+    private static final String CURRENT_LSN = "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), '0/0')::bigint";
+    private static final String REPLAY_STATUS = "SELECT pg_is_in_recovery(), pg_wal_lsn_diff(pg_last_wal_replay_lsn(), '0/0')::bigint";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReplicaProperties properties;
+    private final ScheduledExecutorService monitor;
+    private final Map<String, TrackedWrite> writes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private volatile long primaryLsn;
+    private final Deque<LsnSample> primaryHistory = new ArrayDeque<>(); // Only touched by the monitor thread
+
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong lagFallbacks = new AtomicLong();
+    private final AtomicLong readYourWritesFallbacks = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+
+    ReadReplicaDataSource(DataSource primary, ReplicaProperties properties, String defaultUsername, String defaultPassword) {
+        this.primary = primary;
+        this.properties = properties;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < properties.getUrls().size(); i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + i);
+            pool.setJdbcUrl(properties.getUrls().get(i));
+            pool.setUsername(properties.getUsername() != null ? properties.getUsername() : defaultUsername);
+            pool.setPassword(properties.getPassword() != null ? properties.getPassword() : defaultPassword);
+            pool.setMaximumPoolSize(properties.getMaxPoolSize());
+            pool.setReadOnly(true);
+            pool.setInitializationFailTimeout(-1); // A replica that is down at startup joins once it is reachable
+            // Bounds the wait for a replica that went down since the last check; the read then falls back
+            pool.setConnectionTimeout(Math.max(250, properties.getLagCheckInterval().toMillis()));
+            Replica replica = new Replica(properties.getUrls().get(i), pool);
+            replicas.add(replica);
+            targets.put(replica, pool);
+        }
+        Router router = new Router();
+        router.setTargetDataSources(targets);
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+        afterPropertiesSet();
+
+        this.monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getLagCheckInterval().toMillis();
+        monitor.scheduleWithFixedDelay(this::checkReplicas, 0, interval, TimeUnit.MILLISECONDS);
+        logger.info("Routing read-only transactions to {} replica(s): {}", replicas.size(), properties.getUrls());
+    }
+
+    private Object route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        if (ReplicaRouting.isPrimaryOnly() || replicas.isEmpty()) {
+            primaryReads.incrementAndGet();
+            return PRIMARY;
+        }
+        long requiredLsn = requiredLsn(ReplicaRouting.client());
+        boolean anyHealthy = false;
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.healthy) {
+                continue;
+            }
+            anyHealthy = true;
+            if (replica.replayLsn >= requiredLsn) {
+                replica.reads.incrementAndGet();
+                return replica;
+            }
+        }
+        (anyHealthy ? readYourWritesFallbacks : lagFallbacks).incrementAndGet();
+        primaryReads.incrementAndGet();
+        return PRIMARY;
+    }
+
+    /**
+     * Once per write transaction of a request: records the primary's WAL position after the commit for the client.
+     * The position is read on the transaction's connection, which is only released after the completion callbacks,
+     * so tracking never needs a second pooled connection. Read after the commit, it covers the commit record.
+     */
+    private void trackWrite(Connection connection) {
+        String client = ReplicaRouting.client();
+        if (client == null || replicas.isEmpty() || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITE_TRACKED)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WRITE_TRACKED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                long lsn;
+                try {
+                    lsn = queryLong(connection, CURRENT_LSN);
+                } catch (SQLException e) {
+                    logger.debug("Could not read the primary WAL position, pinning {} to the primary", client, e);
+                    lsn = Long.MAX_VALUE;
+                }
+                writes.put(client, new TrackedWrite(lsn, System.nanoTime() + properties.getReadYourWritesWindow().toNanos()));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_TRACKED);
+            }
+        });
+    }
+
+    private long requiredLsn(String client) {
+        if (client == null) {
+            return 0;
+        }
+        TrackedWrite write = writes.get(client);
+        if (write == null) {
+            return 0;
+        }
+        if (System.nanoTime() - write.expiresAtNanos > 0) {
+            writes.remove(client, write);
+            return 0;
+        }
+        return write.lsn;
+    }
+
+    /**
+     * Samples the primary's WAL position, then measures each replica's lag as the age of the oldest sampled
+     * position it has not replayed yet (zero if it replayed the latest). Unlike the replay timestamp, this does
+     * not count the time the primary was idle as lag.
+     */
+    private void checkReplicas() {
+        long now = System.nanoTime();
+        try {
+            primaryLsn = queryLong(primary, CURRENT_LSN);
+            if (primaryHistory.isEmpty() || primaryHistory.peekLast().lsn() != primaryLsn) {
+                primaryHistory.addLast(new LsnSample(now, primaryLsn));
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Could not read the primary WAL position: {}", e.getMessage());
+        }
+        // Keeps the newest sample beyond the horizon: a replica behind it is lagging by more than maxLag
+        long retainNanos = properties.getMaxLag().toNanos() + 2 * properties.getLagCheckInterval().toNanos();
+        while (primaryHistory.size() > 1) {
+            Iterator<LsnSample> samples = primaryHistory.iterator();
+            samples.next();
+            if (now - samples.next().nanos() <= retainNanos) {
+                break;
+            }
+            primaryHistory.removeFirst();
+        }
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet status = statement.executeQuery(REPLAY_STATUS)) {
+                status.next();
+                if (!status.getBoolean(1)) {
+                    markUnhealthy(replica, "it is not in recovery (not a replica)");
+                    continue;
+                }
+                long replayLsn = status.getLong(2);
+                long lagMillis = 0;
+                for (LsnSample sample : primaryHistory) {
+                    if (sample.lsn() > replayLsn) {
+                        lagMillis = TimeUnit.NANOSECONDS.toMillis(now - sample.nanos());
+                        break;
+                    }
+                }
+                replica.replayLsn = replayLsn;
+                replica.lagMillis = lagMillis;
+                replica.lagBytes = Math.max(0, primaryLsn - replayLsn);
+                boolean healthy = lagMillis <= properties.getMaxLag().toMillis();
+                if (healthy != replica.healthy) {
+                    logger.info("Replica {} {} (lag {} ms)", replica.url, healthy ? "receives reads" : "is lagging, reads fall back", lagMillis);
+                }
+                replica.healthy = healthy;
+            } catch (SQLException | RuntimeException e) {
+                markUnhealthy(replica, e.getMessage());
+            }
+        }
+        writes.entrySet().removeIf(entry -> now - entry.getValue().expiresAtNanos > 0);
+    }
+
+    private void markUnhealthy(Replica replica, String reason) {
+        if (replica.healthy) {
+            logger.warn("Replica {} receives no reads: {}", replica.url, reason);
+        }
+        replica.healthy = false;
+    }
+
+    private static long queryLong(DataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return queryLong(connection, sql);
+        }
+    }
+
+    private static long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    /**
+     * @return Per-replica health, lag and read counts, plus reads served by the primary and why.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("primaryLsn", primaryLsn);
+        stats.put("primaryReads", primaryReads.get());
+        stats.put("lagFallbacks", lagFallbacks.get());
+        stats.put("readYourWritesFallbacks", readYourWritesFallbacks.get());
+        stats.put("failovers", failovers.get());
+        stats.put("trackedWriters", writes.size());
+        List<Map<String, Object>> replicaStats = new ArrayList<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("url", replica.url);
+            entry.put("healthy", replica.healthy);
+            entry.put("lagMillis", replica.lagMillis);
+            entry.put("lagBytes", replica.lagBytes);
+            entry.put("replayLsn", replica.replayLsn);
+            entry.put("reads", replica.reads.get());
+            replicaStats.add(entry);
+        }
+        stats.put("replicas", replicaStats);
+        return stats;
+    }
+
+    @Override
+    public void close() throws Exception {
+        monitor.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private final class Router extends AbstractRoutingDataSource {
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return route();
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Object key = determineCurrentLookupKey();
+            if (!(key instanceof Replica replica)) {
+                Connection connection = primary.getConnection();
+                if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                    trackWrite(connection);
+                }
+                return connection;
+            }
+            try {
+                return replica.pool.getConnection();
+            } catch (SQLException e) {
+                markUnhealthy(replica, e.getMessage());
+                failovers.incrementAndGet();
+                return primary.getConnection();
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLException("Per-call credentials are not supported by the replica routing DataSource");
+        }
+    }
+
+    private record TrackedWrite(long lsn, long expiresAtNanos) {
+    }
+
+    private record LsnSample(long nanos, long lsn) {
+    }
+
+    private static final class Replica {
+        private final String url;
+        private final HikariDataSource pool;
+        private final AtomicLong reads = new AtomicLong();
+        private volatile boolean healthy;
+        private volatile long replayLsn;
+        private volatile long lagMillis = Long.MAX_VALUE;
+        private volatile long lagBytes;
+
+        Replica(String url, HikariDataSource pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+    }
+}
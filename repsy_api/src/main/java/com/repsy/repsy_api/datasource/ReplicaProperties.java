@@ -0,0 +1,116 @@
+package com.repsy.repsy_api.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties("repsy.datasource.replicas")
+public class ReplicaProperties {
+
+    /**
+     * Whether read-only transactions are routed to the replicas below. Writes always go to spring.datasource.url.
+     */
+    private boolean enabled = false;
+
+    /**
+     * JDBC URLs of the streaming replicas of the primary.
+     */
+    private List<String> urls = new ArrayList<>();
+
+    /**
+     * Replica user; defaults to the primary's.
+     */
+    private String username;
+
+    /**
+     * Replica password; defaults to the primary's.
+     */
+    private String password;
+
+    /**
+     * Connections per replica pool.
+     */
+    private int maxPoolSize = 10;
+
+    /**
+     * Replicas further behind the primary than this get no reads until they catch up.
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /**
+     * How often the replicas' replay position is compared with the primary's.
+     */
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+    /**
+     * After a client's write, its reads go to the primary until a replica has replayed the write, or for at most
+     * this long (after which the {@code maxLag} bound applies as usual).
+     */
+    private Duration readYourWritesWindow = Duration.ofMinutes(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    public void setUrls(List<String> urls) {
+        this.urls = urls;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public Duration getMaxLag() {
+        return maxLag;
+    }
+
+    public void setMaxLag(Duration maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    public Duration getLagCheckInterval() {
+        return lagCheckInterval;
+    }
+
+    public void setLagCheckInterval(Duration lagCheckInterval) {
+        this.lagCheckInterval = lagCheckInterval;
+    }
+
+    public Duration getReadYourWritesWindow() {
+        return readYourWritesWindow;
+    }
+
+    public void setReadYourWritesWindow(Duration readYourWritesWindow) {
+        this.readYourWritesWindow = readYourWritesWindow;
+    }
+}
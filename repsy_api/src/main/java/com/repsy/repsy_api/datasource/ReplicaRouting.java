@@ -0,0 +1,52 @@
+package com.repsy.repsy_api.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread routing hints for {@link ReadReplicaDataSource}.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<String> CLIENT = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private ReplicaRouting() {
+    }
+
+    /**
+     * Runs {@code reads} against the primary even in read-only transactions, for reads that must see the latest
+     * committed state (e.g. before deleting data that no row references).
+     */
+    public static <T> T onPrimary(Supplier<T> reads) {
+        Boolean previous = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_ONLY.remove();
+            } else {
+                PRIMARY_ONLY.set(previous);
+            }
+        }
+    }
+
+    static boolean isPrimaryOnly() {
+        return PRIMARY_ONLY.get() != null;
+    }
+
+    /**
+     * The client of the current request; its writes are tracked for read-your-writes.
+     */
+    static String client() {
+        return CLIENT.get();
+    }
+
+    static void setClient(String client) {
+        CLIENT.set(client);
+    }
+
+    static void clearClient() {
+        CLIENT.remove();
+    }
+}
@@ -0,0 +1,70 @@
+package com.repsy.repsy_api.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * Wraps the auto-configured DataSource in a {@link ReadReplicaDataSource} when replicas are enabled. The switch is
+ * read at runtime (not with a bean condition), so it also works in ahead-of-time processed builds.
+ */
+@Configuration
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    static BeanPostProcessor readReplicaDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource primary) || bean instanceof ReadReplicaDataSource) {
+                    return bean;
+                }
+                ReplicaProperties properties = Binder.get(environment)
+                        .bindOrCreate("repsy.datasource.replicas", ReplicaProperties.class);
+                properties.getUrls().removeIf(String::isBlank);
+                if (!properties.isEnabled() || properties.getUrls().isEmpty()) {
+                    return bean;
+                }
+                String username = primary instanceof HikariDataSource hikari ? hikari.getUsername() : null;
+                String password = primary instanceof HikariDataSource hikari ? hikari.getPassword() : null;
+                return new ReadReplicaDataSource(primary, properties, username, password);
+            }
+        };
+    }
+
+    @Bean
+    FilterRegistrationBean<ClientFilter> replicaRoutingClientFilter() {
+        FilterRegistrationBean<ClientFilter> registration = new FilterRegistrationBean<>(new ClientFilter());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    /**
+     * Makes the request's client address available to read-your-writes tracking.
+     */
+    static class ClientFilter extends OncePerRequestFilter {
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            ReplicaRouting.setClient(request.getRemoteAddr());
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                ReplicaRouting.clearClient();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.repsy.repsy_api.download;
+
+import com.repsy.repsy_api.compression.PackageCompressionService;
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Decides per download whether the client is redirected to a presigned storage URL or the file is proxied.
+ * A redirect needs: the feature enabled, an allowed client address, a stored representation the client accepts
+ * as-is, a size of at least {@code minSizeBytes} and a backend that can presign. Anything else falls back to proxying.
+ */
+@Component
+public class DownloadRedirectPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadRedirectPolicy.class);
+
+    private final DownloadRedirectProperties properties;
+    private final StorageService storageService;
+    private final PackageCompressionService compressionService;
+    private final List<AddressRange> allowedClients = new ArrayList<>();
+
+    @Autowired
+    public DownloadRedirectPolicy(DownloadRedirectProperties properties, StorageService storageService,
+                                  PackageCompressionService compressionService) {
+        this.properties = properties;
+        this.storageService = storageService;
+        this.compressionService = compressionService;
+        for (String client : properties.getAllowedClients()) {
+            if (!client.isBlank()) {
+                allowedClients.add(AddressRange.parse(client));
+            }
+        }
+    }
+
+    /**
+     * @param filename       The storage path of the uncompressed file.
+     * @param downloadName   File name for the Content-Disposition header.
+     * @param contentType    Content type of the uncompressed file.
+     * @param acceptEncoding The raw {@code Accept-Encoding} header, may be null.
+     * @param clientAddress  The client's IP address.
+     * @return The URL to redirect to, or empty to proxy the download.
+     */
+    public Optional<URI> redirectFor(String filename, String downloadName, String contentType,
+                                     String acceptEncoding, String clientAddress) {
+        if (!properties.isEnabled() || !isAllowed(clientAddress)) {
+            return Optional.empty();
+        }
+        try {
+            Optional<PackageCompressionService.StoredRepresentation> selected = compressionService.select(filename, acceptEncoding);
+            if (selected.isEmpty() || selected.get().object().getSize() < properties.getMinSizeBytes()) {
+                return Optional.empty();
+            }
+            // The storage response must carry the same headers a proxied download would
+            Map<String, String> responseHeaders = new LinkedHashMap<>();
+            responseHeaders.put(HttpHeaders.CONTENT_TYPE, contentType);
+            responseHeaders.put(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + downloadName + "\"");
+            if (selected.get().coding() != null) {
+                responseHeaders.put(HttpHeaders.CONTENT_ENCODING, selected.get().coding().getToken());
+            }
+            return storageService.presignedDownloadUrl(selected.get().object().getKey(), properties.getExpiry(), responseHeaders);
+        } catch (StorageException e) {
+            logger.warn("Could not presign download of {}, proxying instead: {}", filename, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private boolean isAllowed(String clientAddress) {
+        if (allowedClients.isEmpty()) {
+            return true;
+        }
+        try {
+            InetAddress address = InetAddress.getByName(clientAddress); // Literal IP, no DNS lookup
+            return allowedClients.stream().anyMatch(range -> range.contains(address));
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * An IP address or CIDR range.
+     */
+    record AddressRange(byte[] network, int prefixLength) {
+
+        static AddressRange parse(String value) {
+            String[] parts = value.trim().split("/", 2);
+            try {
+                byte[] network = InetAddress.getByName(parts[0]).getAddress();
+                int prefixLength = parts.length == 2 ? Integer.parseInt(parts[1]) : network.length * 8;
+                if (prefixLength < 0 || prefixLength > network.length * 8) {
+                    throw new IllegalArgumentException("Invalid prefix length in client range: " + value);
+                }
+                return new AddressRange(network, prefixLength);
+            } catch (UnknownHostException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid client range (expected an IP address or CIDR range): " + value, e);
+            }
+        }
+
+        boolean contains(InetAddress address) {
+            byte[] candidate = address.getAddress();
+            if (candidate.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (candidate[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - remainingBits);
+            return (candidate[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.repsy.repsy_api.download;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties("repsy.download.redirect")
+public class DownloadRedirectProperties {
+
+    /**
+     * Whether downloads may be answered with a 302 to a presigned storage URL instead of being proxied.
+     * Only has an effect with storage backends that support presigning (Minio).
+     */
+    private boolean enabled = false;
+
+    /**
+     * Files smaller than this are proxied; for them the extra round trip costs more than it saves.
+     */
+    private long minSizeBytes = 1024 * 1024;
+
+    /**
+     * Validity of a presigned URL.
+     */
+    private Duration expiry = Duration.ofMinutes(5);
+
+    /**
+     * Client addresses or CIDR ranges (e.g. 10.0.0.0/8) that are redirected. Empty allows every client.
+     * Others, e.g. clients that cannot reach the storage endpoint, are proxied.
+     */
+    private List<String> allowedClients = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMinSizeBytes() {
+        return minSizeBytes;
+    }
+
+    public void setMinSizeBytes(long minSizeBytes) {
+        this.minSizeBytes = minSizeBytes;
+    }
+
+    public Duration getExpiry() {
+        return expiry;
+    }
+
+    public void setExpiry(Duration expiry) {
+        this.expiry = expiry;
+    }
+
+    public List<String> getAllowedClients() {
+        return allowedClients;
+    }
+
+    public void setAllowedClients(List<String> allowedClients) {
+        this.allowedClients = allowedClients;
+    }
+}
@@ -0,0 +1,373 @@
+package com.repsy.repsy_api.download;
+
+import com.repsy.repsy_api.support.RateLimiter;
+import com.repsy.repsy_api.tracing.TraceAttributes;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Meters proxied download streams. Each client address is held to its tier's per-client rate by a token bucket
+ * ({@link RateLimiter}); the shared egress budget is handed out chunk by chunk in weighted round-robin order
+ * (start-time fair queuing), so a stream of a weight-4 tier gets four chunks for every chunk of a weight-1 stream
+ * while both are waiting, and an idle tier's share goes to the active ones.
+ */
+@Component
+public class DownloadShaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadShaper.class);
+    private static final int MAX_LISTED_STREAMS = 200;
+
+    private volatile ShapingPolicy policy;
+
+    // Shared budget and its wait queue, ordered by start tag
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition turnChanged = lock.newCondition();
+    private final PriorityQueue<Turn> waiting = new PriorityQueue<>(
+            Comparator.comparingDouble((Turn turn) -> turn.startTag).thenComparingLong(turn -> turn.sequence));
+    private double virtualTime;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private long nextSequence;
+
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final Set<Stream> activeStreams = ConcurrentHashMap.newKeySet();
+    private final Map<String, TierTotals> tierTotals = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DownloadShaper(DownloadShapingProperties properties) {
+        this.policy = new ShapingPolicy(properties);
+        this.tokens = policy.burstBytes;
+    }
+
+    /**
+     * Replaces the shaping configuration. Active streams use the new rates and weights from their next chunk on.
+     *
+     * @throws IllegalArgumentException if the configuration is invalid; the current one stays in effect.
+     */
+    public void reconfigure(DownloadShapingProperties properties) {
+        ShapingPolicy updated = new ShapingPolicy(properties);
+        lock.lock();
+        try {
+            policy = updated;
+            tokens = Math.min(tokens, updated.burstBytes);
+            turnChanged.signalAll(); // The head of the queue recomputes its wait at the new rate
+        } finally {
+            lock.unlock();
+        }
+        clients.forEach((address, client) -> client.limiter.setRate(updated.tierFor(address).clientBytesPerSecond()));
+        logger.info("Download shaping reconfigured: enabled={}, totalBytesPerSecond={}, tiers={}",
+                updated.enabled, updated.totalBytesPerSecond, updated.tiers().stream().map(ShapingPolicy.Tier::name).toList());
+    }
+
+    /**
+     * @param resource      The resource about to be written to the response.
+     * @param clientAddress The client's IP address.
+     * @param filename      The storage path, for the stream statistics.
+     * @return The resource, metered while its content is read if shaping is enabled.
+     */
+    public Resource shape(Resource resource, String clientAddress, String filename) {
+        if (!policy.enabled) {
+            return resource;
+        }
+        return new ShapedResource(resource, clientAddress, filename);
+    }
+
+    /**
+     * @param in            A stream about to be written to the response.
+     * @param clientAddress The client's IP address.
+     * @param filename      The storage path, for the stream statistics.
+     * @return The stream, metered while it is read if shaping is enabled.
+     */
+    public InputStream shape(InputStream in, String clientAddress, String filename) {
+        if (!policy.enabled) {
+            return in;
+        }
+        return new ShapedInputStream(in, open(clientAddress, filename));
+    }
+
+    /**
+     * Blocks until the stream may send {@code bytes}: first against its client's limit, then for its turn on
+     * the shared budget.
+     */
+    private void acquire(Stream stream, int bytes) throws InterruptedIOException {
+        long startedAt = System.nanoTime();
+        ShapingPolicy current = policy;
+        ShapingPolicy.Tier tier = current.tierFor(stream.clientAddress);
+        stream.tier = tier.name();
+        stream.client.limiter.acquire(bytes);
+        if (current.totalBytesPerSecond > 0 && !Thread.currentThread().isInterrupted()) {
+            acquireShared(stream, tier.weight(), bytes);
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedIOException("Interrupted while waiting for download bandwidth");
+        }
+        stream.throttledNanos += System.nanoTime() - startedAt;
+    }
+
+    private void acquireShared(Stream stream, int weight, int bytes) {
+        lock.lock();
+        try {
+            Turn turn = new Turn(Math.max(virtualTime, stream.finishTag), nextSequence++);
+            waiting.add(turn);
+            try {
+                while (true) {
+                    ShapingPolicy current = policy;
+                    if (current.totalBytesPerSecond <= 0) {
+                        return;
+                    }
+                    if (waiting.peek() == turn) {
+                        refill(current);
+                        // A chunk larger than the burst is sent once the bucket is full and leaves it in debt
+                        double needed = Math.min(bytes, current.burstBytes);
+                        if (tokens >= needed) {
+                            tokens -= bytes;
+                            virtualTime = turn.startTag;
+                            stream.finishTag = turn.startTag + (double) bytes / weight;
+                            return;
+                        }
+                        turnChanged.awaitNanos((long) ((needed - tokens) * TimeUnit.SECONDS.toNanos(1) / current.totalBytesPerSecond) + 1);
+                    } else {
+                        turnChanged.await();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiting.remove(turn);
+                turnChanged.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(ShapingPolicy current) {
+        long now = System.nanoTime();
+        tokens = Math.min(current.burstBytes,
+                tokens + (now - lastRefillNanos) * (double) current.totalBytesPerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+
+    private Stream open(String clientAddress, String filename) {
+        Client client = clients.compute(clientAddress, (address, existing) -> {
+            Client opened = existing != null ? existing : new Client(new RateLimiter(policy.tierFor(address).clientBytesPerSecond()));
+            opened.streams++;
+            return opened;
+        });
+        Stream stream = new Stream(clientAddress, client, filename, policy.tierFor(clientAddress).name());
+        activeStreams.add(stream);
+        return stream;
+    }
+
+    private void close(Stream stream) {
+        if (!activeStreams.remove(stream)) {
+            return;
+        }
+        clients.computeIfPresent(stream.clientAddress, (address, client) -> --client.streams == 0 ? null : client);
+        TierTotals totals = tierTotals.computeIfAbsent(stream.tier, name -> new TierTotals());
+        totals.streams.incrementAndGet();
+        totals.bytes.addAndGet(stream.bytes);
+        totals.throttledNanos.addAndGet(stream.throttledNanos);
+        long throttledMillis = TimeUnit.NANOSECONDS.toMillis(stream.throttledNanos);
+        Span.current().setAttribute(TraceAttributes.DOWNLOAD_THROTTLED_MILLIS, throttledMillis);
+        logger.debug("Download of {} by {} ({}) sent {} bytes, throttled {} ms",
+                stream.filename, stream.clientAddress, stream.tier, stream.bytes, throttledMillis);
+    }
+
+    /**
+     * @return The configuration in effect, totals per tier (finished streams) and the active streams with the
+     * time each has spent throttled.
+     */
+    public Map<String, Object> stats() {
+        ShapingPolicy current = policy;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", current.enabled);
+        stats.put("totalBytesPerSecond", current.totalBytesPerSecond);
+        stats.put("activeStreams", activeStreams.size());
+        stats.put("activeClients", clients.size());
+        lock.lock();
+        try {
+            stats.put("waitingForSharedBudget", waiting.size());
+        } finally {
+            lock.unlock();
+        }
+        Map<String, Object> tiers = new LinkedHashMap<>();
+        for (ShapingPolicy.Tier tier : current.tiers()) {
+            TierTotals totals = tierTotals.getOrDefault(tier.name(), new TierTotals());
+            Map<String, Object> tierStats = new LinkedHashMap<>();
+            tierStats.put("weight", tier.weight());
+            tierStats.put("clientBytesPerSecond", tier.clientBytesPerSecond());
+            tierStats.put("completedStreams", totals.streams.get());
+            tierStats.put("bytes", totals.bytes.get());
+            tierStats.put("throttledMillis", TimeUnit.NANOSECONDS.toMillis(totals.throttledNanos.get()));
+            tiers.put(tier.name(), tierStats);
+        }
+        stats.put("tiers", tiers);
+        List<Map<String, Object>> streams = new ArrayList<>();
+        long now = System.nanoTime();
+        activeStreams.stream()
+                .sorted(Comparator.comparingLong((Stream stream) -> stream.throttledNanos).reversed())
+                .limit(MAX_LISTED_STREAMS)
+                .forEach(stream -> {
+                    Map<String, Object> streamStats = new LinkedHashMap<>();
+                    streamStats.put("file", stream.filename);
+                    streamStats.put("client", stream.clientAddress);
+                    streamStats.put("tier", stream.tier);
+                    streamStats.put("bytes", stream.bytes);
+                    streamStats.put("throttledMillis", TimeUnit.NANOSECONDS.toMillis(stream.throttledNanos));
+                    streamStats.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(now - stream.openedAtNanos));
+                    streams.add(streamStats);
+                });
+        stats.put("streams", streams);
+        return stats;
+    }
+
+    private record Turn(double startTag, long sequence) {
+    }
+
+    private static final class Client {
+        private final RateLimiter limiter;
+        private int streams; // Guarded by the clients map
+
+        Client(RateLimiter limiter) {
+            this.limiter = limiter;
+        }
+    }
+
+    private static final class TierTotals {
+        private final AtomicLong streams = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong throttledNanos = new AtomicLong();
+    }
+
+    /**
+     * One response being written. Only its writing thread updates it; the statistics read it racily.
+     */
+    private static final class Stream {
+        private final String clientAddress;
+        private final Client client;
+        private final String filename;
+        private final long openedAtNanos = System.nanoTime();
+        private volatile String tier;
+        private volatile long bytes;
+        private volatile long throttledNanos;
+        private double finishTag;
+
+        Stream(String clientAddress, Client client, String filename, String tier) {
+            this.clientAddress = clientAddress;
+            this.client = client;
+            this.filename = filename;
+            this.tier = tier;
+        }
+    }
+
+    /**
+     * Keeps the delegate's length and name (for Content-Length and Content-Disposition) and meters its content.
+     */
+    private final class ShapedResource extends AbstractResource {
+        private final Resource delegate;
+        private final String clientAddress;
+        private final String filename;
+
+        ShapedResource(Resource delegate, String clientAddress, String filename) {
+            this.delegate = delegate;
+            this.clientAddress = clientAddress;
+            this.filename = filename;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream in = delegate.getInputStream();
+            return new ShapedInputStream(in, open(clientAddress, filename));
+        }
+
+        @Override
+        public boolean exists() {
+            return delegate.exists();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public String getFilename() {
+            return delegate.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return "Shaped " + delegate.getDescription();
+        }
+    }
+
+    private final class ShapedInputStream extends FilterInputStream {
+        private final Stream stream;
+
+        ShapedInputStream(InputStream in, Stream stream) {
+            super(in);
+            this.stream = stream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, Math.min(len, policy.chunkBytes));
+            if (read > 0) {
+                acquire(stream, read);
+                stream.bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long transferTo(OutputStream out) throws IOException {
+            byte[] buffer = new byte[policy.chunkBytes];
+            long transferred = 0;
+            int read;
+            while ((read = read(buffer, 0, buffer.length)) != -1) {
+                out.write(buffer, 0, read);
+                transferred += read;
+            }
+            return transferred;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                DownloadShaper.this.close(stream);
+            }
+        }
+    }
+}
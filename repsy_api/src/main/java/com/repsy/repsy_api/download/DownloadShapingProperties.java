@@ -0,0 +1,121 @@
+package com.repsy.repsy_api.download;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@ConfigurationProperties("repsy.download.shaping")
+public class DownloadShapingProperties {
+
+    /**
+     * Whether proxied downloads are metered. Redirected downloads are served by the storage backend and not shaped.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Egress budget shared by all downloads, divided between active streams by tier weight. Zero disables the
+     * shared budget; per-client limits still apply.
+     */
+    private long totalBytesPerSecond = 0;
+
+    /**
+     * Bytes the shared budget can accumulate while downloads are idle.
+     */
+    private long burstBytes = 1024 * 1024;
+
+    /**
+     * Largest read metered at once; smaller chunks interleave streams more finely at a little more overhead.
+     */
+    private int chunkBytes = 64 * 1024;
+
+    /**
+     * Client tiers, matched in order by address. Clients matching no tier use the tier named {@code default},
+     * or weight 1 without a per-client limit if there is none.
+     */
+    private Map<String, Tier> tiers = new LinkedHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTotalBytesPerSecond() {
+        return totalBytesPerSecond;
+    }
+
+    public void setTotalBytesPerSecond(long totalBytesPerSecond) {
+        this.totalBytesPerSecond = totalBytesPerSecond;
+    }
+
+    public long getBurstBytes() {
+        return burstBytes;
+    }
+
+    public void setBurstBytes(long burstBytes) {
+        this.burstBytes = burstBytes;
+    }
+
+    public int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    public void setChunkBytes(int chunkBytes) {
+        this.chunkBytes = chunkBytes;
+    }
+
+    public Map<String, Tier> getTiers() {
+        return tiers;
+    }
+
+    public void setTiers(Map<String, Tier> tiers) {
+        this.tiers = tiers;
+    }
+
+    public static class Tier {
+
+        /**
+         * Client addresses or CIDR ranges (e.g. 10.0.0.0/8) in this tier.
+         */
+        private List<String> clients = new ArrayList<>();
+
+        /**
+         * Share of the shared budget a stream of this tier gets relative to streams of other tiers.
+         */
+        private int weight = 1;
+
+        /**
+         * Limit per client address (all its streams together). Zero means no per-client limit.
+         */
+        private long clientBytesPerSecond = 0;
+
+        public List<String> getClients() {
+            return clients;
+        }
+
+        public void setClients(List<String> clients) {
+            this.clients = clients;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+
+        public long getClientBytesPerSecond() {
+            return clientBytesPerSecond;
+        }
+
+        public void setClientBytesPerSecond(long clientBytesPerSecond) {
+            this.clientBytesPerSecond = clientBytesPerSecond;
+        }
+    }
+}
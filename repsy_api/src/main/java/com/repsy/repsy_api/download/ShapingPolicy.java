@@ -0,0 +1,93 @@
+package com.repsy.repsy_api.download;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable snapshot of {@link DownloadShapingProperties}; a reload swaps the whole snapshot.
+ */
+final class ShapingPolicy {
+
+    static final String DEFAULT_TIER = "default";
+    private static final int MAX_CACHED_CLIENTS = 10_000;
+
+    record Tier(String name, List<DownloadRedirectPolicy.AddressRange> clients, int weight, long clientBytesPerSecond) {
+    }
+
+    final boolean enabled;
+    final long totalBytesPerSecond;
+    final long burstBytes;
+    final int chunkBytes;
+    private final List<Tier> tiers = new ArrayList<>();
+    private final Tier defaultTier;
+    private final Map<String, Tier> tierByClient = new ConcurrentHashMap<>();
+
+    /**
+     * @throws IllegalArgumentException if a value is out of range or a client range does not parse.
+     */
+    ShapingPolicy(DownloadShapingProperties properties) {
+        if (properties.getTotalBytesPerSecond() < 0 || properties.getBurstBytes() < 1 || properties.getChunkBytes() < 1) {
+            throw new IllegalArgumentException("totalBytesPerSecond must not be negative, burstBytes and chunkBytes must be positive.");
+        }
+        this.enabled = properties.isEnabled();
+        this.totalBytesPerSecond = properties.getTotalBytesPerSecond();
+        this.burstBytes = properties.getBurstBytes();
+        this.chunkBytes = properties.getChunkBytes();
+        Tier fallback = new Tier(DEFAULT_TIER, List.of(), 1, 0);
+        for (Map.Entry<String, DownloadShapingProperties.Tier> entry : properties.getTiers().entrySet()) {
+            DownloadShapingProperties.Tier tier = entry.getValue();
+            if (tier.getWeight() < 1 || tier.getClientBytesPerSecond() < 0) {
+                throw new IllegalArgumentException("Tier " + entry.getKey() + ": weight must be at least 1 and clientBytesPerSecond must not be negative.");
+            }
+            List<DownloadRedirectPolicy.AddressRange> ranges = new ArrayList<>();
+            for (String client : tier.getClients()) {
+                if (!client.isBlank()) {
+                    ranges.add(DownloadRedirectPolicy.AddressRange.parse(client));
+                }
+            }
+            Tier parsed = new Tier(entry.getKey(), List.copyOf(ranges), tier.getWeight(), tier.getClientBytesPerSecond());
+            if (DEFAULT_TIER.equals(entry.getKey())) {
+                fallback = parsed;
+            } else {
+                tiers.add(parsed);
+            }
+        }
+        this.defaultTier = fallback;
+    }
+
+    Tier tierFor(String clientAddress) {
+        Tier cached = tierByClient.get(clientAddress);
+        if (cached != null) {
+            return cached;
+        }
+        Tier tier = matchTier(clientAddress);
+        if (tierByClient.size() < MAX_CACHED_CLIENTS) {
+            tierByClient.put(clientAddress, tier);
+        }
+        return tier;
+    }
+
+    private Tier matchTier(String clientAddress) {
+        try {
+            InetAddress address = InetAddress.getByName(clientAddress); // Literal IP, no DNS lookup
+            for (Tier tier : tiers) {
+                if (tier.clients().stream().anyMatch(range -> range.contains(address))) {
+                    return tier;
+                }
+            }
+        } catch (UnknownHostException e) {
+            // Not an address; use the default tier
+        }
+        return defaultTier;
+    }
+
+    List<Tier> tiers() {
+        List<Tier> all = new ArrayList<>(tiers);
+        all.add(defaultTier);
+        return all;
+    }
+}
@@ -0,0 +1,82 @@
+package com.repsy.repsy_api.export;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+/**
+ * Compact binary export. All integers are big-endian.
+ * <pre>
+ * header:  "RPSYIDX" version(u8 = 1)
+ * record:  0x01 id(i64) name(str) version(str) author(str) createdAt(i64 epoch millis)
+ *          repSha256(u8 length 0 or 32, raw digest bytes) repSize(i64, -1 if unknown) meta(str)
+ * trailer: 0x00 recordCount(i64)
+ * str:     varint(UTF-8 length + 1, 0 = null) UTF-8 bytes
+ * </pre>
+ * A stream that ends without the trailer, or whose trailer count differs from the records read, was truncated.
+ */
+class BinaryIndexWriter implements IndexWriter {
+
+    static final byte[] MAGIC = "RPSYIDX".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int RECORD = 0x01;
+    static final int TRAILER = 0x00;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final DataOutputStream out;
+    private long records;
+
+    BinaryIndexWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.write(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    @Override
+    public void write(IndexRecord record) throws IOException {
+        out.writeByte(RECORD);
+        out.writeLong(record.id());
+        writeString(record.name());
+        writeString(record.version());
+        writeString(record.author());
+        out.writeLong(record.createdAt() != null ? record.createdAt().toEpochMilli() : 0L);
+        if (record.repSha256() != null) {
+            byte[] digest = HEX.parseHex(record.repSha256());
+            out.writeByte(digest.length);
+            out.write(digest);
+        } else {
+            out.writeByte(0);
+        }
+        out.writeLong(record.repSize() != null ? record.repSize() : -1L);
+        writeString(record.meta());
+        records++;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.writeByte(TRAILER);
+        out.writeLong(records);
+        out.flush();
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,76 @@
+package com.repsy.repsy_api.export;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("repsy.export")
+public class ExportProperties {
+
+    /**
+     * Rows read per page of an export. Each page is one short read-only transaction that ends before the page is
+     * written to the client, so this bounds both the heap used by one export and how long a transaction stays open.
+     */
+    private int fetchSize = 1000;
+
+    /**
+     * Exports running at the same time. Each one borrows a database connection while it reads a page;
+     * further requests get 503 with Retry-After.
+     */
+    private int maxConcurrentExports = 2;
+
+    /**
+     * Retry-After sent when an export is rejected.
+     */
+    private Duration retryAfter = Duration.ofSeconds(30);
+
+    /**
+     * Deflate level (1-9) of gzip-encoded exports. Compression happens while streaming, so favour speed.
+     */
+    private int gzipLevel = 6;
+
+    /**
+     * Zstandard level (1-22) of zstd-encoded exports.
+     */
+    private int zstdLevel = 3;
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public int getMaxConcurrentExports() {
+        return maxConcurrentExports;
+    }
+
+    public void setMaxConcurrentExports(int maxConcurrentExports) {
+        this.maxConcurrentExports = maxConcurrentExports;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public int getGzipLevel() {
+        return gzipLevel;
+    }
+
+    public void setGzipLevel(int gzipLevel) {
+        this.gzipLevel = gzipLevel;
+    }
+
+    public int getZstdLevel() {
+        return zstdLevel;
+    }
+
+    public void setZstdLevel(int zstdLevel) {
+        this.zstdLevel = zstdLevel;
+    }
+}
@@ -0,0 +1,198 @@
+package com.repsy.repsy_api.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repsy.repsy_api.compression.ContentCoding;
+import com.repsy.repsy_api.tracing.TraceAttributes;
+import com.repsy.storage.api.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams every package version out of the database for mirrors and auditors.
+ * Rows are read in pages of {@link ExportProperties#getFetchSize()} by keyset pagination on {@code id}, each page in
+ * its own short read-only transaction, and a page is written to the client only after its transaction has ended.
+ * Heap use does not depend on the number of packages, and a slow client never holds a transaction (and the snapshot
+ * that keeps vacuum from cleaning up) open. The export is therefore not one snapshot: versions deleted while it runs
+ * may be missing and versions deployed while it runs may be included. Being read-only, pages are served by a read
+ * replica when those are enabled.
+ */
+@Service
+public class IndexExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexExporter.class);
+
+    private static final String PAGE_SQL = "SELECT id, name, version, author, created_at, rep_sha256, rep_size, "
+            + "dependencies_json FROM packages WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory;
+    private final ExportProperties properties;
+    private final Semaphore exports;
+
+    @Autowired
+    public IndexExporter(DataSource dataSource, PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                         ExportProperties properties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+        this.properties = properties;
+        this.exports = new Semaphore(Math.max(1, properties.getMaxConcurrentExports()));
+    }
+
+    /**
+     * Thrown when {@link ExportProperties#getMaxConcurrentExports()} exports are already running.
+     */
+    public static class ExportBusyException extends RuntimeException {
+
+        private final long retryAfterSeconds;
+
+        public ExportBusyException(long retryAfterSeconds) {
+            super("Too many index exports are running; retry later.");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * A running export's slot; closing it lets the next export start.
+     */
+    public final class Slot implements AutoCloseable {
+
+        private boolean released;
+
+        private Slot() {
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                exports.release();
+            }
+        }
+    }
+
+    /**
+     * Reserves a slot for an export without waiting, so the caller can reject before it commits a response.
+     *
+     * @throws ExportBusyException If all slots are taken.
+     */
+    public Slot reserve() {
+        if (!exports.tryAcquire()) {
+            throw new ExportBusyException(Math.max(1, properties.getRetryAfter().toSeconds()));
+        }
+        return new Slot();
+    }
+
+    /**
+     * Writes the whole index to {@code out}, which is flushed but not closed.
+     *
+     * @param coding Content coding to compress the stream with, or null for none.
+     * @return The number of package versions written.
+     */
+    public long export(IndexFormat format, ContentCoding coding, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        long[] rows = new long[1];
+        try {
+            Tracing.runInSpan("db.export_index", span -> {
+                span.setAttribute(TraceAttributes.DB_SYSTEM, "postgresql");
+                span.setAttribute(TraceAttributes.DB_OPERATION, "SELECT");
+                OutputStream sink = new NonClosingOutputStream(out);
+                OutputStream buffered = new BufferedOutputStream(coding != null ? coding.encode(sink, level(coding)) : sink, BUFFER_SIZE);
+                IndexWriter writer = format.open(buffered, jsonFactory);
+                int pageSize = Math.max(1, properties.getFetchSize());
+                long lastId = Long.MIN_VALUE;
+                List<IndexRecord> page;
+                do {
+                    page = readPage(lastId, pageSize);
+                    for (IndexRecord record : page) {
+                        writer.write(record);
+                    }
+                    rows[0] += page.size();
+                    if (!page.isEmpty()) {
+                        lastId = page.get(page.size() - 1).id();
+                    }
+                } while (page.size() == pageSize);
+                writer.finish();
+                buffered.close(); // Finishes the compressed stream; the response stream itself stays open
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Index export ({}) failed after {} package versions: {}", format.getToken(), rows[0], e.toString());
+            throw e;
+        }
+        logger.info("Exported {} package versions as {}{} in {} ms", rows[0], format.getToken(),
+                coding != null ? " (" + coding.getToken() + ")" : "", (System.nanoTime() - started) / 1_000_000);
+        return rows[0];
+    }
+
+    /**
+     * Reads the next page after {@code lastId}; the transaction ends before the page is written out.
+     */
+    private List<IndexRecord> readPage(long lastId, int pageSize) {
+        return transactionTemplate.execute(status ->
+                jdbcTemplate.query(PAGE_SQL, (rs, rowNum) -> toRecord(rs), lastId, pageSize));
+    }
+
+    private int level(ContentCoding coding) {
+        return coding == ContentCoding.GZIP ? properties.getGzipLevel() : properties.getZstdLevel();
+    }
+
+    private static IndexRecord toRecord(ResultSet rs) throws SQLException {
+        OffsetDateTime createdAt = rs.getObject(5, OffsetDateTime.class);
+        long repSize = rs.getLong(7);
+        boolean repSizeKnown = !rs.wasNull();
+        return new IndexRecord(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getString(4),
+                createdAt != null ? createdAt.toInstant() : null,
+                rs.getString(6),
+                repSizeKnown ? repSize : null,
+                rs.getString(8));
+    }
+
+    /**
+     * Lets the encoders and writers be closed to flush their trailers without closing the response stream.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
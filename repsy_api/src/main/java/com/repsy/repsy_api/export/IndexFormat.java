@@ -0,0 +1,71 @@
+package com.repsy.repsy_api.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Serializations of an index export.
+ */
+public enum IndexFormat {
+
+    /**
+     * One JSON object per line; {@code meta} embeds the deployed meta.json as-is.
+     */
+    NDJSON("ndjson", "application/x-ndjson"),
+
+    /**
+     * Length-prefixed records behind a magic header, with a trailer carrying the record count
+     * (see {@link BinaryIndexWriter}).
+     */
+    BINARY("binary", "application/vnd.repsy.index");
+
+    private final String token;
+    private final String mediaType;
+
+    IndexFormat(String token, String mediaType) {
+        this.token = token;
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * @return The value of the {@code format} request parameter.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    IndexWriter open(OutputStream out, JsonFactory jsonFactory) throws IOException {
+        switch (this) {
+            case NDJSON:
+                return new NdjsonIndexWriter(out, jsonFactory);
+            case BINARY:
+                return new BinaryIndexWriter(out);
+            default:
+                throw new IllegalStateException("Unsupported index format: " + token);
+        }
+    }
+
+    /**
+     * Looks up a format by its token (case-insensitive).
+     */
+    public static Optional<IndexFormat> fromToken(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        String normalized = token.trim().toLowerCase(Locale.ROOT);
+        for (IndexFormat format : values()) {
+            if (format.token.equals(normalized)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,15 @@
+package com.repsy.repsy_api.export;
+
+import java.time.Instant;
+
+/**
+ * One package version of an index export, read straight from the result set without an entity.
+ *
+ * @param author    May be null.
+ * @param repSha256 Lowercase hex, or null for versions deployed before digests were recorded.
+ * @param repSize   Null for versions deployed before digests were recorded.
+ * @param meta      The deployed meta.json, or null for rows that do not have it.
+ */
+public record IndexRecord(long id, String name, String version, String author, Instant createdAt,
+                          String repSha256, Long repSize, String meta) {
+}
@@ -0,0 +1,16 @@
+package com.repsy.repsy_api.export;
+
+import java.io.IOException;
+
+/**
+ * Serializes export records, one at a time, into the response stream of an {@link IndexFormat}.
+ */
+interface IndexWriter {
+
+    void write(IndexRecord record) throws IOException;
+
+    /**
+     * Writes whatever follows the last record and flushes. The underlying stream is not closed.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,63 @@
+package com.repsy.repsy_api.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes each record as one line of JSON:
+ * {@code {"id":1,"name":"..","version":"..","author":"..","createdAt":"..","repSha256":"..","repSize":123,"meta":{..}}}.
+ * Absent values are written as null.
+ */
+class NdjsonIndexWriter implements IndexWriter {
+
+    private final JsonGenerator generator;
+
+    NdjsonIndexWriter(OutputStream out, JsonFactory jsonFactory) throws IOException {
+        this.generator = jsonFactory.createGenerator(out);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.setRootValueSeparator(null); // Records are separated by the newline written after each one
+    }
+
+    @Override
+    public void write(IndexRecord record) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", record.id());
+        generator.writeStringField("name", record.name());
+        generator.writeStringField("version", record.version());
+        generator.writeStringField("author", record.author());
+        generator.writeStringField("createdAt", record.createdAt() != null ? record.createdAt().toString() : null);
+        generator.writeStringField("repSha256", record.repSha256());
+        generator.writeFieldName("repSize");
+        if (record.repSize() != null) {
+            generator.writeNumber(record.repSize());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeFieldName("meta");
+        if (record.meta() != null) {
+            generator.writeRawValue(singleLine(record.meta())); // Valid JSON: parsed at deploy
+        } else {
+            generator.writeNull();
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * JSON strings cannot contain raw line breaks, so any in a valid document are whitespace between tokens.
+     */
+    static String singleLine(String json) {
+        if (json.indexOf('\n') < 0 && json.indexOf('\r') < 0) {
+            return json;
+        }
+        return json.replace('\n', ' ').replace('\r', ' ');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        generator.flush();
+    }
+}
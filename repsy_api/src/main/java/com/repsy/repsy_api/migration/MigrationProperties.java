@@ -0,0 +1,22 @@
+package com.repsy.repsy_api.migration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("repsy.migrations")
+public class MigrationProperties {
+
+    /**
+     * Whether this instance applies pending Flyway migrations while starting. Turn it off on scaled-out
+     * instances when a single instance or a one-off run applies them. Unlike spring.flyway.enabled this
+     * is read at runtime, so it also works with AOT-processed builds.
+     */
+    private boolean onStartup = true;
+
+    public boolean isOnStartup() {
+        return onStartup;
+    }
+
+    public void setOnStartup(boolean onStartup) {
+        this.onStartup = onStartup;
+    }
+}
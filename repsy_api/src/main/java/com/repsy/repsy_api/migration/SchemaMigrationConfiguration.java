@@ -0,0 +1,28 @@
+package com.repsy.repsy_api.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SchemaMigrationConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrationConfiguration.class);
+
+    /**
+     * Applies the migrations in db/migration unless repsy.migrations.on-startup is off. Skipping keeps the
+     * database off the startup path entirely (Flyway only connects when it migrates).
+     */
+    @Bean
+    FlywayMigrationStrategy flywayMigrationStrategy(MigrationProperties properties) {
+        return flyway -> {
+            if (properties.isOnStartup()) {
+                flyway.migrate();
+            } else {
+                logger.info("Skipping schema migrations on startup (repsy.migrations.on-startup=false)");
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package com.repsy.repsy_api.packages;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Content address of a package file: its SHA-256 (lowercase hex) and size in bytes.
+ * Clients send these in a deploy pre-flight to find out which files the server already stores.
+ */
+public record BlobDigest(String sha256, long size) {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("^[0-9a-f]{64}$");
+
+    @JsonCreator
+    public BlobDigest(@JsonProperty("sha256") String sha256, @JsonProperty("size") long size) {
+        String normalized = sha256 == null ? null : sha256.trim().toLowerCase(Locale.ROOT);
+        if (normalized == null || !SHA256_HEX.matcher(normalized).matches()) {
+            throw new PackageService.InvalidFileException("'sha256' must be 64 hexadecimal characters.");
+        }
+        if (size < 0) {
+            throw new PackageService.InvalidFileException("'size' cannot be negative.");
+        }
+        this.sha256 = normalized;
+        this.size = size;
+    }
+
+    /**
+     * Hashes an uploaded file in one streaming pass.
+     *
+     * @param file The uploaded file.
+     * @return Its digest.
+     * @throws PackageService.InvalidFileException if the upload cannot be read.
+     */
+    public static BlobDigest of(MultipartFile file) {
+        return of(file, file.getName());
+    }
+
+    /**
+     * Hashes a file in one streaming pass, e.g. a stored one.
+     *
+     * @param source The file content.
+     * @param name   The name used in error messages.
+     * @return Its digest.
+     * @throws PackageService.InvalidFileException if the content cannot be read.
+     */
+    public static BlobDigest of(InputStreamSource source, String name) {
+        MessageDigest digest = newSha256();
+        long size;
+        try (InputStream in = new DigestInputStream(source.getInputStream(), digest)) {
+            size = in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new PackageService.InvalidFileException("Failed to read '" + name + "'.", e);
+        }
+        return new BlobDigest(HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Mandatory in every JRE
+        }
+    }
+}
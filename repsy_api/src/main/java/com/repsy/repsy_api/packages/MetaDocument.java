@@ -0,0 +1,31 @@
+package com.repsy.repsy_api.packages;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * A package's meta.json as deployed, with a strong entity tag derived from its content.
+ *
+ * @param json The raw document.
+ * @param etag Quoted entity tag (first 128 bits of the SHA-256 of the UTF-8 bytes).
+ */
+public record MetaDocument(String name, String version, String json, String etag) {
+
+    public static MetaDocument of(String name, String version, String json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8));
+            return new MetaDocument(name, version, json, "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e); // Required of every JRE
+        }
+    }
+
+    /**
+     * @return The {@code name@version} form used by the batch lookup.
+     */
+    public String coordinates() {
+        return name + "@" + version;
+    }
+}
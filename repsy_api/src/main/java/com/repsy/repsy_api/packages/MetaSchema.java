@@ -0,0 +1,100 @@
+package com.repsy.repsy_api.packages;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The rules a meta.json document must satisfy, compiled once: known fields are looked up by name and their
+ * patterns are precompiled, so {@link MetaValidator} checks each value as the parser reaches it.
+ * <pre>
+ * {
+ *   "name":         string, required; a path segment: 1-255 characters, no '/', '\' or control characters
+ *   "version":      string, required; a semantic version ({@link PackageMetadata#VERSION_PATTERN})
+ *   "author":       string or null
+ *   "dependencies": null, an array of {"package": name, "version": string} objects or "name [range]" strings,
+ *                   or an object of name: version string
+ * }
+ * </pre>
+ * Other fields are allowed and kept as they are.
+ */
+final class MetaSchema {
+
+    static final int MAX_NAME_LENGTH = 255;
+
+    /**
+     * The top-level fields with rules.
+     */
+    enum Field {
+        NAME("name", true),
+        VERSION("version", true),
+        AUTHOR("author", false),
+        DEPENDENCIES("dependencies", false);
+
+        private final String key;
+        private final boolean required;
+
+        Field(String key, boolean required) {
+            this.key = key;
+            this.required = required;
+        }
+
+        String key() {
+            return key;
+        }
+    }
+
+    private static final Map<String, Field> FIELDS = new HashMap<>();
+    private static final Set<Field> REQUIRED = EnumSet.noneOf(Field.class);
+
+    static {
+        for (Field field : Field.values()) {
+            FIELDS.put(field.key, field);
+            if (field.required) {
+                REQUIRED.add(field);
+            }
+        }
+    }
+
+    private static final Pattern NAME = Pattern.compile("^(?!\\.{1,2}$)[^/\\\\\\p{Cntrl}]+$");
+    private static final Pattern VERSION = Pattern.compile(PackageMetadata.VERSION_PATTERN);
+
+    private MetaSchema() {
+    }
+
+    /**
+     * @return The rules of a top-level field, or null if it has none.
+     */
+    static Field field(String key) {
+        return FIELDS.get(key);
+    }
+
+    static Set<Field> required() {
+        return REQUIRED;
+    }
+
+    /**
+     * @return What is wrong with a package name, or null if it is valid.
+     */
+    static String checkName(String name) {
+        if (name.isBlank()) {
+            return "must not be blank";
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            return "must be at most " + MAX_NAME_LENGTH + " characters long";
+        }
+        if (!NAME.matcher(name).matches()) {
+            return "must not contain '/', '\\' or control characters, nor be '.' or '..'";
+        }
+        return null;
+    }
+
+    /**
+     * @return What is wrong with a package version, or null if it is valid.
+     */
+    static String checkVersion(String version) {
+        return VERSION.matcher(version).matches() ? null : "must be a semantic version (e.g. 1.0.0)";
+    }
+}
@@ -0,0 +1,37 @@
+package com.repsy.repsy_api.packages;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The outcome of validating a meta.json document (see {@link MetaValidator}).
+ *
+ * @param name         The package name, or null if absent or not a string.
+ * @param version      The package version, or null if absent or not a string.
+ * @param author       The author, or null.
+ * @param dependencies The declared dependencies, in document order.
+ * @param errors       What is wrong with the document, each prefixed with the JSON path it concerns; empty if valid.
+ * @param document     The document's bytes as received, to be stored without re-encoding.
+ */
+public record MetaValidation(String name, String version, String author, List<Dependency> dependencies,
+                             List<String> errors, byte[] document) {
+
+    /**
+     * A declared dependency.
+     *
+     * @param version The declared version or range as written, or null if the declaration has none.
+     */
+    public record Dependency(String name, String version) {
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * @return The document as text, as kept in the package row.
+     */
+    public String json() {
+        return new String(document, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,269 @@
+package com.repsy.repsy_api.packages;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validates meta.json documents in a single pass over a Jackson streaming parser: no tree or bound object is built.
+ * The document's bytes are read once (up to {@link MetadataProperties#getMaxDocumentBytes()}), checked token by
+ * token against {@link MetaSchema}, and its name, version, author and dependencies are picked out on the way.
+ * Nesting depth and string lengths are limited by the parser itself, so unknown fields are skipped without
+ * building them, yet within the same limits. Duplicate keys are rejected, so a document cannot mean one thing to
+ * this server and another to a client.
+ */
+@Component
+public class MetaValidator {
+
+    /**
+     * Errors reported per document; further errors are dropped.
+     */
+    static final int MAX_ERRORS = 20;
+
+    private final MetadataProperties properties;
+    private final JsonFactory jsonFactory;
+
+    @Autowired
+    public MetaValidator(MetadataProperties properties) {
+        this.properties = properties;
+        this.jsonFactory = JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder()
+                        .maxNestingDepth(properties.getMaxDepth())
+                        .maxDocumentLength(properties.getMaxDocumentBytes())
+                        .maxStringLength(properties.getMaxDocumentBytes())
+                        .build())
+                .enable(StreamReadFeature.STRICT_DUPLICATE_DETECTION)
+                .build();
+    }
+
+    /**
+     * Reads and validates an uploaded meta.json.
+     *
+     * @throws IOException If the upload cannot be read.
+     */
+    public MetaValidation validate(MultipartFile metaFile) throws IOException {
+        int limit = properties.getMaxDocumentBytes();
+        if (metaFile.getSize() > limit) {
+            return tooLarge();
+        }
+        byte[] document;
+        try (InputStream in = metaFile.getInputStream()) {
+            document = in.readNBytes(limit + 1); // The declared size may be unknown or wrong
+        }
+        return document.length > limit ? tooLarge() : validate(document);
+    }
+
+    /**
+     * Validates a meta.json document.
+     */
+    public MetaValidation validate(byte[] document) {
+        Result result = new Result();
+        try (JsonParser parser = jsonFactory.createParser(document)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                result.error("$", "must be a JSON object");
+                return result.toValidation(document);
+            }
+            Set<MetaSchema.Field> seen = EnumSet.noneOf(MetaSchema.Field.class);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.currentName();
+                JsonToken value = parser.nextToken();
+                MetaSchema.Field field = MetaSchema.field(key);
+                if (field == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                seen.add(field);
+                String path = "$." + key;
+                switch (field) {
+                    case NAME -> {
+                        result.name = string(parser, path, result);
+                        if (result.name != null) {
+                            result.check(path, MetaSchema.checkName(result.name));
+                        }
+                    }
+                    case VERSION -> {
+                        result.version = string(parser, path, result);
+                        if (result.version != null) {
+                            result.check(path, MetaSchema.checkVersion(result.version));
+                        }
+                    }
+                    case AUTHOR -> result.author = value == JsonToken.VALUE_NULL ? null : string(parser, path, result);
+                    case DEPENDENCIES -> dependencies(parser, path, result);
+                }
+            }
+            if (parser.nextToken() != null) {
+                result.error("$", "unexpected content after the document");
+            }
+            for (MetaSchema.Field field : MetaSchema.required()) {
+                if (!seen.contains(field)) {
+                    result.error("$." + field.key(), "is required");
+                }
+            }
+        } catch (StreamConstraintsException e) {
+            result.error("$", "exceeds a limit: " + e.getOriginalMessage());
+        } catch (JsonProcessingException e) {
+            JsonLocation location = e.getLocation();
+            result.error("$", "is not valid JSON" + (location != null
+                    ? " (line " + location.getLineNr() + ", column " + location.getColumnNr() + ")" : "") + ": " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new IllegalStateException("Reading a byte array failed", e); // Not possible
+        }
+        return result.toValidation(document);
+    }
+
+    private void dependencies(JsonParser parser, String path, Result result) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_NULL -> {
+            }
+            case START_ARRAY -> {
+                int index = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    String element = path + "[" + index++ + "]";
+                    if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                        dependencyDeclaration(parser.getText(), element, result);
+                    } else if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        dependencyObject(parser, element, result);
+                    } else {
+                        result.error(element, "must be an object or a string");
+                        parser.skipChildren();
+                    }
+                }
+            }
+            case START_OBJECT -> {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    String element = path + "." + name;
+                    String version = string(parser, element, result);
+                    addDependency(name, version, element, result);
+                }
+            }
+            default -> {
+                result.error(path, "must be an array, an object or null");
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * A {@code {"package": "name", "version": "1.2.3"}} entry; other keys are ignored.
+     */
+    private void dependencyObject(JsonParser parser, String path, Result result) throws IOException {
+        String name = null;
+        String version = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.currentName();
+            parser.nextToken();
+            if ("package".equals(key)) {
+                name = string(parser, path + ".package", result);
+            } else if ("version".equals(key)) {
+                version = string(parser, path + ".version", result);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (name == null) {
+            result.error(path + ".package", "is required");
+            return;
+        }
+        if (version == null) {
+            result.error(path + ".version", "is required");
+            return;
+        }
+        addDependency(name, version, path, result);
+    }
+
+    /**
+     * A {@code "name"} or {@code "name >= 1.2.0"} entry.
+     */
+    private void dependencyDeclaration(String declaration, String path, Result result) {
+        String trimmed = declaration.strip();
+        int space = trimmed.indexOf(' ');
+        String name = space < 0 ? trimmed : trimmed.substring(0, space);
+        String range = space < 0 ? null : trimmed.substring(space + 1).strip();
+        addDependency(name, range, path, result);
+    }
+
+    private void addDependency(String name, String version, String path, Result result) {
+        if (name == null) {
+            return; // Already reported
+        }
+        String problem = MetaSchema.checkName(name);
+        if (problem != null) {
+            result.error(path, "dependency name " + problem);
+            return;
+        }
+        if (version != null && version.isBlank()) {
+            result.error(path, "dependency version must not be blank");
+            return;
+        }
+        if (result.dependencies.size() == properties.getMaxDependencies()) {
+            result.error("$.dependencies", "must have at most " + properties.getMaxDependencies() + " entries");
+            return;
+        }
+        result.dependencies.add(new MetaValidation.Dependency(name, version));
+    }
+
+    /**
+     * @return The current string value, or null after reporting a value of another type (which is skipped).
+     */
+    private static String string(JsonParser parser, String path, Result result) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        result.error(path, "must be a string");
+        parser.skipChildren();
+        return null;
+    }
+
+    private MetaValidation tooLarge() {
+        return new MetaValidation(null, null, null, List.of(),
+                List.of("$: must be at most " + properties.getMaxDocumentBytes() + " bytes"), new byte[0]);
+    }
+
+    /**
+     * What a validation has found so far.
+     */
+    private static final class Result {
+
+        private String name;
+        private String version;
+        private String author;
+        private final List<MetaValidation.Dependency> dependencies = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        /**
+         * Reports {@code problem} unless it is null.
+         */
+        void check(String path, String problem) {
+            if (problem != null) {
+                error(path, problem);
+            }
+        }
+
+        void error(String path, String problem) {
+            if (errors.size() < MAX_ERRORS && !errors.contains(path + ": " + problem)) {
+                errors.add(path + ": " + problem);
+            }
+        }
+
+        MetaValidation toValidation(byte[] document) {
+            return new MetaValidation(name, version, author, List.copyOf(dependencies), List.copyOf(errors), document);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.repsy.repsy_api.packages;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("repsy.metadata")
+public class MetadataProperties {
+
+    /**
+     * Number of meta.json documents kept in memory in front of the database. Zero disables the cache.
+     */
+    private int cacheSize = 10_000;
+
+    /**
+     * How long a cached document is served before it is read again. Bounds staleness on other instances
+     * after a version is deleted and deployed again.
+     */
+    private Duration cacheTtl = Duration.ofMinutes(10);
+
+    /**
+     * Largest meta.json accepted, in bytes. Larger documents are rejected before they are parsed.
+     */
+    private int maxDocumentBytes = 256 * 1024;
+
+    /**
+     * Deepest nesting of objects and arrays accepted in a meta.json, counting the document itself.
+     */
+    private int maxDepth = 32;
+
+    /**
+     * Most dependencies a meta.json may declare.
+     */
+    private int maxDependencies = 1000;
+
+    /**
+     * Most documents accepted by one POST /metadata/validate request.
+     */
+    private int maxValidateDocuments = 100;
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    public int getMaxDocumentBytes() {
+        return maxDocumentBytes;
+    }
+
+    public void setMaxDocumentBytes(int maxDocumentBytes) {
+        this.maxDocumentBytes = maxDocumentBytes;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public int getMaxDependencies() {
+        return maxDependencies;
+    }
+
+    public void setMaxDependencies(int maxDependencies) {
+        this.maxDependencies = maxDependencies;
+    }
+
+    public int getMaxValidateDocuments() {
+        return maxValidateDocuments;
+    }
+
+    public void setMaxValidateDocuments(int maxValidateDocuments) {
+        this.maxValidateDocuments = maxValidateDocuments;
+    }
+}
@@ -0,0 +1,200 @@
+package com.repsy.repsy_api.packages;
+
+import com.repsy.repsy_api.compression.PackageCompressionService;
+import com.repsy.repsy_api.tracing.TraceAttributes;
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Serves meta.json documents from the package rows (where deploy keeps the raw document), behind a small LRU
+ * cache. Versions are immutable, so a cached document only goes stale when its version is deleted.
+ */
+@Service
+public class MetadataService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataService.class);
+
+    private static final String DB_SYSTEM = "postgresql";
+
+    private final PackageMetadataRepository packageRepository;
+    private final PackageCompressionService compressionService;
+    private final MetadataProperties properties;
+    private final Map<String, CachedDocument> cache;
+
+    @Autowired
+    public MetadataService(PackageMetadataRepository packageRepository, PackageCompressionService compressionService,
+                           MetadataProperties properties) {
+        this.packageRepository = packageRepository;
+        this.compressionService = compressionService;
+        this.properties = properties;
+        int cacheSize = properties.getCacheSize();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedDocument> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return The meta.json of the version, or empty if the version does not exist.
+     */
+    public Optional<MetaDocument> find(String packageName, String version) {
+        MetaDocument cached = cached(packageName + "@" + version);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<PackageDocument> row = Tracing.inSpan("db.find_meta", span -> {
+            span.setAttribute(TraceAttributes.DB_SYSTEM, DB_SYSTEM);
+            span.setAttribute(TraceAttributes.DB_OPERATION, "SELECT");
+            return packageRepository.findDocumentByNameAndVersion(packageName, version);
+        });
+        return row.map(this::toDocument);
+    }
+
+    /**
+     * Looks up many versions at once: cached documents are served from memory, the rest with a single query.
+     *
+     * @param coordinates {@code name@version} strings.
+     * @return The documents found, keyed by the requested {@code name@version}; versions that do not exist are absent.
+     */
+    public Map<String, MetaDocument> findAll(Collection<String> coordinates) {
+        Map<String, MetaDocument> found = new LinkedHashMap<>();
+        Set<String> uncached = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        Set<String> versions = new HashSet<>();
+        for (String coordinate : coordinates) {
+            int at = coordinate.lastIndexOf('@');
+            if (at <= 0 || at == coordinate.length() - 1) {
+                throw new PackageService.InvalidFileException("Expected name@version, got: " + coordinate);
+            }
+            MetaDocument cached = cached(coordinate);
+            if (cached != null) {
+                found.put(coordinate, cached);
+            } else {
+                uncached.add(coordinate);
+                names.add(coordinate.substring(0, at));
+                versions.add(coordinate.substring(at + 1));
+            }
+        }
+        if (!uncached.isEmpty()) {
+            // The name IN / version IN superset uses the (name, version) index; exact pairs are matched here
+            List<PackageDocument> rows = Tracing.inSpan("db.find_meta", span -> {
+                span.setAttribute(TraceAttributes.DB_SYSTEM, DB_SYSTEM);
+                span.setAttribute(TraceAttributes.DB_OPERATION, "SELECT");
+                return packageRepository.findDocumentsByNameInAndVersionIn(names, versions);
+            });
+            for (PackageDocument row : rows) {
+                String coordinate = row.getName() + "@" + row.getVersion();
+                if (uncached.contains(coordinate)) {
+                    found.put(coordinate, toDocument(row));
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Tells which of the given versions are deployed, with a single query.
+     *
+     * @param coordinates {@code name@version} strings.
+     * @return The requested {@code name@version} strings that exist.
+     */
+    public Set<String> findDeployed(Collection<String> coordinates) {
+        Set<String> names = new HashSet<>();
+        Set<String> versions = new HashSet<>();
+        for (String coordinate : coordinates) {
+            int at = coordinate.lastIndexOf('@');
+            names.add(coordinate.substring(0, at));
+            versions.add(coordinate.substring(at + 1));
+        }
+        if (names.isEmpty()) {
+            return Set.of();
+        }
+        List<PackageCoordinates> rows = Tracing.inSpan("db.find_packages", span -> {
+            span.setAttribute(TraceAttributes.DB_SYSTEM, DB_SYSTEM);
+            span.setAttribute(TraceAttributes.DB_OPERATION, "SELECT");
+            return packageRepository.findByNameInAndVersionIn(names, versions);
+        });
+        Set<String> deployed = new HashSet<>();
+        for (PackageCoordinates row : rows) {
+            String coordinate = row.getName() + "@" + row.getVersion();
+            if (coordinates.contains(coordinate)) {
+                deployed.add(coordinate);
+            }
+        }
+        return deployed;
+    }
+
+    /**
+     * Drops a version's document from the cache, e.g. after the version was deleted.
+     */
+    public void evict(String packageName, String version) {
+        synchronized (cache) {
+            cache.remove(packageName + "@" + version);
+        }
+    }
+
+    private MetaDocument cached(String coordinate) {
+        if (properties.getCacheSize() <= 0) {
+            return null;
+        }
+        synchronized (cache) {
+            CachedDocument entry = cache.get(coordinate);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.loadedAtNanos() > properties.getCacheTtl().toNanos()) {
+                cache.remove(coordinate);
+                return null;
+            }
+            return entry.document();
+        }
+    }
+
+    private MetaDocument toDocument(PackageDocument row) {
+        String json = row.getDependenciesJson();
+        if (json == null) {
+            json = loadFromStorage(row.getName(), row.getVersion());
+        }
+        MetaDocument document = MetaDocument.of(row.getName(), row.getVersion(), json);
+        if (properties.getCacheSize() > 0) {
+            synchronized (cache) {
+                cache.put(document.coordinates(), new CachedDocument(document, System.nanoTime()));
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Rows written before the raw document was kept in the database only have the stored file.
+     */
+    private String loadFromStorage(String packageName, String version) {
+        logger.warn("No meta.json in the database for {}/{}, reading it from storage", packageName, version);
+        String path = Paths.get(packageName, version, "meta.json").toString();
+        try (InputStream in = compressionService.load(path, null).resource().getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new StorageException("Could not read meta.json of " + packageName + "/" + version, e);
+        }
+    }
+
+    private record CachedDocument(MetaDocument document, long loadedAtNanos) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.repsy.repsy_api.packages;
+
+/**
+ * Projection of a package row to the digest of its .rep file, used to deploy by reference.
+ */
+public interface PackageBlob {
+
+    String getName();
+
+    String getVersion();
+
+    String getRepSha256();
+
+    Long getRepSize();
+}
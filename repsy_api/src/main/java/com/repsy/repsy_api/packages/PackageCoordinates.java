@@ -0,0 +1,11 @@
+package com.repsy.repsy_api.packages;
+
+/**
+ * Projection of a package row to its name and version, used by bulk existence checks.
+ */
+public interface PackageCoordinates {
+
+    String getName();
+
+    String getVersion();
+}
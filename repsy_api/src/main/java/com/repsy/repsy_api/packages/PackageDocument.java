@@ -0,0 +1,13 @@
+package com.repsy.repsy_api.packages;
+
+/**
+ * Projection of a package row to its raw meta.json, used to serve metadata without touching storage.
+ */
+public interface PackageDocument {
+
+    String getName();
+
+    String getVersion();
+
+    String getDependenciesJson();
+}
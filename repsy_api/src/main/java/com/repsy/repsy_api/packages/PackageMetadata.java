@@ -1,5 +1,6 @@
 package com.repsy.repsy_api.packages;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
@@ -12,9 +13,18 @@ import java.util.Objects;
 @Entity
 @Table(name = "packages", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"name", "version"}) // Ensure name+version combination is unique
+}, indexes = {
+        @Index(name = "idx_packages_rep_sha256", columnList = "rep_sha256"), // Deploy pre-flight lookups by content
+        @Index(name = "idx_packages_name_created_at", columnList = "name, created_at DESC, id DESC"), // Retention keep-last
+        @Index(name = "idx_packages_created_at", columnList = "created_at, id") // Retention older-than
 })
 public class PackageMetadata {
 
+    /**
+     * Semantic version of a package (also checked by {@link MetaSchema} before a deploy).
+     */
+    public static final String VERSION_PATTERN = "^(0|[1-9]\\d*)\\.(0|[1-9]\\d*)\\.(0|[1-9]\\d*)(?:-((?:0|[1-9]\\d*|\\d*[a-zA-Z-][0-9a-zA-Z-]*)(?:\\.(?:0|[1-9]\\d*|\\d*[a-zA-Z-][0-9a-zA-Z-]*))*))?(?:\\+([0-9a-zA-Z-]+(?:\\.[0-9a-zA-Z-]+)*))?$";
+
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "package_seq")
     @SequenceGenerator(name = "package_seq", sequenceName = "package_sequence", allocationSize = 1)
@@ -26,7 +36,7 @@ public class PackageMetadata {
 
     @NotBlank(message = "Version cannot be blank")
     // Basic semantic versioning pattern (adjust regex as needed for complexity)
-    @Pattern(regexp = "^(0|[1-9]\\d*)\\.(0|[1-9]\\d*)\\.(0|[1-9]\\d*)(?:-((?:0|[1-9]\\d*|\\d*[a-zA-Z-][0-9a-zA-Z-]*)(?:\\.(?:0|[1-9]\\d*|\\d*[a-zA-Z-][0-9a-zA-Z-]*))*))?(?:\\+([0-9a-zA-Z-]+(?:\\.[0-9a-zA-Z-]+)*))?$", message = "Version must follow semantic versioning (e.g., 1.0.0)")
+    @Pattern(regexp = VERSION_PATTERN, message = "Version must follow semantic versioning (e.g., 1.0.0)")
     @Column(nullable = false)
     private String version;
 
@@ -37,6 +47,15 @@ public class PackageMetadata {
     @JdbcTypeCode(SqlTypes.JSON) // Hint for Hibernate/JDBC driver
     private String dependenciesJson;
 
+    // SHA-256 (lowercase hex) and size of the .rep file; null for packages deployed before digests were recorded
+    @JsonIgnore
+    @Column(name = "rep_sha256", length = 64)
+    private String repSha256;
+
+    @JsonIgnore
+    @Column(name = "rep_size")
+    private Long repSize;
+
     @Column(nullable = false, updatable = false)
     private Instant createdAt = Instant.now(); // Record creation timestamp
 
@@ -82,6 +101,22 @@ public class PackageMetadata {
         this.dependenciesJson = dependenciesJson;
     }
 
+    public String getRepSha256() {
+        return repSha256;
+    }
+
+    public void setRepSha256(String repSha256) {
+        this.repSha256 = repSha256;
+    }
+
+    public Long getRepSize() {
+        return repSize;
+    }
+
+    public void setRepSize(Long repSize) {
+        this.repSize = repSize;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -2,10 +2,14 @@ package com.repsy.repsy_api.packages;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository // Mark this interface as a Spring Data repository
+@Transactional(readOnly = true) // Query methods below are reads (and may be served by a replica); save() keeps its own
 public interface PackageMetadataRepository extends JpaRepository<PackageMetadata, Long> {
 
     /**
@@ -17,5 +21,61 @@ public interface PackageMetadataRepository extends JpaRepository<PackageMetadata
      */
     Optional<PackageMetadata> findByNameAndVersion(String name, String version);
 
+    /**
+     * Checks whether a package version exists without loading the row.
+     *
+     * @param name The name of the package.
+     * @param version The version of the package.
+     * @return true if the name/version combination exists.
+     */
+    boolean existsByNameAndVersion(String name, String version);
+
+    /**
+     * Finds the coordinates of all packages whose name and version are among the given values,
+     * in a single query. The result is a superset of the exact name/version pairs; callers match pairs in memory.
+     *
+     * @param names The candidate package names (must not be empty).
+     * @param versions The candidate versions (must not be empty).
+     * @return Name/version projections of the matching rows.
+     */
+    List<PackageCoordinates> findByNameInAndVersionIn(Collection<String> names, Collection<String> versions);
+
+    /**
+     * Finds the packages whose .rep file has one of the given SHA-256 digests, in a single indexed query.
+     *
+     * @param sha256s Lowercase hex digests (must not be empty).
+     * @return Digest projections of the matching rows; several versions may share a digest.
+     */
+    List<PackageBlob> findByRepSha256In(Collection<String> sha256s);
+
+    /**
+     * Finds the .rep digests of all packages whose name and version are among the given values, in a single query.
+     * Like {@link #findByNameInAndVersionIn}, the result is a superset of the exact pairs.
+     *
+     * @param names The candidate package names (must not be empty).
+     * @param versions The candidate versions (must not be empty).
+     * @return Digest projections of the matching rows.
+     */
+    List<PackageBlob> findBlobsByNameInAndVersionIn(Collection<String> names, Collection<String> versions);
+
+    /**
+     * Finds the raw meta.json of a package version with the (name, version) index, without loading the entity.
+     *
+     * @param name The name of the package.
+     * @param version The version of the package.
+     * @return The document projection, or empty if the version does not exist.
+     */
+    Optional<PackageDocument> findDocumentByNameAndVersion(String name, String version);
+
+    /**
+     * Finds the raw meta.json of all packages whose name and version are among the given values, in a single query.
+     * Like {@link #findByNameInAndVersionIn}, the result is a superset of the exact pairs.
+     *
+     * @param names The candidate package names (must not be empty).
+     * @param versions The candidate versions (must not be empty).
+     * @return Document projections of the matching rows.
+     */
+    List<PackageDocument> findDocumentsByNameInAndVersionIn(Collection<String> names, Collection<String> versions);
+
     // Spring Data JPA will automatically implement this method based on its name
 } 
\ No newline at end of file
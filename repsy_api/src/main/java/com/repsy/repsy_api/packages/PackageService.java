@@ -1,15 +1,23 @@
 package com.repsy.repsy_api.packages;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repsy.repsy_api.changes.ChangeFeed;
+import com.repsy.repsy_api.changes.PackageChange;
+import com.repsy.repsy_api.compression.PackageCompressionService;
+import com.repsy.repsy_api.datasource.ReplicaRouting;
+import com.repsy.repsy_api.tracing.TraceAttributes;
 import com.repsy.storage.api.StorageException;
 import com.repsy.storage.api.StorageFileNotFoundException;
 import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import com.repsy.storage.api.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -17,22 +25,49 @@ import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class PackageService {
 
     private static final Logger logger = LoggerFactory.getLogger(PackageService.class);
 
+    /**
+     * Storage key prefix under which deploy uploads wait until their version has been claimed.
+     */
+    static final String STAGING_PREFIX = "_staging";
+
+    private static final String DB_SYSTEM = "postgresql";
+
     private final PackageMetadataRepository packageRepository;
     private final StorageService storageService;
-    private final ObjectMapper objectMapper; // For parsing meta.json
+    private final MetaValidator metaValidator; // Parses and validates meta.json
+    private final PackageCompressionService compressionService; // Writes pre-compressed variants when enabled
+    private final TransactionTemplate transactionTemplate; // Claim step of a deploy, and its compensation
+    private final ChangeFeed changeFeed; // Deploys are published to mirrors through GET /changes
+    private final MetadataService metadataService; // Evicted when a failed deploy withdraws its claim
 
     @Autowired
-    public PackageService(PackageMetadataRepository packageRepository, StorageService storageService, ObjectMapper objectMapper) {
+    public PackageService(PackageMetadataRepository packageRepository, StorageService storageService, MetaValidator metaValidator,
+                          PackageCompressionService compressionService, PlatformTransactionManager transactionManager,
+                          ChangeFeed changeFeed, MetadataService metadataService) {
         this.packageRepository = packageRepository;
         this.storageService = storageService;
-        this.objectMapper = objectMapper;
+        this.metaValidator = metaValidator;
+        this.compressionService = compressionService;
+        this.changeFeed = changeFeed;
+        this.metadataService = metadataService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -47,10 +82,10 @@ public class PackageService {
      * @throws InvalidFileException if repFile or metaFile is empty.
      * @throws StorageException if there's an error storing the files.
      */
-    @Transactional // Ensure atomicity: either all succeed (DB + file storage) or all fail
+    // Not @Transactional: uploads are staged and promoted outside the transaction, only the claim runs in one
     public void deployPackage(String packageName, String version, MultipartFile repFile, MultipartFile metaFile)
             throws PackageAlreadyExistsException, InvalidMetadataException, InvalidFileException, StorageException {
-        logger.info("Attempting to deploy package: {} version: {}", packageName, version);
+        logger.debug("Attempting to deploy package: {} version: {}", packageName, version);
 
         // --- Start: Added empty file checks ---
         if (repFile == null || repFile.isEmpty()) {
@@ -63,68 +98,400 @@ public class PackageService {
         }
         // --- End: Added empty file checks ---
 
-        // 1. Check if package version already exists
-        Optional<PackageMetadata> existingPackage = packageRepository.findByNameAndVersion(packageName, version);
-        if (existingPackage.isPresent()) {
-            logger.warn("Deployment failed: Package {} version {} already exists.", packageName, version);
-            throw new PackageAlreadyExistsException("Package '" + packageName + "' version '" + version + "' already exists.");
-        }
-
-        // 2. Parse and validate meta.json
-        PackageMetadata metadata;
-        String rawJsonDependencies;
-        try (InputStream metaInputStream = metaFile.getInputStream()) {
-            // Read all bytes first to allow parsing and storing raw JSON
-            byte[] metaBytes = metaInputStream.readAllBytes();
-            rawJsonDependencies = new String(metaBytes);
-            metadata = objectMapper.readValue(metaBytes, PackageMetadata.class);
-
-            // Basic validation: Check if name and version from URL match meta.json content
-            if (!packageName.equals(metadata.getName()) || !version.equals(metadata.getVersion())) {
-                logger.error("Metadata mismatch: URL ({}/{}) vs meta.json ({}/{})",
-                        packageName, version, metadata.getName(), metadata.getVersion());
-                throw new InvalidMetadataException("Package name or version in meta.json does not match the deployment URL.");
+        Tracing.runInSpan("deploy", span -> {
+            span.setAttribute(TraceAttributes.PACKAGE_NAME, packageName);
+            span.setAttribute(TraceAttributes.PACKAGE_VERSION, version);
+            span.setAttribute(Tracing.BYTES, repFile.getSize() + metaFile.getSize());
+
+            // 1. Parse and validate meta.json
+            ParsedMetadata parsed = parseMetadata(packageName, version, metaFile);
+            PackageMetadata metadata = parsed.metadata();
+
+            // 2. Stage the files under a unique key; nothing becomes visible under the package path yet
+            BlobDigest repDigest = Tracing.inSpan("deploy.digest", digestSpan -> BlobDigest.of(repFile));
+            metadata.setRepSha256(repDigest.sha256());
+            metadata.setRepSize(repDigest.size());
+            Path stagingPath = Paths.get(STAGING_PREFIX, UUID.randomUUID().toString());
+            List<Path> stagedFiles = new ArrayList<>();
+            stage(packageName, version, stagedFiles, () -> {
+                Path repFilePath = stagingPath.resolve(repFileName(packageName, version));
+                logger.debug("Staging .rep file to: {}", repFilePath);
+                stagedFiles.addAll(compressionService.store(repFile, repFilePath));
+                stageMetaFile(parsed, metaFile, stagingPath, stagedFiles);
+            });
+
+            // 3. Claim the version and promote the staged files
+            claimAndPromote(packageName, version, metadata, stagedFiles);
+        });
+        logger.info("Successfully deployed package: {} version: {}", packageName, version);
+    }
+
+    /**
+     * Deploys a new package version whose .rep file the server already stores under another version,
+     * as reported by {@link #findStoredBlobs(Collection)}. The stored file is copied on the storage side,
+     * so the client only uploads meta.json.
+     *
+     * @param packageName The name of the package.
+     * @param version     The version of the package.
+     * @param repDigest   SHA-256 and size of the .rep file.
+     * @param metaFile    The meta.json file.
+     * @throws BlobNotFoundException if no stored .rep file matches the digest; the client should upload the bytes.
+     */
+    public void deployPackage(String packageName, String version, BlobDigest repDigest, MultipartFile metaFile)
+            throws PackageAlreadyExistsException, InvalidMetadataException, InvalidFileException, BlobNotFoundException, StorageException {
+        logger.debug("Attempting to deploy package: {} version: {} from stored blob {}", packageName, version, repDigest.sha256());
+
+        if (metaFile == null || metaFile.isEmpty()) {
+            logger.warn("Deployment failed: metaFile is empty for {}/{}", packageName, version);
+            throw new InvalidFileException("'metaFile' cannot be empty.");
+        }
+        PackageBlob source = Tracing.inSpan("deploy", span -> {
+            span.setAttribute(TraceAttributes.PACKAGE_NAME, packageName);
+            span.setAttribute(TraceAttributes.PACKAGE_VERSION, version);
+            span.setAttribute(Tracing.BYTES, metaFile.getSize());
+
+            ParsedMetadata parsed = parseMetadata(packageName, version, metaFile);
+            PackageMetadata metadata = parsed.metadata();
+            metadata.setRepSha256(repDigest.sha256());
+            metadata.setRepSize(repDigest.size());
+
+            PackageBlob blob = findStoredBlob(repDigest)
+                    .orElseThrow(() -> new BlobNotFoundException("No stored .rep file matches sha256 " + repDigest.sha256()
+                            + " and size " + repDigest.size() + "; upload the file instead."));
+
+            Path stagingPath = Paths.get(STAGING_PREFIX, UUID.randomUUID().toString());
+            List<Path> stagedFiles = new ArrayList<>();
+            stage(packageName, version, stagedFiles, () -> {
+                Path sourcePath = Paths.get(blob.getName(), blob.getVersion(), repFileName(blob.getName(), blob.getVersion()));
+                Path repFilePath = stagingPath.resolve(repFileName(packageName, version));
+                logger.debug("Copying stored blob {} to: {}", sourcePath, repFilePath);
+                stagedFiles.addAll(compressionService.copy(sourcePath, repFilePath));
+                stageMetaFile(parsed, metaFile, stagingPath, stagedFiles);
+            });
+
+            claimAndPromote(packageName, version, metadata, stagedFiles);
+            return blob;
+        });
+        logger.info("Successfully deployed package: {} version: {} from stored blob of {}/{}",
+                packageName, version, source.getName(), source.getVersion());
+    }
+
+    /**
+     * Deploys a new package version whose .rep file was uploaded in parts, e.g. the chunks of a resumable upload.
+     * The parts are joined on the storage side into the staging area, then hashed and compressed from storage,
+     * so the file is never held by this instance as a whole. The parts themselves are left in place.
+     *
+     * @param packageName    The name of the package.
+     * @param version        The version of the package.
+     * @param repParts       The storage keys of the parts, in order.
+     * @param expectedSha256 The SHA-256 the client computed (lowercase hex), or null to skip the check.
+     * @param metaFile       The meta.json file.
+     * @return The digest of the assembled .rep file.
+     * @throws InvalidFileException if metaFile is empty or the assembled file does not match {@code expectedSha256}.
+     * @throws StorageFileNotFoundException if a part does not exist.
+     */
+    public BlobDigest deployAssembled(String packageName, String version, List<String> repParts, String expectedSha256,
+                                      MultipartFile metaFile)
+            throws PackageAlreadyExistsException, InvalidMetadataException, InvalidFileException, StorageException {
+        logger.debug("Attempting to deploy package: {} version: {} from {} uploaded parts", packageName, version, repParts.size());
+
+        if (metaFile == null || metaFile.isEmpty()) {
+            logger.warn("Deployment failed: metaFile is empty for {}/{}", packageName, version);
+            throw new InvalidFileException("'metaFile' cannot be empty.");
+        }
+        BlobDigest repDigest = Tracing.inSpan("deploy", span -> {
+            span.setAttribute(TraceAttributes.PACKAGE_NAME, packageName);
+            span.setAttribute(TraceAttributes.PACKAGE_VERSION, version);
+
+            ParsedMetadata parsed = parseMetadata(packageName, version, metaFile);
+            PackageMetadata metadata = parsed.metadata();
+
+            Path stagingPath = Paths.get(STAGING_PREFIX, UUID.randomUUID().toString());
+            Path repFilePath = stagingPath.resolve(repFileName(packageName, version));
+            List<Path> stagedFiles = new ArrayList<>();
+            AtomicReference<BlobDigest> digest = new AtomicReference<>();
+            stage(packageName, version, stagedFiles, () -> {
+                Tracing.runInSpan("deploy.assemble", assembleSpan -> storageService.compose(repParts, toKey(repFilePath)));
+                stagedFiles.add(repFilePath);
+                digest.set(Tracing.inSpan("deploy.digest", digestSpan ->
+                        BlobDigest.of(() -> storageService.openStream(toKey(repFilePath)), "repFile")));
+                if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(digest.get().sha256())) {
+                    throw new InvalidFileException("The assembled file has sha256 " + digest.get().sha256()
+                            + ", expected " + expectedSha256 + ".");
+                }
+                // Variants replace the assembled original unless it is kept
+                List<Path> repFiles = compressionService.compressStored(repFilePath);
+                stagedFiles.clear();
+                stagedFiles.addAll(repFiles);
+                stageMetaFile(parsed, metaFile, stagingPath, stagedFiles);
+            });
+            metadata.setRepSha256(digest.get().sha256());
+            metadata.setRepSize(digest.get().size());
+            span.setAttribute(Tracing.BYTES, digest.get().size() + metaFile.getSize());
+
+            claimAndPromote(packageName, version, metadata, stagedFiles);
+            return digest.get();
+        });
+        logger.info("Successfully deployed package: {} version: {} from {} uploaded parts", packageName, version, repParts.size());
+        return repDigest;
+    }
+
+    /**
+     * Answers a deploy pre-flight: which of the given .rep files the server already stores.
+     * Candidates come from a single query; each is then confirmed with a metadata-only storage lookup.
+     *
+     * @param digests SHA-256 and size of the client's files.
+     * @return The subset of {@code digests} that can be deployed by reference.
+     */
+    public List<BlobDigest> findStoredBlobs(Collection<BlobDigest> digests) {
+        if (digests.isEmpty()) {
+            return List.of();
+        }
+        Set<String> hashes = new HashSet<>();
+        digests.forEach(digest -> hashes.add(digest.sha256()));
+        Map<BlobDigest, List<PackageBlob>> candidates = new HashMap<>();
+        for (PackageBlob blob : findBlobsByHash(hashes)) {
+            if (blob.getRepSize() == null) {
+                continue;
             }
-            // Store the raw JSON string
-            metadata.setDependenciesJson(rawJsonDependencies);
+            candidates.computeIfAbsent(new BlobDigest(blob.getRepSha256(), blob.getRepSize()), key -> new ArrayList<>()).add(blob);
+        }
+
+        List<BlobDigest> stored = new ArrayList<>();
+        for (BlobDigest digest : new LinkedHashSet<>(digests)) {
+            List<PackageBlob> matches = candidates.getOrDefault(digest, List.of());
+            if (matches.stream().anyMatch(this::isStored)) {
+                stored.add(digest);
+            }
+        }
+        return stored;
+    }
+
+    private Optional<PackageBlob> findStoredBlob(BlobDigest digest) {
+        return findBlobsByHash(List.of(digest.sha256())).stream()
+                .filter(blob -> blob.getRepSize() != null && blob.getRepSize() == digest.size())
+                .filter(this::isStored)
+                .findFirst();
+    }
+
+    private List<PackageBlob> findBlobsByHash(Collection<String> hashes) {
+        return Tracing.inSpan("db.find_blobs", span -> {
+            span.setAttribute(TraceAttributes.DB_SYSTEM, DB_SYSTEM);
+            span.setAttribute(TraceAttributes.DB_OPERATION, "SELECT");
+            return packageRepository.findByRepSha256In(hashes);
+        });
+    }
+
+    private boolean isStored(PackageBlob blob) {
+        Path path = Paths.get(blob.getName(), blob.getVersion(), repFileName(blob.getName(), blob.getVersion()));
+        Optional<StoredObject> original = storageService.stat(toKey(path));
+        if (original.isPresent()) {
+            return original.get().getSize() == blob.getRepSize();
+        }
+        // Only compressed variants may be stored (keepIdentity=false)
+        return !compressionService.findStoredVariants(path).isEmpty();
+    }
+
+    private static String repFileName(String packageName, String version) {
+        return packageName + "-" + version + ".rep";
+    }
+
+    private ParsedMetadata parseMetadata(String packageName, String version, MultipartFile metaFile) {
+        return Tracing.inSpan("deploy.parse_metadata", span -> readMetadata(packageName, version, metaFile));
+    }
 
+    private ParsedMetadata readMetadata(String packageName, String version, MultipartFile metaFile) {
+        MetaValidation validation;
+        try {
+            validation = metaValidator.validate(metaFile);
         } catch (IOException e) {
             logger.error("Failed to read meta.json for {}/{}", packageName, version, e);
             throw new InvalidMetadataException("Failed to read meta.json.", e);
-        } catch (Exception e) { // Catch potential JSON parsing errors
-            logger.error("Invalid JSON format in meta.json for {}/{}", packageName, version, e);
-            throw new InvalidMetadataException("Invalid JSON format in meta.json.", e);
+        }
+        if (!validation.isValid()) {
+            logger.warn("Invalid meta.json for {}/{}: {}", packageName, version, validation.errors());
+            throw new InvalidMetadataException(String.join("; ", validation.errors()));
+        }
+        // Basic validation: Check if name and version from URL match meta.json content
+        if (!packageName.equals(validation.name()) || !version.equals(validation.version())) {
+            logger.error("Metadata mismatch: URL ({}/{}) vs meta.json ({}/{})",
+                    packageName, version, validation.name(), validation.version());
+            throw new InvalidMetadataException("Package name or version in meta.json does not match the deployment URL.");
         }
 
-        // 3. Store the files using StorageService
-        Path packageRootPath = Paths.get(packageName, version);
-        Path repFilePath = packageRootPath.resolve(packageName + "-" + version + ".rep");
-        Path metaFilePath = packageRootPath.resolve("meta.json");
+        PackageMetadata metadata = new PackageMetadata();
+        metadata.setName(validation.name());
+        metadata.setVersion(validation.version());
+        metadata.setAuthor(validation.author());
+        metadata.setDependenciesJson(validation.json()); // The raw document, served as meta.json
+        return new ParsedMetadata(metadata, validation.document());
+    }
+
+    /**
+     * A validated meta.json: the row to insert and the document's bytes as uploaded, staged without re-encoding.
+     */
+    private record ParsedMetadata(PackageMetadata metadata, byte[] document) {
+    }
+
+    /**
+     * Stages meta.json as uploaded, without compressed variants: clients are served the document from the
+     * package row (see {@link MetadataService}), so the stored copy is only read back in its identity form.
+     */
+    private void stageMetaFile(ParsedMetadata parsed, MultipartFile metaFile, Path stagingPath, List<Path> stagedFiles) {
+        Path metaFilePath = stagingPath.resolve("meta.json");
+        logger.debug("Staging meta.json file to: {}", metaFilePath);
+        // Re-use the already read meta.json bytes to avoid reading the file again
+        storageService.store(new ByteArrayMultipartFile(metaFile.getName(), metaFile.getOriginalFilename(),
+                metaFile.getContentType(), parsed.document()), metaFilePath);
+        stagedFiles.add(metaFilePath);
+    }
 
+    /**
+     * Runs the staging writes of a deploy, discarding whatever was staged if one of them fails.
+     */
+    private void stage(String packageName, String version, List<Path> stagedFiles, Runnable writes) {
         try {
-            logger.debug("Storing .rep file to: {}", repFilePath);
-            storageService.store(repFile, repFilePath);
-            logger.debug("Storing meta.json file to: {}", metaFilePath);
-            // Re-use the already read metaBytes to avoid reading the file again
-            storageService.store(new ByteArrayMultipartFile(metaFile.getName(), metaFile.getOriginalFilename(), metaFile.getContentType(), rawJsonDependencies.getBytes()), metaFilePath);
+            Tracing.runInSpan("deploy.stage", span -> writes.run());
+        } catch (InvalidFileException e) {
+            discardStaged(stagedFiles);
+            throw e;
         } catch (StorageException e) { // Catch specific storage exception
-            logger.error("Storage failed during deployment of {}/{}. DB changes will be rolled back.", packageName, version, e);
+            logger.error("Storage failed during deployment of {}/{}. Staged files will be discarded.", packageName, version, e);
+            discardStaged(stagedFiles);
             throw e; // Re-throw the original StorageException
         } catch (Exception e) {
-            logger.error("Unexpected storage error during deployment of {}/{}. DB changes will be rolled back.", packageName, version, e);
+            logger.error("Unexpected storage error during deployment of {}/{}. Staged files will be discarded.", packageName, version, e);
+            discardStaged(stagedFiles);
             throw new StorageException("Failed to store package files due to an unexpected error.", e);
         }
+    }
 
-        // 4. Save metadata to the database
+    /**
+     * Claims the version with a single insert and promotes the staged files once the claim has committed.
+     * Storage moves are not held inside the transaction, so a slow promotion never keeps the row locked; if it
+     * fails, the claim is withdrawn again (see {@link #withdrawClaim}). The deploy is recorded for the change feed
+     * only after the files are in place, so mirrors are never told about a version they cannot download yet.
+     * The (name, version) unique constraint arbitrates concurrent deploys, so no pre-check query is needed:
+     * a concurrent insert of the same version waits on the index and fails once this one commits.
+     */
+    private void claimAndPromote(String packageName, String version, PackageMetadata metadata, List<Path> stagedFiles) {
+        Path packageRootPath = Paths.get(packageName, version);
         try {
-            logger.debug("Saving metadata to database for {}/{}", packageName, version);
-            packageRepository.save(metadata);
+            transactionTemplate.executeWithoutResult(status -> {
+                logger.debug("Claiming {}/{} in the database", packageName, version);
+                Tracing.runInSpan("db.claim", span -> {
+                    span.setAttribute(TraceAttributes.DB_SYSTEM, DB_SYSTEM);
+                    span.setAttribute(TraceAttributes.DB_OPERATION, "INSERT");
+                    packageRepository.saveAndFlush(metadata);
+                });
+            });
+        } catch (DataIntegrityViolationException e) {
+            discardStaged(stagedFiles);
+            // Only reached on a failed insert, so the fast path never pays for this query
+            boolean exists = Tracing.inSpan("db.exists", span -> {
+                span.setAttribute(TraceAttributes.DB_SYSTEM, DB_SYSTEM);
+                span.setAttribute(TraceAttributes.DB_OPERATION, "SELECT");
+                // The winning insert just committed; a replica may not have it yet
+                return ReplicaRouting.onPrimary(() -> packageRepository.existsByNameAndVersion(packageName, version));
+            });
+            if (exists) {
+                logger.warn("Deployment failed: Package {} version {} already exists.", packageName, version);
+                throw new PackageAlreadyExistsException("Package '" + packageName + "' version '" + version + "' already exists.");
+            }
+            logger.error("Database save failed during deployment of {}/{}.", packageName, version, e);
+            throw new RuntimeException("Failed to save package metadata to database.", e);
         } catch (Exception e) {
-            logger.error("Database save failed during deployment of {}/{}. Files might have been stored but DB transaction will be rolled back.", packageName, version, e);
+            logger.error("Database save failed during deployment of {}/{}. Staged files will be discarded.", packageName, version, e);
+            discardStaged(stagedFiles);
             throw new RuntimeException("Failed to save package metadata to database.", e);
         }
 
-        logger.info("Successfully deployed package: {} version: {}", packageName, version);
+        try {
+            Tracing.runInSpan("deploy.promote", span -> promote(stagedFiles, packageRootPath));
+        } catch (RuntimeException e) {
+            logger.error("Promoting staged files failed during deployment of {}/{}. The claim will be withdrawn.", packageName, version, e);
+            discardStaged(stagedFiles);
+            withdrawClaim(packageName, version, metadata);
+            throw e instanceof StorageException ? e : new StorageException("Failed to promote the staged package files.", e);
+        }
+
+        publish(packageName, version, metadata);
+    }
+
+    /**
+     * Records the deploy for the change feed in its own short transaction. The version is already complete,
+     * so a failure here does not fail the deploy; it is logged so the missing change can be added by hand.
+     */
+    private void publish(String packageName, String version, PackageMetadata metadata) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> Tracing.runInSpan("db.publish", span -> {
+                span.setAttribute(TraceAttributes.DB_SYSTEM, DB_SYSTEM);
+                span.setAttribute(TraceAttributes.DB_OPERATION, "INSERT");
+                changeFeed.record(metadata.getId(), packageName, version, PackageChange.Type.DEPLOY);
+            }));
+        } catch (Exception e) {
+            logger.error("Could not record the deploy of {}/{} (id {}) in the change feed; mirrors will not see it.",
+                    packageName, version, metadata.getId(), e);
+        }
+    }
+
+    /**
+     * Compensates a committed claim whose files could not be promoted by deleting the row. The deploy was never
+     * published on the change feed, so there is nothing to retract there.
+     * If this fails too, the row is left behind without files and is logged for manual cleanup.
+     */
+    private void withdrawClaim(String packageName, String version, PackageMetadata metadata) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> Tracing.runInSpan("db.withdraw", span -> {
+                span.setAttribute(TraceAttributes.DB_SYSTEM, DB_SYSTEM);
+                span.setAttribute(TraceAttributes.DB_OPERATION, "DELETE");
+                packageRepository.deleteById(metadata.getId());
+            }));
+        } catch (Exception e) {
+            logger.error("Could not withdraw the claim of {}/{} (id {}); the row has no files and must be deleted manually.",
+                    packageName, version, metadata.getId(), e);
+        } finally {
+            // The row was visible between the two transactions, so its document may have been cached
+            metadataService.evict(packageName, version);
+        }
+    }
+
+    /**
+     * Moves staged files to their final package path. Runs after the claim has committed;
+     * files already moved are removed again if a later move fails.
+     */
+    private void promote(List<Path> stagedFiles, Path packageRootPath) {
+        List<String> promoted = new ArrayList<>(stagedFiles.size());
+        try {
+            for (Path staged : stagedFiles) {
+                String target = toKey(packageRootPath.resolve(staged.getFileName()));
+                storageService.move(toKey(staged), target);
+                promoted.add(target);
+            }
+        } catch (RuntimeException e) {
+            promoted.forEach(this::deleteQuietly);
+            throw e;
+        }
+    }
+
+    /**
+     * Best-effort removal of staged files after a failed deploy. Anything left behind under
+     * {@link #STAGING_PREFIX} is collected by the storage reconciler once its grace period has passed.
+     */
+    private void discardStaged(List<Path> stagedFiles) {
+        stagedFiles.forEach(staged -> deleteQuietly(toKey(staged)));
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            storageService.delete(key);
+        } catch (StorageException e) {
+            logger.warn("Could not delete {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static String toKey(Path path) {
+        return path.toString().replace("\\", "/");
     }
 
     // --- Custom Exception Classes (can be moved to separate files) ---
@@ -153,6 +520,12 @@ public class PackageService {
         }
     }
 
+    public static class BlobNotFoundException extends RuntimeException {
+        public BlobNotFoundException(String message) {
+            super(message);
+        }
+    }
+
     public static class InvalidFileException extends RuntimeException {
         public InvalidFileException(String message) {
             super(message);
@@ -182,7 +555,7 @@ public class PackageService {
         try {
             Resource resource = storageService.loadAsResource(filePathString);
             if (resource.exists() && resource.isReadable()) {
-                logger.info("Resource {} found for package {}/{}", filename, packageName, version);
+                logger.debug("Resource {} found for package {}/{}", filename, packageName, version);
                 return resource;
             } else {
                 logger.warn("Resource {} not found or not readable for package {}/{} at path {}", filename, packageName, version, filePathString);
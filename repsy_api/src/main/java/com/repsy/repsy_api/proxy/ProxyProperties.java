@@ -0,0 +1,128 @@
+package com.repsy.repsy_api.proxy;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("repsy.proxy")
+public class ProxyProperties {
+
+    /**
+     * Whether versions missing locally are fetched from the upstream repository and cached.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Base URL of the upstream Repsy instance, e.g. {@code https://repsy.example.com}.
+     */
+    private String upstreamUrl;
+
+    /**
+     * Timeout for connecting to the upstream.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Timeout until the upstream has sent the response headers.
+     */
+    private Duration responseTimeout = Duration.ofSeconds(30);
+
+    /**
+     * How long a request for a version that is already being fetched waits for that fetch to complete
+     * before it streams from the upstream itself (without caching). A fetch whose response has not started
+     * reading the upstream body within this time is dropped.
+     */
+    private Duration maxWait = Duration.ofMinutes(2);
+
+    /**
+     * How long an upstream 404 is remembered, so clients probing for missing versions do not reach the upstream.
+     */
+    private Duration notFoundTtl = Duration.ofSeconds(30);
+
+    /**
+     * Number of upstream 404s remembered.
+     */
+    private int notFoundCacheSize = 10_000;
+
+    /**
+     * Whether a fetch whose client disconnects is completed in the background, so the version is still cached.
+     */
+    private boolean completeAbandoned = true;
+
+    /**
+     * Threads that store completed fetches and finish abandoned ones.
+     */
+    private int backgroundThreads = 4;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getUpstreamUrl() {
+        return upstreamUrl;
+    }
+
+    public void setUpstreamUrl(String upstreamUrl) {
+        this.upstreamUrl = upstreamUrl;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public void setResponseTimeout(Duration responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public Duration getNotFoundTtl() {
+        return notFoundTtl;
+    }
+
+    public void setNotFoundTtl(Duration notFoundTtl) {
+        this.notFoundTtl = notFoundTtl;
+    }
+
+    public int getNotFoundCacheSize() {
+        return notFoundCacheSize;
+    }
+
+    public void setNotFoundCacheSize(int notFoundCacheSize) {
+        this.notFoundCacheSize = notFoundCacheSize;
+    }
+
+    public boolean isCompleteAbandoned() {
+        return completeAbandoned;
+    }
+
+    public void setCompleteAbandoned(boolean completeAbandoned) {
+        this.completeAbandoned = completeAbandoned;
+    }
+
+    public int getBackgroundThreads() {
+        return backgroundThreads;
+    }
+
+    public void setBackgroundThreads(int backgroundThreads) {
+        this.backgroundThreads = backgroundThreads;
+    }
+}
@@ -0,0 +1,568 @@
+package com.repsy.repsy_api.proxy;
+
+import com.repsy.repsy_api.compression.PackageCompressionService;
+import com.repsy.repsy_api.packages.PackageService;
+import com.repsy.repsy_api.tracing.TraceAttributes;
+import com.repsy.storage.api.SingleFlight;
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.Tracing;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pull-through cache of an upstream Repsy instance, for sites that reach the central repository over a slow link.
+ * <p>
+ * The first request for a version missing locally streams the upstream's .rep file to its client and tees it into
+ * a spool file. Once the download completes, the file and the upstream's meta.json are deployed locally like an
+ * upload, which stores the files and records the PackageMetadata row (and the change feed entry).
+ * Requests for a version that is already being fetched wait for that fetch and are served from local storage,
+ * so the upstream sends each version once.
+ */
+@Component
+public class PullThroughProxy {
+
+    private static final Logger logger = LoggerFactory.getLogger(PullThroughProxy.class);
+
+    private static final String META_FILE_NAME = "meta.json";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ProxyProperties properties;
+    private final PackageService packageService;
+    private final PackageCompressionService compressionService;
+    private final UpstreamClient upstream; // null when disabled
+    private final ExecutorService background; // null when disabled
+    private final SingleFlight<String, Optional<byte[]>> metaFlights;
+    private final ConcurrentHashMap<String, Fill> fills = new ConcurrentHashMap<>();
+    private final Map<String, Long> notFound; // name@version -> expiry (System.nanoTime), guarded by itself
+
+    private final LongAdder upstreamRequests = new LongAdder();
+    private final LongAdder coalescedRequests = new LongAdder();
+    private final LongAdder uncachedRequests = new LongAdder();
+    private final LongAdder notFoundHits = new LongAdder();
+    private final LongAdder versionsCached = new LongAdder();
+    private final LongAdder bytesCached = new LongAdder();
+    private final LongAdder fillFailures = new LongAdder();
+
+    @Autowired
+    public PullThroughProxy(ProxyProperties properties, PackageService packageService,
+                            PackageCompressionService compressionService) {
+        this.properties = properties;
+        this.packageService = packageService;
+        this.compressionService = compressionService;
+        this.metaFlights = new SingleFlight<>(properties.getMaxWait().toMillis());
+        int notFoundCacheSize = properties.getNotFoundCacheSize();
+        this.notFound = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > notFoundCacheSize;
+            }
+        };
+        if (properties.isEnabled()) {
+            this.upstream = new UpstreamClient(properties);
+            AtomicInteger threads = new AtomicInteger();
+            this.background = Executors.newFixedThreadPool(Math.max(1, properties.getBackgroundThreads()), runnable -> {
+                Thread thread = new Thread(runnable, "proxy-fill-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.info("Pull-through proxy enabled for upstream {}", properties.getUpstreamUrl());
+        } else {
+            this.upstream = null;
+            this.background = null;
+        }
+    }
+
+    /**
+     * The upstream could not be reached or answered with an error other than 404.
+     */
+    public static class UpstreamException extends RuntimeException {
+
+        public UpstreamException(String message) {
+            super(message);
+        }
+
+        public UpstreamException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public boolean isEnabled() {
+        return upstream != null;
+    }
+
+    /**
+     * Returns the upstream's meta.json of a version that does not exist locally. It is not stored on its own:
+     * the version is recorded locally when its .rep file is fetched.
+     *
+     * @return The document, or empty if the upstream does not have the version either.
+     * @throws UpstreamException If the upstream cannot be reached.
+     */
+    public Optional<byte[]> meta(String packageName, String version) {
+        String key = key(packageName, version);
+        if (isKnownMissing(key)) {
+            return Optional.empty();
+        }
+        Optional<byte[]> meta = metaFlights.execute(key, () -> Tracing.inSpan("proxy.meta", span -> {
+            span.setAttribute(TraceAttributes.PACKAGE_NAME, packageName);
+            span.setAttribute(TraceAttributes.PACKAGE_VERSION, version);
+            upstreamRequests.increment();
+            return upstream.read(packageName, version, META_FILE_NAME);
+        }));
+        if (meta.isEmpty()) {
+            rememberMissing(key);
+        }
+        return meta;
+    }
+
+    /**
+     * Returns a file of a version that is missing locally, fetching and caching the version on the way.
+     * Only .rep files are fetched this way; meta.json comes from {@link #meta}.
+     *
+     * @return The file, or empty if the upstream does not have it.
+     * @throws UpstreamException If the upstream cannot be reached.
+     */
+    public Optional<Resource> fetch(String packageName, String version, String fileName) {
+        if (!fileName.equals(packageName + "-" + version + ".rep")) {
+            return Optional.empty();
+        }
+        String key = key(packageName, version);
+        if (isKnownMissing(key)) {
+            return Optional.empty();
+        }
+        Fill fill = new Fill(key, packageName, version, fileName);
+        Fill leader = fills.putIfAbsent(key, fill);
+        if (leader != null) {
+            return follow(leader);
+        }
+        try {
+            Optional<Resource> resource = start(fill);
+            if (resource.isEmpty()) {
+                rememberMissing(key);
+                finish(fill, false);
+            }
+            return resource;
+        } catch (RuntimeException e) {
+            finish(fill, false);
+            throw e;
+        }
+    }
+
+    /**
+     * @return Request and cache counters, and the fetches in progress.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("upstreamUrl", properties.getUpstreamUrl());
+        stats.put("upstreamRequests", upstreamRequests.sum());
+        stats.put("coalescedRequests", coalescedRequests.sum());
+        stats.put("uncachedRequests", uncachedRequests.sum());
+        stats.put("notFoundHits", notFoundHits.sum());
+        stats.put("versionsCached", versionsCached.sum());
+        stats.put("bytesCached", bytesCached.sum());
+        stats.put("fillFailures", fillFailures.sum());
+        stats.put("fetchesInProgress", fills.size());
+        stats.put("metaFlights", metaFlights.stats());
+        return stats;
+    }
+
+    private Optional<Resource> start(Fill fill) {
+        return Tracing.inSpan("proxy.fetch", span -> {
+            span.setAttribute(TraceAttributes.PACKAGE_NAME, fill.packageName);
+            span.setAttribute(TraceAttributes.PACKAGE_VERSION, fill.version);
+            upstreamRequests.increment();
+            Optional<byte[]> meta = upstream.read(fill.packageName, fill.version, META_FILE_NAME);
+            if (meta.isEmpty()) {
+                return Optional.empty();
+            }
+            fill.meta = meta.get();
+            upstreamRequests.increment();
+            Optional<UpstreamClient.UpstreamFile> file = upstream.open(fill.packageName, fill.version, fill.fileName);
+            if (file.isEmpty()) {
+                return Optional.empty();
+            }
+            try {
+                fill.spool = Files.createTempFile("repsy-proxy-", ".rep");
+            } catch (IOException e) {
+                closeQuietly(file.get().body());
+                throw new StorageException("Could not create a spool file for " + fill.key, e);
+            }
+            logger.debug("Fetching {} from upstream ({} bytes announced)", fill.key, file.get().contentLength());
+            FillResource resource = new FillResource(fill, file.get());
+            // A response that fails before streaming never opens the body; without this the fill would stay in progress
+            CompletableFuture.delayedExecutor(properties.getMaxWait().toMillis(), TimeUnit.MILLISECONDS, background)
+                    .execute(resource::expireUnopened);
+            return Optional.of(resource);
+        });
+    }
+
+    /**
+     * Waits for the fetch in progress, then serves the version locally. If the fetch fails or takes longer than
+     * {@code max-wait}, the file is streamed from the upstream without caching.
+     */
+    private Optional<Resource> follow(Fill leader) {
+        coalescedRequests.increment();
+        boolean stored = false;
+        try {
+            stored = leader.done.get(properties.getMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            logger.debug("Gave up waiting for the upstream fetch of {}", leader.key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while waiting for the upstream fetch of " + leader.key, e);
+        }
+        if (stored) {
+            try {
+                return Optional.of(compressionService.load(leader.storagePath(), null).resource());
+            } catch (StorageFileNotFoundException e) {
+                logger.debug("{} was fetched but is no longer stored", leader.key);
+            }
+        }
+        if (isKnownMissing(leader.key)) {
+            return Optional.empty();
+        }
+        uncachedRequests.increment();
+        upstreamRequests.increment();
+        return upstream.open(leader.packageName, leader.version, leader.fileName).map(PassThroughResource::new);
+    }
+
+    /**
+     * Deploys a completely received file. Runs on a background thread so the client's response is not held up.
+     */
+    private void store(Fill fill, long size) {
+        boolean stored = false;
+        try {
+            packageService.deployPackage(fill.packageName, fill.version,
+                    SpooledMultipartFile.onDisk("repFile", fill.fileName, fill.spool),
+                    SpooledMultipartFile.inMemory("metaFile", META_FILE_NAME, fill.meta));
+            versionsCached.increment();
+            bytesCached.add(size);
+            stored = true;
+            logger.info("Cached {} from upstream ({} bytes)", fill.key, size);
+        } catch (PackageService.PackageAlreadyExistsException e) {
+            stored = true; // Deployed or cached by someone else in the meantime
+        } catch (RuntimeException e) {
+            fillFailures.increment();
+            logger.warn("Could not cache {} from upstream: {}", fill.key, e.getMessage());
+        } finally {
+            finish(fill, stored);
+        }
+    }
+
+    private void abort(Fill fill, String reason) {
+        fillFailures.increment();
+        logger.warn("Upstream fetch of {} failed: {}", fill.key, reason);
+        finish(fill, false);
+    }
+
+    private void finish(Fill fill, boolean stored) {
+        if (fill.spool != null) {
+            try {
+                Files.deleteIfExists(fill.spool);
+            } catch (IOException e) {
+                logger.debug("Could not delete spool file {}", fill.spool, e);
+            }
+        }
+        fills.remove(fill.key, fill);
+        fill.done.complete(stored);
+    }
+
+    private boolean isKnownMissing(String key) {
+        synchronized (notFound) {
+            Long expiry = notFound.get(key);
+            if (expiry == null) {
+                return false;
+            }
+            if (expiry - System.nanoTime() <= 0) {
+                notFound.remove(key);
+                return false;
+            }
+        }
+        notFoundHits.increment();
+        return true;
+    }
+
+    private void rememberMissing(String key) {
+        synchronized (notFound) {
+            notFound.put(key, System.nanoTime() + properties.getNotFoundTtl().toNanos());
+        }
+    }
+
+    private static String key(String packageName, String version) {
+        return packageName + "@" + version;
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // Only releases the upstream connection
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (background != null) {
+            background.shutdownNow();
+        }
+    }
+
+    /**
+     * One version being fetched from the upstream.
+     */
+    private static final class Fill {
+
+        final String key;
+        final String packageName;
+        final String version;
+        final String fileName;
+        final CompletableFuture<Boolean> done = new CompletableFuture<>(); // true once stored locally
+        volatile byte[] meta;
+        volatile Path spool;
+
+        Fill(String key, String packageName, String version, String fileName) {
+            this.key = key;
+            this.packageName = packageName;
+            this.version = version;
+            this.fileName = fileName;
+        }
+
+        String storagePath() {
+            return packageName + "/" + version + "/" + fileName;
+        }
+    }
+
+    /**
+     * The leader's response body: the upstream stream, teed into the spool file. Can be read once, and only
+     * within {@code max-wait} of the fetch starting.
+     */
+    private final class FillResource extends AbstractResource {
+
+        private final Fill fill;
+        private final UpstreamClient.UpstreamFile file;
+        private boolean opened;
+        private boolean expired;
+
+        FillResource(Fill fill, UpstreamClient.UpstreamFile file) {
+            this.fill = fill;
+            this.file = file;
+        }
+
+        @Override
+        public String getDescription() {
+            return "upstream " + fill.storagePath();
+        }
+
+        @Override
+        public String getFilename() {
+            return fill.fileName;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return file.contentLength();
+        }
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (expired) {
+                throw new IOException("The upstream download of " + fill.key + " was not read in time and has been dropped");
+            }
+            if (opened) {
+                throw new IllegalStateException("The upstream download of " + fill.key + " can only be read once");
+            }
+            opened = true;
+            return new TeeInputStream(fill, file);
+        }
+
+        /**
+         * Drops the fill if nobody has started reading the body, e.g. because the response failed or the client
+         * left before streaming began. Closes the upstream connection and lets later requests fetch again.
+         */
+        synchronized void expireUnopened() {
+            if (opened) {
+                return;
+            }
+            expired = true;
+            closeQuietly(file.body());
+            abort(fill, "the download was not read within " + properties.getMaxWait());
+        }
+    }
+
+    /**
+     * Copies everything the client reads into the spool file. At the end of the stream the file is verified and
+     * stored; if the client goes away first, the rest is downloaded in the background (or the fetch is dropped).
+     */
+    private final class TeeInputStream extends FilterInputStream {
+
+        private final Fill fill;
+        private final long expectedLength;
+        private final OutputStream spool;
+        private long copied;
+        private boolean ended;
+
+        TeeInputStream(Fill fill, UpstreamClient.UpstreamFile file) throws IOException {
+            super(file.body());
+            this.fill = fill;
+            this.expectedLength = file.contentLength();
+            try {
+                this.spool = new BufferedOutputStream(Files.newOutputStream(fill.spool), BUFFER_SIZE);
+            } catch (IOException e) {
+                closeQuietly(file.body());
+                abort(fill, "cannot write spool file: " + e.getMessage());
+                throw e;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            int n;
+            try {
+                n = in.read(b, off, len);
+                if (n == -1) {
+                    end();
+                    return -1;
+                }
+                spool.write(b, off, n);
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+            copied += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (ended) {
+                return;
+            }
+            if (!properties.isCompleteAbandoned()) {
+                fail(new IOException("client disconnected after " + copied + " bytes"));
+                return;
+            }
+            ended = true;
+            logger.debug("Client left the download of {} after {} bytes; finishing it in the background", fill.key, copied);
+            background.execute(() -> {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                try {
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        spool.write(buffer, 0, n);
+                        copied += n;
+                    }
+                    ended = false;
+                    end();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+        }
+
+        private void end() throws IOException {
+            ended = true;
+            spool.close();
+            closeQuietly(in);
+            if (expectedLength >= 0 && copied != expectedLength) {
+                abort(fill, "received " + copied + " of " + expectedLength + " bytes");
+                return;
+            }
+            long size = copied;
+            background.execute(() -> store(fill, size));
+        }
+
+        private void fail(IOException e) {
+            ended = true;
+            closeQuietly(in);
+            try {
+                spool.close();
+            } catch (IOException ignored) {
+                // The spool file is deleted below
+            }
+            abort(fill, e.getMessage());
+        }
+    }
+
+    /**
+     * An upstream download served without caching, for requests that could not wait for the fetch in progress.
+     */
+    private static final class PassThroughResource extends AbstractResource {
+
+        private final UpstreamClient.UpstreamFile file;
+
+        PassThroughResource(UpstreamClient.UpstreamFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public String getDescription() {
+            return "upstream download";
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return file.contentLength();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return file.body();
+        }
+    }
+}
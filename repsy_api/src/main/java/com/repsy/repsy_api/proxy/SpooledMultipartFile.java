@@ -0,0 +1,79 @@
+package com.repsy.repsy_api.proxy;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * MultipartFile view over a file fetched from the upstream, held in memory (meta.json) or in the spool file
+ * the download was teed into, so it can be deployed like an uploaded one.
+ */
+class SpooledMultipartFile implements MultipartFile {
+
+    private final String name;
+    private final String originalFilename;
+    private final byte[] content;
+    private final Path contentFile;
+
+    private SpooledMultipartFile(String name, String originalFilename, byte[] content, Path contentFile) {
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.content = content;
+        this.contentFile = contentFile;
+    }
+
+    static SpooledMultipartFile inMemory(String name, String originalFilename, byte[] content) {
+        return new SpooledMultipartFile(name, originalFilename, content, null);
+    }
+
+    static SpooledMultipartFile onDisk(String name, String originalFilename, Path contentFile) {
+        return new SpooledMultipartFile(name, originalFilename, null, contentFile);
+    }
+
+    @Override public String getName() { return name; }
+    @Override public String getOriginalFilename() { return originalFilename; }
+    @Override public String getContentType() { return null; }
+    @Override public boolean isEmpty() { return getSize() == 0; }
+
+    @Override
+    public long getSize() {
+        if (content != null) {
+            return content.length;
+        }
+        try {
+            return Files.size(contentFile);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return content != null ? content : Files.readAllBytes(contentFile);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return content != null ? new ByteArrayInputStream(content) : Files.newInputStream(contentFile);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException, IllegalStateException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException, IllegalStateException {
+        if (content != null) {
+            Files.write(dest, content);
+        } else {
+            Files.copy(contentFile, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.repsy.repsy_api.proxy;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Downloads package files from the upstream Repsy instance with its public download endpoint.
+ */
+class UpstreamClient {
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final ProxyProperties properties;
+
+    UpstreamClient(ProxyProperties properties) {
+        String url = properties.getUpstreamUrl();
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("repsy.proxy.upstream-url is required when repsy.proxy.enabled=true");
+        }
+        this.baseUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.properties = properties;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(properties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL) // The upstream may redirect large files to its object store
+                .build();
+    }
+
+    /**
+     * An upstream response body being received.
+     *
+     * @param contentLength The announced length, or -1 if the upstream streams without one.
+     */
+    record UpstreamFile(InputStream body, long contentLength) {
+    }
+
+    /**
+     * Opens a download from the upstream.
+     *
+     * @return The response body, or empty if the upstream does not have the file.
+     * @throws PullThroughProxy.UpstreamException If the upstream cannot be reached or answers with an error.
+     */
+    Optional<UpstreamFile> open(String packageName, String version, String fileName) {
+        HttpResponse<InputStream> response = send(packageName, version, fileName);
+        int status = response.statusCode();
+        if (status == HttpStatus.OK.value()) {
+            long contentLength = response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1L);
+            return Optional.of(new UpstreamFile(response.body(), contentLength));
+        }
+        closeQuietly(response.body());
+        if (status == HttpStatus.NOT_FOUND.value()) {
+            return Optional.empty();
+        }
+        throw new PullThroughProxy.UpstreamException("Upstream answered " + status + " for " + packageName + "/" + version + "/" + fileName);
+    }
+
+    /**
+     * Reads a small file (meta.json) from the upstream in full.
+     *
+     * @return The file content, or empty if the upstream does not have it.
+     */
+    Optional<byte[]> read(String packageName, String version, String fileName) {
+        return open(packageName, version, fileName).map(file -> {
+            try (InputStream body = file.body()) {
+                return body.readAllBytes();
+            } catch (IOException e) {
+                throw new PullThroughProxy.UpstreamException("Reading " + fileName + " of " + packageName + "/" + version + " from upstream failed", e);
+            }
+        });
+    }
+
+    private HttpResponse<InputStream> send(String packageName, String version, String fileName) {
+        URI uri = URI.create(baseUrl + "/packages/"
+                + UriUtils.encodePathSegment(packageName, StandardCharsets.UTF_8) + "/"
+                + UriUtils.encodePathSegment(version, StandardCharsets.UTF_8) + "/"
+                + UriUtils.encodePathSegment(fileName, StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(properties.getResponseTimeout())
+                .header(HttpHeaders.ACCEPT_ENCODING, "identity") // The cached copy must be the original bytes
+                .GET()
+                .build();
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            throw new PullThroughProxy.UpstreamException("Upstream request " + uri + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PullThroughProxy.UpstreamException("Interrupted during upstream request " + uri, e);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // Nothing to release beyond the connection
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.repsy.repsy_api.reconcile;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties("repsy.reconciler")
+public class ReconcilerProperties {
+
+    /**
+     * Whether the scheduled storage-vs-database reconciliation runs on this instance.
+     * Enable it on a single instance only.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Delay between two reconciliation runs.
+     */
+    private Duration interval = Duration.ofMinutes(1);
+
+    /**
+     * Objects listed per storage page (and per batched database query).
+     */
+    private int pageSize = 500;
+
+    /**
+     * Pages processed per run; the checkpoint carries the scan over to the next run.
+     */
+    private int pagesPerRun = 10;
+
+    /**
+     * Objects younger than this are never deleted, so in-flight deploys are not mistaken for orphans.
+     */
+    private Duration gracePeriod = Duration.ofHours(1);
+
+    /**
+     * Maximum storage list requests per second (0 = unlimited).
+     */
+    private double maxListRequestsPerSecond = 5;
+
+    /**
+     * Maximum orphan deletions per second (0 = unlimited).
+     */
+    private double maxDeletesPerSecond = 20;
+
+    /**
+     * Only log orphans instead of deleting them.
+     */
+    private boolean dryRun = false;
+
+    /**
+     * Key prefixes that are not package files and must never be reconciled.
+     */
+    private List<String> ignoredPrefixes = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getPagesPerRun() {
+        return pagesPerRun;
+    }
+
+    public void setPagesPerRun(int pagesPerRun) {
+        this.pagesPerRun = pagesPerRun;
+    }
+
+    public Duration getGracePeriod() {
+        return gracePeriod;
+    }
+
+    public void setGracePeriod(Duration gracePeriod) {
+        this.gracePeriod = gracePeriod;
+    }
+
+    public double getMaxListRequestsPerSecond() {
+        return maxListRequestsPerSecond;
+    }
+
+    public void setMaxListRequestsPerSecond(double maxListRequestsPerSecond) {
+        this.maxListRequestsPerSecond = maxListRequestsPerSecond;
+    }
+
+    public double getMaxDeletesPerSecond() {
+        return maxDeletesPerSecond;
+    }
+
+    public void setMaxDeletesPerSecond(double maxDeletesPerSecond) {
+        this.maxDeletesPerSecond = maxDeletesPerSecond;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public List<String> getIgnoredPrefixes() {
+        return ignoredPrefixes;
+    }
+
+    public void setIgnoredPrefixes(List<String> ignoredPrefixes) {
+        this.ignoredPrefixes = ignoredPrefixes;
+    }
+}
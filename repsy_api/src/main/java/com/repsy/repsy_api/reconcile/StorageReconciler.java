@@ -0,0 +1,157 @@
+package com.repsy.repsy_api.reconcile;
+
+import com.repsy.repsy_api.checkpoint.ScanCheckpoint;
+import com.repsy.repsy_api.checkpoint.ScanCheckpointRepository;
+import com.repsy.repsy_api.datasource.ReplicaRouting;
+import com.repsy.repsy_api.packages.PackageCoordinates;
+import com.repsy.repsy_api.packages.PackageMetadataRepository;
+import com.repsy.repsy_api.support.RateLimiter;
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.StoragePage;
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Finds and removes storage objects that have no matching row in the {@code packages} table,
+ * e.g. blobs left behind by deploys whose database insert failed after the files were stored.
+ * <p>
+ * Each run processes a bounded number of storage pages and checkpoints the continuation token,
+ * so a full pass over a large repository is spread across many runs. Every page costs one list request
+ * and one batched database query.
+ */
+@Component
+public class StorageReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageReconciler.class);
+
+    static final String CHECKPOINT_NAME = "storage-reconciler";
+
+    private final ReconcilerProperties properties;
+    private final StorageService storageService;
+    private final PackageMetadataRepository packageRepository;
+    private final ScanCheckpointRepository checkpointRepository;
+    private final RateLimiter listLimiter;
+    private final RateLimiter deleteLimiter;
+
+    @Autowired
+    public StorageReconciler(ReconcilerProperties properties, StorageService storageService,
+                             PackageMetadataRepository packageRepository, ScanCheckpointRepository checkpointRepository) {
+        this.properties = properties;
+        this.storageService = storageService;
+        this.packageRepository = packageRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.listLimiter = new RateLimiter(properties.getMaxListRequestsPerSecond());
+        this.deleteLimiter = new RateLimiter(properties.getMaxDeletesPerSecond());
+    }
+
+    @Scheduled(fixedDelayString = "${repsy.reconciler.interval:PT1M}", initialDelayString = "${repsy.reconciler.interval:PT1M}")
+    public void scheduledRun() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            logger.error("Storage reconciliation run failed; it will resume from the last checkpoint", e);
+        }
+    }
+
+    /**
+     * Processes up to {@code pagesPerRun} pages starting at the stored checkpoint.
+     *
+     * @return The checkpoint after the run.
+     */
+    public synchronized ScanCheckpoint runOnce() {
+        ScanCheckpoint checkpoint = ReplicaRouting.onPrimary(() -> checkpointRepository.findById(CHECKPOINT_NAME))
+                .orElseGet(() -> new ScanCheckpoint(CHECKPOINT_NAME));
+        Instant cutoff = Instant.now().minus(properties.getGracePeriod());
+
+        for (int i = 0; i < properties.getPagesPerRun(); i++) {
+            listLimiter.acquire(1);
+            StoragePage page = storageService.list(null, properties.getPageSize(), checkpoint.getContinuationToken());
+            long deleted = reconcilePage(page, cutoff);
+            checkpoint.advance(page.getContinuationToken(), page.getObjects().size(), deleted);
+            checkpoint = checkpointRepository.save(checkpoint);
+            if (!page.hasMore()) {
+                logger.info("Storage reconciliation pass completed ({} orphans removed so far)", checkpoint.getTotalActions());
+                break;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        return checkpoint;
+    }
+
+    private long reconcilePage(StoragePage page, Instant cutoff) {
+        Set<String> names = new HashSet<>();
+        Set<String> versions = new HashSet<>();
+        for (StoredObject object : page.getObjects()) {
+            String[] coordinates = coordinatesOf(object.getKey());
+            if (coordinates != null) {
+                names.add(coordinates[0]);
+                versions.add(coordinates[1]);
+            }
+        }
+        if (names.isEmpty()) {
+            return 0;
+        }
+
+        // One query for the whole page; name IN x version IN is a superset, exact pairs are matched below.
+        // Read on the primary: a lagging replica would make fresh packages look orphaned
+        Set<String> known = ReplicaRouting.onPrimary(() -> packageRepository.findByNameInAndVersionIn(names, versions)).stream()
+                .map(row -> row.getName() + "/" + row.getVersion())
+                .collect(Collectors.toSet());
+
+        long deleted = 0;
+        for (StoredObject object : page.getObjects()) {
+            String[] coordinates = coordinatesOf(object.getKey());
+            if (coordinates == null || known.contains(coordinates[0] + "/" + coordinates[1])) {
+                continue;
+            }
+            if (object.getLastModified() == null || object.getLastModified().isAfter(cutoff)) {
+                continue; // Too young (deploy may still be in flight) or age unknown
+            }
+            if (properties.isDryRun()) {
+                logger.info("Orphaned object (dry run, not deleted): {}", object.getKey());
+                continue;
+            }
+            deleteLimiter.acquire(1);
+            try {
+                storageService.delete(object.getKey());
+                deleted++;
+                logger.info("Deleted orphaned object {} (last modified {})", object.getKey(), object.getLastModified());
+            } catch (StorageException e) {
+                logger.warn("Could not delete orphaned object {}: {}", object.getKey(), e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Extracts {name, version} from a package file key ("name/version/file"),
+     * or returns null for keys that are not package files.
+     */
+    private String[] coordinatesOf(String key) {
+        for (String ignored : properties.getIgnoredPrefixes()) {
+            if (key.startsWith(ignored)) {
+                return null;
+            }
+        }
+        String[] segments = key.split("/");
+        if (segments.length != 3) {
+            return null;
+        }
+        return new String[]{segments[0], segments[1]};
+    }
+}
@@ -0,0 +1,386 @@
+package com.repsy.repsy_api.retention;
+
+import com.repsy.repsy_api.changes.ChangeFeed;
+import com.repsy.repsy_api.changes.PackageChange;
+import com.repsy.repsy_api.compression.ContentCoding;
+import com.repsy.repsy_api.packages.MetadataService;
+import com.repsy.repsy_api.support.RateLimiter;
+import com.repsy.storage.api.StorageService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies the configured retention rules: deletes old versions (database rows first, then their files) in batches.
+ * <p>
+ * Candidates are selected a batch at a time with keyset-paginated queries: "keep last N" rules walk the
+ * {@code (name, created_at DESC, id DESC)} index, so the per-package ranking streams out of the index without
+ * a sort, and age-only rules walk the {@code (created_at, id)} index. Each batch is deleted in one transaction
+ * that also records the deletes for the change feed; the files of the deleted versions are then removed with
+ * one batched storage call. Files that cannot be removed have no row any more and are collected by the storage
+ * reconciler. Both steps are rate limited so a large backlog does not compete with production traffic.
+ */
+@Component
+public class RetentionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionEngine.class);
+
+    private static final String META_FILE_NAME = "meta.json";
+
+    // Rows already seen in the current package are skipped by rank, so dry runs (which delete nothing) advance too
+    static final String KEEP_LAST_SQL = "SELECT id, name, version, rank FROM ("
+            + "SELECT id, name, version, created_at, "
+            + "row_number() OVER (PARTITION BY name ORDER BY created_at DESC, id DESC) AS rank "
+            + "FROM packages WHERE name >= ?%s) ranked "
+            + "WHERE rank > ? AND (name > ? OR rank > ?) AND created_at < ? "
+            + "ORDER BY name, created_at DESC, id DESC LIMIT ?";
+
+    private static final String OLDER_THAN_SQL = "SELECT id, name, version, created_at FROM packages "
+            + "WHERE created_at < ? AND (created_at, id) > (?, ?)%s "
+            + "ORDER BY created_at, id LIMIT ?";
+
+    private static final String DELETE_SQL = "DELETE FROM packages WHERE id = ANY (?) RETURNING id, name, version";
+
+    private final RetentionProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final ChangeFeed changeFeed;
+    private final MetadataService metadataService;
+    private final StorageService storageService;
+    private final RateLimiter versionLimiter;
+    private final RateLimiter objectLimiter;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile boolean lastDryRun;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile List<RuleResult> lastResults = List.of();
+    private volatile String lastError;
+
+    @Autowired
+    public RetentionEngine(RetentionProperties properties, DataSource dataSource, PlatformTransactionManager transactionManager,
+                           ChangeFeed changeFeed, MetadataService metadataService, StorageService storageService) {
+        validate(properties);
+        this.properties = properties;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true); // Served by a replica when enabled; deletes re-check on the primary
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.changeFeed = changeFeed;
+        this.metadataService = metadataService;
+        this.storageService = storageService;
+        this.versionLimiter = new RateLimiter(properties.getMaxVersionsPerSecond());
+        this.objectLimiter = new RateLimiter(properties.getMaxObjectDeletesPerSecond());
+    }
+
+    /**
+     * A version selected for deletion. {@code rank} is its position among the package's selected versions,
+     * newest first (0 for age-only rules).
+     */
+    private record Candidate(long id, String name, String version, long rank, Instant createdAt) {
+    }
+
+    /**
+     * What one rule did in a run.
+     */
+    public record RuleResult(String rule, long selected, long deleted, long objectDeleteFailures) {
+    }
+
+    @Scheduled(cron = "${repsy.retention.cron:0 0 3 * * *}")
+    public void scheduledRun() {
+        if (!properties.isEnabled() || properties.getRules().isEmpty()) {
+            return;
+        }
+        if (!start(properties.isDryRun())) {
+            logger.warn("Skipping scheduled retention run: the previous run is still in progress");
+        }
+    }
+
+    /**
+     * Starts a run in the background unless one is already in progress.
+     *
+     * @param dryRun Only log and count what would be deleted.
+     * @return false if a run is already in progress.
+     */
+    public boolean start(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        lastDryRun = dryRun;
+        startedAt = Instant.now();
+        finishedAt = null;
+        lastResults = List.of();
+        lastError = null;
+        executor.execute(() -> {
+            try {
+                run(dryRun);
+            } catch (RuntimeException e) {
+                logger.error("Retention run failed; the next run starts over", e);
+                lastError = e.getMessage();
+            } finally {
+                finishedAt = Instant.now();
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("dryRun", lastDryRun);
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("rules", lastResults);
+        status.put("error", lastError);
+        return status;
+    }
+
+    private void run(boolean dryRun) {
+        long budget = properties.getMaxVersionsPerRun();
+        List<RuleResult> results = new ArrayList<>();
+        for (RetentionProperties.Rule rule : properties.getRules()) {
+            if (budget <= 0 || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            RuleResult result = apply(rule, dryRun, budget);
+            results.add(result);
+            lastResults = List.copyOf(results);
+            budget -= dryRun ? result.selected() : result.deleted();
+        }
+        long deleted = results.stream().mapToLong(RuleResult::deleted).sum();
+        long selected = results.stream().mapToLong(RuleResult::selected).sum();
+        if (dryRun) {
+            logger.info("Retention dry run finished: {} versions would be deleted", selected);
+        } else {
+            logger.info("Retention run finished: {} versions deleted", deleted);
+        }
+    }
+
+    private RuleResult apply(RetentionProperties.Rule rule, boolean dryRun, long budget) {
+        Duration age = rule.getOlderThan() != null && rule.getOlderThan().compareTo(properties.getMinAge()) > 0
+                ? rule.getOlderThan() : properties.getMinAge();
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(age));
+        String filter = filterSql(rule);
+        List<String> namePatterns = rule.getPackages().stream().map(RetentionEngine::toLikePattern).toList();
+
+        long selected = 0;
+        long deleted = 0;
+        long objectFailures = 0;
+        // Keyset: (name, rank) for keep-last rules, (created_at, id) for age-only rules
+        String lastName = "";
+        long lastRank = 0;
+        Timestamp lastCreatedAt = Timestamp.from(Instant.EPOCH); // Before any deploy
+        long lastId = 0;
+
+        while (selected < budget && !Thread.currentThread().isInterrupted()) {
+            int limit = (int) Math.min(properties.getBatchSize(), budget - selected);
+            List<Candidate> batch;
+            if (rule.getKeepLast() != null) {
+                batch = selectRanked(filter, namePatterns, rule.getKeepLast(), lastName, lastRank, cutoff, limit);
+            } else {
+                batch = selectOlder(filter, namePatterns, cutoff, lastCreatedAt, lastId, limit);
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            selected += batch.size();
+            Candidate last = batch.get(batch.size() - 1);
+            if (rule.getKeepLast() != null) {
+                lastName = last.name();
+                // Deleting shifts the remaining ranks of the package down to keep-last + 1, so a real run resumes there
+                lastRank = dryRun ? last.rank() : rule.getKeepLast();
+            } else {
+                lastCreatedAt = Timestamp.from(last.createdAt());
+                lastId = last.id();
+            }
+
+            if (dryRun) {
+                batch.forEach(candidate -> logger.info("Retention rule '{}' would delete {}@{}", rule.getName(), candidate.name(), candidate.version()));
+            } else {
+                long[] outcome = delete(batch);
+                deleted += outcome[0];
+                objectFailures += outcome[1];
+                logger.info("Retention rule '{}' deleted {} versions ({} so far)", rule.getName(), outcome[0], deleted);
+            }
+            if (batch.size() < limit) {
+                break;
+            }
+        }
+        return new RuleResult(rule.getName(), selected, deleted, objectFailures);
+    }
+
+    private List<Candidate> selectRanked(String filter, List<String> namePatterns, int keepLast, String lastName,
+                                         long lastRank, Timestamp cutoff, int limit) {
+        List<Object> args = new ArrayList<>();
+        args.add(lastName);
+        args.addAll(namePatterns);
+        args.add(keepLast);
+        args.add(lastName);
+        args.add(lastRank);
+        args.add(cutoff);
+        args.add(limit);
+        return readTransaction.execute(status -> {
+            // The planner costs the window subquery without the outer LIMIT and picks a full sort; the index
+            // delivers the rows already in window order, so only the first batch worth of rows is read
+            jdbcTemplate.execute("SET LOCAL enable_sort = off");
+            return jdbcTemplate.query(String.format(KEEP_LAST_SQL, filter),
+                    (rs, rowNum) -> new Candidate(rs.getLong("id"), rs.getString("name"), rs.getString("version"), rs.getLong("rank"), null),
+                    args.toArray());
+        });
+    }
+
+    private List<Candidate> selectOlder(String filter, List<String> namePatterns, Timestamp cutoff,
+                                        Timestamp lastCreatedAt, long lastId, int limit) {
+        List<Object> args = new ArrayList<>();
+        args.add(cutoff);
+        args.add(lastCreatedAt);
+        args.add(lastId);
+        args.addAll(namePatterns);
+        args.add(limit);
+        return readTransaction.execute(status -> jdbcTemplate.query(String.format(OLDER_THAN_SQL, filter),
+                (rs, rowNum) -> new Candidate(rs.getLong("id"), rs.getString("name"), rs.getString("version"), 0,
+                        rs.getTimestamp("created_at").toInstant()),
+                args.toArray()));
+    }
+
+    /**
+     * Deletes a batch of versions: their rows (with the change feed entries) in one transaction, then their files.
+     *
+     * @return Versions deleted, and storage objects that could not be deleted.
+     */
+    private long[] delete(List<Candidate> batch) {
+        versionLimiter.acquire(batch.size());
+        Long[] ids = batch.stream().map(Candidate::id).toArray(Long[]::new);
+        // Rows deleted concurrently (or by an earlier rule) are simply not returned
+        List<Candidate> deleted = writeTransaction.execute(status -> {
+            List<Candidate> rows = jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(DELETE_SQL);
+                statement.setArray(1, connection.createArrayOf("bigint", ids));
+                return statement;
+            }, (rs, rowNum) -> new Candidate(rs.getLong("id"), rs.getString("name"), rs.getString("version"), 0, null));
+            rows.forEach(row -> changeFeed.record(row.id(), row.name(), row.version(), PackageChange.Type.DELETE));
+            return rows;
+        });
+        if (deleted == null || deleted.isEmpty()) {
+            return new long[]{0, 0};
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (Candidate version : deleted) {
+            metadataService.evict(version.name(), version.version());
+            keys.addAll(storageKeys(version.name(), version.version()));
+        }
+        objectLimiter.acquire(keys.size());
+        List<String> failed = storageService.deleteBatch(keys, properties.getDeleteParallelism());
+        if (!failed.isEmpty()) {
+            logger.warn("Could not delete {} files of pruned versions; the storage reconciler will collect them", failed.size());
+        }
+        return new long[]{deleted.size(), failed.size()};
+    }
+
+    /**
+     * Every key a version's files may be stored under: the .rep file and meta.json, and their compressed variants.
+     * Variants are listed whether or not compression is enabled now; keys that do not exist are skipped by the storage.
+     */
+    static List<String> storageKeys(String packageName, String version) {
+        String prefix = packageName + "/" + version + "/";
+        List<String> keys = new ArrayList<>();
+        for (String file : List.of(packageName + "-" + version + ".rep", META_FILE_NAME)) {
+            keys.add(prefix + file);
+            for (ContentCoding coding : ContentCoding.values()) {
+                keys.add(prefix + coding.variantOf(file));
+            }
+        }
+        return keys;
+    }
+
+    private static String filterSql(RetentionProperties.Rule rule) {
+        StringBuilder sql = new StringBuilder();
+        if (!rule.getPackages().isEmpty()) {
+            sql.append(" AND (");
+            for (int i = 0; i < rule.getPackages().size(); i++) {
+                sql.append(i > 0 ? " OR " : "").append("name LIKE ? ESCAPE '\\'");
+            }
+            sql.append(")");
+        }
+        String versions = rule.getVersions().sqlPredicate();
+        if (versions != null) {
+            sql.append(" AND ").append(versions);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Converts a package name pattern with {@code *} and {@code ?} wildcards to a LIKE pattern.
+     */
+    static String toLikePattern(String glob) {
+        StringBuilder like = new StringBuilder(glob.length() + 4);
+        for (char c : glob.toCharArray()) {
+            switch (c) {
+                case '*' -> like.append('%');
+                case '?' -> like.append('_');
+                case '%', '_', '\\' -> like.append('\\').append(c);
+                default -> like.append(c);
+            }
+        }
+        return like.toString();
+    }
+
+    /**
+     * Rejects rules that would select nothing or everything by mistake, at startup.
+     */
+    static void validate(RetentionProperties properties) {
+        for (int i = 0; i < properties.getRules().size(); i++) {
+            RetentionProperties.Rule rule = properties.getRules().get(i);
+            if (rule.getName() == null || rule.getName().isBlank()) {
+                rule.setName("rule-" + i);
+            }
+            if (rule.getVersions() == null) {
+                throw new IllegalStateException("Retention rule '" + rule.getName() + "' needs versions");
+            }
+            if (rule.getKeepLast() == null && rule.getOlderThan() == null) {
+                throw new IllegalStateException("Retention rule '" + rule.getName() + "' needs keep-last or older-than");
+            }
+            if (rule.getKeepLast() != null && rule.getKeepLast() < 0) {
+                throw new IllegalStateException("Retention rule '" + rule.getName() + "' has a negative keep-last");
+            }
+            if (rule.getOlderThan() != null && rule.getOlderThan().isNegative()) {
+                throw new IllegalStateException("Retention rule '" + rule.getName() + "' has a negative older-than");
+            }
+        }
+        if (properties.getBatchSize() < 1) {
+            throw new IllegalStateException("repsy.retention.batch-size must be positive");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,215 @@
+package com.repsy.repsy_api.retention;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties("repsy.retention")
+public class RetentionProperties {
+
+    /**
+     * Whether the retention rules are applied on schedule on this instance. Enable it on a single instance only.
+     * Runs can still be started (or previewed) with POST /admin/retention/run.
+     */
+    private boolean enabled = false;
+
+    /**
+     * When scheduled runs start (Spring cron expression, server time zone).
+     */
+    private String cron = "0 0 3 * * *";
+
+    /**
+     * The rules; a version is deleted if any rule selects it.
+     */
+    private List<Rule> rules = new ArrayList<>();
+
+    /**
+     * Versions selected per candidate query and deleted per database transaction.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Upper bound on versions deleted by one run; the next run continues.
+     */
+    private int maxVersionsPerRun = 50_000;
+
+    /**
+     * Maximum versions deleted per second (0 = unlimited).
+     */
+    private double maxVersionsPerSecond = 50;
+
+    /**
+     * Maximum storage objects deleted per second (0 = unlimited).
+     */
+    private double maxObjectDeletesPerSecond = 500;
+
+    /**
+     * Concurrent file deletions on the filesystem strategy. Object stores delete a batch with one request.
+     */
+    private int deleteParallelism = 4;
+
+    /**
+     * Versions deployed more recently than this are never deleted, whatever the rules say,
+     * so clients that just saw a version can still fetch it.
+     */
+    private Duration minAge = Duration.ofHours(1);
+
+    /**
+     * Only log what would be deleted.
+     */
+    private boolean dryRun = false;
+
+    /**
+     * A retention rule. It selects versions of matching packages, keeps the newest {@code keep-last} of them per
+     * package and deletes the rest that are older than {@code older-than}. At least one of the two must be set.
+     */
+    public static class Rule {
+
+        /**
+         * Name used in logs and run reports.
+         */
+        private String name;
+
+        /**
+         * Package name patterns ({@code *} and {@code ?} wildcards); empty matches all packages.
+         */
+        private List<String> packages = new ArrayList<>();
+
+        /**
+         * Which versions the rule applies to.
+         */
+        private VersionSelector versions = VersionSelector.PRERELEASE;
+
+        /**
+         * Number of newest selected versions kept per package, by deploy time.
+         */
+        private Integer keepLast;
+
+        /**
+         * Selected versions deployed longer ago than this are deleted (unless kept by {@code keep-last}).
+         */
+        private Duration olderThan;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<String> getPackages() {
+            return packages;
+        }
+
+        public void setPackages(List<String> packages) {
+            this.packages = packages;
+        }
+
+        public VersionSelector getVersions() {
+            return versions;
+        }
+
+        public void setVersions(VersionSelector versions) {
+            this.versions = versions;
+        }
+
+        public Integer getKeepLast() {
+            return keepLast;
+        }
+
+        public void setKeepLast(Integer keepLast) {
+            this.keepLast = keepLast;
+        }
+
+        public Duration getOlderThan() {
+            return olderThan;
+        }
+
+        public void setOlderThan(Duration olderThan) {
+            this.olderThan = olderThan;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getCron() {
+        return cron;
+    }
+
+    public void setCron(String cron) {
+        this.cron = cron;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxVersionsPerRun() {
+        return maxVersionsPerRun;
+    }
+
+    public void setMaxVersionsPerRun(int maxVersionsPerRun) {
+        this.maxVersionsPerRun = maxVersionsPerRun;
+    }
+
+    public double getMaxVersionsPerSecond() {
+        return maxVersionsPerSecond;
+    }
+
+    public void setMaxVersionsPerSecond(double maxVersionsPerSecond) {
+        this.maxVersionsPerSecond = maxVersionsPerSecond;
+    }
+
+    public double getMaxObjectDeletesPerSecond() {
+        return maxObjectDeletesPerSecond;
+    }
+
+    public void setMaxObjectDeletesPerSecond(double maxObjectDeletesPerSecond) {
+        this.maxObjectDeletesPerSecond = maxObjectDeletesPerSecond;
+    }
+
+    public int getDeleteParallelism() {
+        return deleteParallelism;
+    }
+
+    public void setDeleteParallelism(int deleteParallelism) {
+        this.deleteParallelism = deleteParallelism;
+    }
+
+    public Duration getMinAge() {
+        return minAge;
+    }
+
+    public void setMinAge(Duration minAge) {
+        this.minAge = minAge;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+}
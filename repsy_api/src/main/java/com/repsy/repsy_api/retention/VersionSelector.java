@@ -0,0 +1,42 @@
+package com.repsy.repsy_api.retention;
+
+/**
+ * The versions a retention rule applies to, by their semantic version form.
+ * Each kind is an SQL predicate over {@code packages.version} (PostgreSQL regular expressions), so candidates
+ * are filtered by the database. Build metadata after {@code +} is ignored.
+ */
+public enum VersionSelector {
+
+    /**
+     * Every version.
+     */
+    ALL(null),
+
+    /**
+     * Versions without a pre-release part, e.g. {@code 1.2.0} or {@code 1.2.0+build.5}.
+     */
+    RELEASE("version !~ '^[^+]*-'"),
+
+    /**
+     * Versions with a pre-release part, e.g. {@code 1.2.0-rc.1} or {@code 1.2.0-nightly.20250101}.
+     */
+    PRERELEASE("version ~ '^[^+]*-'"),
+
+    /**
+     * Pre-releases whose pre-release part contains "snapshot" (any case), e.g. {@code 1.2.0-SNAPSHOT.42}.
+     */
+    SNAPSHOT("version ~* '^[^+]*-[^+]*snapshot'");
+
+    private final String predicate;
+
+    VersionSelector(String predicate) {
+        this.predicate = predicate;
+    }
+
+    /**
+     * @return The SQL condition on the {@code version} column, or null if every version matches.
+     */
+    String sqlPredicate() {
+        return predicate;
+    }
+}
@@ -0,0 +1,439 @@
+package com.repsy.repsy_api.scrub;
+
+import com.repsy.repsy_api.checkpoint.ScanCheckpoint;
+import com.repsy.repsy_api.checkpoint.ScanCheckpointRepository;
+import com.repsy.repsy_api.compression.ContentCoding;
+import com.repsy.repsy_api.compression.PackageCompressionService;
+import com.repsy.repsy_api.datasource.ReplicaRouting;
+import com.repsy.repsy_api.support.RateLimiter;
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Re-hashes stored .rep files against the SHA-256 and size recorded at deploy time, to find files damaged at rest
+ * (bit rot, a failing disk) before a client does.
+ * <p>
+ * A pass walks the {@code packages} table in id order, a page at a time, and checkpoints the last id after every
+ * page, so a pass over a large repository spreads over days and survives restarts. The files of a page are hashed
+ * by a fixed pool of workers; all reads share one bytes-per-second budget. Files are read with
+ * {@link StorageService#openStream}, so the budget throttles the transfer itself rather than a copy already in memory,
+ * and a replicated store is checked on its primary copy rather than whichever replica answers a hedged read first.
+ * Stored compressed variants are decoded and checked against the same digest. A damaged file is restored from an
+ * intact replica when the storage strategy keeps one ({@link StorageService#repair}); every finding is logged and
+ * listed by GET /admin/storage/scrubber.
+ */
+@Component
+public class IntegrityScrubber {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntegrityScrubber.class);
+
+    static final String CHECKPOINT_NAME = "integrity-scrubber";
+
+    private static final String PAGE_SQL = "SELECT id, name, version, rep_sha256, rep_size FROM packages "
+            + "WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final int MAX_RECENT_FINDINGS = 100;
+
+    private final ScrubberProperties properties;
+    private final StorageService storageService;
+    private final PackageCompressionService compressionService;
+    private final ScanCheckpointRepository checkpointRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final RateLimiter byteLimiter;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "scrubber");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final LongAdder filesVerified = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder damaged = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+    private final LongAdder readErrors = new LongAdder();
+    private final LongAdder withoutDigest = new LongAdder();
+    private final Deque<Finding> recentFindings = new ArrayDeque<>();
+    private volatile Instant startedAt;
+    private volatile String lastError;
+
+    @Autowired
+    public IntegrityScrubber(ScrubberProperties properties, StorageService storageService, PackageCompressionService compressionService,
+                             ScanCheckpointRepository checkpointRepository, DataSource dataSource,
+                             PlatformTransactionManager transactionManager) {
+        if (properties.getPageSize() < 1 || properties.getParallelism() < 1) {
+            throw new IllegalStateException("repsy.scrubber.page-size and repsy.scrubber.parallelism must be positive");
+        }
+        this.properties = properties;
+        this.storageService = storageService;
+        this.compressionService = compressionService;
+        this.checkpointRepository = checkpointRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true); // Served by a replica when enabled
+        this.byteLimiter = new RateLimiter(properties.getMaxBytesPerSecond());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(properties.getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "scrubber-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A package version with its recorded digest; {@code sha256} and {@code size} are null for versions deployed
+     * before digests were recorded.
+     */
+    private record Version(long id, String name, String version, String sha256, Long size) {
+    }
+
+    /**
+     * A damaged or missing file.
+     *
+     * @param repaired Whether an intact copy was restored from a replica.
+     */
+    public record Finding(String key, String problem, boolean repaired, Instant foundAt) {
+    }
+
+    /**
+     * A failed read of the stored bytes, as opposed to bytes that fail to decode.
+     */
+    private static class SourceReadException extends IOException {
+        SourceReadException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${repsy.scrubber.interval:PT10M}", initialDelayString = "${repsy.scrubber.interval:PT10M}")
+    public void scheduledRun() {
+        if (!properties.isEnabled() || running.get()) {
+            return;
+        }
+        ScanCheckpoint checkpoint = loadCheckpoint();
+        boolean due = checkpoint.getContinuationToken() != null // Resume an interrupted pass right away
+                || checkpoint.getLastPassCompletedAt() == null
+                || checkpoint.getLastPassCompletedAt().plus(properties.getPassInterval()).isBefore(Instant.now());
+        if (due) {
+            start();
+        }
+    }
+
+    /**
+     * Starts (or resumes) a pass in the background unless one is already in progress.
+     *
+     * @return false if a pass is already in progress.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        startedAt = Instant.now();
+        lastError = null;
+        executor.execute(() -> {
+            try {
+                runPass();
+            } catch (RuntimeException e) {
+                logger.error("Integrity scrub failed; the next run resumes from the last checkpoint", e);
+                lastError = e.getMessage();
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public Map<String, Object> status() {
+        ScanCheckpoint checkpoint = loadCheckpoint();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("startedAt", startedAt);
+        status.put("passStartedAt", checkpoint.getPassStartedAt());
+        status.put("lastPassCompletedAt", checkpoint.getLastPassCompletedAt());
+        status.put("position", checkpoint.getContinuationToken());
+        status.put("scannedInPass", checkpoint.getScannedInPass());
+        status.put("totalFindings", checkpoint.getTotalActions());
+        status.put("filesVerified", filesVerified.sum());
+        status.put("bytesRead", bytesRead.sum());
+        status.put("damaged", damaged.sum());
+        status.put("repaired", repaired.sum());
+        status.put("readErrors", readErrors.sum());
+        status.put("withoutDigest", withoutDigest.sum());
+        synchronized (recentFindings) {
+            status.put("recentFindings", List.copyOf(recentFindings));
+        }
+        status.put("error", lastError);
+        return status;
+    }
+
+    private void runPass() {
+        ScanCheckpoint checkpoint = loadCheckpoint();
+        long lastId = checkpoint.getContinuationToken() != null ? Long.parseLong(checkpoint.getContinuationToken()) : 0;
+        if (lastId > 0) {
+            logger.info("Resuming integrity scrub after package id {}", lastId);
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            long after = lastId;
+            List<Version> page = readTransaction.execute(status -> jdbcTemplate.query(PAGE_SQL, (rs, rowNum) -> new Version(
+                    rs.getLong("id"), rs.getString("name"), rs.getString("version"), rs.getString("rep_sha256"),
+                    rs.getObject("rep_size", Long.class)), after, properties.getPageSize()));
+            int findings;
+            try {
+                findings = verifyPage(page);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break; // The page is verified again on resume
+            }
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).id();
+            }
+            boolean passCompleted = page.size() < properties.getPageSize();
+            checkpoint.advance(passCompleted ? null : String.valueOf(lastId), page.size(), findings);
+            checkpoint = checkpointRepository.save(checkpoint);
+            if (passCompleted) {
+                logger.info("Integrity scrub pass completed ({} findings so far)", checkpoint.getTotalActions());
+                return;
+            }
+        }
+        logger.info("Integrity scrub interrupted after package id {}", lastId);
+    }
+
+    private int verifyPage(List<Version> page) throws InterruptedException {
+        List<Future<Integer>> results = new ArrayList<>(page.size());
+        page.forEach(version -> results.add(workers.submit(() -> verify(version))));
+        int findings = 0;
+        try {
+            for (Future<Integer> result : results) {
+                findings += result.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Verifying a page failed", e.getCause());
+        } finally {
+            results.forEach(result -> result.cancel(true));
+        }
+        return findings;
+    }
+
+    /**
+     * Checks every stored representation of a version's .rep file.
+     *
+     * @return The number of damaged or missing files found.
+     */
+    private int verify(Version version) {
+        if (version.sha256() == null || version.size() == null) {
+            withoutDigest.increment();
+            return 0;
+        }
+        Path path = Paths.get(version.name(), version.version(), version.name() + "-" + version.version() + ".rep");
+        String key = toKey(path);
+        int findings = 0;
+        try {
+            Map<String, ContentCoding> copies = new LinkedHashMap<>(); // Key -> coding of its bytes, null for identity
+            Optional<StoredObject> identity = storageService.stat(key);
+            identity.ifPresent(object -> copies.put(key, null));
+            for (Path variant : compressionService.findStoredVariants(path)) {
+                copies.put(toKey(variant), codingOf(variant));
+            }
+            if (copies.isEmpty()) {
+                report(key, "missing", version, null);
+                return 1;
+            }
+            for (Map.Entry<String, ContentCoding> copy : copies.entrySet()) {
+                String problem;
+                if (copy.getValue() == null && identity.get().getSize() != version.size()) {
+                    problem = "size " + identity.get().getSize() + ", recorded " + version.size(); // No need to read it
+                } else {
+                    String copyKey = copy.getKey();
+                    problem = check(() -> storageService.openStream(copyKey), copy.getValue(), version);
+                }
+                filesVerified.increment();
+                if (problem != null) {
+                    report(copy.getKey(), problem, version, copy.getValue());
+                    findings++;
+                }
+            }
+        } catch (SourceReadException | StorageException e) {
+            // Not evidence of damage (e.g. the backend is unavailable); the next pass checks the file again
+            readErrors.increment();
+            logger.warn("Could not read {} for verification: {}", key, e.getMessage());
+        }
+        return findings;
+    }
+
+    /**
+     * Hashes one stored file, decoding it first if it is a compressed variant.
+     *
+     * @param source The stored bytes: a streaming read of the primary copy, or a replica offered for repair.
+     * @return Why it does not match the recorded digest, or null if it matches.
+     * @throws SourceReadException if the stored bytes cannot be read.
+     */
+    private String check(InputStreamSource source, ContentCoding coding, Version version) throws SourceReadException {
+        MessageDigest digest = newSha256();
+        long size;
+        try (InputStream stored = open(source);
+             InputStream content = coding == null ? stored : coding.decode(stored);
+             InputStream in = new DigestInputStream(content, digest)) {
+            size = in.transferTo(OutputStream.nullOutputStream());
+        } catch (SourceReadException e) {
+            throw e;
+        } catch (IOException e) {
+            return "undecodable " + coding.getToken() + " data: " + e.getMessage();
+        }
+        if (size != version.size()) {
+            return "size " + size + ", recorded " + version.size();
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        if (!sha256.equals(version.sha256())) {
+            return "sha256 " + sha256 + ", recorded " + version.sha256();
+        }
+        return null;
+    }
+
+    private InputStream open(InputStreamSource source) throws SourceReadException {
+        try {
+            return new ThrottledInputStream(source.getInputStream());
+        } catch (IOException e) {
+            throw new SourceReadException(e);
+        }
+    }
+
+    private boolean isIntact(Resource resource, ContentCoding coding, Version version) {
+        try {
+            return check(resource, coding, version) == null;
+        } catch (SourceReadException e) {
+            return false;
+        }
+    }
+
+    private void report(String key, String problem, Version version, ContentCoding coding) {
+        damaged.increment();
+        boolean restored = properties.isRepair() && storageService.repair(key, resource -> isIntact(resource, coding, version));
+        if (restored) {
+            repaired.increment();
+            logger.warn("Integrity scrub: {} of {}/{} was damaged ({}) and has been restored from a replica",
+                    key, version.name(), version.version(), problem);
+        } else {
+            logger.error("Integrity scrub: {} of {}/{} is damaged ({}); no intact replica to restore it from",
+                    key, version.name(), version.version(), problem);
+        }
+        synchronized (recentFindings) {
+            if (recentFindings.size() == MAX_RECENT_FINDINGS) {
+                recentFindings.removeFirst();
+            }
+            recentFindings.addLast(new Finding(key, problem, restored, Instant.now()));
+        }
+    }
+
+    private ScanCheckpoint loadCheckpoint() {
+        return ReplicaRouting.onPrimary(() -> checkpointRepository.findById(CHECKPOINT_NAME))
+                .orElseGet(() -> new ScanCheckpoint(CHECKPOINT_NAME));
+    }
+
+    private static ContentCoding codingOf(Path variant) {
+        String fileName = variant.getFileName().toString();
+        for (ContentCoding coding : ContentCoding.values()) {
+            if (fileName.endsWith(coding.getSuffix())) {
+                return coding;
+            }
+        }
+        throw new IllegalStateException("Not a compressed variant: " + variant);
+    }
+
+    private static String toKey(Path path) {
+        return path.toString().replace("\\", "/");
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Mandatory in every JRE
+        }
+    }
+
+    /**
+     * Charges every byte read against the shared budget and marks read failures as such.
+     */
+    private class ThrottledInputStream extends FilterInputStream {
+
+        ThrottledInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read;
+            try {
+                read = super.read(buffer, offset, length);
+            } catch (IOException e) {
+                throw new SourceReadException(e);
+            }
+            if (read > 0) {
+                bytesRead.add(read);
+                byteLimiter.acquire(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } catch (IOException e) {
+                throw new SourceReadException(e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        workers.shutdownNow();
+    }
+}
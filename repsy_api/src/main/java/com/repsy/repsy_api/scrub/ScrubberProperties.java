@@ -0,0 +1,101 @@
+package com.repsy.repsy_api.scrub;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("repsy.scrubber")
+public class ScrubberProperties {
+
+    /**
+     * Whether integrity passes start on schedule on this instance. Enable it on a single instance only.
+     * A pass can still be started with POST /admin/storage/scrubber/run.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How often the scheduler checks whether a pass is due (or an interrupted one has to be resumed).
+     */
+    private Duration interval = Duration.ofMinutes(10);
+
+    /**
+     * Time between the end of a pass and the start of the next one.
+     */
+    private Duration passInterval = Duration.ofDays(7);
+
+    /**
+     * Versions read per database page; the checkpoint is saved after every page.
+     */
+    private int pageSize = 100;
+
+    /**
+     * Files hashed concurrently.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Maximum bytes read from storage per second over all workers (0 = unlimited).
+     */
+    private long maxBytesPerSecond = 50L * 1024 * 1024;
+
+    /**
+     * Restore damaged files from an intact replica when the storage strategy keeps one (replicated strategy).
+     */
+    private boolean repair = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public Duration getPassInterval() {
+        return passInterval;
+    }
+
+    public void setPassInterval(Duration passInterval) {
+        this.passInterval = passInterval;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    public boolean isRepair() {
+        return repair;
+    }
+
+    public void setRepair(boolean repair) {
+        this.repair = repair;
+    }
+}
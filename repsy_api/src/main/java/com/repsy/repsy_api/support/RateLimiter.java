@@ -0,0 +1,59 @@
+package com.repsy.repsy_api.support;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal smooth rate limiter for background I/O (objects, requests or bytes per second).
+ * A caller reserves permits and sleeps until its reservation starts, so large acquisitions
+ * (e.g. the size of a blob in bytes) delay the next caller instead of being rejected.
+ */
+public class RateLimiter {
+
+    private volatile double permitsPerSecond;
+    private long nextFreeNanos = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond Allowed rate; zero or negative disables limiting.
+     */
+    public RateLimiter(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    public double getRate() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Changes the rate for future reservations.
+     */
+    public void setRate(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * Blocks until the given number of permits is available.
+     * If the thread is interrupted while waiting, it returns early with the interrupt flag set.
+     */
+    public void acquire(long permits) {
+        double rate = permitsPerSecond;
+        if (rate <= 0 || permits <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextFreeNanos < now) {
+                nextFreeNanos = now;
+            }
+            waitNanos = nextFreeNanos - now;
+            nextFreeNanos += (long) (permits * (TimeUnit.SECONDS.toNanos(1) / rate));
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
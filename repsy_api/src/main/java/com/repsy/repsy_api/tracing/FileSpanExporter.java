@@ -0,0 +1,124 @@
+package com.repsy.repsy_api.tracing;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Appends finished spans to a file, one JSON object per line (trace and span ids, name, start, duration,
+ * status, attributes and events). Called from the batch processor's thread only.
+ */
+class FileSpanExporter implements SpanExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private final Path file;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private OutputStream out;
+
+    FileSpanExporter(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        try {
+            if (out == null) {
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (SpanData span : spans) {
+                writeSpan(span);
+                out.write('\n');
+            }
+            out.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Could not write {} spans to {}: {}", spans.size(), file, e.getMessage());
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    private void writeSpan(SpanData span) throws IOException {
+        // Not closing the generator keeps the underlying stream open
+        JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.writeStartObject();
+        json.writeStringField("traceId", span.getTraceId());
+        json.writeStringField("spanId", span.getSpanId());
+        if (span.getParentSpanContext().isValid()) {
+            json.writeStringField("parentSpanId", span.getParentSpanId());
+        }
+        json.writeStringField("name", span.getName());
+        json.writeStringField("kind", span.getKind().name());
+        json.writeNumberField("startEpochNanos", span.getStartEpochNanos());
+        json.writeNumberField("durationMicros", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1000);
+        json.writeStringField("status", span.getStatus().getStatusCode().name());
+        json.writeObjectFieldStart("attributes");
+        span.getAttributes().forEach((key, value) -> writeField(json, key.getKey(), value));
+        json.writeEndObject();
+        if (!span.getEvents().isEmpty()) {
+            json.writeArrayFieldStart("events");
+            for (EventData event : span.getEvents()) {
+                json.writeStartObject();
+                json.writeStringField("name", event.getName());
+                json.writeNumberField("epochNanos", event.getEpochNanos());
+                event.getAttributes().forEach((key, value) -> writeField(json, key.getKey(), value));
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+        json.writeEndObject();
+        json.close();
+    }
+
+    private static void writeField(JsonGenerator json, String name, Object value) {
+        try {
+            if (value instanceof Long number) {
+                json.writeNumberField(name, number);
+            } else if (value instanceof Double number) {
+                json.writeNumberField(name, number);
+            } else if (value instanceof Boolean bool) {
+                json.writeBooleanField(name, bool);
+            } else {
+                json.writeStringField(name, String.valueOf(value));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.warn("Could not close span file {}: {}", file, e.getMessage());
+            }
+            out = null;
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+}
@@ -0,0 +1,19 @@
+package com.repsy.repsy_api.tracing;
+
+import io.opentelemetry.api.common.AttributeKey;
+
+/**
+ * Span attributes of the service and database phases. Storage attributes are in {@link com.repsy.storage.api.Tracing}.
+ */
+public final class TraceAttributes {
+
+    public static final AttributeKey<String> PACKAGE_NAME = AttributeKey.stringKey("repsy.package.name");
+    public static final AttributeKey<String> PACKAGE_VERSION = AttributeKey.stringKey("repsy.package.version");
+    public static final AttributeKey<String> CONTENT_CODING = AttributeKey.stringKey("repsy.content_coding");
+    public static final AttributeKey<Long> DOWNLOAD_THROTTLED_MILLIS = AttributeKey.longKey("repsy.download.throttled_ms");
+    public static final AttributeKey<String> DB_SYSTEM = AttributeKey.stringKey("db.system");
+    public static final AttributeKey<String> DB_OPERATION = AttributeKey.stringKey("db.operation.name");
+
+    private TraceAttributes() {
+    }
+}
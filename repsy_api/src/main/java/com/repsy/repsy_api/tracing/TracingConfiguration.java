@@ -0,0 +1,77 @@
+package com.repsy.repsy_api.tracing;
+
+import com.repsy.storage.api.Tracing;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.nio.file.Paths;
+
+/**
+ * Sets up the OpenTelemetry SDK behind {@link Tracing}: parent-based ratio sampling, a batching span processor
+ * (export happens off the request thread) and an OTLP or file exporter.
+ */
+@Configuration
+public class TracingConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(TracingConfiguration.class);
+
+    @Bean(destroyMethod = "close")
+    OpenTelemetrySdk openTelemetry(TracingProperties properties, @Value("${spring.application.name:repsy_api}") String serviceName) {
+        SdkTracerProviderBuilder tracerProvider = SdkTracerProvider.builder()
+                .setResource(Resource.getDefault().merge(Resource.create(Attributes.of(
+                        AttributeKey.stringKey("service.name"), serviceName))));
+        if (properties.isEnabled()) {
+            tracerProvider
+                    .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(properties.getSampleRatio())))
+                    .addSpanProcessor(BatchSpanProcessor.builder(exporter(properties))
+                            .setMaxQueueSize(properties.getMaxQueueSize())
+                            .setMaxExportBatchSize(properties.getMaxExportBatchSize())
+                            .setScheduleDelay(properties.getScheduleDelay())
+                            .build());
+            logger.info("Tracing {} of requests to {}", properties.getSampleRatio(),
+                    properties.getExporter() == TracingProperties.Exporter.FILE ? properties.getFile() : properties.getOtlpEndpoint());
+        } else {
+            tracerProvider.setSampler(Sampler.alwaysOff());
+        }
+        OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProvider.build())
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+        // The storage modules and this application create their spans through Tracing
+        Tracing.install(properties.isEnabled() ? openTelemetry : OpenTelemetry.noop());
+        return openTelemetry;
+    }
+
+    private static SpanExporter exporter(TracingProperties properties) {
+        return switch (properties.getExporter()) {
+            case OTLP -> OtlpHttpSpanExporter.builder().setEndpoint(properties.getOtlpEndpoint()).build();
+            case FILE -> new FileSpanExporter(Paths.get(properties.getFile()));
+        };
+    }
+
+    @Bean
+    FilterRegistrationBean<TracingFilter> tracingFilter(TracingProperties properties, OpenTelemetrySdk openTelemetry) {
+        FilterRegistrationBean<TracingFilter> registration = new FilterRegistrationBean<>(
+                new TracingFilter(properties.isEnabled(), openTelemetry.getPropagators()));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE); // The request span covers every other filter
+        return registration;
+    }
+}
@@ -0,0 +1,98 @@
+package com.repsy.repsy_api.tracing;
+
+import com.repsy.storage.api.Tracing;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Starts the root span of a request (the controller phase). The sampling decision is made here, once per
+ * request; the service, storage and database spans below it are only created when it was sampled.
+ */
+class TracingFilter extends OncePerRequestFilter {
+
+    private static final AttributeKey<String> HTTP_METHOD = AttributeKey.stringKey("http.request.method");
+    private static final AttributeKey<String> HTTP_ROUTE = AttributeKey.stringKey("http.route");
+    private static final AttributeKey<String> URL_PATH = AttributeKey.stringKey("url.path");
+    private static final AttributeKey<Long> HTTP_STATUS = AttributeKey.longKey("http.response.status_code");
+    private static final AttributeKey<Long> REQUEST_BYTES = AttributeKey.longKey("http.request.body.size");
+
+    private static final TextMapGetter<HttpServletRequest> HEADERS = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(HttpServletRequest request) {
+            return Collections.list(request.getHeaderNames());
+        }
+
+        @Override
+        public String get(HttpServletRequest request, String key) {
+            return request == null ? null : request.getHeader(key);
+        }
+    };
+
+    private final boolean enabled;
+    private final ContextPropagators propagators;
+
+    TracingFilter(boolean enabled, ContextPropagators propagators) {
+        this.enabled = enabled;
+        this.propagators = propagators;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+        // Continues the caller's trace (and its sampling decision) when it sends a traceparent header
+        Context parent = propagators.getTextMapPropagator().extract(Context.root(), request, HEADERS);
+        Span span = Tracing.tracer().spanBuilder(request.getMethod())
+                .setParent(parent)
+                .setSpanKind(SpanKind.SERVER)
+                .startSpan();
+        if (!span.isRecording()) {
+            // Unsampled: keep the (non-recording) context current so nothing below creates spans
+            try (Scope ignored = span.makeCurrent()) {
+                chain.doFilter(request, response);
+            }
+            return;
+        }
+
+        span.setAttribute(HTTP_METHOD, request.getMethod());
+        span.setAttribute(URL_PATH, request.getRequestURI());
+        if (request.getContentLengthLong() >= 0) {
+            span.setAttribute(REQUEST_BYTES, request.getContentLengthLong());
+        }
+        try (Scope ignored = span.makeCurrent()) {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            Tracing.fail(span, e);
+            throw e;
+        } finally {
+            Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (route != null) {
+                span.updateName(request.getMethod() + " " + route);
+                span.setAttribute(HTTP_ROUTE, route.toString());
+            }
+            span.setAttribute(HTTP_STATUS, response.getStatus());
+            if (response.getStatus() >= 500) {
+                span.setStatus(StatusCode.ERROR);
+            }
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.repsy.repsy_api.tracing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("repsy.tracing")
+public class TracingProperties {
+
+    /**
+     * Where finished spans go.
+     */
+    public enum Exporter {
+        /**
+         * OTLP over HTTP to a collector (e.g. the OpenTelemetry Collector or Jaeger).
+         */
+        OTLP,
+        /**
+         * One JSON object per span, appended to a local file.
+         */
+        FILE
+    }
+
+    /**
+     * Whether requests are traced. When off, no spans are created at all.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Fraction of requests that are traced (0.0 - 1.0). Requests carrying a W3C traceparent header
+     * follow the caller's sampling decision instead.
+     */
+    private double sampleRatio = 0.01;
+
+    private Exporter exporter = Exporter.OTLP;
+
+    /**
+     * OTLP/HTTP traces endpoint of the collector.
+     */
+    private String otlpEndpoint = "http://localhost:4318/v1/traces";
+
+    /**
+     * Target file of the FILE exporter.
+     */
+    private String file = "traces.ndjson";
+
+    /**
+     * Finished spans buffered for export; spans beyond this are dropped rather than slowing requests down.
+     */
+    private int maxQueueSize = 2048;
+
+    /**
+     * Maximum spans per export call.
+     */
+    private int maxExportBatchSize = 512;
+
+    /**
+     * Delay between two exports.
+     */
+    private Duration scheduleDelay = Duration.ofSeconds(5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRatio() {
+        return sampleRatio;
+    }
+
+    public void setSampleRatio(double sampleRatio) {
+        this.sampleRatio = sampleRatio;
+    }
+
+    public Exporter getExporter() {
+        return exporter;
+    }
+
+    public void setExporter(Exporter exporter) {
+        this.exporter = exporter;
+    }
+
+    public String getOtlpEndpoint() {
+        return otlpEndpoint;
+    }
+
+    public void setOtlpEndpoint(String otlpEndpoint) {
+        this.otlpEndpoint = otlpEndpoint;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getMaxExportBatchSize() {
+        return maxExportBatchSize;
+    }
+
+    public void setMaxExportBatchSize(int maxExportBatchSize) {
+        this.maxExportBatchSize = maxExportBatchSize;
+    }
+
+    public Duration getScheduleDelay() {
+        return scheduleDelay;
+    }
+
+    public void setScheduleDelay(Duration scheduleDelay) {
+        this.scheduleDelay = scheduleDelay;
+    }
+}
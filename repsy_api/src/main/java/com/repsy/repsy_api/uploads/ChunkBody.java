@@ -0,0 +1,91 @@
+package com.repsy.repsy_api.uploads;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * MultipartFile view over the raw body of a chunk upload, so it can be streamed to storage without buffering.
+ * The body can be read once; a body that ends before the expected size fails the read, so a dropped
+ * connection never stores a short chunk.
+ */
+class ChunkBody implements MultipartFile {
+
+    private final String name;
+    private final long size;
+    private final InputStream body;
+
+    ChunkBody(String name, long size, InputStream body) {
+        this.name = name;
+        this.size = size;
+        this.body = body;
+    }
+
+    @Override public String getName() { return "chunk"; }
+    @Override public String getOriginalFilename() { return name; }
+    @Override public String getContentType() { return null; }
+    @Override public boolean isEmpty() { return size == 0; }
+    @Override public long getSize() { return size; }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        try (InputStream in = getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new FilterInputStream(body) {
+            private long remaining = size;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining == 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b < 0) {
+                    throw truncated();
+                }
+                remaining--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (remaining == 0) {
+                    return -1;
+                }
+                int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+                if (read < 0) {
+                    throw truncated();
+                }
+                remaining -= read;
+                return read;
+            }
+
+            private EOFException truncated() {
+                return new EOFException("Chunk body ended after " + (size - remaining) + " of " + size + " bytes");
+            }
+        };
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException, IllegalStateException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException, IllegalStateException {
+        try (InputStream in = getInputStream()) {
+            Files.copy(in, dest);
+        }
+    }
+}
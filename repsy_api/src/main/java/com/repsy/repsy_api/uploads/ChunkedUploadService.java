@@ -0,0 +1,444 @@
+package com.repsy.repsy_api.uploads;
+
+import com.repsy.repsy_api.packages.BlobDigest;
+import com.repsy.repsy_api.packages.PackageService;
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resumable uploads of large .rep files: a client opens a session, sends the file as fixed-size chunks in any
+ * order and over parallel connections, asks which chunks arrived after an interruption, and commits once all
+ * chunks are in. The commit joins the chunks on the storage side and deploys the result like an upload.
+ * <p>
+ * Sessions and received chunks are rows, so every instance can serve every request of an upload.
+ * Each chunk is stored under a key of its own that is unique per attempt; a retried chunk replaces the row
+ * and the previous object is deleted, so a slow attempt never overwrites the bytes a commit is reading.
+ * Sessions that see no activity for {@code session-ttl} are removed together with their chunks.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    /**
+     * Storage key prefix of the chunks, inside the deploy staging area. Keys are
+     * {@code _staging/uploads/{session}/{index}-{attempt}}; the storage reconciler leaves them to the sweeper.
+     */
+    static final String UPLOAD_PREFIX = "_staging/uploads/";
+
+    private static final String SESSION_COLUMNS =
+            "id, name, version, file_size, chunk_size, chunk_count, state, sha256, created_at, expires_at";
+
+    private static final RowMapper<UploadSession> SESSION_MAPPER = (rs, rowNum) -> new UploadSession(
+            rs.getObject("id", UUID.class),
+            rs.getString("name"),
+            rs.getString("version"),
+            rs.getLong("file_size"),
+            rs.getLong("chunk_size"),
+            rs.getInt("chunk_count"),
+            UploadSession.State.valueOf(rs.getString("state")),
+            rs.getString("sha256"),
+            rs.getTimestamp("created_at").toInstant(),
+            rs.getTimestamp("expires_at").toInstant());
+
+    private static final RowMapper<Chunk> CHUNK_MAPPER = (rs, rowNum) ->
+            new Chunk(rs.getInt("chunk_index"), rs.getString("storage_key"), rs.getLong("size"));
+
+    private final UploadProperties properties;
+    private final PackageService packageService;
+    private final StorageService storageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public ChunkedUploadService(UploadProperties properties, PackageService packageService, StorageService storageService,
+                                DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.packageService = packageService;
+        this.storageService = storageService;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * An upload session.
+     *
+     * @param sha256 The digest of the deployed file, once committed.
+     */
+    public record UploadSession(UUID id, String name, String version, long fileSize, long chunkSize, int chunkCount,
+                                State state, String sha256, Instant createdAt, Instant expiresAt) {
+
+        public enum State {
+            /** Receiving chunks. */
+            OPEN,
+            /** A commit is assembling and deploying the file; chunks are rejected. */
+            COMMITTING,
+            /** Deployed; kept until it expires so a retried commit gets the same answer. */
+            COMMITTED
+        }
+
+        /**
+         * @return The size chunk {@code index} must have: {@code chunkSize}, except for the last chunk.
+         */
+        public long chunkSize(int index) {
+            return index < chunkCount - 1 ? chunkSize : fileSize - (long) (chunkCount - 1) * chunkSize;
+        }
+    }
+
+    /**
+     * A received chunk.
+     */
+    record Chunk(int index, String storageKey, long size) {
+    }
+
+    /**
+     * What a session has received so far.
+     *
+     * @param receivedChunks The indexes of the received chunks, ascending.
+     * @param receivedOffset The length of the file prefix received without gaps; a sequential client resumes here.
+     */
+    public record UploadStatus(UploadSession session, List<Integer> receivedChunks, long receivedOffset) {
+    }
+
+    /**
+     * Opens an upload session.
+     *
+     * @param name      The package name.
+     * @param version   The package version.
+     * @param fileSize  The size of the .rep file in bytes.
+     * @param chunkSize The chunk size the client wants to use, or null for the configured default.
+     * @throws PackageService.InvalidFileException if a parameter is out of the configured bounds.
+     */
+    public UploadSession create(String name, String version, long fileSize, Long chunkSize) {
+        if (name == null || name.isBlank() || version == null || version.isBlank()) {
+            throw new PackageService.InvalidFileException("'name' and 'version' are required.");
+        }
+        if (fileSize <= 0) {
+            throw new PackageService.InvalidFileException("'size' must be positive.");
+        }
+        if (fileSize > properties.getMaxFileBytes()) {
+            throw new PackageService.InvalidFileException("'size' exceeds the limit of " + properties.getMaxFileBytes() + " bytes.");
+        }
+        long chunk = chunkSize != null ? chunkSize : properties.getDefaultChunkBytes();
+        if (chunk < properties.getMinChunkBytes() || chunk > properties.getMaxChunkBytes()) {
+            throw new PackageService.InvalidFileException("'chunkSize' must be between " + properties.getMinChunkBytes()
+                    + " and " + properties.getMaxChunkBytes() + " bytes.");
+        }
+        long chunkCount = (fileSize + chunk - 1) / chunk;
+        if (chunkCount > properties.getMaxChunks()) {
+            throw new PackageService.InvalidFileException("A file of " + fileSize + " bytes needs " + chunkCount
+                    + " chunks of " + chunk + " bytes; at most " + properties.getMaxChunks() + " are allowed.");
+        }
+
+        Instant now = Instant.now();
+        UploadSession session = new UploadSession(UUID.randomUUID(), name, version, fileSize, chunk, (int) chunkCount,
+                UploadSession.State.OPEN, null, now, now.plus(properties.getSessionTtl()));
+        jdbcTemplate.update("INSERT INTO upload_sessions (id, name, version, file_size, chunk_size, chunk_count, state, "
+                        + "created_at, updated_at, expires_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                session.id(), name, version, fileSize, chunk, session.chunkCount(), session.state().name(),
+                Timestamp.from(now), Timestamp.from(now), Timestamp.from(session.expiresAt()));
+        logger.info("Opened upload session {} for {}/{}: {} bytes in {} chunks", session.id(), name, version, fileSize, chunkCount);
+        return session;
+    }
+
+    /**
+     * Stores one chunk, replacing an earlier attempt of it, and extends the session.
+     *
+     * @param contentLength The announced body length; it must equal the size of the chunk.
+     * @throws UploadNotFoundException if the session does not exist or has expired.
+     * @throws UploadStateException if the session no longer accepts chunks.
+     * @throws PackageService.InvalidFileException if the index or length does not fit the session.
+     */
+    public void putChunk(UUID id, int index, long contentLength, InputStream body) {
+        UploadSession session = find(id);
+        if (session.state() != UploadSession.State.OPEN) {
+            throw new UploadStateException("Upload " + id + " is " + session.state() + " and accepts no more chunks.");
+        }
+        if (index < 0 || index >= session.chunkCount()) {
+            throw new PackageService.InvalidFileException("Chunk index must be between 0 and " + (session.chunkCount() - 1) + ".");
+        }
+        long expected = session.chunkSize(index);
+        if (contentLength != expected) {
+            throw new PackageService.InvalidFileException("Chunk " + index + " must be sent with a Content-Length of " + expected
+                    + " bytes, got " + (contentLength < 0 ? "none" : contentLength) + ".");
+        }
+
+        String key = UPLOAD_PREFIX + id + "/" + index + "-" + UUID.randomUUID();
+        storageService.store(new ChunkBody(index + ".part", expected, body), Paths.get(key));
+
+        Instant now = Instant.now();
+        Optional<String> replaced;
+        try {
+            replaced = transactionTemplate.execute(status -> {
+                // Locks the session row: a concurrent commit either sees this chunk or rejected it
+                int open = jdbcTemplate.update("UPDATE upload_sessions SET expires_at = ?, updated_at = ? "
+                                + "WHERE id = ? AND state = 'OPEN' AND expires_at > ?",
+                        Timestamp.from(now.plus(properties.getSessionTtl())), Timestamp.from(now), id, Timestamp.from(now));
+                if (open == 0) {
+                    throw new UploadStateException("Upload " + id + " is no longer open.");
+                }
+                List<String> previous = jdbcTemplate.queryForList("SELECT storage_key FROM upload_chunks "
+                        + "WHERE session_id = ? AND chunk_index = ? FOR UPDATE", String.class, id, index);
+                jdbcTemplate.update("INSERT INTO upload_chunks (session_id, chunk_index, storage_key, size, received_at) "
+                                + "VALUES (?, ?, ?, ?, ?) ON CONFLICT (session_id, chunk_index) "
+                                + "DO UPDATE SET storage_key = EXCLUDED.storage_key, size = EXCLUDED.size, received_at = EXCLUDED.received_at",
+                        id, index, key, expected, Timestamp.from(now));
+                return previous.stream().findFirst();
+            });
+        } catch (RuntimeException e) {
+            deleteQuietly(key);
+            throw e;
+        }
+        replaced.ifPresent(this::deleteQuietly);
+        logger.debug("Received chunk {}/{} of upload {} ({} bytes)", index + 1, session.chunkCount(), id, expected);
+    }
+
+    /**
+     * @throws UploadNotFoundException if the session does not exist or has expired.
+     */
+    public UploadStatus status(UUID id) {
+        UploadSession session = find(id);
+        List<Chunk> chunks = chunks(id);
+        List<Integer> received = new ArrayList<>(chunks.size());
+        long receivedOffset = 0;
+        boolean contiguous = true;
+        for (Chunk chunk : chunks) {
+            received.add(chunk.index());
+            contiguous &= chunk.index() == received.size() - 1;
+            if (contiguous) {
+                receivedOffset += chunk.size();
+            }
+        }
+        if (session.state() == UploadSession.State.COMMITTED) {
+            receivedOffset = session.fileSize(); // The chunks are gone, the file is deployed
+        }
+        return new UploadStatus(session, received, receivedOffset);
+    }
+
+    /**
+     * Assembles the chunks and deploys the package version. Committing a session that is already committed
+     * returns the result of that commit, so a client can safely retry a commit whose response it lost.
+     *
+     * @param sha256   The SHA-256 of the whole file as computed by the client, or null to skip the check.
+     * @param metaFile The meta.json file.
+     * @return The committed session.
+     * @throws UploadNotFoundException if the session does not exist or has expired.
+     * @throws UploadStateException if chunks are missing or another commit of the session is in progress.
+     * @throws PackageService.PackageAlreadyExistsException if the version exists; the session stays open.
+     */
+    public UploadSession commit(UUID id, String sha256, MultipartFile metaFile) {
+        Instant now = Instant.now();
+        UploadSession session = transactionTemplate.execute(status -> {
+            UploadSession current = jdbcTemplate.query("SELECT " + SESSION_COLUMNS + " FROM upload_sessions WHERE id = ? FOR UPDATE", SESSION_MAPPER, id).stream().findFirst()
+                    .orElseThrow(() -> new UploadNotFoundException("Upload " + id + " does not exist or has expired."));
+            if (current.state() == UploadSession.State.COMMITTED) {
+                return current;
+            }
+            if (current.expiresAt().isBefore(now)) {
+                throw new UploadNotFoundException("Upload " + id + " has expired.");
+            }
+            if (current.state() == UploadSession.State.COMMITTING) {
+                Instant updatedAt = jdbcTemplate.queryForObject("SELECT updated_at FROM upload_sessions WHERE id = ?", Timestamp.class, id).toInstant();
+                if (updatedAt.isAfter(now.minus(properties.getCommitTimeout()))) {
+                    throw new UploadStateException("A commit of upload " + id + " is already in progress.");
+                }
+                logger.warn("Taking over the abandoned commit of upload {}", id);
+            }
+            jdbcTemplate.update("UPDATE upload_sessions SET state = 'COMMITTING', updated_at = ? WHERE id = ?", Timestamp.from(now), id);
+            return current;
+        });
+        if (session.state() == UploadSession.State.COMMITTED) {
+            logger.debug("Upload {} was already committed", id);
+            return session;
+        }
+
+        BlobDigest digest;
+        try {
+            String expectedSha256 = sha256 == null || sha256.isBlank() ? null : new BlobDigest(sha256, session.fileSize()).sha256();
+            List<Chunk> chunks = chunks(id);
+            if (chunks.size() != session.chunkCount()) {
+                throw new UploadStateException("Upload " + id + " has received " + chunks.size() + " of " + session.chunkCount()
+                        + " chunks; missing: " + describeMissing(chunks, session.chunkCount()) + ".");
+            }
+            digest = packageService.deployAssembled(session.name(), session.version(),
+                    chunks.stream().map(Chunk::storageKey).toList(), expectedSha256, metaFile);
+        } catch (RuntimeException e) {
+            // Back to receiving chunks, so the client can fix the problem (e.g. resend a chunk) and commit again
+            jdbcTemplate.update("UPDATE upload_sessions SET state = 'OPEN', updated_at = ? WHERE id = ? AND state = 'COMMITTING'",
+                    Timestamp.from(Instant.now()), id);
+            throw e;
+        }
+
+        Instant committedAt = Instant.now();
+        Instant expiresAt = committedAt.plus(properties.getSessionTtl());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE upload_sessions SET state = 'COMMITTED', sha256 = ?, updated_at = ?, expires_at = ? WHERE id = ?",
+                    digest.sha256(), Timestamp.from(committedAt), Timestamp.from(expiresAt), id);
+            jdbcTemplate.update("DELETE FROM upload_chunks WHERE session_id = ?", id);
+        });
+        deleteChunkObjects(id);
+        logger.info("Committed upload {}: deployed {}/{} ({} bytes, sha256 {})",
+                id, session.name(), session.version(), digest.size(), digest.sha256());
+        return new UploadSession(id, session.name(), session.version(), session.fileSize(), session.chunkSize(), session.chunkCount(),
+                UploadSession.State.COMMITTED, digest.sha256(), session.createdAt(), expiresAt);
+    }
+
+    /**
+     * Cancels a session and deletes its chunks. A committed session is only forgotten; its package stays.
+     *
+     * @throws UploadNotFoundException if the session does not exist.
+     * @throws UploadStateException if a commit of the session is in progress.
+     */
+    public void abort(UUID id) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<String> states = jdbcTemplate.queryForList("SELECT state FROM upload_sessions WHERE id = ? FOR UPDATE", String.class, id);
+            if (states.isEmpty()) {
+                throw new UploadNotFoundException("Upload " + id + " does not exist or has expired.");
+            }
+            if (UploadSession.State.COMMITTING.name().equals(states.get(0))) {
+                throw new UploadStateException("A commit of upload " + id + " is in progress.");
+            }
+            jdbcTemplate.update("DELETE FROM upload_sessions WHERE id = ?", id);
+        });
+        deleteChunkObjects(id);
+        logger.info("Aborted upload {}", id);
+    }
+
+    @Scheduled(fixedDelayString = "${repsy.uploads.sweep-interval:PT5M}", initialDelayString = "${repsy.uploads.sweep-interval:PT5M}")
+    public void scheduledSweep() {
+        try {
+            int removed = sweepExpired();
+            if (removed > 0) {
+                logger.info("Removed {} expired upload sessions", removed);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Removing expired upload sessions failed; the next sweep retries", e);
+        }
+    }
+
+    /**
+     * Removes expired sessions, a batch per transaction. Sessions locked by a request are skipped, so instances
+     * sweep concurrently without waiting on each other or on uploads; commits in progress are left alone until
+     * they exceed {@code commit-timeout}.
+     *
+     * @return The number of sessions removed.
+     */
+    public int sweepExpired() {
+        int removed = 0;
+        while (true) {
+            Instant now = Instant.now();
+            List<UUID> expired = transactionTemplate.execute(status -> {
+                List<UUID> ids = jdbcTemplate.queryForList("SELECT id FROM upload_sessions WHERE expires_at < ? "
+                                + "AND (state <> 'COMMITTING' OR updated_at < ?) ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED",
+                        UUID.class, Timestamp.from(now), Timestamp.from(now.minus(properties.getCommitTimeout())),
+                        properties.getSweepBatchSize());
+                if (!ids.isEmpty()) {
+                    jdbcTemplate.update(connection -> { // Chunk rows go with the cascade
+                        PreparedStatement statement = connection.prepareStatement("DELETE FROM upload_sessions WHERE id = ANY (?)");
+                        statement.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+                        return statement;
+                    });
+                }
+                return ids;
+            });
+            expired.forEach(this::deleteChunkObjects);
+            removed += expired.size();
+            if (expired.size() < properties.getSweepBatchSize()) {
+                return removed;
+            }
+        }
+    }
+
+    private UploadSession find(UUID id) {
+        UploadSession session = jdbcTemplate.query("SELECT " + SESSION_COLUMNS + " FROM upload_sessions WHERE id = ?", SESSION_MAPPER, id)
+                .stream().findFirst()
+                .orElseThrow(() -> new UploadNotFoundException("Upload " + id + " does not exist or has expired."));
+        if (session.state() != UploadSession.State.COMMITTED && session.expiresAt().isBefore(Instant.now())) {
+            throw new UploadNotFoundException("Upload " + id + " has expired.");
+        }
+        return session;
+    }
+
+    private List<Chunk> chunks(UUID id) {
+        return jdbcTemplate.query("SELECT chunk_index, storage_key, size FROM upload_chunks WHERE session_id = ? ORDER BY chunk_index",
+                CHUNK_MAPPER, id);
+    }
+
+    /**
+     * Lists up to ten missing chunk indexes, e.g. "3, 7, 8, ...".
+     */
+    static String describeMissing(List<Chunk> chunks, int chunkCount) {
+        StringBuilder missing = new StringBuilder();
+        int listed = 0;
+        int next = 0;
+        for (int index = 0; index < chunkCount && listed <= 10; index++) {
+            if (next < chunks.size() && chunks.get(next).index() == index) {
+                next++;
+                continue;
+            }
+            missing.append(listed == 0 ? "" : ", ").append(listed == 10 ? "..." : String.valueOf(index));
+            listed++;
+        }
+        return missing.toString();
+    }
+
+    /**
+     * Deletes every object under the session's prefix, including those of attempts that never got a row
+     * (e.g. the instance stopped while storing them).
+     */
+    private void deleteChunkObjects(UUID id) {
+        try {
+            List<String> keys = storageService.listAll(UPLOAD_PREFIX + id + "/", StorageService.MAX_PAGE_SIZE)
+                    .map(StoredObject::getKey)
+                    .toList();
+            List<String> failed = storageService.deleteBatch(keys, properties.getDeleteParallelism());
+            if (!failed.isEmpty()) {
+                logger.warn("Could not delete {} of {} chunks of upload {}", failed.size(), keys.size(), id);
+            }
+        } catch (StorageException e) {
+            logger.warn("Could not delete the chunks of upload {}: {}", id, e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            storageService.delete(key);
+        } catch (StorageException e) {
+            logger.warn("Could not delete {}: {}", key, e.getMessage());
+        }
+    }
+
+    public static class UploadNotFoundException extends RuntimeException {
+        public UploadNotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    public static class UploadStateException extends RuntimeException {
+        public UploadStateException(String message) {
+            super(message);
+        }
+    }
+}
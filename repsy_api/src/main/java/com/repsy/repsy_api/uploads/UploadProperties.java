@@ -0,0 +1,142 @@
+package com.repsy.repsy_api.uploads;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties("repsy.uploads")
+public class UploadProperties {
+
+    /**
+     * How long an upload session stays open without activity. Every received chunk extends it;
+     * expired sessions are removed together with their chunks.
+     */
+    private Duration sessionTtl = Duration.ofHours(24);
+
+    /**
+     * Chunk size used when the client does not ask for one.
+     */
+    private long defaultChunkBytes = 8L * 1024 * 1024;
+
+    /**
+     * Smallest chunk size a client may ask for. Every chunk but the last must have this size at least,
+     * because object stores assemble the file with a server-side compose (5 MiB minimum part size on S3 and Minio).
+     */
+    private long minChunkBytes = 5L * 1024 * 1024;
+
+    /**
+     * Largest chunk size a client may ask for; one chunk is one request.
+     */
+    private long maxChunkBytes = 64L * 1024 * 1024;
+
+    /**
+     * Largest .rep file accepted through an upload session.
+     */
+    private long maxFileBytes = 10L * 1024 * 1024 * 1024;
+
+    /**
+     * Largest number of chunks per file (10000 is the part limit of a compose on S3 and Minio).
+     */
+    private int maxChunks = 10_000;
+
+    /**
+     * How often expired sessions are removed.
+     */
+    private Duration sweepInterval = Duration.ofMinutes(5);
+
+    /**
+     * Expired sessions removed per sweep transaction.
+     */
+    private int sweepBatchSize = 100;
+
+    /**
+     * A commit that has not finished after this long is considered abandoned (e.g. its instance stopped),
+     * so the session can be committed again or expire.
+     */
+    private Duration commitTimeout = Duration.ofHours(1);
+
+    /**
+     * Concurrent chunk deletions on the filesystem strategy. Object stores delete a batch with one request.
+     */
+    private int deleteParallelism = 4;
+
+    public Duration getSessionTtl() {
+        return sessionTtl;
+    }
+
+    public void setSessionTtl(Duration sessionTtl) {
+        this.sessionTtl = sessionTtl;
+    }
+
+    public long getDefaultChunkBytes() {
+        return defaultChunkBytes;
+    }
+
+    public void setDefaultChunkBytes(long defaultChunkBytes) {
+        this.defaultChunkBytes = defaultChunkBytes;
+    }
+
+    public long getMinChunkBytes() {
+        return minChunkBytes;
+    }
+
+    public void setMinChunkBytes(long minChunkBytes) {
+        this.minChunkBytes = minChunkBytes;
+    }
+
+    public long getMaxChunkBytes() {
+        return maxChunkBytes;
+    }
+
+    public void setMaxChunkBytes(long maxChunkBytes) {
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    public void setMaxFileBytes(long maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public int getMaxChunks() {
+        return maxChunks;
+    }
+
+    public void setMaxChunks(int maxChunks) {
+        this.maxChunks = maxChunks;
+    }
+
+    public Duration getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(Duration sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    public int getSweepBatchSize() {
+        return sweepBatchSize;
+    }
+
+    public void setSweepBatchSize(int sweepBatchSize) {
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    public Duration getCommitTimeout() {
+        return commitTimeout;
+    }
+
+    public void setCommitTimeout(Duration commitTimeout) {
+        this.commitTimeout = commitTimeout;
+    }
+
+    public int getDeleteParallelism() {
+        return deleteParallelism;
+    }
+
+    public void setDeleteParallelism(int deleteParallelism) {
+        this.deleteParallelism = deleteParallelism;
+    }
+}
@@ -0,0 +1,15 @@
+-- Schema as previously created by spring.jpa.hibernate.ddl-auto=update.
+-- Existing databases are baselined at version 1 (spring.flyway.baseline-on-migrate), so this only runs on empty ones.
+
+CREATE SEQUENCE package_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE packages (
+    id                BIGINT                      NOT NULL,
+    name              VARCHAR(255)                NOT NULL,
+    version           VARCHAR(255)                NOT NULL,
+    author            VARCHAR(255),
+    dependencies_json TEXT,
+    created_at        TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT packages_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_packages_name_version UNIQUE (name, version)
+);
@@ -0,0 +1,20 @@
+-- Additions made while the schema was still managed by ddl-auto=update. A database baselined at version 1 may
+-- already have some of them (or none), so every statement tolerates existing objects.
+
+-- .rep digests, for deploy-by-reference (PackageService.findStoredBlobs)
+ALTER TABLE packages ADD COLUMN IF NOT EXISTS rep_sha256 VARCHAR(64);
+ALTER TABLE packages ADD COLUMN IF NOT EXISTS rep_size BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_packages_rep_sha256 ON packages (rep_sha256);
+
+-- Resumable storage scans (reconciler, integrity scrubber)
+CREATE TABLE IF NOT EXISTS scan_checkpoints (
+    name                   VARCHAR(64)                 NOT NULL,
+    continuation_token     VARCHAR(2048),
+    pass_started_at        TIMESTAMP(6) WITH TIME ZONE,
+    last_pass_completed_at TIMESTAMP(6) WITH TIME ZONE,
+    scanned_in_pass        BIGINT                      NOT NULL,
+    total_actions          BIGINT                      NOT NULL,
+    updated_at             TIMESTAMP(6) WITH TIME ZONE,
+    CONSTRAINT scan_checkpoints_pkey PRIMARY KEY (name)
+);
@@ -0,0 +1,27 @@
+-- Change feed (GET /changes). Rows are inserted by the deploying transaction with seq NULL; the feed position
+-- is assigned after commit, under an advisory lock, so positions become visible in increasing order.
+-- Ordering by packages.id instead would let a concurrent deploy with a lower id commit after a mirror moved past it.
+
+CREATE SEQUENCE package_change_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE SEQUENCE package_feed_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE package_changes (
+    id          BIGINT                      NOT NULL,
+    seq         BIGINT,
+    package_id  BIGINT                      NOT NULL,
+    name        VARCHAR(255)                NOT NULL,
+    version     VARCHAR(255)                NOT NULL,
+    change_type VARCHAR(16)                 NOT NULL,
+    changed_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT package_changes_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_package_changes_seq UNIQUE (seq)
+);
+
+-- The sequencer only looks for rows that have no position yet
+CREATE INDEX idx_package_changes_unsequenced ON package_changes (id) WHERE seq IS NULL;
+
+-- Existing versions start the feed, in deploy order
+INSERT INTO package_changes (id, seq, package_id, name, version, change_type, changed_at)
+SELECT nextval('package_change_sequence'), nextval('package_feed_sequence'), p.id, p.name, p.version, 'DEPLOY', p.created_at
+FROM (SELECT id, name, version, created_at FROM packages ORDER BY id) p;
@@ -0,0 +1,6 @@
+-- Candidate selection of the retention rules (RetentionEngine).
+-- "Keep last N" ranks each package's versions newest first; in this order the ranking streams out of the index.
+CREATE INDEX idx_packages_name_created_at ON packages (name, created_at DESC, id DESC);
+
+-- "Older than" rules page through the oldest versions first
+CREATE INDEX idx_packages_created_at ON packages (created_at, id);
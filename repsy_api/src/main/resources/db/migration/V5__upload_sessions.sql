@@ -0,0 +1,30 @@
+-- Resumable chunked uploads (POST /uploads). Sessions are kept in the database so the chunks of one upload
+-- can be sent to any instance; a chunk row points at the storage object holding its bytes.
+
+CREATE TABLE upload_sessions (
+    id          UUID                        NOT NULL,
+    name        VARCHAR(255)                NOT NULL,
+    version     VARCHAR(255)                NOT NULL,
+    file_size   BIGINT                      NOT NULL,
+    chunk_size  BIGINT                      NOT NULL,
+    chunk_count INTEGER                     NOT NULL,
+    state       VARCHAR(16)                 NOT NULL,
+    sha256      VARCHAR(64),
+    created_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    expires_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT upload_sessions_pkey PRIMARY KEY (id)
+);
+
+-- The sweeper looks for expired sessions
+CREATE INDEX idx_upload_sessions_expires_at ON upload_sessions (expires_at);
+
+CREATE TABLE upload_chunks (
+    session_id  UUID                        NOT NULL,
+    chunk_index INTEGER                     NOT NULL,
+    storage_key VARCHAR(1024)               NOT NULL,
+    size        BIGINT                      NOT NULL,
+    received_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT upload_chunks_pkey PRIMARY KEY (session_id, chunk_index),
+    CONSTRAINT fk_upload_chunks_session FOREIGN KEY (session_id) REFERENCES upload_sessions (id) ON DELETE CASCADE
+);
@@ -0,0 +1,75 @@
+package com.repsy.repsy_api;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cold start of the fast-startup profile: each run is a fresh JVM that exits once the context has refreshed
+ * (web server started, every singleton created). Runs without a database or Minio, which is the point of the
+ * profile. Excluded from the default build; run with {@code mvn -pl repsy_api test -Pbenchmark -Dtest=StartupTimeBenchmarkTests}.
+ * Set {@code -Dstartup.budget.millis} to fail the build when the median gets slower.
+ */
+@Tag("benchmark")
+class StartupTimeBenchmarkTests {
+
+	private static final int WARMUP_RUNS = 1;
+	private static final int MEASURED_RUNS = 5;
+	private static final long BUDGET_MILLIS = Long.getLong("startup.budget.millis", 20_000);
+
+	@Test
+	void fastStartupProfileColdStart(TestReporter reporter) throws Exception {
+		Path logs = Files.createDirectories(Paths.get("target", "startup-benchmark"));
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			startOnce(logs.resolve("warmup-" + i + ".log"));
+		}
+		long[] millis = new long[MEASURED_RUNS];
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			millis[i] = startOnce(logs.resolve("run-" + i + ".log"));
+		}
+		Arrays.sort(millis);
+		long median = millis[MEASURED_RUNS / 2];
+
+		reporter.publishEntry("coldStart", String.format("fast-startup profile, %d runs: min %d ms, median %d ms, max %d ms",
+				MEASURED_RUNS, millis[0], median, millis[MEASURED_RUNS - 1]));
+		assertTrue(median <= BUDGET_MILLIS, "Median startup " + median + " ms exceeds the budget of " + BUDGET_MILLIS + " ms");
+	}
+
+	private static long startOnce(Path log) throws Exception {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("-Dspring.context.exit=onRefresh");
+		command.add("-Dspring.devtools.restart.enabled=false"); // Devtools is on the test class path but never in the packaged jar
+		command.add("-Dspring.devtools.livereload.enabled=false");
+		command.add(RepsyApiApplication.class.getName());
+		command.add("--spring.profiles.active=fast-startup");
+		command.add("--repsy.migrations.on-startup=false");
+		command.add("--spring.datasource.password=unused");
+		command.add("--server.port=0");
+		command.add("--storage.strategy=filesystem");
+		command.add("--storage.location=target/startup-benchmark/storage");
+
+		long startedAt = System.nanoTime();
+		Process process = new ProcessBuilder(command)
+				.redirectErrorStream(true)
+				.redirectOutput(log.toFile())
+				.start();
+		assertTrue(process.waitFor(2, TimeUnit.MINUTES), "Application did not exit; see " + log);
+		long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+		assertEquals(0, process.exitValue(), "Application failed to start; see " + log.toAbsolutePath());
+		return elapsedMillis;
+	}
+}
@@ -0,0 +1,64 @@
+package com.repsy.repsy_api.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UploadAdmissionTests {
+
+	private static AdmissionProperties properties() {
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.setMaxInFlightBytes(100);
+		properties.setMaxConcurrentUploads(3);
+		properties.setPerClientMaxInFlightBytes(60);
+		properties.setPerClientMaxConcurrentUploads(2);
+		properties.setMaxQueueWait(Duration.ofMillis(50));
+		return properties;
+	}
+
+	@Test
+	void rejectsClientOverItsShareWith429Limit() {
+		UploadAdmission admission = new UploadAdmission(properties());
+		admission.admit("a", 40);
+		assertThatThrownBy(() -> admission.admit("a", 40))
+				.isInstanceOf(UploadAdmission.UploadRejectedException.class)
+				.extracting(e -> ((UploadAdmission.UploadRejectedException) e).getLimit())
+				.isEqualTo(UploadAdmission.Limit.CLIENT);
+		admission.admit("b", 40);
+		assertThatThrownBy(() -> admission.admit("c", 40))
+				.extracting(e -> ((UploadAdmission.UploadRejectedException) e).getLimit())
+				.isEqualTo(UploadAdmission.Limit.SERVER);
+		assertThat(admission.stats())
+				.containsEntry("inFlightBytes", 80L)
+				.containsEntry("rejectedClientLimit", 1L)
+				.containsEntry("rejectedServerLimit", 1L);
+	}
+
+	@Test
+	void queuedUploadIsAdmittedWhenCapacityIsReleased() throws Exception {
+		AdmissionProperties properties = properties();
+		properties.setMaxQueueWait(Duration.ofSeconds(5));
+		UploadAdmission admission = new UploadAdmission(properties);
+		UploadAdmission.Ticket first = admission.admit("a", 60);
+		admission.admit("b", 30);
+		CompletableFuture<UploadAdmission.Ticket> waiting = CompletableFuture.supplyAsync(() -> admission.admit("c", 30));
+		while (!admission.stats().get("queued").equals(1)) {
+			Thread.onSpinWait();
+		}
+		first.close();
+		assertThat(waiting.get(5, TimeUnit.SECONDS)).isNotNull();
+		assertThat(admission.stats()).containsEntry("admittedAfterWait", 1L).containsEntry("inFlightBytes", 60L);
+	}
+
+	@Test
+	void oversizedUploadIsAdmittedAlone() {
+		UploadAdmission admission = new UploadAdmission(properties());
+		admission.admit("a", 500).close();
+		assertThat(admission.stats()).containsEntry("inFlightUploads", 0).containsEntry("activeClients", 0);
+	}
+}
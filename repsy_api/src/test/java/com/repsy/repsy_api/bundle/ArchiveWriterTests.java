@@ -0,0 +1,109 @@
+package com.repsy.repsy_api.bundle;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArchiveWriterTests {
+
+	private static final String LONG_PATH = "a-package-with-a-rather-long-name/1.0.0-rc.1+build.20250101/"
+			+ "a-package-with-a-rather-long-name-1.0.0-rc.1+build.20250101.rep";
+
+	private static final Map<String, byte[]> FILES = new LinkedHashMap<>();
+
+	static {
+		FILES.put("alpha/1.0.0/meta.json", "{\"name\":\"alpha\"}".getBytes(StandardCharsets.UTF_8));
+		FILES.put("alpha/1.0.0/alpha-1.0.0.rep", new byte[1000]);
+		FILES.put(LONG_PATH, "rep".getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static byte[] write(BundleFormat format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ArchiveWriter writer = format.open(out, new BundleProperties());
+		for (Map.Entry<String, byte[]> file : FILES.entrySet()) {
+			writer.add(file.getKey(), file.getValue().length, new ByteArrayInputStream(file.getValue()));
+		}
+		writer.finish();
+		return out.toByteArray();
+	}
+
+	@Test
+	void writesReadableZip() throws IOException {
+		Map<String, byte[]> read = new LinkedHashMap<>();
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(write(BundleFormat.ZIP)))) {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				read.put(entry.getName(), zip.readAllBytes());
+			}
+		}
+		assertThat(read).containsOnlyKeys(FILES.keySet());
+		FILES.forEach((path, content) -> assertThat(read.get(path)).isEqualTo(content));
+	}
+
+	@Test
+	void writesUstarWithPaxHeaderForLongPaths() throws IOException {
+		byte[] tar = write(BundleFormat.TAR);
+		int block = TarArchiveWriter.BLOCK;
+		assertThat(tar.length % block).isZero();
+
+		// meta.json: header, one content block
+		assertThat(name(tar, 0)).isEqualTo("alpha/1.0.0/meta.json");
+		assertThat(new String(tar, 257, 5, StandardCharsets.US_ASCII)).isEqualTo("ustar");
+		assertThat(size(tar, 0)).isEqualTo(16);
+		assertThat(checksumMatches(tar, 0)).isTrue();
+		// .rep: header, two content blocks
+		assertThat(size(tar, block * 2)).isEqualTo(1000);
+		// Long path: pax header and its records, then the entry
+		int pax = block * 5;
+		assertThat(tar[pax + 156]).isEqualTo((byte) 'x');
+		String records = new String(tar, pax + block, (int) size(tar, pax), StandardCharsets.UTF_8);
+		assertThat(records).isEqualTo(TarArchiveWriter.paxRecord("path", LONG_PATH));
+		assertThat(records).startsWith(records.length() + " path=");
+		int entry = pax + block * 2;
+		assertThat(tar[entry + 156]).isEqualTo((byte) '0');
+		assertThat(new String(tar, entry + block, 3, StandardCharsets.UTF_8)).isEqualTo("rep");
+		// Two zero blocks end the archive
+		assertThat(tar.length).isEqualTo(entry + block * 4);
+	}
+
+	@Test
+	void rejectsContentOfAnotherSize() {
+		ArchiveWriter writer = BundleFormat.TAR.open(new ByteArrayOutputStream(), new BundleProperties());
+		assertThatThrownBy(() -> writer.add("a.rep", 10, new ByteArrayInputStream(new byte[11])))
+				.isInstanceOf(IOException.class)
+				.hasMessageContaining("longer");
+		assertThatThrownBy(() -> writer.add("b.rep", 10, new ByteArrayInputStream(new byte[9])))
+				.isInstanceOf(IOException.class)
+				.hasMessageContaining("ended after 9");
+	}
+
+	private static String name(byte[] tar, int header) {
+		int end = header;
+		while (tar[end] != 0) {
+			end++;
+		}
+		return new String(tar, header, end - header, StandardCharsets.US_ASCII);
+	}
+
+	private static long size(byte[] tar, int header) {
+		return Long.parseLong(new String(tar, header + 124, 11, StandardCharsets.US_ASCII), 8);
+	}
+
+	private static boolean checksumMatches(byte[] tar, int header) {
+		long sum = 0;
+		for (int i = 0; i < TarArchiveWriter.BLOCK; i++) {
+			sum += (i >= 148 && i < 156) ? ' ' : tar[header + i] & 0xff;
+		}
+		return sum == Long.parseLong(new String(tar, header + 148, 6, StandardCharsets.US_ASCII), 8);
+	}
+}
@@ -0,0 +1,32 @@
+package com.repsy.repsy_api.compression;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AcceptEncodingTests {
+
+	@Test
+	void missingHeaderOnlyAcceptsIdentity() {
+		AcceptEncoding accepted = AcceptEncoding.parse(null);
+		assertThat(accepted.accepts(ContentCoding.GZIP)).isFalse();
+		assertThat(accepted.accepts(ContentCoding.ZSTD)).isFalse();
+		assertThat(accepted.acceptsIdentity()).isTrue();
+	}
+
+	@Test
+	void honoursQualityValues() {
+		AcceptEncoding accepted = AcceptEncoding.parse("gzip;q=0.5, zstd;q=0, br");
+		assertThat(accepted.accepts(ContentCoding.GZIP)).isTrue();
+		assertThat(accepted.accepts(ContentCoding.ZSTD)).isFalse();
+	}
+
+	@Test
+	void wildcardCoversUnlistedCodings() {
+		AcceptEncoding accepted = AcceptEncoding.parse("GZIP;q=0, *");
+		assertThat(accepted.accepts(ContentCoding.ZSTD)).isTrue();
+		assertThat(accepted.accepts(ContentCoding.GZIP)).isFalse();
+		assertThat(AcceptEncoding.parse("*;q=0").acceptsIdentity()).isFalse();
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.repsy.repsy_api.compression;
+
+import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.filesystem.FileSystemStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PackageCompressionServiceTests {
+
+	private static final String FILE = "pkg/1.0.0/pkg-1.0.0.rep";
+
+	@TempDir
+	Path root;
+
+	private FileSystemStorageService storage;
+	private CompressionProperties properties;
+	private PackageCompressionService service;
+
+	@BeforeEach
+	void setUp() {
+		StorageProperties storageProperties = new StorageProperties();
+		storageProperties.setLocation(root.toString());
+		storageProperties.getDurability().setFsync(false);
+		storage = new FileSystemStorageService(storageProperties);
+		storage.init();
+		properties = new CompressionProperties();
+		properties.setEnabled(true);
+		properties.setCodings(new ArrayList<>(List.of(ContentCoding.GZIP)));
+		service = new PackageCompressionService(properties, storage);
+		byte[] content = "repeated content ".repeat(500).getBytes(StandardCharsets.UTF_8);
+		service.store(new MockMultipartFile("repFile", "pkg-1.0.0.rep", "application/octet-stream", content), Paths.get(FILE));
+	}
+
+	@AfterEach
+	void tearDown() {
+		storage.close();
+	}
+
+	@Test
+	void refusedIdentityIsServedAStoredVariantOrNothing() {
+		assertThat(service.load(FILE, "gzip, identity;q=0").coding()).isEqualTo(ContentCoding.GZIP);
+		assertThat(service.select(FILE, "gzip, identity;q=0")).get().extracting(PackageCompressionService.StoredRepresentation::coding)
+				.isEqualTo(ContentCoding.GZIP);
+
+		assertThatThrownBy(() -> service.load(FILE, "zstd, identity;q=0")).isInstanceOf(PackageCompressionService.NotAcceptableException.class);
+		assertThatThrownBy(() -> service.load(FILE, "*;q=0")).isInstanceOf(PackageCompressionService.NotAcceptableException.class);
+		assertThat(service.select(FILE, "*;q=0")).isEmpty();
+		assertThat(service.load(FILE, null).coding()).isNull();
+	}
+
+	@Test
+	void missingFileIsNotFoundEvenWhenIdentityIsRefused() {
+		assertThatThrownBy(() -> service.load("pkg/1.0.0/missing.rep", "*;q=0")).isInstanceOf(StorageFileNotFoundException.class);
+
+		properties.setEnabled(false);
+		assertThatThrownBy(() -> service.load("pkg/1.0.0/missing.rep", "*;q=0")).isInstanceOf(StorageFileNotFoundException.class);
+		assertThatThrownBy(() -> service.load(FILE, "*;q=0")).isInstanceOf(PackageCompressionService.NotAcceptableException.class);
+	}
+
+	@Test
+	void openIdentityStreamsTheFileOrDecodesAVariant() throws Exception {
+		byte[] content = "repeated content ".repeat(500).getBytes(StandardCharsets.UTF_8);
+		try (InputStream in = service.openIdentity(FILE)) {
+			assertThat(in.readAllBytes()).isEqualTo(content);
+		}
+
+		properties.setKeepIdentity(false);
+		String variantOnly = "pkg/2.0.0/pkg-2.0.0.rep";
+		service.store(new MockMultipartFile("repFile", "pkg-2.0.0.rep", "application/octet-stream", content), Paths.get(variantOnly));
+		assertThat(storage.stat(variantOnly)).isEmpty();
+		try (InputStream in = service.openIdentity(variantOnly)) {
+			assertThat(in.readAllBytes()).isEqualTo(content);
+		}
+
+		assertThatThrownBy(() -> service.openIdentity("pkg/1.0.0/missing.rep")).isInstanceOf(StorageFileNotFoundException.class);
+	}
+
+}
@@ -0,0 +1,133 @@
+package com.repsy.repsy_api.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against a primary and a streaming replica
+ * ({@code docker compose -f docker-compose.yml -f docker-compose.replica.yml up db db-replica});
+ * run with {@code mvn -pl repsy_api test -Preplica}. The URLs and credentials are taken from the same environment
+ * variables as the application. Pauses WAL replay on the replica, so the user must be allowed to do that.
+ */
+@Tag("replica")
+class ReadReplicaDataSourceReplicaTests {
+
+	private static final String PRIMARY_URL = env("SPRING_DATASOURCE_URL", "jdbc:postgresql://localhost:5432/repsy_db");
+	private static final String REPLICA_URL = env("REPSY_DATASOURCE_REPLICAS_URLS", "jdbc:postgresql://localhost:5433/repsy_db");
+	private static final String USERNAME = env("SPRING_DATASOURCE_USERNAME", "postgres");
+	private static final String PASSWORD = env("SPRING_DATASOURCE_PASSWORD", "");
+
+	private final String table = "replica_routing_test_" + UUID.randomUUID().toString().substring(0, 8);
+	private HikariDataSource primaryPool;
+	private ReadReplicaDataSource dataSource;
+	private JdbcTemplate jdbc;
+	private TransactionTemplate writes;
+	private TransactionTemplate reads;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		primaryPool = new HikariDataSource();
+		primaryPool.setJdbcUrl(PRIMARY_URL);
+		primaryPool.setUsername(USERNAME);
+		primaryPool.setPassword(PASSWORD);
+		// A single connection: tracking a write must not need a second one while the transaction holds it
+		primaryPool.setMaximumPoolSize(1);
+		primaryPool.setConnectionTimeout(1000);
+
+		ReplicaProperties properties = new ReplicaProperties();
+		properties.setEnabled(true);
+		properties.setUrls(List.of(REPLICA_URL));
+		properties.setMaxLag(Duration.ofMinutes(1)); // Paused replay must not make the replica unhealthy
+		properties.setLagCheckInterval(Duration.ofMillis(100));
+		properties.setReadYourWritesWindow(Duration.ofMinutes(1));
+		dataSource = new ReadReplicaDataSource(primaryPool, properties, USERNAME, PASSWORD);
+		jdbc = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		writes = new TransactionTemplate(transactionManager);
+		reads = new TransactionTemplate(transactionManager);
+		reads.setReadOnly(true);
+
+		writes.executeWithoutResult(status -> jdbc.execute("CREATE TABLE " + table + " (id BIGINT PRIMARY KEY)"));
+		await("the replica to receive reads", () -> Boolean.TRUE.equals(replicaStats().get("healthy")) && count() == 0);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		ReplicaRouting.clearClient();
+		setReplayPaused(false);
+		writes.executeWithoutResult(status -> jdbc.execute("DROP TABLE IF EXISTS " + table));
+		dataSource.close();
+	}
+
+	@Test
+	void clientsReadTheirOwnWritesWhileTheReplicaIsBehind() throws Exception {
+		long replicaReads = (long) replicaStats().get("reads");
+		setReplayPaused(true);
+
+		ReplicaRouting.setClient("writer");
+		long startedAt = System.nanoTime();
+		writes.executeWithoutResult(status -> jdbc.update("INSERT INTO " + table + " (id) VALUES (1)"));
+		assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).toMillis() < 1000, "tracking waited for a pooled connection");
+		assertEquals(1, count()); // Served by the primary, the replica has not replayed the insert
+		assertEquals(1L, dataSource.stats().get("readYourWritesFallbacks"));
+
+		ReplicaRouting.setClient("reader");
+		assertEquals(0, count()); // Other clients keep reading the replica
+		assertEquals(replicaReads + 1, replicaStats().get("reads"));
+
+		setReplayPaused(false);
+		ReplicaRouting.setClient("writer");
+		// Once the replica has replayed the commit, the writer is served by it again
+		await("the writer's reads to return to the replica", () -> {
+			long before = (long) replicaStats().get("reads");
+			return count() == 1 && (long) replicaStats().get("reads") == before + 1;
+		});
+	}
+
+	private int count() {
+		return reads.execute(status -> jdbc.queryForObject("SELECT count(*) FROM " + table, Integer.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> replicaStats() {
+		return ((List<Map<String, Object>>) dataSource.stats().get("replicas")).get(0);
+	}
+
+	private static void setReplayPaused(boolean paused) throws Exception {
+		try (Connection connection = DriverManager.getConnection(REPLICA_URL, USERNAME, PASSWORD);
+			 Statement statement = connection.createStatement()) {
+			statement.execute(paused ? "SELECT pg_wal_replay_pause()" : "SELECT pg_wal_replay_resume()");
+		}
+	}
+
+	private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + what);
+			Thread.sleep(100);
+		}
+	}
+
+	private static String env(String name, String fallback) {
+		String value = System.getenv(name);
+		return value != null ? value : fallback;
+	}
+}
@@ -0,0 +1,135 @@
+package com.repsy.repsy_api.download;
+
+import com.repsy.repsy_api.compression.CompressionProperties;
+import com.repsy.repsy_api.compression.ContentCoding;
+import com.repsy.repsy_api.compression.PackageCompressionService;
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.filesystem.FileSystemStorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DownloadRedirectPolicyTests {
+
+	private static final String FILE = "pkg/1.0.0/pkg-1.0.0.rep";
+
+	@TempDir
+	Path root;
+
+	private FileSystemStorageService storage;
+	private PackageCompressionService compressionService;
+	private DownloadRedirectProperties properties;
+	private final List<Map<String, String>> presignedHeaders = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		StorageProperties storageProperties = new StorageProperties();
+		storageProperties.setLocation(root.toString());
+		storageProperties.getDurability().setFsync(false);
+		// The filesystem backend cannot presign; this one answers like Minio would
+		storage = new FileSystemStorageService(storageProperties) {
+			@Override
+			public Optional<URI> presignedDownloadUrl(String filename, Duration expiry, Map<String, String> responseHeaders) {
+				presignedHeaders.add(responseHeaders);
+				return Optional.of(URI.create("https://storage.example/" + filename));
+			}
+		};
+		storage.init();
+		CompressionProperties compression = new CompressionProperties();
+		compression.setEnabled(true);
+		compression.setCodings(new ArrayList<>(List.of(ContentCoding.GZIP)));
+		compressionService = new PackageCompressionService(compression, storage);
+		byte[] content = "repeated content ".repeat(500).getBytes(StandardCharsets.UTF_8);
+		compressionService.store(new MockMultipartFile("repFile", "pkg-1.0.0.rep", "application/octet-stream", content), Paths.get(FILE));
+		properties = new DownloadRedirectProperties();
+		properties.setEnabled(true);
+		properties.setMinSizeBytes(0);
+	}
+
+	@AfterEach
+	void tearDown() {
+		storage.close();
+	}
+
+	private Optional<URI> redirect(String acceptEncoding, String clientAddress) {
+		return new DownloadRedirectPolicy(properties, storage, compressionService)
+				.redirectFor(FILE, "pkg-1.0.0.rep", "application/octet-stream", acceptEncoding, clientAddress);
+	}
+
+	@Test
+	void addressRangesMatchByPrefix() throws Exception {
+		DownloadRedirectPolicy.AddressRange range = DownloadRedirectPolicy.AddressRange.parse("10.1.0.0/20");
+		assertThat(range.contains(InetAddress.getByName("10.1.0.1"))).isTrue();
+		assertThat(range.contains(InetAddress.getByName("10.1.15.255"))).isTrue();
+		assertThat(range.contains(InetAddress.getByName("10.1.16.0"))).isFalse();
+		assertThat(range.contains(InetAddress.getByName("10.2.0.1"))).isFalse();
+		assertThat(range.contains(InetAddress.getByName("::ffff:0a01:0001"))).isTrue(); // Mapped IPv4 parses as IPv4
+
+		DownloadRedirectPolicy.AddressRange single = DownloadRedirectPolicy.AddressRange.parse("192.168.1.7");
+		assertThat(single.contains(InetAddress.getByName("192.168.1.7"))).isTrue();
+		assertThat(single.contains(InetAddress.getByName("192.168.1.8"))).isFalse();
+
+		DownloadRedirectPolicy.AddressRange v6 = DownloadRedirectPolicy.AddressRange.parse("2001:db8::/32");
+		assertThat(v6.contains(InetAddress.getByName("2001:db8:ffff::1"))).isTrue();
+		assertThat(v6.contains(InetAddress.getByName("2001:db9::1"))).isFalse();
+		assertThat(v6.contains(InetAddress.getByName("10.1.0.1"))).isFalse();
+		assertThat(DownloadRedirectPolicy.AddressRange.parse("0.0.0.0/0").contains(InetAddress.getByName("203.0.113.9"))).isTrue();
+
+		assertThatThrownBy(() -> DownloadRedirectPolicy.AddressRange.parse("10.0.0.0/33")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> DownloadRedirectPolicy.AddressRange.parse("10.0.0.0/x")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void onlyAllowedClientsAreRedirected() {
+		properties.setAllowedClients(List.of("10.0.0.0/8", " "));
+		assertThat(redirect(null, "10.20.30.40")).isPresent();
+		assertThat(redirect(null, "192.168.0.1")).isEmpty();
+		assertThat(redirect(null, "not-an-address")).isEmpty();
+	}
+
+	@Test
+	void filesBelowTheThresholdAreProxied() {
+		long identitySize = storage.stat(FILE).orElseThrow().getSize();
+		properties.setMinSizeBytes(identitySize);
+		assertThat(redirect(null, "10.0.0.1")).isPresent();
+		// The gzip variant of the repetitive content is far smaller than the original
+		assertThat(redirect("gzip", "10.0.0.1")).isEmpty();
+
+		properties.setMinSizeBytes(identitySize + 1);
+		assertThat(redirect(null, "10.0.0.1")).isEmpty();
+	}
+
+	@Test
+	void redirectsToTheRepresentationTheClientAccepts() {
+		assertThat(redirect("gzip", "10.0.0.1")).get().asString().isNotEqualTo("https://storage.example/" + FILE);
+		assertThat(presignedHeaders.get(0)).containsEntry(HttpHeaders.CONTENT_ENCODING, "gzip")
+				.containsEntry(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"pkg-1.0.0.rep\"");
+
+		assertThat(redirect("br", "10.0.0.1")).get().asString().isEqualTo("https://storage.example/" + FILE);
+		assertThat(presignedHeaders.get(1)).doesNotContainKey(HttpHeaders.CONTENT_ENCODING)
+				.containsEntry(HttpHeaders.CONTENT_TYPE, "application/octet-stream");
+
+		assertThat(redirect("br, identity;q=0", "10.0.0.1")).isEmpty();
+		properties.setEnabled(false);
+		assertThat(redirect("gzip", "10.0.0.1")).isEmpty();
+		assertThat(presignedHeaders).hasSize(2);
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.repsy.repsy_api.download;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DownloadShaperTests {
+
+	private static DownloadShapingProperties properties(long totalBytesPerSecond) {
+		DownloadShapingProperties properties = new DownloadShapingProperties();
+		properties.setEnabled(true);
+		properties.setTotalBytesPerSecond(totalBytesPerSecond);
+		properties.setBurstBytes(16 * 1024);
+		properties.setChunkBytes(16 * 1024);
+		DownloadShapingProperties.Tier interactive = new DownloadShapingProperties.Tier();
+		interactive.setClients(List.of("10.0.0.0/8"));
+		interactive.setWeight(4);
+		properties.getTiers().put("interactive", interactive);
+		return properties;
+	}
+
+	private static long readFor(Resource resource, long millis) throws Exception {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		long total = 0;
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = resource.getInputStream()) {
+			int read;
+			while (System.nanoTime() < deadline && (read = in.read(buffer)) != -1) {
+				total += read;
+			}
+		}
+		return total;
+	}
+
+	@Test
+	void sharesBudgetByTierWeight() throws Exception {
+		DownloadShaper shaper = new DownloadShaper(properties(4 * 1024 * 1024));
+		ByteArrayResource file = new ByteArrayResource(new byte[64 * 1024 * 1024]);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Long> interactive = executor.submit(() -> readFor(shaper.shape(file, "10.1.2.3", "a.rep"), 1500));
+			Future<Long> other = executor.submit(() -> readFor(shaper.shape(file, "192.0.2.1", "a.rep"), 1500));
+			long interactiveBytes = interactive.get();
+			long otherBytes = other.get();
+			assertThat((double) interactiveBytes / otherBytes).isBetween(2.5, 6.0);
+			assertThat(interactiveBytes + otherBytes).isLessThan(8L * 1024 * 1024);
+		} finally {
+			executor.shutdownNow();
+		}
+		@SuppressWarnings("unchecked")
+		Map<String, Object> tiers = (Map<String, Object>) shaper.stats().get("tiers");
+		assertThat(tiers).containsKeys("interactive", "default");
+		assertThat(shaper.stats()).containsEntry("activeStreams", 0);
+	}
+
+	@Test
+	void reconfigureAppliesPerClientLimit() throws Exception {
+		DownloadShaper shaper = new DownloadShaper(properties(0));
+		DownloadShapingProperties limited = properties(0);
+		limited.getTiers().get("interactive").setClientBytesPerSecond(256 * 1024);
+		shaper.reconfigure(limited);
+		long bytes = readFor(shaper.shape(new ByteArrayResource(new byte[8 * 1024 * 1024]), "10.0.0.1", "a.rep"), 500);
+		assertThat(bytes).isLessThan(512 * 1024);
+		assertThat(shaper.stats()).containsEntry("enabled", true);
+	}
+}
@@ -0,0 +1,62 @@
+package com.repsy.repsy_api.download;
+
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.minio.MinioStorageService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs against a local Minio ({@code docker compose up minio}); run with {@code mvn -pl repsy_api test -Pminio}.
+ * The endpoint and credentials are taken from the same environment variables as the application.
+ */
+@Tag("minio")
+class PresignedDownloadMinioTests {
+
+	@Test
+	void presignedUrlServesObjectWithOverriddenHeaders() throws Exception {
+		StorageProperties properties = new StorageProperties();
+		properties.getMinio().setEndpoint(env("STORAGE_MINIO_ENDPOINT", "http://localhost:9000"));
+		properties.getMinio().setAccessKey(env("STORAGE_MINIO_ACCESS_KEY", "minioadmin"));
+		properties.getMinio().setSecretKey(env("STORAGE_MINIO_SECRET_KEY", "minioadmin"));
+		properties.getMinio().setBucketName("repsy-presign-test");
+		MinioStorageService storage = new MinioStorageService(properties);
+		storage.init();
+
+		String key = "presign-" + UUID.randomUUID() + "/1.0.0/pkg-1.0.0.rep";
+		byte[] content = new byte[256 * 1024];
+		new java.util.Random(42).nextBytes(content);
+		storage.store(new MockMultipartFile("repFile", "pkg-1.0.0.rep", "application/octet-stream", content), Paths.get(key));
+		try {
+			URI url = storage.presignedDownloadUrl(key, Duration.ofMinutes(1), Map.of(
+					"Content-Type", "application/octet-stream",
+					"Content-Disposition", "attachment; filename=\"pkg-1.0.0.rep\"")).orElseThrow();
+
+			HttpResponse<byte[]> response = HttpClient.newHttpClient()
+					.send(HttpRequest.newBuilder(url).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+
+			assertEquals(200, response.statusCode());
+			assertArrayEquals(content, response.body());
+			assertEquals("attachment; filename=\"pkg-1.0.0.rep\"", response.headers().firstValue("Content-Disposition").orElse(null));
+		} finally {
+			storage.delete(key);
+		}
+	}
+
+	private static String env(String name, String fallback) {
+		String value = System.getenv(name);
+		return value != null ? value : fallback;
+	}
+}
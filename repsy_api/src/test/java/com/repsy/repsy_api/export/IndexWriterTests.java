@@ -0,0 +1,102 @@
+package com.repsy.repsy_api.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexWriterTests {
+
+	private static final String DIGEST = "a".repeat(62) + "0f";
+
+	private static final List<IndexRecord> RECORDS = List.of(
+			new IndexRecord(1, "alpha", "1.0.0", "ann", Instant.parse("2025-01-02T03:04:05Z"), DIGEST, 123L,
+					"{\n  \"name\": \"alpha\",\n  \"version\": \"1.0.0\"\n}"),
+			new IndexRecord(2, "beta", "2.0.0-rc.1", null, Instant.parse("2025-02-03T04:05:06Z"), null, null, null));
+
+	private static byte[] export(IndexFormat format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IndexWriter writer = format.open(out, new ObjectMapper().getFactory());
+		for (IndexRecord record : RECORDS) {
+			writer.write(record);
+		}
+		writer.finish();
+		return out.toByteArray();
+	}
+
+	@Test
+	void writesOneJsonObjectPerLine() throws IOException {
+		String[] lines = new String(export(IndexFormat.NDJSON), StandardCharsets.UTF_8).split("\n", -1);
+		assertThat(lines).hasSize(3);
+		assertThat(lines[2]).isEmpty();
+
+		ObjectMapper mapper = new ObjectMapper();
+		JsonNode first = mapper.readTree(lines[0]);
+		assertThat(first.get("name").asText()).isEqualTo("alpha");
+		assertThat(first.get("createdAt").asText()).isEqualTo("2025-01-02T03:04:05Z");
+		assertThat(first.get("repSize").asLong()).isEqualTo(123L);
+		assertThat(first.get("meta").get("version").asText()).isEqualTo("1.0.0");
+
+		JsonNode second = mapper.readTree(lines[1]);
+		assertThat(second.get("author").isNull()).isTrue();
+		assertThat(second.get("repSha256").isNull()).isTrue();
+		assertThat(second.get("meta").isNull()).isTrue();
+	}
+
+	@Test
+	void writesBinaryRecordsWithTrailer() throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(export(IndexFormat.BINARY)));
+		assertThat(in.readNBytes(BinaryIndexWriter.MAGIC.length)).isEqualTo(BinaryIndexWriter.MAGIC);
+		assertThat(in.readUnsignedByte()).isEqualTo(BinaryIndexWriter.VERSION);
+
+		assertThat(in.readUnsignedByte()).isEqualTo(BinaryIndexWriter.RECORD);
+		assertThat(in.readLong()).isEqualTo(1L);
+		assertThat(readString(in)).isEqualTo("alpha");
+		assertThat(readString(in)).isEqualTo("1.0.0");
+		assertThat(readString(in)).isEqualTo("ann");
+		assertThat(in.readLong()).isEqualTo(Instant.parse("2025-01-02T03:04:05Z").toEpochMilli());
+		byte[] digest = in.readNBytes(in.readUnsignedByte());
+		assertThat(digest).hasSize(32);
+		assertThat(digest[31]).isEqualTo((byte) 0x0f);
+		assertThat(in.readLong()).isEqualTo(123L);
+		assertThat(readString(in)).startsWith("{\n  \"name\"");
+
+		assertThat(in.readUnsignedByte()).isEqualTo(BinaryIndexWriter.RECORD);
+		assertThat(in.readLong()).isEqualTo(2L);
+		assertThat(readString(in)).isEqualTo("beta");
+		assertThat(readString(in)).isEqualTo("2.0.0-rc.1");
+		assertThat(readString(in)).isNull();
+		in.readLong();
+		assertThat(in.readUnsignedByte()).isZero();
+		assertThat(in.readLong()).isEqualTo(-1L);
+		assertThat(readString(in)).isNull();
+
+		assertThat(in.readUnsignedByte()).isEqualTo(BinaryIndexWriter.TRAILER);
+		assertThat(in.readLong()).isEqualTo(2L);
+		assertThat(in.read()).isEqualTo(-1);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		long length = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.readUnsignedByte();
+			length |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		if (length == 0) {
+			return null;
+		}
+		return new String(in.readNBytes((int) (length - 1)), StandardCharsets.UTF_8);
+	}
+}
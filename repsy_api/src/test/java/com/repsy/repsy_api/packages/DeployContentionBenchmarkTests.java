@@ -0,0 +1,87 @@
+package com.repsy.repsy_api.packages;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Many publishers racing on the same and on distinct versions. Excluded from the default build;
+ * run with {@code mvn -pl repsy_api test -Pbenchmark} against a real database.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@TestPropertySource(properties = {"storage.strategy=filesystem", "storage.location=target/benchmark-storage"})
+class DeployContentionBenchmarkTests {
+
+	private static final int PUBLISHERS = 64;
+	private static final int VERSIONS = 16;
+	private static final int ATTEMPTS_PER_VERSION = 8;
+
+	@Autowired
+	private PackageService packageService;
+
+	@Test
+	void concurrentPublishersClaimEachVersionOnce(TestReporter reporter) throws Exception {
+		String packageName = "bench-" + UUID.randomUUID().toString().substring(0, 8);
+		AtomicInteger deployed = new AtomicInteger();
+		AtomicInteger conflicts = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(PUBLISHERS);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int v = 0; v < VERSIONS; v++) {
+			String version = "1.0." + v;
+			for (int attempt = 0; attempt < ATTEMPTS_PER_VERSION; attempt++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					try {
+						packageService.deployPackage(packageName, version, repFile(), metaFile(packageName, version));
+						deployed.incrementAndGet();
+					} catch (PackageService.PackageAlreadyExistsException e) {
+						conflicts.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+		}
+
+		long startedAt = System.nanoTime();
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+		executor.shutdown();
+
+		assertEquals(VERSIONS, deployed.get());
+		assertEquals(VERSIONS * (ATTEMPTS_PER_VERSION - 1), conflicts.get());
+		reporter.publishEntry("throughput", String.format("%d deploy attempts (%d publishers) in %d ms: %.1f attempts/s",
+				futures.size(), PUBLISHERS, elapsedMillis, futures.size() * 1000.0 / Math.max(1, elapsedMillis)));
+	}
+
+	private static MockMultipartFile repFile() {
+		byte[] content = new byte[64 * 1024];
+		return new MockMultipartFile("package", "package.rep", "application/octet-stream", content);
+	}
+
+	private static MockMultipartFile metaFile(String name, String version) {
+		String json = "{\"name\":\"" + name + "\",\"version\":\"" + version + "\",\"author\":\"bench\",\"dependencies\":{}}";
+		return new MockMultipartFile("meta", "meta.json", "application/json", json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,69 @@
+package com.repsy.repsy_api.packages;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetaValidatorTests {
+
+	private static MetaValidation validate(MetadataProperties properties, String json) {
+		return new MetaValidator(properties).validate(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static MetaValidation validate(String json) {
+		return validate(new MetadataProperties(), json);
+	}
+
+	@Test
+	void extractsFieldsAndEveryDependencyForm() {
+		MetaValidation validation = validate("""
+				{"name": "app", "version": "1.2.0-rc.1", "author": "Ann", "extra": {"kept": [1, 2]},
+				 "dependencies": [{"package": "core", "version": "1.0.0"}, "util >= 2.0.0", "bare"]}""");
+
+		assertThat(validation.errors()).isEmpty();
+		assertThat(validation.name()).isEqualTo("app");
+		assertThat(validation.version()).isEqualTo("1.2.0-rc.1");
+		assertThat(validation.author()).isEqualTo("Ann");
+		assertThat(validation.dependencies()).containsExactly(
+				new MetaValidation.Dependency("core", "1.0.0"),
+				new MetaValidation.Dependency("util", ">= 2.0.0"),
+				new MetaValidation.Dependency("bare", null));
+		assertThat(validate("{\"name\":\"a\",\"version\":\"1.0.0\",\"dependencies\":{\"core\":\"^1.0.0\"}}").dependencies())
+				.containsExactly(new MetaValidation.Dependency("core", "^1.0.0"));
+	}
+
+	@Test
+	void reportsEveryProblemWithItsPath() {
+		MetaValidation validation = validate("""
+				{"name": "../x", "version": "1.0", "author": 5, "dependencies": [{"version": "1.0.0"}, 7]}""");
+
+		assertThat(validation.isValid()).isFalse();
+		assertThat(validation.errors()).containsExactly(
+				"$.name: must not contain '/', '\\' or control characters, nor be '.' or '..'",
+				"$.version: must be a semantic version (e.g. 1.0.0)",
+				"$.author: must be a string",
+				"$.dependencies[0].package: is required",
+				"$.dependencies[1]: must be an object or a string");
+		assertThat(validate("{\"author\": null}").errors()).containsExactly("$.name: is required", "$.version: is required");
+	}
+
+	@Test
+	void rejectsMalformedAmbiguousAndOversizedDocuments() {
+		assertThat(validate("[]").errors()).containsExactly("$: must be a JSON object");
+		assertThat(validate("{\"name\": \"a\",").errors()).singleElement().asString().startsWith("$: is not valid JSON");
+		assertThat(validate("{\"name\":\"a\",\"version\":\"1.0.0\"} {}").errors())
+				.containsExactly("$: unexpected content after the document");
+		assertThat(validate("{\"name\":\"a\",\"version\":\"1.0.0\",\"version\":\"2.0.0\"}").errors())
+				.singleElement().asString().contains("Duplicate field 'version'");
+
+		MetadataProperties limits = new MetadataProperties();
+		limits.setMaxDepth(3);
+		limits.setMaxDependencies(1);
+		assertThat(validate(limits, "{\"name\":\"a\",\"version\":\"1.0.0\",\"x\":[[[1]]]}").errors())
+				.singleElement().asString().startsWith("$: exceeds a limit");
+		assertThat(validate(limits, "{\"name\":\"a\",\"version\":\"1.0.0\",\"dependencies\":[\"b\",\"c\"]}").errors())
+				.containsExactly("$.dependencies: must have at most 1 entries");
+	}
+}
@@ -0,0 +1,320 @@
+package com.repsy.repsy_api.proxy;
+
+import com.repsy.repsy_api.compression.CompressionProperties;
+import com.repsy.repsy_api.compression.PackageCompressionService;
+import com.repsy.repsy_api.packages.PackageService;
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.filesystem.FileSystemStorageService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PullThroughProxyTests {
+
+	private static final byte[] META = "{\"name\":\"pkg\",\"version\":\"1.0.0\"}".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] REP = "package content ".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+
+	@TempDir
+	Path root;
+
+	private HttpServer upstream;
+	private ExecutorService upstreamThreads;
+	private final Map<String, byte[]> upstreamFiles = new ConcurrentHashMap<>();
+	private final Set<String> truncated = ConcurrentHashMap.newKeySet();
+	private final Map<String, AtomicInteger> upstreamHits = new ConcurrentHashMap<>();
+
+	private FileSystemStorageService storage;
+	private final List<String> deployed = new CopyOnWriteArrayList<>();
+	private ProxyProperties properties;
+	private PullThroughProxy proxy;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		upstreamThreads = Executors.newCachedThreadPool();
+		upstream = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		upstream.createContext("/packages/", this::serve);
+		upstream.setExecutor(upstreamThreads);
+		upstream.start();
+
+		StorageProperties storageProperties = new StorageProperties();
+		storageProperties.setLocation(root.toString());
+		storageProperties.getDurability().setFsync(false);
+		storage = new FileSystemStorageService(storageProperties);
+		storage.init();
+
+		properties = new ProxyProperties();
+		properties.setEnabled(true);
+		properties.setUpstreamUrl("http://" + upstream.getAddress().getHostString() + ":" + upstream.getAddress().getPort());
+		properties.setMaxWait(Duration.ofSeconds(10));
+		properties.setCompleteAbandoned(false);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (proxy != null) {
+			proxy.shutdown();
+		}
+		upstream.stop(0);
+		upstreamThreads.shutdownNow();
+		storage.close();
+	}
+
+	@Test
+	void missIsStreamedFromUpstreamAndCached() throws Exception {
+		publish("pkg", "1.0.0");
+		start();
+
+		Optional<Resource> resource = proxy.fetch("pkg", "1.0.0", "pkg-1.0.0.rep");
+
+		assertThat(resource).isPresent();
+		assertThat(readAll(resource.get())).isEqualTo(REP);
+		await(() -> stat("versionsCached") == 1L && stat("fetchesInProgress") == 0L);
+		assertThat(deployed).containsExactly("pkg@1.0.0");
+		assertThat(readAll(storage.loadAsResource("pkg/1.0.0/pkg-1.0.0.rep"))).isEqualTo(REP);
+		assertThat(hits("pkg", "1.0.0", "meta.json")).isEqualTo(1);
+		assertThat(hits("pkg", "1.0.0", "pkg-1.0.0.rep")).isEqualTo(1);
+		assertThat(stat("bytesCached")).isEqualTo((long) REP.length);
+	}
+
+	@Test
+	void concurrentMissIsFetchedOnceAndServedLocally() throws Exception {
+		publish("pkg", "1.0.0");
+		start();
+
+		Resource leader = proxy.fetch("pkg", "1.0.0", "pkg-1.0.0.rep").orElseThrow();
+		ExecutorService follower = Executors.newSingleThreadExecutor();
+		try {
+			Future<Optional<Resource>> followed = follower.submit(() -> proxy.fetch("pkg", "1.0.0", "pkg-1.0.0.rep"));
+			await(() -> stat("coalescedRequests") == 1L);
+
+			assertThat(readAll(leader)).isEqualTo(REP);
+			Optional<Resource> local = followed.get(10, TimeUnit.SECONDS);
+
+			assertThat(local).isPresent();
+			assertThat(readAll(local.get())).isEqualTo(REP);
+		} finally {
+			follower.shutdownNow();
+		}
+		assertThat(hits("pkg", "1.0.0", "meta.json")).isEqualTo(1);
+		assertThat(hits("pkg", "1.0.0", "pkg-1.0.0.rep")).isEqualTo(1);
+		assertThat(stat("uncachedRequests")).isZero();
+		assertThat(deployed).containsExactly("pkg@1.0.0");
+	}
+
+	@Test
+	void notFoundIsCachedForTheTtl() {
+		properties.setNotFoundTtl(Duration.ofMinutes(1));
+		start();
+
+		assertThat(proxy.fetch("pkg", "9.9.9", "pkg-9.9.9.rep")).isEmpty();
+		assertThat(proxy.fetch("pkg", "9.9.9", "pkg-9.9.9.rep")).isEmpty();
+		assertThat(proxy.meta("pkg", "9.9.9")).isEmpty();
+
+		assertThat(hits("pkg", "9.9.9", "meta.json")).isEqualTo(1);
+		assertThat(stat("notFoundHits")).isEqualTo(2L);
+		assertThat(stat("fetchesInProgress")).isZero();
+		assertThat(deployed).isEmpty();
+	}
+
+	@Test
+	void truncatedUpstreamDownloadIsNotCached() throws Exception {
+		publish("pkg", "1.0.0");
+		truncated.add("/packages/pkg/1.0.0/pkg-1.0.0.rep");
+		// HttpServer keeps a connection open after a short body, so this upstream is a plain socket
+		try (ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			upstreamThreads.execute(() -> acceptRaw(socket));
+			properties.setUpstreamUrl("http://" + socket.getInetAddress().getHostAddress() + ":" + socket.getLocalPort());
+			start();
+
+			Resource resource = proxy.fetch("pkg", "1.0.0", "pkg-1.0.0.rep").orElseThrow();
+
+			assertThatThrownBy(() -> readAll(resource)).isInstanceOf(IOException.class);
+			await(() -> stat("fetchesInProgress") == 0L);
+			assertThat(stat("fillFailures")).isEqualTo(1L);
+			assertThat(stat("versionsCached")).isZero();
+			assertThat(deployed).isEmpty();
+			assertThat(root.resolve("pkg/1.0.0/pkg-1.0.0.rep")).doesNotExist();
+
+			// The failed fill is not remembered; the next request fetches again
+			assertThat(readAll(proxy.fetch("pkg", "1.0.0", "pkg-1.0.0.rep").orElseThrow())).isEqualTo(REP);
+			await(() -> stat("versionsCached") == 1L);
+			assertThat(hits("pkg", "1.0.0", "pkg-1.0.0.rep")).isEqualTo(2);
+		}
+	}
+
+	@Test
+	void clientLeavingMidDownloadAbortsTheFill() throws Exception {
+		publish("pkg", "1.0.0");
+		start();
+
+		Resource resource = proxy.fetch("pkg", "1.0.0", "pkg-1.0.0.rep").orElseThrow();
+		try (InputStream in = resource.getInputStream()) {
+			assertThat(in.readNBytes(1024)).hasSize(1024);
+		}
+
+		await(() -> stat("fetchesInProgress") == 0L);
+		assertThat(stat("fillFailures")).isEqualTo(1L);
+		assertThat(deployed).isEmpty();
+	}
+
+	@Test
+	void fillThatIsNeverReadIsDroppedAfterMaxWait() throws Exception {
+		publish("pkg", "1.0.0");
+		properties.setMaxWait(Duration.ofMillis(200));
+		start();
+
+		Resource unread = proxy.fetch("pkg", "1.0.0", "pkg-1.0.0.rep").orElseThrow();
+
+		await(() -> stat("fetchesInProgress") == 0L);
+		assertThat(stat("fillFailures")).isEqualTo(1L);
+		assertThatThrownBy(unread::getInputStream).isInstanceOf(IOException.class);
+
+		// The next request leads a new fetch instead of waiting for the dropped one
+		assertThat(readAll(proxy.fetch("pkg", "1.0.0", "pkg-1.0.0.rep").orElseThrow())).isEqualTo(REP);
+		await(() -> stat("versionsCached") == 1L);
+		assertThat(stat("coalescedRequests")).isZero();
+		assertThat(stat("uncachedRequests")).isZero();
+		assertThat(hits("pkg", "1.0.0", "pkg-1.0.0.rep")).isEqualTo(2);
+	}
+
+	private void start() {
+		CompressionProperties compression = new CompressionProperties();
+		compression.setEnabled(false);
+		PackageCompressionService compressionService = new PackageCompressionService(compression, storage);
+		// Stores the .rep file like a deploy would, without the database
+		PackageService packageService = new PackageService(null, storage, null, compressionService, null, null, null) {
+			@Override
+			public void deployPackage(String packageName, String version, MultipartFile repFile, MultipartFile metaFile) {
+				compressionService.store(repFile, Paths.get(packageName, version, repFile.getOriginalFilename()));
+				deployed.add(packageName + "@" + version);
+			}
+		};
+		proxy = new PullThroughProxy(properties, packageService, compressionService);
+	}
+
+	private void publish(String packageName, String version) {
+		String prefix = "/packages/" + packageName + "/" + version + "/";
+		upstreamFiles.put(prefix + "meta.json", META);
+		upstreamFiles.put(prefix + packageName + "-" + version + ".rep", REP);
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		upstreamHits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+		byte[] body = upstreamFiles.get(path);
+		if (body == null) {
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Serves {@link #upstreamFiles} over HTTP/1.1 on a plain socket. The first response for a path in
+	 * {@link #truncated} stops halfway through the body and drops the connection.
+	 */
+	private void acceptRaw(ServerSocket socket) {
+		while (!socket.isClosed()) {
+			try {
+				Socket connection = socket.accept();
+				upstreamThreads.execute(() -> serveRaw(connection));
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void serveRaw(Socket connection) {
+		try (connection) {
+			BufferedReader requests = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.ISO_8859_1));
+			OutputStream out = connection.getOutputStream();
+			String requestLine;
+			while ((requestLine = requests.readLine()) != null) {
+				String line;
+				do {
+					line = requests.readLine();
+				} while (line != null && !line.isEmpty());
+				String path = URI.create(requestLine.split(" ")[1]).getPath();
+				upstreamHits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+				byte[] body = upstreamFiles.get(path);
+				if (body == null) {
+					out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+					out.flush();
+					continue;
+				}
+				out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+				if (truncated.remove(path)) {
+					out.write(body, 0, body.length / 2);
+					out.flush();
+					return;
+				}
+				out.write(body);
+				out.flush();
+			}
+		} catch (IOException e) {
+			// The client went away
+		}
+	}
+
+	private int hits(String packageName, String version, String fileName) {
+		AtomicInteger count = upstreamHits.get("/packages/" + packageName + "/" + version + "/" + fileName);
+		return count == null ? 0 : count.get();
+	}
+
+	private long stat(String name) {
+		return ((Number) proxy.stats().get(name)).longValue();
+	}
+
+	private static byte[] readAll(Resource resource) throws IOException {
+		try (InputStream in = resource.getInputStream()) {
+			return in.readAllBytes();
+		}
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime() - deadline).as("condition not met in time").isNegative();
+			Thread.sleep(10);
+		}
+	}
+}
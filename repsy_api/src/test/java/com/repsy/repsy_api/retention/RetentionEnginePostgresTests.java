@@ -0,0 +1,239 @@
+package com.repsy.repsy_api.retention;
+
+import com.repsy.repsy_api.changes.ChangeFeed;
+import com.repsy.repsy_api.changes.ChangeFeedProperties;
+import com.repsy.repsy_api.changes.PackageChange;
+import com.repsy.repsy_api.packages.MetadataProperties;
+import com.repsy.repsy_api.packages.MetadataService;
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.filesystem.FileSystemStorageService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the retention queries against PostgreSQL ({@code docker compose up db}); run with
+ * {@code mvn -pl repsy_api test -Ppostgres}. The URL and credentials are taken from the same environment variables
+ * as the application. The schema is migrated if needed, and only packages created by the test are touched.
+ */
+@Tag("postgres")
+class RetentionEnginePostgresTests {
+
+	private static final String URL = env("SPRING_DATASOURCE_URL", "jdbc:postgresql://localhost:5432/repsy_db");
+	private static final String USERNAME = env("SPRING_DATASOURCE_USERNAME", "postgres");
+	private static final String PASSWORD = env("SPRING_DATASOURCE_PASSWORD", "");
+
+	@TempDir
+	Path root;
+
+	private final String prefix = "retention-test-" + UUID.randomUUID().toString().substring(0, 8);
+	private final List<String> recorded = new CopyOnWriteArrayList<>();
+	private HikariDataSource dataSource;
+	private JdbcTemplate jdbc;
+	private DataSourceTransactionManager transactionManager;
+	private FileSystemStorageService storage;
+	private ChangeFeed changeFeed;
+	private RetentionEngine engine;
+
+	@BeforeEach
+	void setUp() {
+		// Flyway holds a lock connection while migrating, so it cannot share the single pooled connection
+		Flyway.configure().dataSource(URL, USERNAME, PASSWORD).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+		dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl(URL);
+		dataSource.setUsername(USERNAME);
+		dataSource.setPassword(PASSWORD);
+		// A single connection, so a session setting leaking out of a transaction would show up in the next one
+		dataSource.setMaximumPoolSize(1);
+		jdbc = new JdbcTemplate(dataSource);
+		transactionManager = new DataSourceTransactionManager(dataSource);
+
+		StorageProperties storageProperties = new StorageProperties();
+		storageProperties.setLocation(root.toString());
+		storageProperties.getDurability().setFsync(false);
+		storage = new FileSystemStorageService(storageProperties);
+		storage.init();
+
+		ChangeFeedProperties changeProperties = new ChangeFeedProperties();
+		changeProperties.setSweepInterval(Duration.ofHours(1));
+		changeFeed = new ChangeFeed(changeProperties, null, dataSource, transactionManager) {
+			@Override
+			public void record(long packageId, String name, String version, PackageChange.Type type) {
+				recorded.add(type + " " + name + "@" + version);
+			}
+		};
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (engine != null) {
+			engine.shutdown();
+		}
+		changeFeed.shutdown();
+		jdbc.update("DELETE FROM packages WHERE name LIKE ?", prefix + "%");
+		storage.close();
+		dataSource.close();
+	}
+
+	@Test
+	void keepLastPrunesEveryPackageAcrossBatches() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			deploy("a", "1.0." + i, Duration.ofDays(20 - i));
+		}
+		for (int i = 0; i < 4; i++) {
+			deploy("b", "2.0." + i, Duration.ofDays(20 - i));
+		}
+		deploy("c", "3.0.0", Duration.ofDays(20));
+		// Batches of 3 cross from "a" into "b": a3-a5 | a6-a8 | a9 a10 b3 | b4 (by rank, newest first)
+		RetentionProperties.Rule rule = rule(2, null);
+
+		RetentionEngine.RuleResult dryRun = run(rule, true);
+
+		// A dry run deletes nothing, so it resumes after the last rank it saw
+		assertThat(dryRun.selected()).isEqualTo(10);
+		assertThat(dryRun.deleted()).isZero();
+		assertThat(versions("a")).hasSize(10);
+		assertThat(versions("b")).hasSize(4);
+		assertThat(recorded).isEmpty();
+
+		RetentionEngine.RuleResult realRun = run(rule, false);
+
+		// A real run resumes at keep-last: the remaining ranks have shifted down after each delete
+		assertThat(realRun.selected()).isEqualTo(10);
+		assertThat(realRun.deleted()).isEqualTo(10);
+		assertThat(versions("a")).containsExactly("1.0.8", "1.0.9");
+		assertThat(versions("b")).containsExactly("2.0.2", "2.0.3");
+		assertThat(versions("c")).containsExactly("3.0.0");
+		assertThat(recorded).hasSize(10).allMatch(change -> change.startsWith("DELETE "));
+		assertThat(recorded).contains("DELETE " + name("a") + "@1.0.0", "DELETE " + name("b") + "@2.0.1");
+		assertThat(file("a", "1.0.0")).doesNotExist();
+		assertThat(file("a", "1.0.9")).exists();
+		assertThat(file("b", "2.0.1")).doesNotExist();
+		assertThat(file("c", "3.0.0")).exists();
+
+		// SET LOCAL ended with the candidate query's transaction instead of staying on the pooled connection
+		assertThat(jdbc.queryForObject("SHOW enable_sort", String.class)).isEqualTo("on");
+	}
+
+	@Test
+	void keepLastOnlyDeletesVersionsOlderThanTheRule() throws Exception {
+		deploy("a", "1.0.0", Duration.ofDays(100));
+		deploy("a", "1.0.1", Duration.ofDays(90));
+		deploy("a", "1.0.2", Duration.ofDays(80));
+		deploy("a", "1.0.3", Duration.ofDays(70));
+		deploy("a", "1.0.4", Duration.ofDays(10)); // Outside keep-last, but younger than older-than
+		deploy("a", "1.0.5", Duration.ofDays(5));
+		RetentionProperties.Rule rule = rule(1, Duration.ofDays(30));
+
+		RetentionEngine.RuleResult dryRun = run(rule, true);
+
+		assertThat(dryRun.selected()).isEqualTo(4);
+		assertThat(versions("a")).hasSize(6);
+
+		RetentionEngine.RuleResult realRun = run(rule, false);
+
+		// The second batch starts below 1.0.4, which ranks second but is filtered by the cutoff
+		assertThat(realRun.deleted()).isEqualTo(4);
+		assertThat(versions("a")).containsExactly("1.0.4", "1.0.5");
+	}
+
+	@Test
+	void rankedCandidatesStreamFromTheIndexWithoutASort() {
+		for (int i = 0; i < 5; i++) {
+			deploy("a", "1.0." + i, Duration.ofDays(20 - i));
+		}
+		String sql = "EXPLAIN " + String.format(RetentionEngine.KEEP_LAST_SQL, "");
+		Object[] args = {"", 2, "", 0, Timestamp.from(Instant.now()), 100};
+
+		List<String> plan = new TransactionTemplate(transactionManager).execute(status -> {
+			jdbc.execute("SET LOCAL enable_sort = off");
+			return jdbc.queryForList(sql, String.class, args);
+		});
+
+		assertThat(String.join("\n", plan)).contains("idx_packages_name_created_at").doesNotContain("Sort");
+	}
+
+	private RetentionProperties.Rule rule(Integer keepLast, Duration olderThan) {
+		RetentionProperties.Rule rule = new RetentionProperties.Rule();
+		rule.setName("test");
+		rule.setPackages(List.of(prefix + "-*"));
+		rule.setVersions(VersionSelector.ALL);
+		rule.setKeepLast(keepLast);
+		rule.setOlderThan(olderThan);
+		return rule;
+	}
+
+	private RetentionEngine.RuleResult run(RetentionProperties.Rule rule, boolean dryRun) throws InterruptedException {
+		RetentionProperties properties = new RetentionProperties();
+		properties.setRules(List.of(rule));
+		properties.setBatchSize(rule.getOlderThan() != null ? 2 : 3);
+		properties.setMaxVersionsPerSecond(0);
+		properties.setMaxObjectDeletesPerSecond(0);
+		if (engine != null) {
+			engine.shutdown();
+		}
+		engine = new RetentionEngine(properties, dataSource, transactionManager, changeFeed,
+				new MetadataService(null, null, new MetadataProperties()), storage);
+		assertThat(engine.start(dryRun)).isTrue();
+		long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+		while (Boolean.TRUE.equals(engine.status().get("running"))) {
+			assertThat(System.nanoTime() - deadline).as("retention run did not finish in time").isNegative();
+			Thread.sleep(10);
+		}
+		assertThat(engine.status().get("error")).isNull();
+		@SuppressWarnings("unchecked")
+		List<RetentionEngine.RuleResult> results = (List<RetentionEngine.RuleResult>) engine.status().get("rules");
+		assertThat(results).hasSize(1);
+		return results.get(0);
+	}
+
+	private void deploy(String suffix, String version, Duration age) {
+		String name = name(suffix);
+		jdbc.update("INSERT INTO packages (id, name, version, created_at) VALUES (nextval('package_sequence'), ?, ?, ?)",
+				name, version, Timestamp.from(Instant.now().minus(age)));
+		try {
+			Path file = file(suffix, version);
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, version);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private List<String> versions(String suffix) {
+		return jdbc.queryForList("SELECT version FROM packages WHERE name = ? ORDER BY created_at", String.class, name(suffix));
+	}
+
+	private String name(String suffix) {
+		return prefix + "-" + suffix;
+	}
+
+	private Path file(String suffix, String version) {
+		String name = name(suffix);
+		return root.resolve(name).resolve(version).resolve(name + "-" + version + ".rep");
+	}
+
+	private static String env(String name, String fallback) {
+		String value = System.getenv(name);
+		return value != null ? value : fallback;
+	}
+}
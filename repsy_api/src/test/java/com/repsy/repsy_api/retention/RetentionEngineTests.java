@@ -0,0 +1,39 @@
+package com.repsy.repsy_api.retention;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetentionEngineTests {
+
+	@Test
+	void packagePatternsBecomeEscapedLikePatterns() {
+		assertThat(RetentionEngine.toLikePattern("lib-*")).isEqualTo("lib-%");
+		assertThat(RetentionEngine.toLikePattern("a?c")).isEqualTo("a_c");
+		assertThat(RetentionEngine.toLikePattern("my_pkg%")).isEqualTo("my\\_pkg\\%");
+	}
+
+	@Test
+	void storageKeysCoverFilesAndCompressedVariants() {
+		assertThat(RetentionEngine.storageKeys("lib", "1.0.0-rc.1")).containsExactly(
+				"lib/1.0.0-rc.1/lib-1.0.0-rc.1.rep", "lib/1.0.0-rc.1/lib-1.0.0-rc.1.rep.zst", "lib/1.0.0-rc.1/lib-1.0.0-rc.1.rep.gz",
+				"lib/1.0.0-rc.1/meta.json", "lib/1.0.0-rc.1/meta.json.zst", "lib/1.0.0-rc.1/meta.json.gz");
+	}
+
+	@Test
+	void rulesNeedKeepLastOrOlderThan() {
+		RetentionProperties properties = new RetentionProperties();
+		RetentionProperties.Rule rule = new RetentionProperties.Rule();
+		properties.setRules(List.of(rule));
+		assertThatThrownBy(() -> RetentionEngine.validate(properties)).isInstanceOf(IllegalStateException.class);
+
+		rule.setOlderThan(Duration.ofDays(30));
+		RetentionEngine.validate(properties);
+		assertThat(rule.getName()).isEqualTo("rule-0");
+	}
+
+}
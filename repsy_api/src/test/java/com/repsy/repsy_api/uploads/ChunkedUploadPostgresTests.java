@@ -0,0 +1,208 @@
+package com.repsy.repsy_api.uploads;
+
+import com.repsy.repsy_api.packages.BlobDigest;
+import com.repsy.repsy_api.packages.PackageService;
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import com.repsy.storage.filesystem.FileSystemStorageService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs upload sessions end to end against PostgreSQL ({@code docker compose up db}) and the filesystem backend;
+ * run with {@code mvn -pl repsy_api test -Ppostgres}. The URL and credentials are taken from the same environment
+ * variables as the application. The deploy itself is replaced by one that records the assembled bytes.
+ */
+@Tag("postgres")
+class ChunkedUploadPostgresTests {
+
+	private static final String URL = env("SPRING_DATASOURCE_URL", "jdbc:postgresql://localhost:5432/repsy_db");
+	private static final String USERNAME = env("SPRING_DATASOURCE_USERNAME", "postgres");
+	private static final String PASSWORD = env("SPRING_DATASOURCE_PASSWORD", "");
+
+	private static final int CHUNK_SIZE = 4096;
+	private static final byte[] FILE = "chunked package content ".repeat(500).getBytes(StandardCharsets.UTF_8); // 3 chunks
+	private static final MultipartFile META = new MockMultipartFile("metaFile", "meta.json", "application/json",
+			"{}".getBytes(StandardCharsets.UTF_8));
+
+	@TempDir
+	Path root;
+
+	private final String name = "upload-test-" + UUID.randomUUID().toString().substring(0, 8);
+	private final Map<String, byte[]> deployed = new ConcurrentHashMap<>();
+	private HikariDataSource dataSource;
+	private JdbcTemplate jdbc;
+	private FileSystemStorageService storage;
+	private UploadProperties properties;
+	private ChunkedUploadService uploads;
+
+	@BeforeEach
+	void setUp() {
+		Flyway.configure().dataSource(URL, USERNAME, PASSWORD).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+		dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl(URL);
+		dataSource.setUsername(USERNAME);
+		dataSource.setPassword(PASSWORD);
+		jdbc = new JdbcTemplate(dataSource);
+
+		StorageProperties storageProperties = new StorageProperties();
+		storageProperties.setLocation(root.toString());
+		storageProperties.getDurability().setFsync(false);
+		storage = new FileSystemStorageService(storageProperties);
+		storage.init();
+
+		properties = new UploadProperties();
+		properties.setMinChunkBytes(1);
+		// Joins the chunks like a deploy would, without the packages table
+		PackageService packageService = new PackageService(null, storage, null, null, null, null, null) {
+			@Override
+			public BlobDigest deployAssembled(String packageName, String version, List<String> repParts, String expectedSha256,
+											  MultipartFile metaFile) {
+				ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+				for (String part : repParts) {
+					try (InputStream in = storage.openStream(part)) {
+						in.transferTo(assembled);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				byte[] bytes = assembled.toByteArray();
+				if (deployed.putIfAbsent(packageName + "@" + version, bytes) != null) {
+					throw new PackageAlreadyExistsException(packageName + "@" + version + " already exists.");
+				}
+				return BlobDigest.of(() -> new ByteArrayInputStream(bytes), "repFile");
+			}
+		};
+		uploads = new ChunkedUploadService(properties, packageService, storage, dataSource, new DataSourceTransactionManager(dataSource));
+	}
+
+	@AfterEach
+	void tearDown() {
+		jdbc.update("DELETE FROM upload_sessions WHERE name = ?", name);
+		storage.close();
+		dataSource.close();
+	}
+
+	@Test
+	void chunksSentOutOfOrderAndRetriedAreCommittedOnce() {
+		ChunkedUploadService.UploadSession session = uploads.create(name, "1.0.0", FILE.length, (long) CHUNK_SIZE);
+		assertThat(session.chunkCount()).isEqualTo(3);
+
+		put(session, 2);
+		put(session, 0);
+		byte[] garbled = new byte[CHUNK_SIZE];
+		uploads.putChunk(session.id(), 1, CHUNK_SIZE, new ByteArrayInputStream(garbled));
+		List<String> garbledAttempt = chunkObjects(session.id()).stream().filter(key -> key.contains("/1-")).toList();
+		assertThat(garbledAttempt).hasSize(1);
+		put(session, 1); // The retry replaces the garbled attempt and deletes its object
+
+		ChunkedUploadService.UploadStatus status = uploads.status(session.id());
+		assertThat(status.receivedChunks()).containsExactly(0, 1, 2);
+		assertThat(status.receivedOffset()).isEqualTo(FILE.length);
+		assertThat(chunkObjects(session.id())).hasSize(3).doesNotContainAnyElementsOf(garbledAttempt);
+
+		BlobDigest expected = BlobDigest.of(() -> new ByteArrayInputStream(FILE), "repFile");
+		ChunkedUploadService.UploadSession committed = uploads.commit(session.id(), expected.sha256(), META);
+
+		assertThat(committed.state()).isEqualTo(ChunkedUploadService.UploadSession.State.COMMITTED);
+		assertThat(committed.sha256()).isEqualTo(expected.sha256());
+		assertThat(deployed.get(name + "@1.0.0")).isEqualTo(FILE);
+		assertThat(chunkObjects(session.id())).isEmpty();
+
+		// A retried commit gets the same answer without deploying again
+		ChunkedUploadService.UploadSession again = uploads.commit(session.id(), expected.sha256(), META);
+		assertThat(again.state()).isEqualTo(ChunkedUploadService.UploadSession.State.COMMITTED);
+		assertThat(again.sha256()).isEqualTo(committed.sha256());
+		assertThat(deployed).hasSize(1);
+		assertThatThrownBy(() -> put(session, 0)).isInstanceOf(ChunkedUploadService.UploadStateException.class);
+	}
+
+	@Test
+	void abandonedCommitIsTakenOverAfterTheCommitTimeout() {
+		ChunkedUploadService.UploadSession session = uploads.create(name, "1.0.0", FILE.length, (long) CHUNK_SIZE);
+		for (int index = 0; index < session.chunkCount(); index++) {
+			put(session, index);
+		}
+		// A commit that stopped after claiming the session, e.g. because its instance went away
+		markCommitting(session.id(), Instant.now());
+
+		assertThatThrownBy(() -> uploads.commit(session.id(), null, META))
+				.isInstanceOf(ChunkedUploadService.UploadStateException.class);
+		assertThat(deployed).isEmpty();
+
+		markCommitting(session.id(), Instant.now().minus(properties.getCommitTimeout()).minusSeconds(1));
+		ChunkedUploadService.UploadSession committed = uploads.commit(session.id(), null, META);
+
+		assertThat(committed.state()).isEqualTo(ChunkedUploadService.UploadSession.State.COMMITTED);
+		assertThat(deployed.get(name + "@1.0.0")).isEqualTo(FILE);
+		assertThat(chunkObjects(session.id())).isEmpty();
+	}
+
+	@Test
+	void sweepRemovesExpiredSessionsWithTheirChunks() {
+		ChunkedUploadService.UploadSession expired = uploads.create(name, "1.0.0", FILE.length, (long) CHUNK_SIZE);
+		ChunkedUploadService.UploadSession live = uploads.create(name, "1.0.1", FILE.length, (long) CHUNK_SIZE);
+		put(expired, 0);
+		put(expired, 1);
+		put(live, 0);
+		jdbc.update("UPDATE upload_sessions SET expires_at = ? WHERE id = ?", Timestamp.from(Instant.now().minus(Duration.ofMinutes(1))), expired.id());
+
+		assertThat(uploads.sweepExpired()).isPositive();
+
+		assertThatThrownBy(() -> uploads.status(expired.id())).isInstanceOf(ChunkedUploadService.UploadNotFoundException.class);
+		assertThat(jdbc.queryForObject("SELECT count(*) FROM upload_chunks WHERE session_id = ?", Integer.class, expired.id())).isZero();
+		assertThat(chunkObjects(expired.id())).isEmpty();
+		assertThat(uploads.status(live.id()).receivedChunks()).containsExactly(0);
+		assertThat(chunkObjects(live.id())).hasSize(1);
+	}
+
+	private void put(ChunkedUploadService.UploadSession session, int index) {
+		int from = (int) (index * session.chunkSize());
+		byte[] chunk = Arrays.copyOfRange(FILE, from, (int) (from + session.chunkSize(index)));
+		uploads.putChunk(session.id(), index, chunk.length, new ByteArrayInputStream(chunk));
+	}
+
+	private void markCommitting(UUID id, Instant updatedAt) {
+		jdbc.update("UPDATE upload_sessions SET state = 'COMMITTING', updated_at = ? WHERE id = ?", Timestamp.from(updatedAt), id);
+	}
+
+	private List<String> chunkObjects(UUID id) {
+		return storage.listAll(ChunkedUploadService.UPLOAD_PREFIX + id + "/", StorageService.MAX_PAGE_SIZE)
+				.map(StoredObject::getKey)
+				.toList();
+	}
+
+	private static String env(String name, String fallback) {
+		String value = System.getenv(name);
+		return value != null ? value : fallback;
+	}
+}
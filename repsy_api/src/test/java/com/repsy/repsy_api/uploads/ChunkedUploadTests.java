@@ -0,0 +1,45 @@
+package com.repsy.repsy_api.uploads;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChunkedUploadTests {
+
+	@Test
+	void lastChunkHoldsTheRemainder() {
+		ChunkedUploadService.UploadSession session = new ChunkedUploadService.UploadSession(UUID.randomUUID(), "big", "1.0.0",
+				23_000_000, 5_242_880, 5, ChunkedUploadService.UploadSession.State.OPEN, null, Instant.now(), Instant.now());
+		assertThat(session.chunkSize(0)).isEqualTo(5_242_880);
+		assertThat(session.chunkSize(3)).isEqualTo(5_242_880);
+		assertThat(session.chunkSize(4)).isEqualTo(23_000_000 - 4L * 5_242_880);
+	}
+
+	@Test
+	void missingChunksAreListed() {
+		List<ChunkedUploadService.Chunk> received = List.of(
+				new ChunkedUploadService.Chunk(0, "a", 1), new ChunkedUploadService.Chunk(2, "b", 1));
+		assertThat(ChunkedUploadService.describeMissing(received, 4)).isEqualTo("1, 3");
+		assertThat(ChunkedUploadService.describeMissing(List.of(), 20)).isEqualTo("0, 1, 2, 3, 4, 5, 6, 7, 8, 9, ...");
+	}
+
+	@Test
+	void chunkBodyRejectsShortBodies() throws Exception {
+		ChunkBody complete = new ChunkBody("0.part", 3, new ByteArrayInputStream(new byte[]{1, 2, 3, 4}));
+		try (InputStream in = complete.getInputStream()) {
+			assertThat(in.readAllBytes()).containsExactly(1, 2, 3); // Never reads past the announced size
+		}
+
+		ChunkBody truncated = new ChunkBody("0.part", 5, new ByteArrayInputStream(new byte[]{1, 2, 3}));
+		assertThatThrownBy(() -> truncated.getInputStream().readAllBytes()).isInstanceOf(EOFException.class);
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.repsy.storage.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller (the leader) runs the loader,
+ * callers arriving while it is in flight wait for and share its result (or exception).
+ * Results are not cached; once the leader finishes, the next call starts a new flight.
+ * <p>
+ * Waiting is bounded: a caller that waits longer than {@code maxWaitMillis} gives up and runs the loader itself,
+ * so one stuck backend request cannot stall every reader of a key. Shared results must be safe to hand
+ * to several threads (e.g. an immutable byte buffer).
+ *
+ * @param <K> Key type.
+ * @param <V> Result type.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long maxWaitMillis;
+
+    private final LongAdder leaderCalls = new LongAdder();
+    private final LongAdder sharedResults = new LongAdder();
+    private final LongAdder waitTimeouts = new LongAdder();
+
+    public SingleFlight(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Runs {@code loader} for {@code key}, or joins a run already in flight.
+     *
+     * @param key    The key.
+     * @param loader Loads the value; called on the current thread.
+     * @return The loaded or shared value.
+     * @throws StorageException if interrupted while waiting.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing == null) {
+            leaderCalls.increment();
+            try {
+                V value = loader.get();
+                call.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                call.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, call);
+            }
+        }
+
+        try {
+            V value = existing.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+            sharedResults.increment();
+            return value;
+        } catch (ExecutionException e) {
+            // A shared failure (e.g. not found) also saved a backend call
+            sharedResults.increment();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new StorageException("Concurrent load of " + key + " failed", cause);
+        } catch (TimeoutException e) {
+            waitTimeouts.increment();
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while waiting for a concurrent load of " + key, e);
+        }
+    }
+
+    /**
+     * Detaches the flight in progress for a key (if any), so later callers do not join a load
+     * that started before the key was written or deleted.
+     *
+     * @param key The key.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    /**
+     * Detaches all flights in progress.
+     */
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    /**
+     * @return Counters: {@code leaderCalls} (loader runs), {@code sharedResults} (duplicate loads saved),
+     * {@code waitTimeouts} (waiters that gave up and loaded themselves) and {@code inFlight}.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("leaderCalls", leaderCalls.sum());
+        stats.put("sharedResults", sharedResults.sum());
+        stats.put("waitTimeouts", waitTimeouts.sum());
+        stats.put("inFlight", (long) inFlight.size());
+        return stats;
+    }
+}
@@ -0,0 +1,40 @@
+package com.repsy.storage.api;
+
+import java.util.List;
+
+/**
+ * One page of a {@link StorageService#list(String, int, String)} call.
+ * Objects come in a stable backend-defined order: lexicographic by key for MinIO and the flat
+ * filesystem layout, grouped by shard directory for the sharded filesystem layout.
+ */
+public final class StoragePage {
+
+    private final List<StoredObject> objects;
+    private final String continuationToken;
+
+    public StoragePage(List<StoredObject> objects, String continuationToken) {
+        this.objects = List.copyOf(objects);
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * @return The objects of this page, at most the requested page size.
+     */
+    public List<StoredObject> getObjects() {
+        return objects;
+    }
+
+    /**
+     * @return The opaque token to pass to the next {@code list} call, or null if this is the last page.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * @return true if more objects are available after this page.
+     */
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+}
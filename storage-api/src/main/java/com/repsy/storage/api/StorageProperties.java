@@ -3,6 +3,9 @@ package com.repsy.storage.api;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @ConfigurationProperties("storage")
 public class StorageProperties {
 
@@ -17,11 +20,37 @@ public class StorageProperties {
      */
     private String location = "upload-dir";
 
+    /**
+     * Run backend initialization that talks to a remote service (the Minio bucket check) in the background,
+     * so startup does not wait for it. The first storage operation waits for it instead.
+     */
+    private boolean deferInit = false;
+
     /**
      * Configuration specific to Minio object storage.
      */
     private final MinioProperties minio = new MinioProperties();
 
+    /**
+     * Hash-sharded directory layout for the filesystem strategy.
+     */
+    private final ShardingProperties sharding = new ShardingProperties();
+
+    /**
+     * Write durability settings for the filesystem strategy.
+     */
+    private final DurabilityProperties durability = new DurabilityProperties();
+
+    /**
+     * Primary and secondary backends of the 'replicated' strategy.
+     */
+    private final ReplicationProperties replication = new ReplicationProperties();
+
+    /**
+     * Coalescing of concurrent reads of the same object, for backends whose reads fetch the object (Minio).
+     */
+    private final ReadCoalescingProperties readCoalescing = new ReadCoalescingProperties();
+
     public String getStrategy() {
         return strategy;
     }
@@ -38,16 +67,57 @@ public class StorageProperties {
         this.location = location;
     }
 
+    public boolean isDeferInit() {
+        return deferInit;
+    }
+
+    public void setDeferInit(boolean deferInit) {
+        this.deferInit = deferInit;
+    }
+
     public MinioProperties getMinio() {
         return minio;
     }
 
+    public ShardingProperties getSharding() {
+        return sharding;
+    }
+
+    public DurabilityProperties getDurability() {
+        return durability;
+    }
+
+    public ReplicationProperties getReplication() {
+        return replication;
+    }
+
+    public ReadCoalescingProperties getReadCoalescing() {
+        return readCoalescing;
+    }
+
     public static class MinioProperties {
         private String endpoint;
         private String accessKey;
         private String secretKey;
         private String bucketName = "repsy-packages";
 
+        /**
+         * Endpoint clients use to reach Minio directly, for presigned download URLs
+         * (e.g. when the application talks to Minio on an internal address). Defaults to {@code endpoint}.
+         * Requires {@code region}; startup fails otherwise.
+         */
+        private String publicEndpoint;
+
+        /**
+         * Bucket region. When set, presigning does not need a bucket-location request.
+         */
+        private String region;
+
+        /**
+         * HTTP transport: connection pool, timeouts, retries and circuit breaking.
+         */
+        private final TransportProperties transport = new TransportProperties();
+
         public String getEndpoint() {
             return endpoint;
         }
@@ -79,5 +149,477 @@ public class StorageProperties {
         public void setBucketName(String bucketName) {
             this.bucketName = bucketName;
         }
+
+        public String getPublicEndpoint() {
+            return publicEndpoint;
+        }
+
+        public void setPublicEndpoint(String publicEndpoint) {
+            this.publicEndpoint = publicEndpoint;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public TransportProperties getTransport() {
+            return transport;
+        }
+    }
+
+    public static class TransportProperties {
+
+        /**
+         * Maximum concurrent HTTP requests to Minio; further calls queue in the client.
+         * (The Minio client runs requests asynchronously, so OkHttp's default of 5 per host would apply otherwise.)
+         */
+        private int maxConcurrentRequests = 64;
+
+        /**
+         * Idle keep-alive connections kept in the pool.
+         */
+        private int maxIdleConnections = 32;
+
+        /**
+         * How long an idle pooled connection is kept open.
+         */
+        private long keepAliveMillis = 300000;
+
+        /**
+         * Timeout for establishing a connection.
+         */
+        private long connectTimeoutMillis = 5000;
+
+        /**
+         * Read/write timeout of metadata operations (stat, list, delete, bucket checks).
+         */
+        private long metadataTimeoutMillis = 10000;
+
+        /**
+         * Read/write inactivity timeout of data transfers (upload, download, server-side copy).
+         */
+        private long dataTimeoutMillis = 120000;
+
+        /**
+         * Attempts per call, including the first. Only transient failures (connection errors, timeouts,
+         * 5xx, SlowDown) are retried; all storage operations used here are idempotent.
+         */
+        private int maxAttempts = 3;
+
+        /**
+         * Backoff cap before the first retry; doubles per retry up to {@code maxBackoffMillis}.
+         * The actual sleep is uniformly random below the cap (full jitter).
+         */
+        private long initialBackoffMillis = 100;
+
+        /**
+         * Upper bound of the retry backoff.
+         */
+        private long maxBackoffMillis = 2000;
+
+        /**
+         * Consecutive failed calls (after retries) that open the circuit breaker. 0 disables it.
+         */
+        private int breakerFailureThreshold = 5;
+
+        /**
+         * How long an open breaker rejects calls before letting a single probe call through.
+         */
+        private long breakerOpenMillis = 30000;
+
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public int getMaxIdleConnections() {
+            return maxIdleConnections;
+        }
+
+        public void setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+        }
+
+        public long getKeepAliveMillis() {
+            return keepAliveMillis;
+        }
+
+        public void setKeepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+        }
+
+        public long getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+        }
+
+        public long getMetadataTimeoutMillis() {
+            return metadataTimeoutMillis;
+        }
+
+        public void setMetadataTimeoutMillis(long metadataTimeoutMillis) {
+            this.metadataTimeoutMillis = metadataTimeoutMillis;
+        }
+
+        public long getDataTimeoutMillis() {
+            return dataTimeoutMillis;
+        }
+
+        public void setDataTimeoutMillis(long dataTimeoutMillis) {
+            this.dataTimeoutMillis = dataTimeoutMillis;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getInitialBackoffMillis() {
+            return initialBackoffMillis;
+        }
+
+        public void setInitialBackoffMillis(long initialBackoffMillis) {
+            this.initialBackoffMillis = initialBackoffMillis;
+        }
+
+        public long getMaxBackoffMillis() {
+            return maxBackoffMillis;
+        }
+
+        public void setMaxBackoffMillis(long maxBackoffMillis) {
+            this.maxBackoffMillis = maxBackoffMillis;
+        }
+
+        public int getBreakerFailureThreshold() {
+            return breakerFailureThreshold;
+        }
+
+        public void setBreakerFailureThreshold(int breakerFailureThreshold) {
+            this.breakerFailureThreshold = breakerFailureThreshold;
+        }
+
+        public long getBreakerOpenMillis() {
+            return breakerOpenMillis;
+        }
+
+        public void setBreakerOpenMillis(long breakerOpenMillis) {
+            this.breakerOpenMillis = breakerOpenMillis;
+        }
+    }
+
+    public static class ShardingProperties {
+
+        /**
+         * Number of hash prefix directories above each package directory (e.g. 2 gives ab/cd/name/version/file).
+         * 0 keeps the flat layout.
+         */
+        private int levels = 0;
+
+        /**
+         * Hex characters per shard directory name. 2 gives 256 directories per level.
+         */
+        private int width = 2;
+
+        /**
+         * Whether reads fall back to the flat location for files not yet moved by the re-layout tool.
+         */
+        private boolean legacyFallback = true;
+
+        public int getLevels() {
+            return levels;
+        }
+
+        public void setLevels(int levels) {
+            this.levels = levels;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public void setWidth(int width) {
+            this.width = width;
+        }
+
+        public boolean isLegacyFallback() {
+            return legacyFallback;
+        }
+
+        public void setLegacyFallback(boolean legacyFallback) {
+            this.legacyFallback = legacyFallback;
+        }
+    }
+
+    public static class DurabilityProperties {
+
+        /**
+         * Whether stored files (and their directory entries) are fsynced before store() returns.
+         * Writes are always atomic (temp file + rename); this only controls crash durability.
+         */
+        private boolean fsync = true;
+
+        /**
+         * Latency cap of a group-commit flush window: how long the first write of a window waits
+         * for other writes to share its fsync round.
+         */
+        private long maxFlushDelayMillis = 2;
+
+        /**
+         * Maximum number of writes flushed in one window.
+         */
+        private int maxFlushBatch = 256;
+
+        /**
+         * Number of threads issuing fsyncs of one window concurrently, so the filesystem journal can merge them.
+         */
+        private int flushParallelism = 8;
+
+        /**
+         * Number of lock stripes serializing commits and deletes of the same path.
+         */
+        private int lockStripes = 64;
+
+        public boolean isFsync() {
+            return fsync;
+        }
+
+        public void setFsync(boolean fsync) {
+            this.fsync = fsync;
+        }
+
+        public long getMaxFlushDelayMillis() {
+            return maxFlushDelayMillis;
+        }
+
+        public void setMaxFlushDelayMillis(long maxFlushDelayMillis) {
+            this.maxFlushDelayMillis = maxFlushDelayMillis;
+        }
+
+        public int getMaxFlushBatch() {
+            return maxFlushBatch;
+        }
+
+        public void setMaxFlushBatch(int maxFlushBatch) {
+            this.maxFlushBatch = maxFlushBatch;
+        }
+
+        public int getFlushParallelism() {
+            return flushParallelism;
+        }
+
+        public void setFlushParallelism(int flushParallelism) {
+            this.flushParallelism = flushParallelism;
+        }
+
+        public int getLockStripes() {
+            return lockStripes;
+        }
+
+        public void setLockStripes(int lockStripes) {
+            this.lockStripes = lockStripes;
+        }
+    }
+
+    public static class ReplicationProperties {
+
+        /**
+         * Backend that takes writes synchronously and serves reads first ('filesystem' or 'minio').
+         */
+        private String primary = "filesystem";
+
+        /**
+         * Backends that receive writes asynchronously, in order, from the replication journal.
+         */
+        private List<String> secondaries = new ArrayList<>(List.of("minio"));
+
+        /**
+         * Directory of the replication journal (one small file per pending write). Must survive restarts.
+         */
+        private String journalLocation = "replication-journal";
+
+        /**
+         * Whether journal entries are fsynced before a write returns, so pending replications survive a crash.
+         */
+        private boolean journalFsync = true;
+
+        /**
+         * Delay before retrying a failed replication; doubles per consecutive failure up to {@code maxRetryDelayMillis}.
+         */
+        private long retryDelayMillis = 1000;
+
+        /**
+         * Upper bound of the replication retry delay.
+         */
+        private long maxRetryDelayMillis = 60000;
+
+        /**
+         * Failed attempts after which an entry is parked (moved to the journal's {@code parked} directory) so that
+         * later entries are no longer held up by it. 0 retries forever.
+         */
+        private int maxAttempts = 20;
+
+        /**
+         * Whether a read that the primary has not answered within the hedge delay is also sent to the first secondary;
+         * the first successful answer wins.
+         */
+        private boolean hedgedReads = true;
+
+        /**
+         * Percentile of recent primary read latencies used as the hedge delay.
+         */
+        private double hedgePercentile = 0.95;
+
+        /**
+         * Lower bound of the hedge delay, so fast primaries are not hedged on noise.
+         */
+        private long minHedgeDelayMillis = 5;
+
+        /**
+         * Hedge delay used until enough latency samples have been collected.
+         */
+        private long initialHedgeDelayMillis = 50;
+
+        /**
+         * Number of recent primary read latencies the percentile is computed from.
+         */
+        private int latencyWindow = 1024;
+
+        public String getPrimary() {
+            return primary;
+        }
+
+        public void setPrimary(String primary) {
+            this.primary = primary;
+        }
+
+        public List<String> getSecondaries() {
+            return secondaries;
+        }
+
+        public void setSecondaries(List<String> secondaries) {
+            this.secondaries = secondaries;
+        }
+
+        public String getJournalLocation() {
+            return journalLocation;
+        }
+
+        public void setJournalLocation(String journalLocation) {
+            this.journalLocation = journalLocation;
+        }
+
+        public boolean isJournalFsync() {
+            return journalFsync;
+        }
+
+        public void setJournalFsync(boolean journalFsync) {
+            this.journalFsync = journalFsync;
+        }
+
+        public long getRetryDelayMillis() {
+            return retryDelayMillis;
+        }
+
+        public void setRetryDelayMillis(long retryDelayMillis) {
+            this.retryDelayMillis = retryDelayMillis;
+        }
+
+        public long getMaxRetryDelayMillis() {
+            return maxRetryDelayMillis;
+        }
+
+        public void setMaxRetryDelayMillis(long maxRetryDelayMillis) {
+            this.maxRetryDelayMillis = maxRetryDelayMillis;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public boolean isHedgedReads() {
+            return hedgedReads;
+        }
+
+        public void setHedgedReads(boolean hedgedReads) {
+            this.hedgedReads = hedgedReads;
+        }
+
+        public double getHedgePercentile() {
+            return hedgePercentile;
+        }
+
+        public void setHedgePercentile(double hedgePercentile) {
+            this.hedgePercentile = hedgePercentile;
+        }
+
+        public long getMinHedgeDelayMillis() {
+            return minHedgeDelayMillis;
+        }
+
+        public void setMinHedgeDelayMillis(long minHedgeDelayMillis) {
+            this.minHedgeDelayMillis = minHedgeDelayMillis;
+        }
+
+        public long getInitialHedgeDelayMillis() {
+            return initialHedgeDelayMillis;
+        }
+
+        public void setInitialHedgeDelayMillis(long initialHedgeDelayMillis) {
+            this.initialHedgeDelayMillis = initialHedgeDelayMillis;
+        }
+
+        public int getLatencyWindow() {
+            return latencyWindow;
+        }
+
+        public void setLatencyWindow(int latencyWindow) {
+            this.latencyWindow = latencyWindow;
+        }
+    }
+
+    public static class ReadCoalescingProperties {
+
+        /**
+         * Whether concurrent reads of the same object share one backend fetch.
+         */
+        private boolean enabled = true;
+
+        /**
+         * How long a read waits for a fetch already in flight before fetching the object itself.
+         */
+        private long maxWaitMillis = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        public void setMaxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+        }
     }
-} 
\ No newline at end of file
+}
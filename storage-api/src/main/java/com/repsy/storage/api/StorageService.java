@@ -3,8 +3,25 @@ package com.repsy.storage.api;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface StorageService {
 
@@ -27,9 +44,63 @@ public interface StorageService {
      * Loads all files within the storage.
      *
      * @return A Stream of Paths representing the files.
+     * @deprecated Unbounded; use {@link #list(String, int, String)} or {@link #listAll(String, int)} instead.
      */
+    @Deprecated
     Stream<Path> loadAll();
 
+    /**
+     * Maximum page size honoured by {@link #list(String, int, String)}; larger requests are capped.
+     */
+    int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Lists one page of stored objects, recursively and in a stable order (see {@link StoragePage}).
+     *
+     * @param prefix            Only keys starting with this prefix are returned (e.g. "mypackage/"). May be null or empty.
+     * @param pageSize          Maximum number of objects to return (1..{@link #MAX_PAGE_SIZE}).
+     * @param continuationToken The token from the previous page, or null to start from the beginning.
+     * @return The page, with a continuation token if more objects remain.
+     */
+    StoragePage list(String prefix, int pageSize, String continuationToken);
+
+    /**
+     * Lazily iterates over all objects under a prefix, fetching one page at a time.
+     * Only a single page is held in memory.
+     *
+     * @param prefix   Key prefix to filter on. May be null or empty.
+     * @param pageSize Page size used for the underlying {@link #list} calls.
+     * @return A sequential Stream of stored objects.
+     */
+    default Stream<StoredObject> listAll(String prefix, int pageSize) {
+        Iterator<StoredObject> iterator = new Iterator<>() {
+            private StoragePage page;
+            private Iterator<StoredObject> current;
+
+            @Override
+            public boolean hasNext() {
+                if (page == null) { // First page is only fetched once the stream is consumed
+                    page = list(prefix, pageSize, null);
+                    current = page.getObjects().iterator();
+                }
+                while (!current.hasNext() && page.hasMore()) {
+                    page = list(prefix, pageSize, page.getContinuationToken());
+                    current = page.getObjects().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public StoredObject next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     /**
      * Loads a file as a Path object.
      *
@@ -46,16 +117,123 @@ public interface StorageService {
      */
     Resource loadAsResource(String filename);
 
+    /**
+     * Opens a file for one sequential pass (hashing, compressing, verifying) without holding it in memory.
+     * The default opens {@link #loadAsResource(String)}; backends whose resources buffer the whole object override it.
+     *
+     * @param filename The relative path to the file.
+     * @return The content, which the caller must close.
+     * @throws StorageFileNotFoundException if the file does not exist.
+     */
+    default InputStream openStream(String filename) {
+        try {
+            return loadAsResource(filename).getInputStream();
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            throw new StorageFileNotFoundException("Could not read file: " + filename, e);
+        } catch (IOException e) {
+            throw new StorageException("Failed to open file: " + filename, e);
+        }
+    }
+
+    /**
+     * Creates a short-lived URL from which a client can download a file directly from the backend,
+     * so the bytes do not pass through the application.
+     *
+     * @param filename        The relative path to the file.
+     * @param expiry          How long the URL stays valid.
+     * @param responseHeaders Headers the backend should set on the download response
+     *                        (e.g. Content-Type, Content-Disposition, Content-Encoding). May be empty.
+     * @return The URL, or empty if the backend cannot serve files directly (the default).
+     */
+    default Optional<URI> presignedDownloadUrl(String filename, Duration expiry, Map<String, String> responseHeaders) {
+        return Optional.empty();
+    }
+
     /**
      * Deletes all files managed by the storage service.
      * Use with caution!
      */
     void deleteAll();
 
+    /**
+     * Looks up a file's size and modification time without reading its content.
+     *
+     * @param filename The relative path to the file.
+     * @return The object, or empty if no file is stored under that key.
+     */
+    Optional<StoredObject> stat(String filename);
+
+    /**
+     * Copies a stored file to a new key, replacing any file already stored there.
+     * No bytes pass through the application where the backend can avoid it
+     * (hard link on the filesystem, server-side copy on object stores).
+     *
+     * @param sourceFilename      The relative path of the file to copy.
+     * @param destinationFilename The relative path of the copy.
+     * @throws StorageFileNotFoundException if the source does not exist.
+     */
+    void copy(String sourceFilename, String destinationFilename);
+
+    /**
+     * Moves a stored file to a new key, replacing any file already stored there.
+     * Atomic on the filesystem (rename); a server-side copy followed by a delete on object stores.
+     *
+     * @param sourceFilename      The relative path of the file to move.
+     * @param destinationFilename The relative path to move it to.
+     * @throws StorageFileNotFoundException if the source does not exist.
+     */
+    void move(String sourceFilename, String destinationFilename);
+
+    /**
+     * Concatenates stored files, in order, into one file, replacing any file already stored there.
+     * The sources are left in place. No bytes pass through the application where the backend can avoid it
+     * (kernel-side copies on the filesystem, server-side compose on object stores).
+     *
+     * @param sourceFilenames     The relative paths of the parts, in order. Object stores may require every part
+     *                            but the last to have a minimum size (5 MiB on S3 and Minio).
+     * @param destinationFilename The relative path of the assembled file.
+     * @throws StorageFileNotFoundException if a part does not exist.
+     */
+    void compose(List<String> sourceFilenames, String destinationFilename);
+
+    /**
+     * Replaces a file whose stored content is damaged with an intact copy from another replica the backend keeps.
+     * Backends that keep a single copy cannot repair; the default returns false.
+     *
+     * @param filename The relative path of the damaged file.
+     * @param verifier Tells whether a candidate copy is intact, e.g. by hashing it against a recorded digest.
+     *                 It is called with each candidate in turn and must not keep the resource.
+     * @return true if an intact copy was found and written back.
+     */
+    default boolean repair(String filename, Predicate<Resource> verifier) {
+        return false;
+    }
+
     /**
      * Deletes a specific file.
      * @param filename The relative path to the file to delete.
      */
     void delete(String filename);
 
+    /**
+     * Deletes many files, batching the work where the backend can (multi-object delete requests on object stores,
+     * parallel unlinks on the filesystem). Keys that do not exist are skipped silently.
+     * The default deletes the files one by one.
+     *
+     * @param filenames   The relative paths of the files to delete.
+     * @param parallelism Upper bound on concurrent backend operations; backends that batch in one request may ignore it.
+     * @return The keys that could not be deleted; empty on full success.
+     */
+    default List<String> deleteBatch(Collection<String> filenames, int parallelism) {
+        List<String> failed = new ArrayList<>();
+        for (String filename : filenames) {
+            try {
+                delete(filename);
+            } catch (StorageException e) {
+                failed.add(filename);
+            }
+        }
+        return failed;
+    }
+
 } 
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.repsy.storage.api;
+
+/**
+ * Exception thrown when the storage backend is temporarily unavailable,
+ * e.g. a circuit breaker is rejecting calls. Retrying later may succeed.
+ */
+public class StorageUnavailableException extends StorageException {
+
+	public StorageUnavailableException(String message) {
+		super(message);
+	}
+
+	public StorageUnavailableException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,63 @@
+package com.repsy.storage.api;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A single object returned by {@link StorageService#list(String, int, String)}.
+ */
+public final class StoredObject {
+
+    private final String key;
+    private final long size;
+    private final Instant lastModified;
+
+    public StoredObject(String key, long size, Instant lastModified) {
+        this.key = key;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return The object key relative to the storage root, always using '/' as separator.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The object size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The last modification time, or null if the backend does not report it.
+     */
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StoredObject that = (StoredObject) o;
+        return size == that.size && Objects.equals(key, that.key) && Objects.equals(lastModified, that.lastModified);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, size, lastModified);
+    }
+
+    @Override
+    public String toString() {
+        return "StoredObject{" +
+                "key='" + key + '\'' +
+                ", size=" + size +
+                ", lastModified=" + lastModified +
+                '}';
+    }
+}
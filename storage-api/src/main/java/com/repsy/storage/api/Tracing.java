@@ -0,0 +1,99 @@
+package com.repsy.storage.api;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+
+/**
+ * Child spans for phases of a sampled request (service, storage, database).
+ * <p>
+ * Spans are only created under a sampled parent span, which the application starts per request.
+ * Unsampled requests and background work run the body directly with a no-op span, so the hot path pays one
+ * thread-local lookup. The application installs its OpenTelemetry SDK with {@link #install(OpenTelemetry)};
+ * until then, and in applications that never do, everything is a no-op.
+ */
+public final class Tracing {
+
+    private static final String INSTRUMENTATION_NAME = "com.repsy";
+
+    public static final AttributeKey<String> STORAGE_BACKEND = AttributeKey.stringKey("repsy.storage.backend");
+    public static final AttributeKey<String> STORAGE_KEY = AttributeKey.stringKey("repsy.storage.key");
+    public static final AttributeKey<Long> BYTES = AttributeKey.longKey("repsy.bytes");
+
+    private static volatile Tracer tracer = OpenTelemetry.noop().getTracer(INSTRUMENTATION_NAME);
+
+    private Tracing() {
+    }
+
+    public static void install(OpenTelemetry openTelemetry) {
+        tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    public static Tracer tracer() {
+        return tracer;
+    }
+
+    /**
+     * Runs {@code body} in a child span named {@code name}, recording a thrown exception on the span.
+     *
+     * @return What {@code body} returns.
+     */
+    public static <T, E extends Exception> T inSpan(String name, SpanBody<T, E> body) throws E {
+        Span parent = Span.current();
+        if (!parent.getSpanContext().isSampled()) {
+            return body.run(Span.getInvalid());
+        }
+        Span span = tracer.spanBuilder(name).startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            return body.run(span);
+        } catch (Exception | Error e) {
+            fail(span, e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Like {@link #inSpan(String, SpanBody)} for bodies without a result.
+     */
+    public static <E extends Exception> void runInSpan(String name, VoidSpanBody<E> body) throws E {
+        Tracing.<Void, E>inSpan(name, span -> {
+            body.run(span);
+            return null;
+        });
+    }
+
+    /**
+     * Starts a leaf span (not made current) for code that cannot use {@link #inSpan}; the caller ends it.
+     *
+     * @return The span, or a no-op span if the current request is not sampled.
+     */
+    public static Span startLeaf(String name) {
+        if (!Span.current().getSpanContext().isSampled()) {
+            return Span.getInvalid();
+        }
+        return tracer.spanBuilder(name).startSpan();
+    }
+
+    /**
+     * Marks {@code span} as failed with {@code failure}.
+     */
+    public static void fail(Span span, Throwable failure) {
+        span.recordException(failure);
+        span.setStatus(StatusCode.ERROR);
+    }
+
+    @FunctionalInterface
+    public interface SpanBody<T, E extends Exception> {
+        T run(Span span) throws E;
+    }
+
+    @FunctionalInterface
+    public interface VoidSpanBody<E extends Exception> {
+        void run(Span span) throws E;
+    }
+}
@@ -2,10 +2,14 @@ package com.repsy.storage.filesystem;
 
 import com.repsy.storage.api.StorageException;
 import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.StoragePage;
 import com.repsy.storage.api.StorageProperties;
 import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import com.repsy.storage.api.Tracing;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,23 +19,70 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 
 // @Service - REMOVED, managed by StorageAutoConfiguration
 // @ConditionalOnProperty(name = "storage.strategy", havingValue = "filesystem", matchIfMissing = true) // Managed in StorageAutoConfiguration
-public class FileSystemStorageService implements StorageService {
+public class FileSystemStorageService implements StorageService, AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(FileSystemStorageService.class);
+    private static final String BACKEND_NAME = "filesystem";
+
+    /**
+     * Name prefix of in-flight writes. Such files are never listed or re-laid out.
+     */
+    static final String TEMP_FILE_PREFIX = ".repsy-tmp-";
+
+    /**
+     * Upper bound on unlinks in flight across all concurrent {@link #deleteBatch} calls.
+     */
+    static final int MAX_UNLINK_THREADS = 16;
 
     private final Path rootLocation;
     private final StorageProperties properties;
+    private final int shardLevels;
+    private final int shardWidth;
+    private final int shardPrefixLength; // Length of "ab/cd/" in a physical key, 0 for the flat layout
+    private final GroupCommitSyncer syncer;
+    private final StripedLocks pathLocks;
+    private final ThreadPoolExecutor unlinkExecutor; // Shared by batch deletes; idle threads exit
 
     @Autowired
     public FileSystemStorageService(StorageProperties properties) {
@@ -40,7 +91,25 @@ public class FileSystemStorageService implements StorageService {
             throw new StorageException("File upload location cannot be empty.");
         }
         this.rootLocation = Paths.get(properties.getLocation());
-        logger.info("FileSystemStorageService initialized with root location: {}", this.rootLocation.toAbsolutePath());
+        this.shardLevels = Math.max(0, properties.getSharding().getLevels());
+        this.shardWidth = properties.getSharding().getWidth();
+        if (shardLevels > 0 && (shardWidth < 1 || shardLevels * shardWidth > 64)) {
+            throw new StorageException("Invalid sharding configuration: levels * width must be between 1 and 64.");
+        }
+        this.shardPrefixLength = shardLevels * (shardWidth + 1);
+        StorageProperties.DurabilityProperties durability = properties.getDurability();
+        this.syncer = new GroupCommitSyncer(durability.isFsync(), durability.getMaxFlushDelayMillis(),
+                durability.getMaxFlushBatch(), durability.getFlushParallelism());
+        this.pathLocks = new StripedLocks(durability.getLockStripes());
+        AtomicInteger unlinkThreads = new AtomicInteger();
+        this.unlinkExecutor = new ThreadPoolExecutor(MAX_UNLINK_THREADS, MAX_UNLINK_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "storage-unlink-" + unlinkThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.unlinkExecutor.allowCoreThreadTimeOut(true);
+        logger.info("FileSystemStorageService initialized with root location: {} (shard levels: {})", this.rootLocation.toAbsolutePath(), shardLevels);
     }
 
     @Override
@@ -54,54 +123,237 @@ public class FileSystemStorageService implements StorageService {
         }
     }
 
+    /**
+     * Stops the group committer and the unlink threads. Pending commits fail instead of hanging.
+     */
+    @Override
+    @PreDestroy
+    public void close() {
+        syncer.close();
+        unlinkExecutor.shutdown();
+    }
+
     @Override
     public void store(MultipartFile file, Path destinationPath) {
-        logger.info("Attempting to store file.");
-        logger.info("Root location: {}", rootLocation.toAbsolutePath());
-        logger.info("Provided destination path: {}", destinationPath);
+        String key = toKey(destinationPath.toString());
+        Tracing.runInSpan("storage.store", span -> {
+            span.setAttribute(Tracing.STORAGE_BACKEND, BACKEND_NAME);
+            span.setAttribute(Tracing.STORAGE_KEY, key);
+            span.setAttribute(Tracing.BYTES, file.getSize());
+            try {
+                // Resolve the destination path against the root location (inside its shard directories, if enabled)
+                Path absoluteDestinationFile = resolvePhysical(key);
+
+                // Security check: Ensure the destination is within the root location
+                if (!absoluteDestinationFile.startsWith(this.rootLocation.toAbsolutePath())) {
+                    throw new StorageException("Cannot store file outside current directory: " + destinationPath);
+                }
+
+                // Create parent directories if they don't exist
+                Path parentDir = absoluteDestinationFile.getParent();
+                if (!Files.exists(parentDir)) {
+                    try {
+                        syncer.createDirectories(parentDir);
+                    } catch (IOException e) {
+                        throw new StorageException("Could not create parent directories for " + absoluteDestinationFile, e);
+                    }
+                }
+
+                // Copy the file into a temp file next to the target; readers never see a partially written file
+                Path tempFile = parentDir.resolve(TEMP_FILE_PREFIX + UUID.randomUUID() + "-" + absoluteDestinationFile.getFileName());
+                Tracing.runInSpan("storage.write", writeSpan -> {
+                    try (InputStream inputStream = file.getInputStream()) {
+                        Files.copy(inputStream, tempFile);
+                    } catch (IOException e) {
+                        Files.deleteIfExists(tempFile);
+                        throw e;
+                    }
+                });
 
+                // Fsync (shared with concurrent writes) and atomically rename into place
+                Tracing.runInSpan("storage.commit", commitSpan -> commit(tempFile, absoluteDestinationFile));
+                logger.debug("Stored {}", absoluteDestinationFile);
+            } catch (IOException e) {
+                throw new StorageException("Failed to store file " + destinationPath, e);
+            }
+        });
+    }
+
+    /**
+     * Hands a written temp file to the group committer and waits until it is in place.
+     */
+    private void commit(Path tempFile, Path target) {
+        awaitCommit(target, () -> syncer.commit(tempFile, target));
+    }
+
+    private void awaitCommit(Path target, Supplier<CompletableFuture<Void>> submit) {
+        await(target, submitCommit(target, submit));
+    }
+
+    /**
+     * Queues a commit under the path's lock stripe, so commits of the same path reach the committer in the order
+     * they were made. The stripe is released before the window flushes: unrelated paths sharing it would otherwise
+     * wait a whole flush each, capping a window at the stripe count.
+     */
+    private <T> CompletableFuture<T> submitCommit(Path target, Supplier<CompletableFuture<T>> submit) {
+        ReentrantLock lock = pathLocks.forKey(target.toString());
+        lock.lock();
         try {
-            // Remove the commented-out empty file check
-            // /* 
-            // if (file.isEmpty()) {
-            //     throw new StorageException("Failed to store empty file.");
-            // }
-            // */
-
-            // Resolve the destination path against the root location
-            Path absoluteDestinationFile = this.rootLocation.resolve(destinationPath).normalize().toAbsolutePath();
-            logger.info("Calculated absolute destination file: {}", absoluteDestinationFile);
-
-            // Security check: Ensure the destination is within the root location
-            if (!absoluteDestinationFile.startsWith(this.rootLocation.toAbsolutePath())) {
-                throw new StorageException("Cannot store file outside current directory: " + destinationPath);
-            }
-
-            // Create parent directories if they don't exist
-            Path parentDir = absoluteDestinationFile.getParent();
-             logger.info("Calculated parent directory: {}", parentDir);
-            if (!Files.exists(parentDir)) {
-                 logger.info("Creating parent directories if needed: {}", parentDir);
+            return submit.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <T> T await(Path target, CompletableFuture<T> commit) {
+        try {
+            return commit.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while committing file " + target, e);
+        } catch (ExecutionException e) {
+            throw new StorageException("Failed to commit file " + target, e.getCause());
+        }
+    }
+
+    /**
+     * @return Group-commit counters: flush windows, commits per window and directory fsyncs, for monitoring.
+     */
+    public Map<String, Object> durabilityStats() {
+        return syncer.stats();
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String filename) {
+        Path file = load(filename).normalize().toAbsolutePath();
+        if (!file.startsWith(this.rootLocation.toAbsolutePath())) {
+            throw new StorageException("Cannot stat file outside current directory: " + filename);
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return Optional.empty();
+            }
+            return Optional.of(new StoredObject(toKey(filename), attributes.size(), attributes.lastModifiedTime().toInstant()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new StorageException("Failed to stat file: " + filename, e);
+        }
+    }
+
+    @Override
+    public void copy(String sourceFilename, String destinationFilename) {
+        Tracing.runInSpan("storage.copy", span -> {
+            span.setAttribute(Tracing.STORAGE_BACKEND, BACKEND_NAME);
+            span.setAttribute(Tracing.STORAGE_KEY, toKey(destinationFilename));
+            Path source = load(sourceFilename).normalize().toAbsolutePath();
+            Path target = resolvePhysical(toKey(destinationFilename));
+            if (!source.startsWith(this.rootLocation.toAbsolutePath()) || !target.startsWith(this.rootLocation.toAbsolutePath())) {
+                throw new StorageException("Cannot copy file outside current directory: " + sourceFilename + " -> " + destinationFilename);
+            }
+            if (!Files.isRegularFile(source)) {
+                throw new StorageFileNotFoundException("Could not copy missing file: " + sourceFilename);
+            }
+            try {
+                syncer.createDirectories(target.getParent());
+                Path tempFile = target.getParent().resolve(TEMP_FILE_PREFIX + UUID.randomUUID() + "-" + target.getFileName());
                 try {
-                    Files.createDirectories(parentDir);
-                     logger.info("Parent directories should exist now.");
+                    // Stored files are never modified in place (every write renames a new file over the key),
+                    // so sharing the inode through a hard link is safe and copies no bytes
+                    Files.createLink(tempFile, source);
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    logger.debug("Hard link not possible for {}, copying instead: {}", source, e.getMessage());
+                    Files.deleteIfExists(tempFile);
+                    Files.copy(source, tempFile);
+                }
+                commit(tempFile, target);
+            } catch (NoSuchFileException e) {
+                throw new StorageFileNotFoundException("Could not copy missing file: " + sourceFilename, e);
+            } catch (IOException e) {
+                throw new StorageException("Failed to copy " + sourceFilename + " to " + destinationFilename, e);
+            }
+        });
+    }
+
+    /**
+     * Concatenates the parts into a temp file with {@link FileChannel#transferTo}, which the kernel serves
+     * without copying through the JVM (copy_file_range on Linux), then commits it like a store.
+     */
+    @Override
+    public void compose(List<String> sourceFilenames, String destinationFilename) {
+        Tracing.runInSpan("storage.compose", span -> {
+            span.setAttribute(Tracing.STORAGE_BACKEND, BACKEND_NAME);
+            span.setAttribute(Tracing.STORAGE_KEY, toKey(destinationFilename));
+            Path target = resolvePhysical(toKey(destinationFilename));
+            if (!target.startsWith(this.rootLocation.toAbsolutePath())) {
+                throw new StorageException("Cannot compose file outside current directory: " + destinationFilename);
+            }
+            List<Path> sources = new ArrayList<>(sourceFilenames.size());
+            for (String sourceFilename : sourceFilenames) {
+                Path source = load(sourceFilename).normalize().toAbsolutePath();
+                if (!source.startsWith(this.rootLocation.toAbsolutePath())) {
+                    throw new StorageException("Cannot compose from file outside current directory: " + sourceFilename);
+                }
+                if (!Files.isRegularFile(source)) {
+                    throw new StorageFileNotFoundException("Could not compose from missing file: " + sourceFilename);
+                }
+                sources.add(source);
+            }
+            try {
+                syncer.createDirectories(target.getParent());
+                Path tempFile = target.getParent().resolve(TEMP_FILE_PREFIX + UUID.randomUUID() + "-" + target.getFileName());
+                long bytes = 0;
+                try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    for (Path source : sources) {
+                        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                            long size = in.size();
+                            long position = 0;
+                            while (position < size) {
+                                position += in.transferTo(position, size - position, out);
+                            }
+                            bytes += size;
+                        }
+                    }
                 } catch (IOException e) {
-                    throw new StorageException("Could not create parent directories for " + absoluteDestinationFile, e);
+                    Files.deleteIfExists(tempFile);
+                    throw e;
                 }
+                span.setAttribute(Tracing.BYTES, bytes);
+                commit(tempFile, target);
+            } catch (NoSuchFileException e) {
+                throw new StorageFileNotFoundException("Could not compose " + destinationFilename + " from missing file", e);
+            } catch (IOException e) {
+                throw new StorageException("Failed to compose " + destinationFilename, e);
             }
+        });
+    }
 
-            // Copy the file
-             logger.info("Copying input stream to: {}", absoluteDestinationFile);
-            try (InputStream inputStream = file.getInputStream()) {
-                Files.copy(inputStream, absoluteDestinationFile, StandardCopyOption.REPLACE_EXISTING);
-                logger.info("File copied successfully to: {}", absoluteDestinationFile);
+    @Override
+    public void move(String sourceFilename, String destinationFilename) {
+        Tracing.runInSpan("storage.move", span -> {
+            span.setAttribute(Tracing.STORAGE_BACKEND, BACKEND_NAME);
+            span.setAttribute(Tracing.STORAGE_KEY, toKey(destinationFilename));
+            Path source = load(sourceFilename).normalize().toAbsolutePath();
+            Path target = resolvePhysical(toKey(destinationFilename));
+            if (!source.startsWith(this.rootLocation.toAbsolutePath()) || !target.startsWith(this.rootLocation.toAbsolutePath())) {
+                throw new StorageException("Cannot move file outside current directory: " + sourceFilename + " -> " + destinationFilename);
             }
-        } catch (IOException e) {
-            throw new StorageException("Failed to store file " + destinationPath, e);
-        }
+            if (!Files.isRegularFile(source)) {
+                throw new StorageFileNotFoundException("Could not move missing file: " + sourceFilename);
+            }
+            try {
+                syncer.createDirectories(target.getParent());
+            } catch (IOException e) {
+                throw new StorageException("Could not create parent directories for " + target, e);
+            }
+            // Same filesystem, so this is a single atomic rename; the directory fsync shares the group-commit window
+            awaitCommit(target, () -> syncer.rename(source, target));
+        });
     }
 
     @Override
+    @Deprecated
     public Stream<Path> loadAll() {
         try {
             return Files.walk(this.rootLocation, 1) // Only walk top level
@@ -112,26 +364,365 @@ public class FileSystemStorageService implements StorageService {
         }
     }
 
+    @Override
+    public StoragePage list(String prefix, int pageSize, String continuationToken) {
+        String normalizedPrefix = prefix == null ? "" : toKey(prefix);
+        int limit = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+
+        // Start at the deepest directory fully named by the prefix instead of the root.
+        // Once the prefix names a package, its shard directories are known as well.
+        String startDirKey = normalizedPrefix.substring(0, normalizedPrefix.lastIndexOf('/') + 1);
+        int startDepth = 0;
+        if (!startDirKey.isEmpty()) {
+            startDirKey = shardPrefix(startDirKey) + startDirKey;
+            startDepth = shardLevels;
+        }
+        Path startDir = this.rootLocation.resolve(startDirKey).normalize().toAbsolutePath();
+        if (!startDir.startsWith(this.rootLocation.toAbsolutePath())) {
+            throw new StorageException("Cannot list files outside current directory: " + prefix);
+        }
+
+        // Collect one extra entry to know whether another page exists.
+        // Continuation tokens are physical keys, so they stay valid across shard directories.
+        List<ListedObject> objects = new ArrayList<>(limit + 1);
+        if (Files.isDirectory(startDir)) {
+            try {
+                collect(startDir, startDirKey, startDepth, normalizedPrefix, continuationToken, limit + 1, objects);
+            } catch (IOException e) {
+                throw new StorageException("Failed to list stored files under prefix " + prefix, e);
+            }
+        }
+
+        String nextToken = null;
+        if (objects.size() > limit) {
+            objects.remove(limit);
+            nextToken = objects.get(limit - 1).physicalKey();
+        }
+        return new StoragePage(objects.stream().map(ListedObject::object).toList(), nextToken);
+    }
+
+    /**
+     * Depth-first walk that visits physical keys in lexicographic order (directories sort as "name/").
+     * Subtrees that lie entirely before {@code startAfter} or outside {@code prefix} are never opened.
+     * Shard directories are stripped from the returned keys; directories that do not belong to the
+     * configured layout (e.g. flat leftovers awaiting re-layout) are skipped.
+     * <p>
+     * Entries are skipped and sorted by name alone; attributes are only read for the entries the walk reaches,
+     * so a page deep into a large directory costs one directory read and a sort, not a stat of every entry.
+     *
+     * @return true once {@code limit} objects have been collected.
+     */
+    private boolean collect(Path dir, String dirKey, int depth, String prefix, String startAfter, int limit, List<ListedObject> out) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (name.startsWith(TEMP_FILE_PREFIX) || isBeforeToken(dirKey + name, startAfter)) {
+                    continue;
+                }
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+
+        // Name order is key order, except that a directory sorts after the names extending it with a character
+        // below '/' ("a-b" < "a/"); such directories wait on a stack until the walk has passed those names
+        Deque<ListingEntry> deferred = new ArrayDeque<>();
+        for (String name : names) {
+            while (!deferred.isEmpty() && !sortsBeforeDirectory(name, deferred.peek())) {
+                if (visit(deferred.pop(), dirKey, depth, prefix, startAfter, limit, out)) {
+                    return true;
+                }
+            }
+            Path child = dir.resolve(name);
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(child, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                continue; // Deleted since the directory was read
+            }
+            ListingEntry entry = new ListingEntry(child, dirKey + name + (attributes.isDirectory() ? "/" : ""), attributes);
+            if (attributes.isDirectory()) {
+                deferred.push(entry);
+            } else if (visit(entry, dirKey, depth, prefix, startAfter, limit, out)) {
+                return true;
+            }
+        }
+        while (!deferred.isEmpty()) {
+            if (visit(deferred.pop(), dirKey, depth, prefix, startAfter, limit, out)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if neither a file nor a directory with this key can hold anything after {@code startAfter}.
+     */
+    private static boolean isBeforeToken(String key, String startAfter) {
+        return startAfter != null && key.compareTo(startAfter) < 0 && !startAfter.startsWith(key);
+    }
+
+    private static boolean sortsBeforeDirectory(String name, ListingEntry directory) {
+        String directoryName = directory.path().getFileName().toString();
+        return name.length() > directoryName.length() && name.startsWith(directoryName) && name.charAt(directoryName.length()) < '/';
+    }
+
+    private boolean visit(ListingEntry entry, String dirKey, int depth, String prefix, String startAfter, int limit, List<ListedObject> out) throws IOException {
+        boolean beforeToken = isBeforeToken(entry.key(), startAfter);
+        if (depth < shardLevels) {
+            // Shard level: only descend into well-formed shard directories
+            return entry.attributes().isDirectory() && isShardName(entry.path().getFileName().toString())
+                    && !beforeToken && collect(entry.path(), entry.key(), depth + 1, prefix, startAfter, limit, out);
+        }
+        String logicalKey = entry.key().substring(shardPrefixLength);
+        if (shardLevels > 0 && dirKey.length() == shardPrefixLength && !shardPrefix(logicalKey).equals(dirKey)) {
+            return false; // Not hashed into this shard, e.g. a flat package whose name looks like a shard
+        }
+        if (entry.attributes().isDirectory()) {
+            boolean overlapsPrefix = logicalKey.startsWith(prefix) || prefix.startsWith(logicalKey);
+            return overlapsPrefix && !beforeToken && collect(entry.path(), entry.key(), depth + 1, prefix, startAfter, limit, out);
+        }
+        if (logicalKey.startsWith(prefix) && (startAfter == null || entry.key().compareTo(startAfter) > 0)) {
+            out.add(new ListedObject(entry.key(), new StoredObject(logicalKey, entry.attributes().size(), entry.attributes().lastModifiedTime().toInstant())));
+            return out.size() >= limit;
+        }
+        return false;
+    }
+
+    private record ListingEntry(Path path, String key, BasicFileAttributes attributes) {
+    }
+
+    private record ListedObject(String physicalKey, StoredObject object) {
+    }
+
+    // --- Sharded layout ---
+
+    private static String toKey(String filename) {
+        return filename.replace("\\", "/");
+    }
+
+    /**
+     * Returns the shard directories for a logical key, e.g. "3f/a2/" for two levels of width 2.
+     * The hash is taken over the first key segment (the package name), so all versions of a package share a directory.
+     */
+    String shardPrefix(String logicalKey) {
+        if (shardLevels == 0) {
+            return "";
+        }
+        int slash = logicalKey.indexOf('/');
+        String packageName = slash >= 0 ? logicalKey.substring(0, slash) : logicalKey;
+        String hash;
+        try {
+            hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(packageName.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        StringBuilder prefix = new StringBuilder(shardPrefixLength);
+        for (int level = 0; level < shardLevels; level++) {
+            prefix.append(hash, level * shardWidth, (level + 1) * shardWidth).append('/');
+        }
+        return prefix.toString();
+    }
+
+    private boolean isShardName(String name) {
+        if (name.length() != shardWidth) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.digit(name.charAt(i), 16) < 0 || Character.isUpperCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps a logical key ("name/version/file") to its absolute location in the configured layout.
+     */
+    private Path resolvePhysical(String logicalKey) {
+        return this.rootLocation.resolve(shardPrefix(logicalKey) + logicalKey).normalize().toAbsolutePath();
+    }
+
+    /**
+     * Location of a logical key in the flat layout, used as read fallback while data is being re-laid out.
+     */
+    private Path resolveLegacy(String logicalKey) {
+        return this.rootLocation.resolve(logicalKey).normalize().toAbsolutePath();
+    }
+
+    /**
+     * Outcome of a {@link #relayoutToShards()} run.
+     *
+     * @param scanned           Files found under the root.
+     * @param moved             Flat files moved into their shard directory.
+     * @param deletedDuplicates Flat files not moved because a newer deploy had already written the sharded copy
+     *                          (the flat file is deleted) or the file was deleted meanwhile.
+     */
+    public record RelayoutResult(long scanned, long moved, long deletedDuplicates) {
+    }
+
+    /**
+     * Moves files stored in the flat layout into their hash shard directories.
+     * Safe to run while requests are served: reads fall back to the flat location until a file has been moved,
+     * and a move is a single rename within the same filesystem. Renames go through the group committer like
+     * {@link #move}, so they are durable once counted.
+     *
+     * @throws StorageException if sharding is disabled or the tree cannot be walked.
+     */
+    public RelayoutResult relayoutToShards() {
+        if (shardLevels == 0) {
+            throw new StorageException("Sharding is disabled (storage.sharding.levels=0), nothing to re-layout.");
+        }
+        Path root = this.rootLocation.toAbsolutePath();
+        long scanned = 0;
+        long moved = 0;
+        long deletedDuplicates = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            Iterator<Path> iterator = files
+                    .filter(file -> !file.getFileName().toString().startsWith(TEMP_FILE_PREFIX))
+                    .filter(Files::isRegularFile)
+                    .iterator();
+            while (iterator.hasNext()) {
+                Path source = iterator.next();
+                scanned++;
+                String physicalKey = toKey(root.relativize(source).toString());
+                if (isShardedKey(physicalKey)) {
+                    continue;
+                }
+                Path target = resolvePhysical(physicalKey);
+                syncer.createDirectories(target.getParent());
+                // The committer skips the move if a newer deploy already wrote the sharded copy, even one still queued
+                if (await(target, submitCommit(target, () -> syncer.renameIfAbsent(source, target)))) {
+                    moved++;
+                } else {
+                    deletedDuplicates++;
+                }
+                deleteEmptyParents(source.getParent(), root);
+                if (scanned % 10_000 == 0) {
+                    logger.info("Re-layout progress: {} files scanned, {} moved, {} duplicates deleted", scanned, moved, deletedDuplicates);
+                }
+            }
+        } catch (IOException | UncheckedIOException | StorageException e) {
+            throw new StorageException("Re-layout of " + root + " failed after moving " + moved + " files", e);
+        }
+        logger.info("Re-layout finished: {} files scanned, {} moved into shard directories, {} duplicates deleted", scanned, moved, deletedDuplicates);
+        return new RelayoutResult(scanned, moved, deletedDuplicates);
+    }
+
+    private boolean isShardedKey(String physicalKey) {
+        if (physicalKey.length() <= shardPrefixLength) {
+            return false;
+        }
+        String[] segments = physicalKey.split("/", shardLevels + 1);
+        for (int i = 0; i < shardLevels; i++) {
+            if (!isShardName(segments[i])) {
+                return false;
+            }
+        }
+        return shardPrefix(physicalKey.substring(shardPrefixLength)).equals(physicalKey.substring(0, shardPrefixLength));
+    }
+
+    private static void deleteEmptyParents(Path dir, Path root) {
+        while (dir != null && !dir.equals(root)) {
+            try {
+                Files.delete(dir);
+            } catch (IOException e) {
+                return; // Not empty (or already gone), stop here
+            }
+            dir = dir.getParent();
+        }
+    }
+
     @Override
     public Path load(String filename) {
-        return rootLocation.resolve(filename);
+        String key = toKey(filename);
+        Path file = resolvePhysical(key);
+        if (shardLevels > 0 && properties.getSharding().isLegacyFallback() && !Files.exists(file)) {
+            Path legacy = resolveLegacy(key);
+            if (Files.exists(legacy)) {
+                return legacy;
+            }
+            // The re-layout tool may have moved it between the two checks
+            return resolvePhysical(key);
+        }
+        return file;
     }
 
     @Override
     public Resource loadAsResource(String filename) {
-        try {
+        return Tracing.inSpan("storage.load", span -> {
+            span.setAttribute(Tracing.STORAGE_BACKEND, BACKEND_NAME);
+            span.setAttribute(Tracing.STORAGE_KEY, toKey(filename));
+            try {
+                String key = toKey(filename);
+                Path file = load(filename);
+                Path physical = resolvePhysical(key);
+                Resource resource = file.equals(physical) ? new UrlResource(file.toUri()) : new FlatLayoutResource(file, physical);
+                if (resource.exists() || resource.isReadable()) {
+                    return resource;
+                }
+                else if (!file.equals(physical) && Files.exists(physical)) {
+                    return new UrlResource(physical.toUri()); // The re-layout tool moved it between resolving and checking
+                }
+                else {
+                     logger.warn("Could not read file: {}, resolved to: {}", filename, file.toAbsolutePath());
+                    throw new StorageFileNotFoundException("Could not read file: " + filename);
+                }
+            } catch (MalformedURLException e) {
+                 logger.error("MalformedURLException for file: {}, resolved to: {}", filename, resolvePhysical(toKey(filename)), e);
+                throw new StorageFileNotFoundException("Could not read file: " + filename, e);
+            }
+        });
+    }
+
+    @Override
+    public InputStream openStream(String filename) {
+        return Tracing.inSpan("storage.open", span -> {
+            String key = toKey(filename);
+            span.setAttribute(Tracing.STORAGE_BACKEND, BACKEND_NAME);
+            span.setAttribute(Tracing.STORAGE_KEY, key);
             Path file = load(filename);
-            Resource resource = new UrlResource(file.toUri());
-            if (resource.exists() || resource.isReadable()) {
-                return resource;
+            Path physical = resolvePhysical(key);
+            try {
+                return Files.newInputStream(file);
+            } catch (NoSuchFileException e) {
+                if (!file.equals(physical)) {
+                    try {
+                        return Files.newInputStream(physical); // Moved by the re-layout tool in the meantime
+                    } catch (NoSuchFileException ignored) {
+                        // Reported below
+                    } catch (IOException moved) {
+                        throw new StorageException("Failed to open file: " + filename, moved);
+                    }
+                }
+                throw new StorageFileNotFoundException("Could not read file: " + filename, e);
+            } catch (IOException e) {
+                throw new StorageException("Failed to open file: " + filename, e);
             }
-            else {
-                 logger.warn("Could not read file: {}, resolved to: {}", filename, file.toAbsolutePath());
-                throw new StorageFileNotFoundException("Could not read file: " + filename);
+        });
+    }
+
+    /**
+     * A file still in the flat layout. The re-layout tool may move it before the caller opens it, in which case
+     * it is opened at its sharded location instead.
+     */
+    private static final class FlatLayoutResource extends UrlResource {
+
+        private final Path sharded;
+
+        FlatLayoutResource(Path flat, Path sharded) throws MalformedURLException {
+            super(flat.toUri());
+            this.sharded = sharded;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            try {
+                return super.getInputStream();
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                return Files.newInputStream(sharded);
             }
-        } catch (MalformedURLException e) {
-             logger.error("MalformedURLException for file: {}, resolved to: {}", filename, rootLocation.resolve(filename).toAbsolutePath(), e);
-            throw new StorageFileNotFoundException("Could not read file: " + filename, e);
         }
     }
 
@@ -146,15 +737,9 @@ public class FileSystemStorageService implements StorageService {
     @Override
     public void delete(String filename) {
         try {
-            Path fileToDelete = load(filename).normalize();
-             // Security check
-             if (!fileToDelete.startsWith(this.rootLocation.toAbsolutePath())) {
-                 logger.warn("Attempt to delete file outside root directory denied: {}", filename);
-                 throw new StorageException("Cannot delete file outside current directory: " + filename);
-             }
-            boolean deleted = Files.deleteIfExists(fileToDelete);
-             if (deleted) {
-                 logger.info("Deleted file: {}", fileToDelete.toAbsolutePath());
+            Path fileToDelete = resolvePhysical(toKey(filename));
+             if (unlink(filename)) {
+                 logger.debug("Deleted file: {}", fileToDelete.toAbsolutePath());
              } else {
                  logger.warn("Attempted to delete non-existent file: {}", fileToDelete.toAbsolutePath());
                  // Optional: throw StorageFileNotFoundException if preferred
@@ -164,4 +749,65 @@ public class FileSystemStorageService implements StorageService {
             throw new StorageException("Failed to delete file: " + filename, e);
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Unlinks the files from up to {@code parallelism} workers on the service's unlink threads. Unlinks are metadata
+     * operations whose latency is dominated by the disk, so a few in flight keep the device busy where one at a time
+     * would not. Concurrent calls share at most {@link #MAX_UNLINK_THREADS} threads.
+     */
+    @Override
+    public List<String> deleteBatch(Collection<String> filenames, int parallelism) {
+        List<String> keys = List.copyOf(filenames);
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        int threads = Math.max(1, Math.min(Math.min(parallelism, MAX_UNLINK_THREADS), keys.size()));
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int index;
+            while ((index = next.getAndIncrement()) < keys.size()) {
+                String key = keys.get(index);
+                try {
+                    unlink(key);
+                } catch (IOException | StorageException e) {
+                    logger.warn("Failed to delete file {}: {}", key, e.getMessage());
+                    failed.add(key);
+                }
+            }
+        };
+        List<CompletableFuture<Void>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(CompletableFuture.runAsync(worker, unlinkExecutor));
+        }
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+        logger.debug("Deleted {} files with {} threads ({} failed)", keys.size() - failed.size(), threads, failed.size());
+        return List.copyOf(failed);
+    }
+
+    /**
+     * Removes a file (and its not yet re-laid out copy) under its path lock.
+     *
+     * @return Whether anything was deleted.
+     */
+    private boolean unlink(String filename) throws IOException {
+        Path fileToDelete = resolvePhysical(toKey(filename));
+        // Security check
+        if (!fileToDelete.startsWith(this.rootLocation.toAbsolutePath())) {
+            logger.warn("Attempt to delete file outside root directory denied: {}", filename);
+            throw new StorageException("Cannot delete file outside current directory: " + filename);
+        }
+        ReentrantLock lock = pathLocks.forKey(fileToDelete.toString());
+        lock.lock();
+        try {
+            boolean deleted = Files.deleteIfExists(fileToDelete);
+            if (shardLevels > 0) {
+                // Also remove a copy that has not been moved by the re-layout tool yet
+                deleted |= Files.deleteIfExists(resolveLegacy(toKey(filename)));
+            }
+            return deleted;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.repsy.storage.filesystem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Commits temp files to their final names in group-commit windows.
+ * <p>
+ * The first commit request opens a window that stays open for at most {@code maxFlushDelay}
+ * (or until {@code maxFlushBatch} requests joined). All temp files of the window are fsynced concurrently,
+ * renamed into place, and each distinct parent directory is fsynced once to persist the renames.
+ * Directories created through {@link #createDirectories} are tracked until their own entries are durable:
+ * a commit below one also fsyncs its parent, up to the first directory that was already durable.
+ * Many concurrent deploys therefore share one flush round instead of paying for their own.
+ */
+class GroupCommitSyncer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitSyncer.class);
+
+    private final BlockingQueue<CommitRequest> queue = new LinkedBlockingQueue<>();
+    private final boolean fsync;
+    private final long maxFlushDelayNanos;
+    private final int maxFlushBatch;
+    private final ExecutorService flushPool;
+    private final Thread committer;
+    private final Object enqueueLock = new Object();
+    private volatile boolean closed;
+
+    /**
+     * Directories created but whose entry in their parent may not be durable yet.
+     */
+    private final Set<Path> unsyncedDirectories = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong windows = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong directorySyncs = new AtomicLong();
+    private final AtomicLong directorySyncFailures = new AtomicLong();
+
+    GroupCommitSyncer(boolean fsync, long maxFlushDelayMillis, int maxFlushBatch, int flushParallelism) {
+        this.fsync = fsync;
+        this.maxFlushDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxFlushDelayMillis));
+        this.maxFlushBatch = Math.max(1, maxFlushBatch);
+        this.flushPool = Executors.newFixedThreadPool(Math.max(1, flushParallelism), runnable -> {
+            Thread thread = new Thread(runnable, "storage-fsync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.committer = new Thread(this::run, "storage-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Queues a fully written temp file to be made durable and renamed to {@code target}.
+     *
+     * @return A future completed once the file is visible (and durable, if fsync is enabled) under its final name.
+     */
+    CompletableFuture<Void> commit(Path tempFile, Path target) {
+        return enqueue(new CommitRequest(tempFile, target, true, false, new CompletableFuture<>())).thenAccept(moved -> { });
+    }
+
+    /**
+     * Like {@link #commit}, but for an existing, already durable file: it is kept if the rename fails.
+     */
+    CompletableFuture<Void> rename(Path source, Path target) {
+        return enqueue(new CommitRequest(source, target, false, false, new CompletableFuture<>())).thenAccept(moved -> { });
+    }
+
+    /**
+     * Like {@link #rename}, but only if {@code target} does not exist when the window is flushed; otherwise the source
+     * is deleted as a stale duplicate. Decided on the committer thread, so a commit of {@code target} queued
+     * earlier is taken into account. A source deleted in the meantime is not an error.
+     *
+     * @return A future completed with true if the file was moved, false if there was nothing to move.
+     */
+    CompletableFuture<Boolean> renameIfAbsent(Path source, Path target) {
+        return enqueue(new CommitRequest(source, target, false, true, new CompletableFuture<>()));
+    }
+
+    /**
+     * Creates a directory and its missing ancestors. The new directories are registered before they are created,
+     * so any commit that can see them also makes their entries durable.
+     */
+    void createDirectories(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        if (fsync) {
+            for (Path missing = directory; missing != null && !Files.isDirectory(missing); missing = missing.getParent()) {
+                unsyncedDirectories.add(missing);
+            }
+        }
+        Files.createDirectories(directory);
+    }
+
+    private CompletableFuture<Boolean> enqueue(CommitRequest request) {
+        // Checked and queued under the lock close() takes, so nothing is queued after the committer's final drain
+        synchronized (enqueueLock) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException("Storage is shutting down"));
+            }
+            queue.add(request);
+        }
+        return request.done();
+    }
+
+    /**
+     * @return Flush windows, commits, directory fsyncs and their failures so far, for monitoring.
+     */
+    Map<String, Object> stats() {
+        long windowCount = windows.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("fsync", fsync);
+        stats.put("flushWindows", windowCount);
+        stats.put("commits", commits.get());
+        stats.put("averageBatchSize", windowCount == 0 ? 0.0 : (double) commits.get() / windowCount);
+        stats.put("directorySyncs", directorySyncs.get());
+        stats.put("directorySyncFailures", directorySyncFailures.get());
+        stats.put("queued", queue.size());
+        return stats;
+    }
+
+    private void run() {
+        List<CommitRequest> batch = new ArrayList<>(maxFlushBatch);
+        boolean interrupted = false;
+        while (!closed && !interrupted) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxFlushDelayNanos;
+                while (batch.size() < maxFlushBatch) {
+                    CommitRequest next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true; // Closing; still commit what was taken
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    flush(batch);
+                } catch (RuntimeException e) {
+                    logger.error("Group commit window failed", e);
+                    batch.forEach(request -> request.done().completeExceptionally(e));
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+        // Fail anything still queued so no writer waits forever
+        synchronized (enqueueLock) {
+            closed = true;
+        }
+        CommitRequest pending;
+        while ((pending = queue.poll()) != null) {
+            pending.done().completeExceptionally(new IOException("Storage is shutting down"));
+        }
+    }
+
+    private void flush(List<CommitRequest> batch) {
+        windows.incrementAndGet();
+        commits.addAndGet(batch.size());
+
+        // 1. Make file contents durable; concurrent fsyncs let the journal merge them into one commit
+        List<CompletableFuture<Void>> dataSyncs = new ArrayList<>(batch.size());
+        for (CommitRequest request : batch) {
+            dataSyncs.add(fsync ? CompletableFuture.runAsync(() -> forceUnchecked(request.tempFile(), false), flushPool)
+                    : CompletableFuture.completedFuture(null));
+        }
+
+        // 2. Rename into place, 3. persist each touched directory once
+        Set<Path> directories = new LinkedHashSet<>();
+        List<CommitRequest> renamed = new ArrayList<>(batch.size());
+        List<CommitRequest> skipped = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            CommitRequest request = batch.get(i);
+            try {
+                if (request.onlyIfAbsent() && (Files.exists(request.target()) || !Files.exists(request.tempFile()))) {
+                    Files.deleteIfExists(request.tempFile());
+                    skipped.add(request);
+                    continue;
+                }
+                dataSyncs.get(i).join();
+                moveIntoPlace(request.tempFile(), request.target());
+                addDirectoriesToSync(request.target().getParent(), directories);
+                renamed.add(request);
+            } catch (Exception e) {
+                request.done().completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                if (request.discardOnFailure()) {
+                    deleteQuietly(request.tempFile());
+                }
+            }
+        }
+        if (fsync) {
+            List<CompletableFuture<Void>> directorySyncs = new ArrayList<>(directories.size());
+            for (Path directory : directories) {
+                directorySyncs.add(CompletableFuture.runAsync(() -> forceDirectory(directory), flushPool));
+            }
+            CompletableFuture.allOf(directorySyncs.toArray(new CompletableFuture[0])).join();
+            // A synced parent makes its new child's entry durable
+            for (Path directory : directories) {
+                unsyncedDirectories.removeIf(created -> directory.equals(created.getParent()));
+            }
+        }
+        renamed.forEach(request -> request.done().complete(true));
+        skipped.forEach(request -> request.done().complete(false));
+    }
+
+    /**
+     * Adds a target's parent directory, and the parent of each directory above it that was created but is not
+     * durable yet, stopping at the first one that is.
+     */
+    private void addDirectoriesToSync(Path parent, Set<Path> directories) {
+        directories.add(parent);
+        for (Path created = parent; created != null && unsyncedDirectories.contains(created); created = created.getParent()) {
+            if (created.getParent() != null) {
+                directories.add(created.getParent());
+            }
+        }
+    }
+
+    private static void moveIntoPlace(Path tempFile, Path target) throws IOException {
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Temp files live next to their target, so this only happens on exotic filesystems
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void forceUnchecked(Path file, boolean metadata) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(metadata);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void forceDirectory(Path directory) {
+        directorySyncs.incrementAndGet();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened for fsync on some platforms (e.g. Windows); the rename is still atomic
+            // there, but a crash may lose it. Set storage.durability.fsync=false on such platforms.
+            directorySyncFailures.incrementAndGet();
+            logger.warn("Could not fsync directory {}, renames into it may not survive a crash: {}", directory, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete temp file {}", file, e);
+        }
+    }
+
+    /**
+     * Stops the committer after the window in progress; requests still queued fail.
+     */
+    @Override
+    public void close() {
+        synchronized (enqueueLock) {
+            closed = true;
+        }
+        committer.interrupt();
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushPool.shutdown();
+    }
+
+    private record CommitRequest(Path tempFile, Path target, boolean discardOnFailure, boolean onlyIfAbsent,
+                                 CompletableFuture<Boolean> done) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.repsy.storage.filesystem;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks selected by key hash, so operations on the same path are serialized
+ * without keeping a lock object per path.
+ */
+class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+
+    StripedLocks(int stripeCount) {
+        this.stripes = new ReentrantLock[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    ReentrantLock forKey(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16); // Spread high bits, keys often share long prefixes
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+}
@@ -0,0 +1,200 @@
+package com.repsy.storage.filesystem;
+
+import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.StoragePage;
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.api.StoredObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileSystemStorageServiceTests {
+
+	@TempDir
+	Path root;
+
+	private FileSystemStorageService storage;
+
+	private FileSystemStorageService open(int shardLevels) {
+		StorageProperties properties = new StorageProperties();
+		properties.setLocation(root.toString());
+		properties.getSharding().setLevels(shardLevels);
+		storage = new FileSystemStorageService(properties);
+		storage.init();
+		return storage;
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (storage != null) {
+			storage.close();
+		}
+	}
+
+	private static void store(FileSystemStorageService storage, String key) {
+		storage.store(new MockMultipartFile("file", key.getBytes(StandardCharsets.UTF_8)), Paths.get(key));
+	}
+
+	private static List<String> listInPages(FileSystemStorageService storage, String prefix, int pageSize) {
+		List<String> keys = new ArrayList<>();
+		String token = null;
+		do {
+			StoragePage page = storage.list(prefix, pageSize, token);
+			assertThat(page.getObjects()).hasSizeLessThanOrEqualTo(pageSize);
+			page.getObjects().stream().map(StoredObject::getKey).forEach(keys::add);
+			token = page.getContinuationToken();
+		} while (token != null);
+		return keys;
+	}
+
+	@Test
+	void pagesFollowKeyOrderWhereDirectoriesSortAsNameSlash() {
+		FileSystemStorageService storage = open(0);
+		// "a-b/..." sorts before "a/..." because '-' < '/', although the name "a" sorts before "a-b"
+		List<String> keys = List.of("a-b/1.0.0/a-b-1.0.0.rep", "a.c", "a/1.0.0/a-1.0.0.rep", "a/1.0.0/meta.json",
+				"a/2.0.0/a-2.0.0.rep", "ab/1.0.0/ab-1.0.0.rep", "b/1.0.0/b-1.0.0.rep");
+		keys.forEach(key -> store(storage, key));
+
+		List<String> expected = keys.stream().sorted().toList();
+		assertThat(listInPages(storage, "", 1000)).isEqualTo(expected);
+		for (int pageSize = 1; pageSize <= 4; pageSize++) {
+			assertThat(listInPages(storage, "", pageSize)).as("page size %d", pageSize).isEqualTo(expected);
+		}
+		assertThat(listInPages(storage, "a/", 1)).containsExactly("a/1.0.0/a-1.0.0.rep", "a/1.0.0/meta.json", "a/2.0.0/a-2.0.0.rep");
+	}
+
+	@Test
+	void shardedPagesVisitEveryKeyOnce() {
+		FileSystemStorageService storage = open(2);
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			keys.add("pkg" + i + "/1.0.0/pkg" + i + "-1.0.0.rep");
+		}
+		keys.forEach(key -> store(storage, key));
+
+		List<String> listed = listInPages(storage, "", 7);
+		assertThat(listed).containsExactlyInAnyOrderElementsOf(keys).doesNotHaveDuplicates();
+		assertThat(listInPages(storage, "pkg7/", 1)).containsExactly("pkg7/1.0.0/pkg7-1.0.0.rep");
+	}
+
+	@Test
+	void relayoutMovesFlatFilesIntoShardsWhileReadsKeepWorking() throws Exception {
+		FileSystemStorageService flat = open(0);
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			keys.add("pkg" + i + "/1.0.0/pkg" + i + "-1.0.0.rep");
+		}
+		keys.forEach(key -> store(flat, key));
+		flat.close();
+
+		FileSystemStorageService sharded = open(2);
+		// A deploy after sharding was enabled already wrote this one into its shard
+		store(sharded, keys.get(0));
+		assertThat(sharded.list("", 1000, null).getObjects()).extracting(StoredObject::getKey).containsExactly(keys.get(0));
+
+		AtomicBoolean relayoutDone = new AtomicBoolean();
+		List<String> failedReads = Collections.synchronizedList(new ArrayList<>());
+		Thread reader = new Thread(() -> {
+			int i = 0;
+			while (!relayoutDone.get()) {
+				String key = keys.get(i % keys.size());
+				// Alternates between the resource and the streaming read, which resolve the file separately
+				try (InputStream in = i++ % 2 == 0 ? sharded.loadAsResource(key).getInputStream() : sharded.openStream(key)) {
+					if (!Arrays.equals(in.readAllBytes(), key.getBytes(StandardCharsets.UTF_8))) {
+						failedReads.add(key);
+					}
+				} catch (Exception e) {
+					failedReads.add(key + ": " + e);
+				}
+			}
+		});
+		reader.start();
+		FileSystemStorageService.RelayoutResult result;
+		try {
+			result = sharded.relayoutToShards();
+		} finally {
+			relayoutDone.set(true);
+			reader.join();
+		}
+
+		assertThat(failedReads).isEmpty();
+		assertThat(result.scanned()).isGreaterThanOrEqualTo(201); // The walk may also reach files it has just moved
+		assertThat(result.moved()).isEqualTo(199);
+		assertThat(result.deletedDuplicates()).isEqualTo(1);
+		for (String key : keys) {
+			String physical = sharded.shardPrefix(key) + key;
+			assertThat(root.resolve(physical)).isRegularFile();
+			assertThat(root.resolve(key)).doesNotExist();
+		}
+		try (Stream<Path> topLevel = Files.list(root)) {
+			assertThat(topLevel.map(path -> path.getFileName().toString())).allMatch(name -> name.matches("[0-9a-f]{2}"));
+		}
+		assertThat(listInPages(sharded, "", 50)).containsExactlyInAnyOrderElementsOf(keys);
+		assertThat(sharded.relayoutToShards().moved()).isZero();
+	}
+
+	@Test
+	void openStreamReadsStoredFilesAndReportsMissingOnes() throws Exception {
+		FileSystemStorageService storage = open(2);
+		store(storage, "pkg/1.0.0/pkg-1.0.0.rep");
+
+		try (InputStream in = storage.openStream("pkg/1.0.0/pkg-1.0.0.rep")) {
+			assertThat(in.readAllBytes()).isEqualTo("pkg/1.0.0/pkg-1.0.0.rep".getBytes(StandardCharsets.UTF_8));
+		}
+		assertThatThrownBy(() -> storage.openStream("pkg/1.0.0/missing.rep")).isInstanceOf(StorageFileNotFoundException.class);
+	}
+
+	@Test
+	void commitsSharingALockStripeShareAFlushWindow() throws Exception {
+		StorageProperties properties = new StorageProperties();
+		properties.setLocation(root.toString());
+		properties.getDurability().setFsync(false);
+		properties.getDurability().setMaxFlushDelayMillis(200);
+		properties.getDurability().setLockStripes(1);
+		storage = new FileSystemStorageService(properties);
+		storage.init();
+
+		int writers = 16;
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < writers; i++) {
+			String key = "pkg" + i + "/1.0.0/pkg" + i + "-1.0.0.rep";
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				store(storage, key);
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(storage.list("", 1000, null).getObjects()).hasSize(writers);
+		// Holding the only stripe through each flush would take one window per commit
+		assertThat((Long) storage.durabilityStats().get("flushWindows")).isLessThan(writers / 2);
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.repsy.storage.filesystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GroupCommitSyncerTests {
+
+	@TempDir
+	Path root;
+
+	@Test
+	void newDirectoriesAreSyncedUpToTheFirstDurableOne() throws Exception {
+		try (GroupCommitSyncer syncer = new GroupCommitSyncer(true, 0, 16, 2)) {
+			Path version = root.resolve("pkg/1.0.0");
+			syncer.createDirectories(version);
+			commit(syncer, version, "pkg-1.0.0.rep").get(10, TimeUnit.SECONDS);
+			// 1.0.0 (the rename), pkg (entry of 1.0.0) and root (entry of pkg)
+			assertThat(syncer.stats().get("directorySyncs")).isEqualTo(3L);
+
+			commit(syncer, version, "meta.json").get(10, TimeUnit.SECONDS);
+			assertThat(syncer.stats().get("directorySyncs")).isEqualTo(4L);
+
+			Path next = root.resolve("pkg/2.0.0");
+			syncer.createDirectories(next);
+			commit(syncer, next, "pkg-2.0.0.rep").get(10, TimeUnit.SECONDS);
+			assertThat(syncer.stats().get("directorySyncs")).isEqualTo(6L);
+			assertThat(syncer.stats().get("directorySyncFailures")).isEqualTo(0L);
+			assertThat(next.resolve("pkg-2.0.0.rep")).isRegularFile();
+		}
+	}
+
+	@Test
+	void everyCommitCompletesWhenClosedConcurrently() throws Exception {
+		GroupCommitSyncer syncer = new GroupCommitSyncer(false, 5, 4, 2);
+		List<CompletableFuture<Void>> commits = new ArrayList<>();
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < 500; i++) {
+				try {
+					synchronized (commits) {
+						commits.add(commit(syncer, root, "file-" + i));
+					}
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		writer.start();
+		Thread.sleep(5);
+		syncer.close();
+		writer.join();
+
+		synchronized (commits) {
+			for (CompletableFuture<Void> commit : commits) {
+				try {
+					commit.get(10, TimeUnit.SECONDS); // A lost request would time out here
+				} catch (ExecutionException e) {
+					assertThat(e.getCause()).hasMessageContaining("shutting down");
+				}
+			}
+		}
+		assertThatThrownBy(() -> commit(syncer, root, "late").get(1, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.hasMessageContaining("shutting down");
+	}
+
+	private static CompletableFuture<Void> commit(GroupCommitSyncer syncer, Path directory, String name) throws Exception {
+		Path temp = Files.write(directory.resolve(FileSystemStorageService.TEMP_FILE_PREFIX + name), name.getBytes());
+		return syncer.commit(temp, directory.resolve(name));
+	}
+
+}
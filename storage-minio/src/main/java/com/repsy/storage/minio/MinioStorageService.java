@@ -2,15 +2,21 @@ package com.repsy.storage.minio;
 
 import com.repsy.storage.api.StorageException;
 import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.StoragePage;
 import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.api.SingleFlight;
 import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
 
 import io.minio.*;
 import io.minio.errors.*;
+import io.minio.http.Method;
 import io.minio.messages.DeleteError;
 import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,41 +27,99 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ByteArrayOutputStream;
+import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.util.LinkedList;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-public class MinioStorageService implements StorageService {
+public class MinioStorageService implements StorageService, AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(MinioStorageService.class);
 
     private final StorageProperties properties;
-    private final MinioClient minioClient;
+    private final MinioTransport transport;
+    private final MinioClient minioClient; // Metadata operations (short timeouts)
+    private final MinioClient dataClient; // Uploads, downloads and server-side copies
+    private final MinioClient presignClient; // Signs URLs for the endpoint clients see; no requests are sent with it
     private final String bucketName;
+    private final SingleFlight<String, Resource> readCoalescing; // null when disabled
+    private volatile CompletableFuture<Void> bucketReady = CompletableFuture.completedFuture(null);
 
     @Autowired
     public MinioStorageService(StorageProperties properties) {
         this.properties = properties;
         this.bucketName = properties.getMinio().getBucketName();
-        this.minioClient = MinioClient.builder()
-                .endpoint(properties.getMinio().getEndpoint())
-                .credentials(properties.getMinio().getAccessKey(), properties.getMinio().getSecretKey())
-                .build();
+        if (properties.getMinio().getPublicEndpoint() != null && properties.getMinio().getRegion() == null) {
+            // Without a region the presign client would look the bucket location up on the public endpoint,
+            // which the application often cannot reach
+            throw new StorageException("storage.minio.region must be set when storage.minio.public-endpoint is set.");
+        }
+        this.transport = new MinioTransport(properties.getMinio().getTransport());
+        this.minioClient = buildClient(properties.getMinio(), properties.getMinio().getEndpoint(), transport.metadataHttpClient());
+        this.dataClient = buildClient(properties.getMinio(), properties.getMinio().getEndpoint(), transport.dataHttpClient());
+        this.presignClient = properties.getMinio().getPublicEndpoint() != null
+                ? buildClient(properties.getMinio(), properties.getMinio().getPublicEndpoint(), transport.metadataHttpClient())
+                : minioClient;
+        this.readCoalescing = properties.getReadCoalescing().isEnabled()
+                ? new SingleFlight<>(properties.getReadCoalescing().getMaxWaitMillis())
+                : null;
          logger.info("MinioStorageService initialized for endpoint: {} and bucket: {}", properties.getMinio().getEndpoint(), bucketName);
     }
 
+    private static MinioClient buildClient(StorageProperties.MinioProperties minio, String endpoint, OkHttpClient httpClient) {
+        MinioClient.Builder builder = MinioClient.builder()
+                .endpoint(endpoint)
+                .credentials(minio.getAccessKey(), minio.getSecretKey())
+                .httpClient(httpClient);
+        if (minio.getRegion() != null) {
+            builder.region(minio.getRegion());
+        }
+        return builder.build();
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        transport.close();
+    }
+
     @Override
     @PostConstruct
     public void init() {
+        if (properties.isDeferInit()) {
+            // Startup does not wait for Minio; the first operation does (see awaitBucket)
+            bucketReady = CompletableFuture.runAsync(this::ensureBucket).whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    logger.warn("Deferred Minio bucket check for '{}' failed; the next storage operation retries it.", bucketName, failure);
+                }
+            });
+            logger.info("Minio bucket check for '{}' deferred to the background.", bucketName);
+        } else {
+            ensureBucket();
+        }
+    }
+
+    private void ensureBucket() {
         try {
-            boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
+            boolean found = transport.call("bucketExists", () -> minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build()));
             if (!found) {
-                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+                transport.call("makeBucket", () -> {
+                    minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+                    return null;
+                });
                 logger.info("Minio bucket '{}' created successfully.", bucketName);
             } else {
                 logger.info("Minio bucket '{}' already exists.", bucketName);
@@ -65,22 +129,54 @@ public class MinioStorageService implements StorageService {
         }
     }
 
+    /**
+     * Waits for a deferred bucket check. A failed check is retried by the next operation instead of
+     * failing every operation for the lifetime of this instance.
+     */
+    private void awaitBucket() {
+        CompletableFuture<Void> ready = bucketReady;
+        if (ready.isDone() && !ready.isCompletedExceptionally()) {
+            return;
+        }
+        if (ready.isCompletedExceptionally()) {
+            synchronized (this) {
+                if (bucketReady == ready) {
+                    bucketReady = CompletableFuture.runAsync(this::ensureBucket);
+                }
+                ready = bucketReady;
+            }
+        }
+        try {
+            ready.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause
+                    : new StorageException("Could not initialize Minio storage: " + bucketName, e.getCause());
+        }
+    }
+
     @Override
     public void store(MultipartFile file, Path destinationPath) {
+        awaitBucket();
         if (file.isEmpty()) {
             throw new StorageException("Failed to store empty file.");
         }
 
         String destinationObjectName = destinationPath.toString().replace("\\", "/");
 
-        try (InputStream inputStream = file.getInputStream()) {
-            minioClient.putObject(
-                    PutObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(destinationObjectName)
-                            .stream(inputStream, file.getSize(), -1)
-                            .contentType(file.getContentType())
-                            .build());
+        try {
+            // Each attempt re-opens the upload, so a retried PUT sends the full content again
+            transport.call("putObject", () -> {
+                try (InputStream inputStream = file.getInputStream()) {
+                    return dataClient.putObject(
+                            PutObjectArgs.builder()
+                                    .bucket(bucketName)
+                                    .object(destinationObjectName)
+                                    .stream(inputStream, file.getSize(), -1)
+                                    .contentType(file.getContentType())
+                                    .build());
+                }
+            });
+            forgetInFlightRead(destinationObjectName);
             logger.debug("Stored file {} to Minio bucket {} as {}", file.getOriginalFilename(), bucketName, destinationObjectName);
         } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
             throw new StorageException("Failed to store file " + destinationObjectName + " to Minio bucket " + bucketName, e);
@@ -88,7 +184,9 @@ public class MinioStorageService implements StorageService {
     }
 
     @Override
+    @Deprecated
     public Stream<Path> loadAll() {
+        awaitBucket();
         Iterable<Result<Item>> results = minioClient.listObjects(
                 ListObjectsArgs.builder().bucket(bucketName).recursive(true).build());
 
@@ -103,6 +201,52 @@ public class MinioStorageService implements StorageService {
                 });
     }
 
+    @Override
+    public StoragePage list(String prefix, int pageSize, String continuationToken) {
+        awaitBucket();
+        int limit = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        // Ask for one extra key so we know whether another page exists; start-after makes the token stateless
+        ListObjectsArgs.Builder args = ListObjectsArgs.builder()
+                .bucket(bucketName)
+                .recursive(true)
+                .maxKeys(limit + 1);
+        if (prefix != null && !prefix.isEmpty()) {
+            args.prefix(prefix.replace("\\", "/"));
+        }
+        if (continuationToken != null) {
+            args.startAfter(continuationToken);
+        }
+
+        List<StoredObject> objects;
+        try {
+            objects = transport.call("listObjects", () -> {
+                List<StoredObject> listed = new ArrayList<>(limit + 1);
+                // Stop iterating after limit + 1 items so the client never fetches a second S3 page
+                for (Result<Item> result : minioClient.listObjects(args.build())) {
+                    Item item = result.get();
+                    if (item.isDir()) {
+                        continue;
+                    }
+                    listed.add(new StoredObject(item.objectName(), item.size(),
+                            item.lastModified() != null ? item.lastModified().toInstant() : null));
+                    if (listed.size() > limit) {
+                        break;
+                    }
+                }
+                return listed;
+            });
+        } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
+            throw new StorageException("Failed to list objects in Minio bucket " + bucketName, e);
+        }
+
+        String nextToken = null;
+        if (objects.size() > limit) {
+            objects.remove(limit);
+            nextToken = objects.get(limit - 1).getKey();
+        }
+        return new StoragePage(objects, nextToken);
+    }
+
     @Override
     public Path load(String filename) {
         return Paths.get(filename.replace("\\", "/"));
@@ -110,16 +254,93 @@ public class MinioStorageService implements StorageService {
 
     @Override
     public Resource loadAsResource(String filename) {
+        awaitBucket();
         String objectName = filename.replace("\\", "/");
-        try (InputStream stream = minioClient.getObject(
-                GetObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(objectName)
-                        .build())) {
+        if (readCoalescing == null) {
+            return fetch(filename, objectName);
+        }
+        // Concurrent reads of the same object (e.g. a fresh release) share one GET and its immutable buffer
+        return readCoalescing.execute(objectName, () -> fetch(filename, objectName));
+    }
 
-            // Read the stream into a byte array
-            // Using try-with-resources ensures the stream is closed
-            byte[] content = stream.readAllBytes();
+    /**
+     * Streams the object straight from the GET response instead of buffering it; only opening the object is retried,
+     * so a failure mid-body surfaces to the reader. Bypasses read coalescing, which shares buffered copies.
+     */
+    @Override
+    public InputStream openStream(String filename) {
+        awaitBucket();
+        String objectName = filename.replace("\\", "/");
+        try {
+            return transport.call("getObject", () -> dataClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .build()));
+        } catch (ErrorResponseException e) {
+            if (e.errorResponse().code().equals("NoSuchKey")) {
+                throw new StorageFileNotFoundException("Could not read file: " + filename + " from Minio bucket " + bucketName, e);
+            }
+            throw new StorageException("Failed to read file " + filename + " from Minio bucket " + bucketName, e);
+        } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
+            throw new StorageException("Failed to read file " + filename + " from Minio bucket " + bucketName, e);
+        }
+    }
+
+    @Override
+    public Optional<URI> presignedDownloadUrl(String filename, Duration expiry, Map<String, String> responseHeaders) {
+        String objectName = filename.replace("\\", "/");
+        // S3 response-* overrides make Minio send our headers instead of the stored object metadata
+        Map<String, String> overrides = new HashMap<>();
+        responseHeaders.forEach((name, value) -> overrides.put("response-" + name.toLowerCase(Locale.ROOT), value));
+        try {
+            String url = presignClient.getPresignedObjectUrl(
+                    GetPresignedObjectUrlArgs.builder()
+                            .method(Method.GET)
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .expiry((int) Math.max(1, expiry.toSeconds()))
+                            .extraQueryParams(overrides)
+                            .build());
+            return Optional.of(URI.create(url));
+        } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
+            throw new StorageException("Failed to presign download of " + objectName + " from Minio bucket " + bucketName, e);
+        }
+    }
+
+    /**
+     * @return Transport metrics: pool saturation, retries and circuit breaker state (see {@link MinioTransport#stats()}).
+     */
+    public Map<String, Object> transportStats() {
+        return transport.stats();
+    }
+
+    /**
+     * @return Read coalescing counters (see {@link SingleFlight#stats()}), or an empty map when disabled.
+     */
+    public Map<String, Long> readCoalescingStats() {
+        return readCoalescing != null ? readCoalescing.stats() : Map.of();
+    }
+
+    private void forgetInFlightRead(String objectName) {
+        if (readCoalescing != null) {
+            readCoalescing.forget(objectName);
+        }
+    }
+
+    private Resource fetch(String filename, String objectName) {
+        try {
+            // Read the stream into a byte array; a failure mid-body retries the whole GET
+            byte[] content = transport.call("getObject", () -> {
+                // Using try-with-resources ensures the stream is closed
+                try (InputStream stream = dataClient.getObject(
+                        GetObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .build())) {
+                    return stream.readAllBytes();
+                }
+            });
 
             // Return as ByteArrayResource
             return new ByteArrayResource(content) {
@@ -142,34 +363,141 @@ public class MinioStorageService implements StorageService {
 
     @Override
     public void deleteAll() {
+        awaitBucket();
         logger.warn("Attempting to delete all objects in Minio bucket: {}", bucketName);
-        List<DeleteObject> objectsToDelete = new LinkedList<>();
-        loadAll().forEach(path -> objectsToDelete.add(new DeleteObject(path.toString().replace("\\", "/"))));
-
-        if (!objectsToDelete.isEmpty()) {
-            Iterable<Result<DeleteError>> results = minioClient.removeObjects(
-                    RemoveObjectsArgs.builder().bucket(bucketName).objects(objectsToDelete).build());
+        // Delete page by page so only one page of keys is held in memory at a time
+        long deletedCount = 0;
+        String continuationToken = null;
+        do {
+            StoragePage page = list(null, MAX_PAGE_SIZE, continuationToken);
+            List<DeleteObject> objectsToDelete = new ArrayList<>(page.getObjects().size());
+            page.getObjects().forEach(object -> objectsToDelete.add(new DeleteObject(object.getKey())));
 
-            results.forEach(errorResult -> {
+            if (!objectsToDelete.isEmpty()) {
                 try {
-                    DeleteError error = errorResult.get();
-                    logger.error("Error deleting object {} from Minio: {}", error.objectName(), error.message());
-                } catch (Exception e) {
-                   logger.error("Error processing delete error result from Minio", e);
+                    transport.call("removeObjects", () -> {
+                        Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                                RemoveObjectsArgs.builder().bucket(bucketName).objects(objectsToDelete).build());
+
+                        // removeObjects is lazy; iterating the results performs the deletion
+                        for (Result<DeleteError> errorResult : results) {
+                            DeleteError error = errorResult.get();
+                            logger.error("Error deleting object {} from Minio: {}", error.objectName(), error.message());
+                        }
+                        return null;
+                    });
+                } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
+                    throw new StorageException("Failed to delete objects from Minio bucket " + bucketName, e);
                 }
-            });
-             logger.info("Finished deleting objects from Minio bucket: {}. Check logs for errors.", bucketName);
+                deletedCount += objectsToDelete.size();
+            }
+            continuationToken = page.getContinuationToken();
+        } while (continuationToken != null);
+
+        if (readCoalescing != null) {
+            readCoalescing.forgetAll();
+        }
+        if (deletedCount > 0) {
+             logger.info("Finished deleting {} objects from Minio bucket: {}. Check logs for errors.", deletedCount, bucketName);
         } else {
              logger.info("No objects found to delete in Minio bucket: {}", bucketName);
         }
     }
 
+    @Override
+    public Optional<StoredObject> stat(String filename) {
+        awaitBucket();
+        String objectName = filename.replace("\\", "/");
+        try {
+            // HEAD request: metadata only, the object body is never transferred
+            StatObjectResponse stat = transport.call("statObject", () -> minioClient.statObject(
+                    StatObjectArgs.builder().bucket(bucketName).object(objectName).build()));
+            return Optional.of(new StoredObject(objectName, stat.size(),
+                    stat.lastModified() != null ? stat.lastModified().toInstant() : null));
+        } catch (ErrorResponseException e) {
+            if (e.errorResponse().code().equals("NoSuchKey")) {
+                return Optional.empty();
+            }
+            throw new StorageException("Failed to stat file " + objectName + " in Minio bucket " + bucketName, e);
+        } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
+            throw new StorageException("Failed to stat file " + objectName + " in Minio bucket " + bucketName, e);
+        }
+    }
+
+    @Override
+    public void copy(String sourceFilename, String destinationFilename) {
+        awaitBucket();
+        String sourceObjectName = sourceFilename.replace("\\", "/");
+        String targetObjectName = destinationFilename.replace("\\", "/");
+        try {
+            // Server-side copy (the client switches to multipart compose for large objects); no bytes pass through the JVM
+            transport.call("copyObject", () -> dataClient.copyObject(
+                    CopyObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(targetObjectName)
+                            .source(CopySource.builder().bucket(bucketName).object(sourceObjectName).build())
+                            .build()));
+            forgetInFlightRead(targetObjectName);
+            logger.debug("Copied object {} to {} in Minio bucket {}", sourceObjectName, targetObjectName, bucketName);
+        } catch (ErrorResponseException e) {
+            if (e.errorResponse().code().equals("NoSuchKey")) {
+                throw new StorageFileNotFoundException("Could not copy missing object " + sourceObjectName + " in Minio bucket " + bucketName, e);
+            }
+            throw new StorageException("Failed to copy " + sourceObjectName + " to " + targetObjectName + " in Minio bucket " + bucketName, e);
+        } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
+            throw new StorageException("Failed to copy " + sourceObjectName + " to " + targetObjectName + " in Minio bucket " + bucketName, e);
+        }
+    }
+
+    /**
+     * Joins the parts with one server-side compose request (up to 10000 parts); no bytes pass through the JVM.
+     */
+    @Override
+    public void compose(List<String> sourceFilenames, String destinationFilename) {
+        awaitBucket();
+        String targetObjectName = destinationFilename.replace("\\", "/");
+        List<ComposeSource> sources = new ArrayList<>(sourceFilenames.size());
+        sourceFilenames.forEach(source -> sources.add(ComposeSource.builder().bucket(bucketName).object(source.replace("\\", "/")).build()));
+        try {
+            transport.call("composeObject", () -> dataClient.composeObject(
+                    ComposeObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(targetObjectName)
+                            .sources(sources)
+                            .build()));
+            forgetInFlightRead(targetObjectName);
+            logger.debug("Composed {} parts into {} in Minio bucket {}", sources.size(), targetObjectName, bucketName);
+        } catch (ErrorResponseException e) {
+            if (e.errorResponse().code().equals("NoSuchKey")) {
+                throw new StorageFileNotFoundException("Could not compose " + targetObjectName + " from missing parts in Minio bucket " + bucketName, e);
+            }
+            throw new StorageException("Failed to compose " + targetObjectName + " in Minio bucket " + bucketName, e);
+        } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
+            throw new StorageException("Failed to compose " + targetObjectName + " in Minio bucket " + bucketName, e);
+        }
+    }
+
+    @Override
+    public void move(String sourceFilename, String destinationFilename) {
+        String sourceObjectName = sourceFilename.replace("\\", "/");
+        String targetObjectName = destinationFilename.replace("\\", "/");
+        copy(sourceObjectName, targetObjectName);
+        try {
+            removeObject(sourceObjectName);
+            forgetInFlightRead(sourceObjectName);
+            logger.debug("Moved object {} to {} in Minio bucket {}", sourceObjectName, targetObjectName, bucketName);
+        } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
+            throw new StorageException("Failed to move " + sourceObjectName + " to " + targetObjectName + " in Minio bucket " + bucketName, e);
+        }
+    }
+
     @Override
     public void delete(String filename) {
+        awaitBucket();
          String objectName = filename.replace("\\", "/");
         try {
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder().bucket(bucketName).object(objectName).build());
+            removeObject(objectName);
+            forgetInFlightRead(objectName);
             logger.debug("Deleted object {} from Minio bucket {}", objectName, bucketName);
         } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
              if (e instanceof ErrorResponseException && ((ErrorResponseException)e).errorResponse().code().equals("NoSuchKey")) {
@@ -179,4 +507,47 @@ public class MinioStorageService implements StorageService {
              }
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Deletes the objects with one multi-object delete request per {@value StorageService#MAX_PAGE_SIZE} keys.
+     * S3 reports no error for keys that do not exist.
+     */
+    @Override
+    public List<String> deleteBatch(Collection<String> filenames, int parallelism) {
+        awaitBucket();
+        List<String> objectNames = filenames.stream().map(filename -> filename.replace("\\", "/")).toList();
+        List<String> failed = new ArrayList<>();
+        for (int from = 0; from < objectNames.size(); from += MAX_PAGE_SIZE) {
+            List<String> chunk = objectNames.subList(from, Math.min(from + MAX_PAGE_SIZE, objectNames.size()));
+            List<DeleteObject> objectsToDelete = new ArrayList<>(chunk.size());
+            chunk.forEach(objectName -> objectsToDelete.add(new DeleteObject(objectName)));
+            try {
+                List<String> chunkFailures = transport.call("removeObjects", () -> {
+                    List<String> errors = new ArrayList<>(); // Fresh per attempt, the call may be retried
+                    // removeObjects is lazy; iterating the results performs the deletion
+                    for (Result<DeleteError> errorResult : minioClient.removeObjects(
+                            RemoveObjectsArgs.builder().bucket(bucketName).objects(objectsToDelete).build())) {
+                        DeleteError error = errorResult.get();
+                        logger.warn("Error deleting object {} from Minio: {}", error.objectName(), error.message());
+                        errors.add(error.objectName());
+                    }
+                    return errors;
+                });
+                failed.addAll(chunkFailures);
+            } catch (MinioException | InvalidKeyException | IOException | NoSuchAlgorithmException e) {
+                logger.warn("Failed to delete {} objects from Minio bucket {}: {}", chunk.size(), bucketName, e.getMessage());
+                failed.addAll(chunk);
+            }
+            chunk.forEach(this::forgetInFlightRead);
+        }
+        logger.debug("Deleted {} of {} objects from Minio bucket {}", objectNames.size() - failed.size(), objectNames.size(), bucketName);
+        return failed;
+    }
+
+    private void removeObject(String objectName) throws MinioException, InvalidKeyException, IOException, NoSuchAlgorithmException {
+        transport.call("removeObject", () -> {
+            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucketName).object(objectName).build());
+            return null;
+        });
+    }
+}
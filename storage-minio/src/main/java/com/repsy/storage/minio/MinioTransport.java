@@ -0,0 +1,195 @@
+package com.repsy.storage.minio;
+
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.api.StorageUnavailableException;
+import com.repsy.storage.api.Tracing;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.MinioException;
+import io.minio.errors.ServerException;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP transport of {@link MinioStorageService}: one connection pool and dispatcher shared by a metadata client
+ * and a data client that differ only in their timeouts, plus jittered retries and a circuit breaker around each call.
+ */
+final class MinioTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(MinioTransport.class);
+    private static final AttributeKey<Long> ATTEMPTS = AttributeKey.longKey("repsy.minio.attempts");
+
+    // S3 error codes that mean "try again", independent of the HTTP status
+    private static final Set<String> TRANSIENT_ERROR_CODES = Set.of(
+            "InternalError", "ServiceUnavailable", "SlowDown", "RequestTimeout", "XMinioServerNotInitialized");
+
+    /**
+     * A Minio client call.
+     */
+    @FunctionalInterface
+    interface MinioCall<T> {
+        T execute() throws MinioException, InvalidKeyException, IOException, NoSuchAlgorithmException;
+    }
+
+    private final StorageProperties.TransportProperties properties;
+    private final ConnectionPool connectionPool;
+    private final Dispatcher dispatcher;
+    private final OkHttpClient metadataHttpClient;
+    private final OkHttpClient dataHttpClient;
+    private final CircuitBreaker breaker;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+
+    MinioTransport(StorageProperties.TransportProperties properties) {
+        this.properties = properties;
+        this.connectionPool = new ConnectionPool(properties.getMaxIdleConnections(), properties.getKeepAliveMillis(), TimeUnit.MILLISECONDS);
+        this.dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(properties.getMaxConcurrentRequests());
+        dispatcher.setMaxRequestsPerHost(properties.getMaxConcurrentRequests());
+
+        // Same defaults as the Minio client's own OkHttpClient, apart from pool, dispatcher and timeouts
+        OkHttpClient base = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .connectTimeout(properties.getConnectTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .retryOnConnectionFailure(false) // Retries are ours, with backoff
+                .build();
+        // newBuilder() shares the pool and dispatcher, so the limits apply across both clients
+        this.metadataHttpClient = base.newBuilder()
+                .readTimeout(properties.getMetadataTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .writeTimeout(properties.getMetadataTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        this.dataHttpClient = base.newBuilder()
+                .readTimeout(properties.getDataTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .writeTimeout(properties.getDataTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        this.breaker = new CircuitBreaker(properties.getBreakerFailureThreshold(), properties.getBreakerOpenMillis());
+    }
+
+    OkHttpClient metadataHttpClient() {
+        return metadataHttpClient;
+    }
+
+    OkHttpClient dataHttpClient() {
+        return dataHttpClient;
+    }
+
+    /**
+     * Runs a call, retrying transient failures with full-jitter exponential backoff.
+     * Calls are rejected with {@link StorageUnavailableException} while the circuit breaker is open.
+     * Non-transient errors (e.g. NoSuchKey) are rethrown at once and count as a healthy backend.
+     *
+     * @param operation Operation name for logging.
+     * @param call      The call; must be idempotent.
+     * @return The call's result.
+     */
+    <T> T call(String operation, MinioCall<T> call) throws MinioException, InvalidKeyException, IOException, NoSuchAlgorithmException {
+        if (!breaker.tryAcquire()) {
+            throw new StorageUnavailableException("Minio is unavailable (circuit breaker open), rejected " + operation);
+        }
+        calls.increment();
+        boolean failed = false;
+        Span span = Tracing.startLeaf("minio." + operation);
+        span.setAttribute(Tracing.STORAGE_BACKEND, "minio");
+        int attempt = 1;
+        try {
+            for (; ; attempt++) {
+                try {
+                    return call.execute();
+                } catch (MinioException | IOException e) {
+                    if (!isTransient(e)) {
+                        Tracing.fail(span, e);
+                        throw e;
+                    }
+                    if (attempt >= properties.getMaxAttempts()) {
+                        failed = true;
+                        failedCalls.increment();
+                        Tracing.fail(span, e);
+                        throw e;
+                    }
+                    retries.increment();
+                    long backoff = backoffMillis(attempt);
+                    logger.debug("Minio {} failed (attempt {}), retrying in {} ms: {}", operation, attempt, backoff, e.toString());
+                    sleep(backoff, e);
+                }
+            }
+        } finally {
+            if (failed) {
+                breaker.recordFailure();
+            } else {
+                breaker.recordSuccess();
+            }
+            span.setAttribute(ATTEMPTS, attempt);
+            span.end();
+        }
+    }
+
+    /**
+     * Full jitter: a uniform delay between 0 and the exponential cap of the attempt, bounded by {@code maxBackoffMillis}.
+     */
+    long backoffMillis(int attempt) {
+        long cap = Math.min(properties.getMaxBackoffMillis(), properties.getInitialBackoffMillis() << Math.min(attempt - 1, 20));
+        return cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+    }
+
+    private static void sleep(long millis, Exception cause) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while backing off after a failed Minio call", cause);
+        }
+    }
+
+    static boolean isTransient(Exception e) {
+        if (e instanceof ErrorResponseException errorResponse) {
+            return TRANSIENT_ERROR_CODES.contains(errorResponse.errorResponse().code())
+                    || (errorResponse.response() != null && errorResponse.response().code() >= 500);
+        }
+        // ServerException: 5xx without an S3 error body; IOException: connection failures and timeouts
+        return e instanceof ServerException || e instanceof IOException;
+    }
+
+    /**
+     * @return Pool saturation ({@code runningRequests} vs {@code maxConcurrentRequests}, {@code queuedRequests},
+     * pooled connections), retry counters and circuit breaker state.
+     */
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrentRequests", dispatcher.getMaxRequests());
+        stats.put("runningRequests", dispatcher.runningCallsCount());
+        stats.put("queuedRequests", dispatcher.queuedCallsCount());
+        stats.put("connections", connectionPool.connectionCount());
+        stats.put("idleConnections", connectionPool.idleConnectionCount());
+        stats.put("calls", calls.sum());
+        stats.put("retries", retries.sum());
+        stats.put("failedCalls", failedCalls.sum());
+        stats.put("circuitBreaker", breaker.stats());
+        return stats;
+    }
+
+    void close() {
+        dispatcher.executorService().shutdown();
+        connectionPool.evictAll();
+    }
+}
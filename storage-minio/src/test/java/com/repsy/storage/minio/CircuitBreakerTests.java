@@ -0,0 +1,65 @@
+package com.repsy.storage.minio;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTests {
+
+	@Test
+	void opensAfterConsecutiveFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(3, 60_000);
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordSuccess(); // Resets the streak
+		breaker.recordFailure();
+		breaker.recordFailure();
+		assertThat(breaker.tryAcquire()).isTrue();
+		assertThat(breaker.stats()).containsEntry("state", "CLOSED");
+
+		breaker.recordFailure();
+		assertThat(breaker.stats()).containsEntry("state", "OPEN").containsEntry("timesOpened", 1L);
+		assertThat(breaker.tryAcquire()).isFalse();
+		assertThat(breaker.tryAcquire()).isFalse();
+		assertThat(breaker.stats()).containsEntry("rejectedCalls", 2L);
+	}
+
+	@Test
+	void letsOneProbeThroughWhenHalfOpenAndClosesOnSuccess() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, 20);
+		breaker.recordFailure();
+		assertThat(breaker.tryAcquire()).isFalse();
+		Thread.sleep(40);
+
+		assertThat(breaker.tryAcquire()).isTrue(); // The probe
+		assertThat(breaker.stats()).containsEntry("state", "HALF_OPEN");
+		assertThat(breaker.tryAcquire()).isFalse(); // Only one probe at a time
+		breaker.recordSuccess();
+		assertThat(breaker.stats()).containsEntry("state", "CLOSED").containsEntry("consecutiveFailures", 0);
+		assertThat(breaker.tryAcquire()).isTrue();
+		assertThat(breaker.tryAcquire()).isTrue();
+	}
+
+	@Test
+	void failedProbeReopens() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(2, 20);
+		breaker.recordFailure();
+		breaker.recordFailure();
+		Thread.sleep(40);
+		assertThat(breaker.tryAcquire()).isTrue();
+		breaker.recordFailure(); // A single failed probe is enough, below the threshold
+		assertThat(breaker.stats()).containsEntry("state", "OPEN").containsEntry("timesOpened", 2L);
+		assertThat(breaker.tryAcquire()).isFalse();
+	}
+
+	@Test
+	void zeroThresholdNeverOpens() {
+		CircuitBreaker breaker = new CircuitBreaker(0, 60_000);
+		for (int i = 0; i < 100; i++) {
+			breaker.recordFailure();
+		}
+		assertThat(breaker.tryAcquire()).isTrue();
+		assertThat(breaker.stats()).containsEntry("state", "CLOSED");
+	}
+
+}
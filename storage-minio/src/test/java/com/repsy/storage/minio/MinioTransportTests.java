@@ -0,0 +1,120 @@
+package com.repsy.storage.minio;
+
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.api.StorageUnavailableException;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.InsufficientDataException;
+import io.minio.errors.ServerException;
+import io.minio.messages.ErrorResponse;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MinioTransportTests {
+
+	private MinioTransport transport;
+
+	@AfterEach
+	void tearDown() {
+		if (transport != null) {
+			transport.close();
+		}
+	}
+
+	private MinioTransport open(StorageProperties.TransportProperties properties) {
+		transport = new MinioTransport(properties);
+		return transport;
+	}
+
+	private static ErrorResponseException errorResponse(String code, int status) {
+		Response response = new Response.Builder()
+				.request(new Request.Builder().url("http://minio.test/bucket/key").build())
+				.protocol(Protocol.HTTP_1_1)
+				.code(status)
+				.message(code)
+				.build();
+		return new ErrorResponseException(new ErrorResponse(code, code, "bucket", "key", "/bucket/key", "request", "host"),
+				response, null);
+	}
+
+	@Test
+	void errorResponsesAreTransientByCodeOrServerStatus() {
+		assertThat(MinioTransport.isTransient(errorResponse("SlowDown", 503))).isTrue();
+		assertThat(MinioTransport.isTransient(errorResponse("RequestTimeout", 400))).isTrue();
+		assertThat(MinioTransport.isTransient(errorResponse("XMinioServerNotInitialized", 400))).isTrue();
+		assertThat(MinioTransport.isTransient(errorResponse("SomethingNew", 502))).isTrue();
+
+		assertThat(MinioTransport.isTransient(errorResponse("NoSuchKey", 404))).isFalse();
+		assertThat(MinioTransport.isTransient(errorResponse("AccessDenied", 403))).isFalse();
+		assertThat(MinioTransport.isTransient(errorResponse("PreconditionFailed", 412))).isFalse();
+	}
+
+	@Test
+	void connectionFailuresAndBareServerErrorsAreTransient() {
+		assertThat(MinioTransport.isTransient(new SocketTimeoutException("read timed out"))).isTrue();
+		assertThat(MinioTransport.isTransient(new IOException("connection reset"))).isTrue();
+		assertThat(MinioTransport.isTransient(new ServerException("bad gateway", 502, "trace"))).isTrue();
+		assertThat(MinioTransport.isTransient(new InsufficientDataException("short read"))).isFalse();
+	}
+
+	@Test
+	void backoffStaysWithinTheExponentialCap() {
+		StorageProperties.TransportProperties properties = new StorageProperties.TransportProperties();
+		properties.setInitialBackoffMillis(100);
+		properties.setMaxBackoffMillis(1000);
+		MinioTransport transport = open(properties);
+		for (int i = 0; i < 200; i++) {
+			assertThat(transport.backoffMillis(1)).isBetween(0L, 100L);
+			assertThat(transport.backoffMillis(3)).isBetween(0L, 400L);
+			assertThat(transport.backoffMillis(5)).isBetween(0L, 1000L);
+			assertThat(transport.backoffMillis(64)).isBetween(0L, 1000L); // The shift is bounded, so no overflow
+		}
+
+		properties.setInitialBackoffMillis(0);
+		assertThat(transport.backoffMillis(3)).isZero();
+	}
+
+	@Test
+	void transientFailuresAreRetriedAndOpenTheBreaker() throws Exception {
+		StorageProperties.TransportProperties properties = new StorageProperties.TransportProperties();
+		properties.setMaxAttempts(3);
+		properties.setInitialBackoffMillis(1);
+		properties.setMaxBackoffMillis(1);
+		properties.setBreakerFailureThreshold(1);
+		properties.setBreakerOpenMillis(60_000);
+		MinioTransport transport = open(properties);
+
+		AtomicInteger attempts = new AtomicInteger();
+		assertThat(transport.call("statObject", () -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw errorResponse("SlowDown", 503);
+			}
+			return "ok";
+		})).isEqualTo("ok");
+		assertThat(attempts).hasValue(3);
+
+		attempts.set(0);
+		assertThatThrownBy(() -> transport.call("statObject", () -> {
+			attempts.incrementAndGet();
+			throw errorResponse("NoSuchKey", 404);
+		})).isInstanceOf(ErrorResponseException.class);
+		assertThat(attempts).hasValue(1); // Not retried, and a healthy answer for the breaker
+
+		assertThatThrownBy(() -> transport.call("statObject", () -> {
+			throw new IOException("connection refused");
+		})).isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> transport.call("statObject", () -> "never called"))
+				.isInstanceOf(StorageUnavailableException.class);
+		assertThat(transport.stats()).containsEntry("retries", 4L).containsEntry("failedCalls", 1L);
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.repsy.storage.replicated;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of recent latencies with a cached percentile, recomputed every few samples.
+ */
+final class LatencyTracker {
+
+    private final long[] samples;
+    private final double percentile;
+    private final long minMillis;
+    private final int recomputeEvery;
+
+    private int count;
+    private int next;
+    private int sinceRecompute;
+    private volatile long cachedMillis;
+
+    LatencyTracker(int window, double percentile, long initialMillis, long minMillis) {
+        this.samples = new long[Math.max(16, window)];
+        this.percentile = percentile;
+        this.minMillis = minMillis;
+        this.recomputeEvery = Math.max(1, samples.length / 16);
+        this.cachedMillis = Math.max(minMillis, initialMillis);
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (++sinceRecompute >= recomputeEvery && count >= recomputeEvery) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(count - 1, Math.ceil(percentile * count) - 1);
+            cachedMillis = Math.max(minMillis, sorted[Math.max(0, index)] / 1_000_000);
+        }
+    }
+
+    /**
+     * @return The latency percentile in milliseconds (the initial value until enough samples exist).
+     */
+    long percentileMillis() {
+        return cachedMillis;
+    }
+}
@@ -0,0 +1,580 @@
+package com.repsy.storage.replicated;
+
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.StoragePage;
+import com.repsy.storage.api.StorageProperties;
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import com.repsy.storage.api.Tracing;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Composite backend: writes go to the primary synchronously and to the secondaries asynchronously, through a durable
+ * {@link ReplicationJournal} applied in order by a single replicator thread. An entry that keeps failing is parked
+ * after {@code maxAttempts}, so it no longer holds up the entries behind it. Reads go to the primary; a read the
+ * primary has not answered within its recent p95 latency is also sent to the first secondary (a hedged read),
+ * and the first successful answer wins. Listings, stats and presigning are served by the primary alone.
+ */
+public class ReplicatedStorageService implements StorageService, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicatedStorageService.class);
+    private static final AttributeKey<Boolean> HEDGED = AttributeKey.booleanKey("repsy.storage.hedged");
+
+    private final StorageProperties.ReplicationProperties properties;
+    private final StorageService primary;
+    private final List<StorageService> secondaries;
+    private final ReplicationJournal journal;
+    private final LatencyTracker primaryReadLatency;
+
+    // Entries appended but not yet fully replicated; 'ready' holds those whose primary write has completed.
+    // Only the first pending entry is applied, so an entry never overtakes an earlier write still in flight.
+    private final ConcurrentSkipListMap<Long, ReplicationJournal.Entry> pending = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, ReplicationJournal.Entry> ready = new ConcurrentSkipListMap<>();
+    private final Object sequenceLock = new Object(); // Entries become pending in sequence order
+    private final Object readySignal = new Object();
+    // Recovered entries whose primary write may never have happened; checked before they are applied
+    private final Set<Long> recovered = ConcurrentHashMap.newKeySet();
+    // Sequences of the pending entries that write each key (see rewrittenLater)
+    private final Map<String, NavigableSet<Long>> pendingWrites = new ConcurrentHashMap<>();
+
+    // Context-wrapping, so the backend reads show up under the request's trace
+    private final ExecutorService readExecutor = Context.taskWrapping(Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "repsy-storage-read");
+        thread.setDaemon(true);
+        return thread;
+    }));
+    private Thread replicator;
+    private volatile boolean running;
+
+    private final LongAdder replicated = new LongAdder();
+    private final LongAdder replicationFailures = new LongAdder();
+    private final LongAdder discardedRecoveredEntries = new LongAdder();
+    private volatile String lastReplicationError;
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder hedgedReads = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public ReplicatedStorageService(StorageProperties.ReplicationProperties properties, StorageService primary, List<StorageService> secondaries) {
+        this.properties = properties;
+        this.primary = primary;
+        this.secondaries = List.copyOf(secondaries);
+        this.journal = new ReplicationJournal(Paths.get(properties.getJournalLocation()), properties.isJournalFsync());
+        this.primaryReadLatency = new LatencyTracker(properties.getLatencyWindow(), properties.getHedgePercentile(),
+                properties.getInitialHedgeDelayMillis(), properties.getMinHedgeDelayMillis());
+    }
+
+    @Override
+    @PostConstruct
+    public void init() {
+        // Backends are independent, so a slow one (e.g. a Minio bucket check) does not delay the others
+        Stream.concat(Stream.of(primary), secondaries.stream()).parallel().forEach(StorageService::init);
+        for (ReplicationJournal.Entry entry : journal.recover()) {
+            pending.put(entry.sequence(), entry);
+            ready.put(entry.sequence(), entry); // Their primary writes completed, failed or never started before the restart
+            recovered.add(entry.sequence());
+            trackWrite(entry);
+        }
+        running = true;
+        replicator = new Thread(this::replicate, "repsy-storage-replicator");
+        replicator.setDaemon(true);
+        replicator.start();
+        logger.info("Replicated storage initialized with {} secondaries and {} pending replications", secondaries.size(), pending.size());
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        running = false;
+        if (replicator != null) {
+            replicator.interrupt();
+            try {
+                replicator.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        readExecutor.shutdownNow();
+        closeQuietly(primary);
+        secondaries.forEach(ReplicatedStorageService::closeQuietly);
+    }
+
+    private static void closeQuietly(StorageService backend) {
+        if (backend instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Could not close storage backend {}", backend.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    // --- Writes: journal first, then the primary; the entry becomes replicable once the primary write succeeded ---
+
+    @Override
+    public void store(MultipartFile file, Path destinationPath) {
+        String key = toKey(destinationPath.toString());
+        write(ReplicationJournal.Operation.STORE, key, null, () -> primary.store(file, destinationPath));
+    }
+
+    @Override
+    public void copy(String sourceFilename, String destinationFilename) {
+        write(ReplicationJournal.Operation.COPY, toKey(destinationFilename), toKey(sourceFilename),
+                () -> primary.copy(sourceFilename, destinationFilename));
+    }
+
+    @Override
+    public void compose(List<String> sourceFilenames, String destinationFilename) {
+        // Journaled as a store: secondaries fetch the assembled file from the primary
+        write(ReplicationJournal.Operation.STORE, toKey(destinationFilename), null,
+                () -> primary.compose(sourceFilenames, destinationFilename));
+    }
+
+    @Override
+    public void move(String sourceFilename, String destinationFilename) {
+        write(ReplicationJournal.Operation.MOVE, toKey(destinationFilename), toKey(sourceFilename),
+                () -> primary.move(sourceFilename, destinationFilename));
+    }
+
+    @Override
+    public void delete(String filename) {
+        write(ReplicationJournal.Operation.DELETE, toKey(filename), null, () -> primary.delete(filename));
+    }
+
+    @Override
+    public void deleteAll() {
+        write(ReplicationJournal.Operation.DELETE_ALL, null, null, primary::deleteAll);
+    }
+
+    private void write(ReplicationJournal.Operation operation, String key, String sourceKey, Runnable primaryWrite) {
+        ReplicationJournal.Entry entry;
+        synchronized (sequenceLock) {
+            entry = journal.reserve(operation, key, sourceKey);
+            pending.put(entry.sequence(), entry);
+            trackWrite(entry);
+        }
+        try {
+            journal.persist(entry);
+            primaryWrite.run();
+        } catch (RuntimeException e) {
+            pending.remove(entry.sequence());
+            untrackWrite(entry);
+            journal.remove(entry);
+            signalReplicator(); // The entries behind it may be ready
+            throw e;
+        }
+        ready.put(entry.sequence(), entry);
+        signalReplicator();
+    }
+
+    private void signalReplicator() {
+        synchronized (readySignal) {
+            readySignal.notifyAll();
+        }
+    }
+
+    /**
+     * Restores the primary copy from the first secondary whose copy passes the verifier. The restore is journaled
+     * like a store, so secondaries holding a damaged copy are overwritten with the restored one as well.
+     */
+    @Override
+    public boolean repair(String filename, Predicate<Resource> verifier) {
+        String key = toKey(filename);
+        for (int i = 0; i < secondaries.size(); i++) {
+            StorageService secondary = secondaries.get(i);
+            try {
+                if (!verifier.test(secondary.loadAsResource(key))) {
+                    logger.warn("Copy of {} on secondary {} is damaged as well", key, i);
+                    continue;
+                }
+                write(ReplicationJournal.Operation.STORE, key, null,
+                        () -> primary.store(new ResourceMultipartFile(key, secondary.loadAsResource(key)), Paths.get(key)));
+                logger.warn("Restored {} on the primary from secondary {}", key, i);
+                return true;
+            } catch (StorageException e) {
+                logger.warn("Could not restore {} from secondary {}: {}", key, i, e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    // --- Replication ---
+
+    private void replicate() {
+        long retryDelay = properties.getRetryDelayMillis();
+        int attempts = 0;
+        while (running) {
+            ReplicationJournal.Entry entry = nextReplicable();
+            if (entry == null) {
+                awaitReady();
+                continue;
+            }
+            try {
+                if (recovered.contains(entry.sequence()) && !primaryWriteHappened(entry)) {
+                    logger.info("Discarding recovered {} {}: it never reached the primary", entry.operation(), entry.key());
+                    discardedRecoveredEntries.increment();
+                } else {
+                    for (StorageService secondary : secondaries) {
+                        apply(entry, secondary);
+                    }
+                    replicated.increment();
+                }
+                dequeue(entry);
+                journal.remove(entry);
+                attempts = 0;
+                retryDelay = properties.getRetryDelayMillis();
+            } catch (RuntimeException e) {
+                // Head-of-line retry keeps per-key order; the lag metrics show the backlog meanwhile
+                replicationFailures.increment();
+                attempts++;
+                lastReplicationError = entry.operation() + " " + entry.key() + ": " + e.getMessage();
+                if (properties.getMaxAttempts() > 0 && attempts >= properties.getMaxAttempts()) {
+                    logger.error("Replication of {} {} failed {} times, parking it: {}", entry.operation(), entry.key(), attempts, e.getMessage());
+                    dequeue(entry);
+                    journal.park(entry);
+                    attempts = 0;
+                    retryDelay = properties.getRetryDelayMillis();
+                    continue;
+                }
+                logger.warn("Replication of {} {} failed, retrying in {} ms: {}", entry.operation(), entry.key(), retryDelay, e.getMessage());
+                sleep(retryDelay);
+                retryDelay = Math.min(properties.getMaxRetryDelayMillis(), retryDelay * 2);
+            }
+        }
+    }
+
+    /**
+     * @return The first pending entry if its primary write has completed, otherwise null (nothing may be applied yet).
+     */
+    private ReplicationJournal.Entry nextReplicable() {
+        Entry<Long, ReplicationJournal.Entry> head = pending.firstEntry();
+        return head != null && ready.containsKey(head.getKey()) ? head.getValue() : null;
+    }
+
+    private void dequeue(ReplicationJournal.Entry entry) {
+        ready.remove(entry.sequence());
+        pending.remove(entry.sequence());
+        recovered.remove(entry.sequence());
+        untrackWrite(entry);
+    }
+
+    private void trackWrite(ReplicationJournal.Entry entry) {
+        if (writesKey(entry)) {
+            pendingWrites.compute(entry.key(), (key, sequences) -> {
+                NavigableSet<Long> updated = sequences != null ? sequences : new ConcurrentSkipListSet<>();
+                updated.add(entry.sequence());
+                return updated;
+            });
+        }
+    }
+
+    private void untrackWrite(ReplicationJournal.Entry entry) {
+        if (writesKey(entry)) {
+            pendingWrites.computeIfPresent(entry.key(), (key, sequences) -> {
+                sequences.remove(entry.sequence());
+                return sequences.isEmpty() ? null : sequences;
+            });
+        }
+    }
+
+    private static boolean writesKey(ReplicationJournal.Entry entry) {
+        return entry.key() != null && (entry.operation() == ReplicationJournal.Operation.STORE
+                || entry.operation() == ReplicationJournal.Operation.COPY || entry.operation() == ReplicationJournal.Operation.MOVE);
+    }
+
+    /**
+     * A STORE replicates what the primary holds when it is applied, so a secondary's copy of a key may already
+     * have the content of a later pending write. Copying or moving that key on the secondary would then give the
+     * destination content it never had on the primary.
+     */
+    private boolean rewrittenLater(String key, long sequence) {
+        NavigableSet<Long> sequences = pendingWrites.get(key);
+        return sequences != null && sequences.higher(sequence) != null;
+    }
+
+    /**
+     * The journal is written before the primary, so a recovered entry may describe a write that never happened.
+     * Replaying such a DELETE or MOVE would remove the secondaries' copy of a file the primary still holds.
+     * A file the primary still (or again) has is left alone: a later entry for the key replicates its current state.
+     * STORE and COPY replays copy whatever the primary holds, so they need no check.
+     */
+    private boolean primaryWriteHappened(ReplicationJournal.Entry entry) {
+        return switch (entry.operation()) {
+            case DELETE -> primary.stat(entry.key()).isEmpty();
+            case MOVE -> primary.stat(entry.sourceKey()).isEmpty() || primary.stat(entry.key()).isPresent();
+            default -> true;
+        };
+    }
+
+    /**
+     * Applies an entry to one secondary. Every operation is idempotent, so an entry may be replayed after a crash.
+     */
+    private void apply(ReplicationJournal.Entry entry, StorageService secondary) {
+        switch (entry.operation()) {
+            case STORE -> copyFromPrimary(entry.key(), secondary);
+            case COPY -> {
+                if (rewrittenLater(entry.sourceKey(), entry.sequence())) {
+                    copyFromPrimary(entry.key(), secondary);
+                    return;
+                }
+                try {
+                    secondary.copy(entry.sourceKey(), entry.key());
+                } catch (StorageFileNotFoundException e) {
+                    copyFromPrimary(entry.key(), secondary); // Source never reached this secondary
+                }
+            }
+            case MOVE -> {
+                if (rewrittenLater(entry.sourceKey(), entry.sequence())) {
+                    copyFromPrimary(entry.key(), secondary);
+                    secondary.delete(entry.sourceKey()); // The later write stores it again
+                    return;
+                }
+                try {
+                    secondary.move(entry.sourceKey(), entry.key());
+                } catch (StorageFileNotFoundException e) {
+                    copyFromPrimary(entry.key(), secondary);
+                    secondary.delete(entry.sourceKey());
+                }
+            }
+            case DELETE -> secondary.delete(entry.key());
+            case DELETE_ALL -> secondary.deleteAll();
+        }
+    }
+
+    private void copyFromPrimary(String key, StorageService secondary) {
+        Resource resource;
+        try {
+            resource = primary.loadAsResource(key);
+        } catch (StorageFileNotFoundException e) {
+            // Deleted or moved away since; the journal entry of that change replicates it
+            logger.debug("Skipping replication of {}: no longer on the primary", key);
+            return;
+        }
+        secondary.store(new ResourceMultipartFile(key, resource), Paths.get(key));
+    }
+
+    private void awaitReady() {
+        synchronized (readySignal) {
+            if (nextReplicable() == null && running) {
+                try {
+                    readySignal.wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    // --- Reads ---
+
+    @Override
+    public Resource loadAsResource(String filename) {
+        return Tracing.inSpan("storage.load", span -> {
+            span.setAttribute(Tracing.STORAGE_BACKEND, "replicated");
+            span.setAttribute(Tracing.STORAGE_KEY, toKey(filename));
+            return hedgedLoad(filename, span);
+        });
+    }
+
+    /**
+     * Streams from the primary alone, without hedging: single-pass readers (digests, compression, the scrubber) want
+     * the copy of record, and a stream cannot be raced the way a whole answer can. These reads are left out of the
+     * latency the hedge delay is derived from, since a long sequential read says nothing about interactive reads.
+     */
+    @Override
+    public InputStream openStream(String filename) {
+        return Tracing.inSpan("storage.open", span -> {
+            span.setAttribute(Tracing.STORAGE_BACKEND, "replicated");
+            span.setAttribute(Tracing.STORAGE_KEY, toKey(filename));
+            return primary.openStream(filename);
+        });
+    }
+
+    private Resource hedgedLoad(String filename, Span span) {
+        reads.increment();
+        if (!properties.isHedgedReads() || secondaries.isEmpty()) {
+            return timedPrimaryRead(filename);
+        }
+
+        long startedAt = System.nanoTime();
+        CompletableFuture<Resource> primaryRead = CompletableFuture.supplyAsync(() -> primary.loadAsResource(filename), readExecutor);
+        primaryRead.whenComplete((resource, failure) -> {
+            if (failure == null) {
+                primaryReadLatency.record(System.nanoTime() - startedAt);
+            }
+        });
+        try {
+            return primaryRead.get(primaryReadLatency.percentileMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            span.setAttribute(HEDGED, true);
+            return hedge(filename, primaryRead);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while reading " + filename, e);
+        }
+    }
+
+    private Resource timedPrimaryRead(String filename) {
+        long startedAt = System.nanoTime();
+        Resource resource = primary.loadAsResource(filename);
+        primaryReadLatency.record(System.nanoTime() - startedAt);
+        return resource;
+    }
+
+    /**
+     * The primary is slower than usual: also ask the first secondary and take the first success.
+     * A "not found" from the primary is final (the secondary may still hold a deleted object);
+     * other primary failures leave the answer to the secondary.
+     */
+    private Resource hedge(String filename, CompletableFuture<Resource> primaryRead) {
+        hedgedReads.increment();
+        CompletableFuture<Resource> secondaryRead = CompletableFuture.supplyAsync(() -> secondaries.get(0).loadAsResource(filename), readExecutor);
+        CompletableFuture<Resource> first = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(2);
+        AtomicReference<RuntimeException> primaryFailure = new AtomicReference<>();
+
+        primaryRead.whenComplete((resource, failure) -> {
+            if (failure == null) {
+                first.complete(resource);
+                return;
+            }
+            primaryFailure.set(unwrap(failure));
+            if (unwrap(failure) instanceof StorageFileNotFoundException || remaining.decrementAndGet() == 0) {
+                first.completeExceptionally(primaryFailure.get());
+            }
+        });
+        secondaryRead.whenComplete((resource, failure) -> {
+            if (failure == null) {
+                if (first.complete(resource)) {
+                    hedgeWins.increment();
+                }
+            } else if (remaining.decrementAndGet() == 0) {
+                // Both failed: report the primary's error
+                RuntimeException primaryError = primaryFailure.get();
+                first.completeExceptionally(primaryError != null ? primaryError : unwrap(failure));
+            }
+        });
+
+        try {
+            return first.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while reading " + filename, e);
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException runtimeException ? runtimeException : new StorageException("Read failed", cause);
+    }
+
+    @Override
+    public Path load(String filename) {
+        return primary.load(filename);
+    }
+
+    @Override
+    @Deprecated
+    public Stream<Path> loadAll() {
+        return primary.loadAll();
+    }
+
+    @Override
+    public StoragePage list(String prefix, int pageSize, String continuationToken) {
+        return primary.list(prefix, pageSize, continuationToken);
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String filename) {
+        return primary.stat(filename);
+    }
+
+    @Override
+    public Optional<URI> presignedDownloadUrl(String filename, Duration expiry, Map<String, String> responseHeaders) {
+        return primary.presignedDownloadUrl(filename, expiry, responseHeaders);
+    }
+
+    // --- Metrics ---
+
+    /**
+     * @return Replication lag ({@code pendingReplications}, {@code oldestPendingAgeMillis}), replication counters
+     * ({@code parkedReplications} = entries given up after {@code maxAttempts}), and hedging counters ({@code hedgeRate} = hedged reads / reads, {@code hedgeWins} = hedges the secondary won).
+     */
+    public Map<String, Object> replicationStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Entry<Long, ReplicationJournal.Entry> oldest = pending.firstEntry();
+        stats.put("pendingReplications", pending.size());
+        stats.put("oldestPendingAgeMillis", oldest != null ? Duration.between(oldest.getValue().createdAt(), Instant.now()).toMillis() : 0);
+        stats.put("replicated", replicated.sum());
+        stats.put("replicationFailures", replicationFailures.sum());
+        stats.put("lastReplicationError", lastReplicationError);
+        stats.put("parkedReplications", journal.parkedCount());
+        stats.put("discardedRecoveredEntries", discardedRecoveredEntries.sum());
+        long readCount = reads.sum();
+        long hedgeCount = hedgedReads.sum();
+        stats.put("reads", readCount);
+        stats.put("hedgedReads", hedgeCount);
+        stats.put("hedgeRate", readCount > 0 ? (double) hedgeCount / readCount : 0.0);
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("hedgeDelayMillis", primaryReadLatency.percentileMillis());
+        return stats;
+    }
+
+    private static String toKey(String filename) {
+        return filename.replace("\\", "/");
+    }
+}
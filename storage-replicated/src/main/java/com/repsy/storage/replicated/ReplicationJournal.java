@@ -0,0 +1,204 @@
+package com.repsy.storage.replicated;
+
+import com.repsy.storage.api.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable queue of writes still to be replicated: one small file per entry, named by a sequence number.
+ * An entry is written (and optionally fsynced) before the primary write it describes, and deleted once
+ * every secondary has applied it, so pending replications survive restarts. Entries that keep failing are
+ * parked in the {@code parked} subdirectory, where they are kept for inspection but no longer replayed.
+ */
+final class ReplicationJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationJournal.class);
+
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_PREFIX = ".tmp-";
+    private static final String PARKED_DIRECTORY = "parked";
+
+    enum Operation {
+        /** Key was written; secondaries fetch its content from the primary. */
+        STORE,
+        /** Key was copied from sourceKey. */
+        COPY,
+        /** Key was moved from sourceKey. */
+        MOVE,
+        /** Key was deleted. */
+        DELETE,
+        /** Everything was deleted. */
+        DELETE_ALL
+    }
+
+    record Entry(long sequence, Operation operation, String key, String sourceKey, Instant createdAt) {
+    }
+
+    private final Path directory;
+    private final boolean fsync;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong parked = new AtomicLong();
+
+    ReplicationJournal(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Creates the journal directory and reads the entries left by a previous run, in sequence order.
+     */
+    List<Entry> recover() {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            Files.createDirectories(directory.resolve(PARKED_DIRECTORY));
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory.resolve(PARKED_DIRECTORY), "*" + ENTRY_SUFFIX)) {
+                files.forEach(file -> parked.incrementAndGet());
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(TEMP_PREFIX)) {
+                        Files.deleteIfExists(file); // Never acknowledged, so its primary write never happened
+                    } else if (name.endsWith(ENTRY_SUFFIX)) {
+                        entries.add(read(file));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageException("Could not recover replication journal in " + directory, e);
+        }
+        entries.sort(Comparator.comparingLong(Entry::sequence));
+        long last = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).sequence();
+        nextSequence.set(last + 1);
+        if (!entries.isEmpty()) {
+            logger.info("Recovered {} pending replication entries from {}", entries.size(), directory);
+        }
+        return entries;
+    }
+
+    /**
+     * Assigns the next sequence number to a write. Nothing is on disk until {@link #persist(Entry)}, so a caller
+     * can register the entry (e.g. as pending) before any later one exists.
+     */
+    Entry reserve(Operation operation, String key, String sourceKey) {
+        return new Entry(nextSequence.getAndIncrement(), operation, key, sourceKey, Instant.now());
+    }
+
+    /**
+     * Durably records a reserved write. Returns once the entry is on disk (and fsynced, if enabled).
+     */
+    void persist(Entry entry) {
+        String key = entry.key();
+        Properties properties = new Properties();
+        properties.setProperty("operation", entry.operation().name());
+        if (key != null) {
+            properties.setProperty("key", key);
+        }
+        if (entry.sourceKey() != null) {
+            properties.setProperty("sourceKey", entry.sourceKey());
+        }
+        properties.setProperty("createdAt", entry.createdAt().toString());
+
+        Path temp = directory.resolve(TEMP_PREFIX + entry.sequence());
+        Path target = fileOf(entry);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 OutputStream out = java.nio.channels.Channels.newOutputStream(channel)) {
+                properties.store(out, null);
+                out.flush();
+                if (fsync) {
+                    channel.force(true);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            if (fsync) {
+                syncDirectory();
+            }
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new StorageException("Could not write replication journal entry for " + key, e);
+        }
+    }
+
+    /**
+     * Drops an entry once it has been replicated (or its primary write failed).
+     * Not fsynced: after a crash the entry is replayed, and every operation is idempotent.
+     */
+    void remove(Entry entry) {
+        try {
+            Files.deleteIfExists(fileOf(entry));
+        } catch (IOException e) {
+            logger.warn("Could not remove replication journal entry {}: {}", entry.sequence(), e.getMessage());
+        }
+    }
+
+    /**
+     * Moves an entry that could not be replicated out of the queue. Parked entries are not replayed on restart;
+     * an operator re-applies or discards them.
+     */
+    void park(Entry entry) {
+        try {
+            Files.move(fileOf(entry), directory.resolve(PARKED_DIRECTORY).resolve(fileOf(entry).getFileName()),
+                    StandardCopyOption.REPLACE_EXISTING);
+            parked.incrementAndGet();
+        } catch (IOException e) {
+            // Still queued on disk, so it is retried after the next restart
+            logger.warn("Could not park replication journal entry {}: {}", entry.sequence(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return Entries in the parked directory, including those parked before the last restart.
+     */
+    long parkedCount() {
+        return parked.get();
+    }
+
+    private Path fileOf(Entry entry) {
+        return directory.resolve(String.format("%020d%s", entry.sequence(), ENTRY_SUFFIX));
+    }
+
+    private Entry read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            properties.load(reader);
+        }
+        String name = file.getFileName().toString();
+        long sequence = Long.parseLong(name.substring(0, name.length() - ENTRY_SUFFIX.length()));
+        return new Entry(sequence,
+                Operation.valueOf(properties.getProperty("operation")),
+                properties.getProperty("key"),
+                properties.getProperty("sourceKey"),
+                Instant.parse(properties.getProperty("createdAt")));
+    }
+
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory for fsync (e.g. Windows); the rename is still atomic
+            logger.trace("Directory fsync not supported for {}: {}", directory, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.repsy.storage.replicated;
+
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Adapts a stored object read from the primary to the {@link MultipartFile} that {@code store} expects.
+ */
+final class ResourceMultipartFile implements MultipartFile {
+
+    private final String key;
+    private final Resource resource;
+    private final long size;
+
+    ResourceMultipartFile(String key, Resource resource) {
+        this.key = key;
+        this.resource = resource;
+        try {
+            this.size = resource.contentLength();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not determine size of " + key, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return key;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/octet-stream";
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return resource.getContentAsByteArray();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return resource.getInputStream();
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            Files.copy(in, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.repsy.storage.replicated;
+
+import com.repsy.storage.api.StorageException;
+import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.StoragePage;
+import com.repsy.storage.api.StorageService;
+import com.repsy.storage.api.StoredObject;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Backend fake holding objects in a map, with hooks to fail, block or slow down calls.
+ */
+class InMemoryStorageService implements StorageService {
+
+	final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+	final Set<String> failingKeys = ConcurrentHashMap.newKeySet(); // Writes of these keys throw
+	final Map<String, CountDownLatch> blockedKeys = new ConcurrentHashMap<>(); // Writes of these keys wait for the latch
+	volatile long readDelayMillis;
+
+	void put(String key, String content) {
+		objects.put(key, content.getBytes());
+	}
+
+	String content(String key) {
+		byte[] content = objects.get(key);
+		return content != null ? new String(content) : null;
+	}
+
+	private void beforeWrite(String key) {
+		CountDownLatch latch = blockedKeys.get(key);
+		if (latch != null) {
+			try {
+				latch.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (failingKeys.contains(key)) {
+			throw new StorageException("Injected failure writing " + key);
+		}
+	}
+
+	@Override
+	public void init() {
+	}
+
+	@Override
+	public void store(MultipartFile file, Path destinationPath) {
+		String key = destinationPath.toString();
+		beforeWrite(key);
+		try {
+			objects.put(key, file.getBytes());
+		} catch (IOException e) {
+			throw new StorageException("Could not read " + key, e);
+		}
+	}
+
+	@Override
+	public Resource loadAsResource(String filename) {
+		if (readDelayMillis > 0) {
+			try {
+				Thread.sleep(readDelayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		byte[] content = objects.get(filename);
+		if (content == null) {
+			throw new StorageFileNotFoundException("Could not read file: " + filename);
+		}
+		return new ByteArrayResource(content);
+	}
+
+	@Override
+	public Optional<StoredObject> stat(String filename) {
+		byte[] content = objects.get(filename);
+		return content != null ? Optional.of(new StoredObject(filename, content.length, Instant.now())) : Optional.empty();
+	}
+
+	@Override
+	public void copy(String sourceFilename, String destinationFilename) {
+		beforeWrite(destinationFilename);
+		byte[] content = objects.get(sourceFilename);
+		if (content == null) {
+			throw new StorageFileNotFoundException("Could not copy missing file: " + sourceFilename);
+		}
+		objects.put(destinationFilename, content);
+	}
+
+	@Override
+	public void move(String sourceFilename, String destinationFilename) {
+		copy(sourceFilename, destinationFilename);
+		objects.remove(sourceFilename);
+	}
+
+	@Override
+	public void compose(List<String> sourceFilenames, String destinationFilename) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void delete(String filename) {
+		beforeWrite(filename);
+		objects.remove(filename);
+	}
+
+	@Override
+	public void deleteAll() {
+		objects.clear();
+	}
+
+	@Override
+	public StoragePage list(String prefix, int pageSize, String continuationToken) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Stream<Path> loadAll() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Path load(String filename) {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -0,0 +1,214 @@
+package com.repsy.storage.replicated;
+
+import com.repsy.storage.api.StorageFileNotFoundException;
+import com.repsy.storage.api.StorageProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReplicatedStorageServiceTests {
+
+	@TempDir
+	Path journalDirectory;
+
+	private final InMemoryStorageService primary = new InMemoryStorageService();
+	private final InMemoryStorageService secondary = new InMemoryStorageService();
+	private final StorageProperties.ReplicationProperties properties = new StorageProperties.ReplicationProperties();
+	private ReplicatedStorageService storage;
+
+	private ReplicatedStorageService open() {
+		properties.setJournalLocation(journalDirectory.toString());
+		properties.setJournalFsync(false);
+		properties.setRetryDelayMillis(1);
+		properties.setMaxRetryDelayMillis(1);
+		storage = new ReplicatedStorageService(properties, primary, List.of(secondary));
+		storage.init();
+		return storage;
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (storage != null) {
+			storage.close();
+		}
+	}
+
+	private static void store(ReplicatedStorageService storage, String key, String content) {
+		storage.store(new MockMultipartFile("file", content.getBytes(StandardCharsets.UTF_8)), Paths.get(key));
+	}
+
+	private void awaitReplicated() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!storage.replicationStats().get("pendingReplications").equals(0)) {
+			assertThat(System.currentTimeMillis()).as("replication drained in time").isLessThan(deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	void secondariesFollowThePrimaryInJournalOrder() throws Exception {
+		ReplicatedStorageService storage = open();
+		store(storage, "a", "1");
+		storage.copy("a", "b");
+		storage.move("a", "c");
+		store(storage, "a", "2");
+		storage.delete("b");
+		awaitReplicated();
+
+		assertThat(secondary.objects).containsOnlyKeys("a", "c");
+		assertThat(secondary.content("a")).isEqualTo("2");
+		assertThat(secondary.content("c")).isEqualTo("1");
+		assertThat(storage.replicationStats()).containsEntry("replicated", 5L);
+		try (Stream<Path> entries = Files.list(journalDirectory)) {
+			assertThat(entries.filter(Files::isRegularFile)).isEmpty();
+		}
+	}
+
+	@Test
+	void aMoveDoesNotCarryContentFromALaterWriteOfItsSource() throws Exception {
+		ReplicatedStorageService storage = open();
+		CountDownLatch release = new CountDownLatch(1);
+		secondary.blockedKeys.put("gate", release); // Holds the replicator until the primary is ahead
+		store(storage, "gate", "0");
+		store(storage, "a", "1");
+		storage.move("a", "c");
+		store(storage, "a", "2");
+		release.countDown();
+		awaitReplicated();
+
+		// Replicating the first store already copies "2"; moving that to "c" would be wrong
+		assertThat(secondary.content("c")).isEqualTo("1");
+		assertThat(secondary.content("a")).isEqualTo("2");
+	}
+
+	@Test
+	void aCompletedWriteWaitsForAnEarlierWriteStillInFlight() throws Exception {
+		ReplicatedStorageService storage = open();
+		CountDownLatch release = new CountDownLatch(1);
+		primary.blockedKeys.put("slow", release);
+		CompletableFuture<Void> slowWrite = CompletableFuture.runAsync(() -> store(storage, "slow", "1"));
+		while (!storage.replicationStats().get("pendingReplications").equals(1)) {
+			Thread.sleep(1);
+		}
+		store(storage, "fast", "2");
+
+		Thread.sleep(200);
+		assertThat(secondary.objects).isEmpty(); // "fast" is ready, but behind "slow"
+
+		release.countDown();
+		slowWrite.get(10, TimeUnit.SECONDS);
+		awaitReplicated();
+		assertThat(secondary.objects).containsOnlyKeys("slow", "fast");
+	}
+
+	@Test
+	void anEntryThatKeepsFailingIsParked() throws Exception {
+		properties.setMaxAttempts(3);
+		ReplicatedStorageService storage = open();
+		secondary.failingKeys.add("bad");
+		store(storage, "bad", "1");
+		store(storage, "good", "2");
+		awaitReplicated();
+
+		assertThat(secondary.objects).containsOnlyKeys("good");
+		assertThat(storage.replicationStats()).containsEntry("parkedReplications", 1L).containsEntry("replicationFailures", 3L);
+		try (Stream<Path> parked = Files.list(journalDirectory.resolve("parked"))) {
+			assertThat(parked).hasSize(1);
+		}
+		storage.close();
+
+		// Parked entries are not replayed, but still counted after a restart
+		secondary.failingKeys.clear();
+		ReplicatedStorageService restarted = open();
+		assertThat(restarted.replicationStats()).containsEntry("pendingReplications", 0).containsEntry("parkedReplications", 1L);
+		assertThat(secondary.objects).doesNotContainKey("bad");
+	}
+
+	@Test
+	void recoveredDeletesAndMovesThatNeverReachedThePrimaryAreDiscarded() throws Exception {
+		// Journaled before a crash: the first two never reached the primary, the last two did
+		ReplicationJournal journal = new ReplicationJournal(journalDirectory, false);
+		journal.recover();
+		for (ReplicationJournal.Entry entry : List.of(
+				journal.reserve(ReplicationJournal.Operation.DELETE, "kept", null),
+				journal.reserve(ReplicationJournal.Operation.MOVE, "moved", "source"),
+				journal.reserve(ReplicationJournal.Operation.DELETE, "deleted", null),
+				journal.reserve(ReplicationJournal.Operation.MOVE, "target", "renamed"))) {
+			journal.persist(entry);
+		}
+		primary.put("kept", "k");
+		primary.put("source", "s");
+		primary.put("target", "t");
+		secondary.put("kept", "k");
+		secondary.put("source", "s");
+		secondary.put("deleted", "d");
+		secondary.put("renamed", "t");
+
+		ReplicatedStorageService storage = open();
+		awaitReplicated();
+
+		assertThat(secondary.objects).containsOnlyKeys("kept", "source", "target");
+		assertThat(storage.replicationStats()).containsEntry("discardedRecoveredEntries", 2L).containsEntry("replicated", 2L);
+	}
+
+	@Test
+	void aSlowPrimaryReadIsHedgedToTheSecondary() throws Exception {
+		properties.setInitialHedgeDelayMillis(20);
+		ReplicatedStorageService storage = open();
+		primary.put("file", "primary");
+		secondary.put("file", "secondary");
+		primary.readDelayMillis = 500;
+
+		Resource resource = storage.loadAsResource("file");
+		assertThat(resource.getContentAsString(StandardCharsets.UTF_8)).isEqualTo("secondary");
+		assertThat(storage.replicationStats()).containsEntry("hedgedReads", 1L).containsEntry("hedgeWins", 1L);
+
+		primary.readDelayMillis = 0;
+		assertThat(storage.loadAsResource("file").getContentAsString(StandardCharsets.UTF_8)).isEqualTo("primary");
+	}
+
+	@Test
+	void notFoundOnThePrimaryIsFinalEvenWhenHedged() {
+		properties.setInitialHedgeDelayMillis(20);
+		ReplicatedStorageService storage = open();
+		secondary.put("deleted", "stale copy");
+		secondary.readDelayMillis = 300; // The primary's answer arrives first
+		primary.readDelayMillis = 100;
+
+		assertThatThrownBy(() -> storage.loadAsResource("deleted")).isInstanceOf(StorageFileNotFoundException.class);
+		assertThat(storage.replicationStats()).containsEntry("hedgedReads", 1L).containsEntry("hedgeWins", 0L);
+	}
+
+	@Test
+	void aStreamingReadComesFromThePrimaryWithoutHedging() throws Exception {
+		properties.setInitialHedgeDelayMillis(20);
+		ReplicatedStorageService storage = open();
+		primary.put("file", "damaged primary");
+		secondary.put("file", "intact secondary");
+		primary.readDelayMillis = 200;
+
+		try (InputStream in = storage.openStream("file")) {
+			assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("damaged primary");
+		}
+		// Neither counted as a read nor fed into the hedge delay
+		assertThat(storage.replicationStats()).containsEntry("reads", 0L).containsEntry("hedgedReads", 0L)
+				.containsEntry("hedgeDelayMillis", 20L);
+	}
+
+}